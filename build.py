@@ -284,6 +284,7 @@ CTX.INPUT['execution'] = """
 """
 
 CTX.INPUT['executors'] = """
+ BatchedUDFProjector.cpp
  OptimizedProjector.cpp
  abstractexecutor.cpp
  abstractjoinexecutor.cpp
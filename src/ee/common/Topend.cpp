@@ -170,6 +170,11 @@ namespace voltdb {
         return 0;
     }
 
+    int32_t DummyTopend::callJavaUserDefinedFunctionBatch() {
+        // We do not call any UDF here, directly return zero which means success.
+        return 0;
+    }
+
     void DummyTopend::resizeUDFBuffer(int32_t size) {
         // We do nothing here.
     }
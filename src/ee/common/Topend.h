@@ -101,6 +101,11 @@ class Topend {
     // The VoltDBEngine will serialize them into the buffer before calling this function.
     virtual int32_t callJavaUserDefinedFunction() = 0;
 
+    // Call into the Java top end to execute a user-defined function once for each row in a batch.
+    // The buffer holds the function ID, the row count and the parameters of every row.
+    // The Java top end writes the results right after the parameters.
+    virtual int32_t callJavaUserDefinedFunctionBatch() = 0;
+
     // Call into the Java top end to resize the ByteBuffer allocated for the UDF
     // when the current buffer size is not large enough to hold all the parameters.
     // All the buffers in the IPC mode have the same size as MAX_MSG_SZ = 10MB.
@@ -156,6 +161,7 @@ public:
     virtual bool releaseLargeTempTableBlock(int64_t blockId);
 
     int32_t callJavaUserDefinedFunction();
+    int32_t callJavaUserDefinedFunctionBatch();
     void resizeUDFBuffer(int32_t size);
 
     std::queue<int32_t> partitionIds;
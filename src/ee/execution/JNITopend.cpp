@@ -99,6 +99,14 @@ JNITopend::JNITopend(JNIEnv *env, jobject caller) : m_jniEnv(env), m_javaExecuti
         throw std::exception();
     }
 
+    m_callJavaUserDefinedFunctionBatchMID = m_jniEnv->GetMethodID(
+            jniClass, "callJavaUserDefinedFunctionBatch", "()I");
+    if (m_callJavaUserDefinedFunctionBatchMID == NULL) {
+        m_jniEnv->ExceptionDescribe();
+        assert(m_callJavaUserDefinedFunctionBatchMID != 0);
+        throw std::exception();
+    }
+
     m_resizeUDFBufferMID = m_jniEnv->GetMethodID(
             jniClass, "resizeUDFBuffer", "(I)V");
     if (m_resizeUDFBufferMID == NULL) {
@@ -394,6 +402,11 @@ int32_t JNITopend::callJavaUserDefinedFunction() {
                                             m_callJavaUserDefinedFunctionMID);
 }
 
+int32_t JNITopend::callJavaUserDefinedFunctionBatch() {
+    return (int32_t)m_jniEnv->CallIntMethod(m_javaExecutionEngine,
+                                            m_callJavaUserDefinedFunctionBatchMID);
+}
+
 void JNITopend::resizeUDFBuffer(int32_t size) {
     m_jniEnv->CallVoidMethod(m_javaExecutionEngine, m_resizeUDFBufferMID, size);
 }
@@ -80,6 +80,7 @@ public:
     }
 
     int32_t callJavaUserDefinedFunction();
+    int32_t callJavaUserDefinedFunctionBatch();
     void resizeUDFBuffer(int32_t size);
 
 private:
@@ -103,6 +104,7 @@ private:
     jmethodID m_reportDRConflictMID;
     jmethodID m_decodeBase64AndDecompressToBytesMID;
     jmethodID m_callJavaUserDefinedFunctionMID;
+    jmethodID m_callJavaUserDefinedFunctionBatchMID;
     jmethodID m_resizeUDFBufferMID;
     jclass m_exportManagerClass;
     jclass m_partitionDRGatewayClass;
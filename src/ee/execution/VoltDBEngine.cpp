@@ -635,6 +635,78 @@ NValue VoltDBEngine::callJavaUserDefinedFunction(int32_t functionId, std::vector
     }
 }
 
+void VoltDBEngine::callJavaUserDefinedFunctionBatch(int32_t functionId, std::vector<NValue>& arguments,
+                                                    int32_t rowCount, std::vector<NValue>& results) {
+    UserDefinedFunctionInfo *info = findInMapOrNull(functionId, m_functionInfo);
+    if (info == NULL) {
+        // There must be serious inconsistency in the catalog if this could happen.
+        throwFatalException("The execution engine lost track of the user-defined function (id = %d)", functionId);
+    }
+    size_t paramCount = info->paramTypes.size();
+    assert(arguments.size() == paramCount * rowCount);
+    if (rowCount == 0) {
+        return;
+    }
+
+    // The buffer is laid out like the one for a single call, with the row count
+    // following the function ID and the parameters of all the rows after that:
+    //   * size of the buffer (function ID + row count + parameters)
+    //   * function ID (int32_t)
+    //   * row count (int32_t)
+    //   * parameters.
+    // The Java top end writes the results right after the parameters, one type byte
+    // and one value per row, so only functions returning fixed-length values are batched.
+    size_t bufferSizeNeeded = 2 * sizeof(int32_t);
+    for (size_t i = 0; i < arguments.size(); i++) {
+        arguments[i] = arguments[i].castAs(info->paramTypes[i % paramCount]);
+        bufferSizeNeeded += arguments[i].serializedSize();
+    }
+    size_t resultSizeNeeded = 0;
+    if ( ! isVariableLengthType(info->returnType)) {
+        resultSizeNeeded = rowCount * (sizeof(int8_t) + NValue::getTupleStorageSize(info->returnType));
+    }
+    size_t totalSizeNeeded = sizeof(int32_t) + bufferSizeNeeded + resultSizeNeeded;
+    if (totalSizeNeeded > m_udfBufferCapacity && totalSizeNeeded <= MAX_UDF_BUFFER_SIZE) {
+        m_topend->resizeUDFBuffer(static_cast<int32_t>(totalSizeNeeded));
+    }
+    if (resultSizeNeeded == 0 || totalSizeNeeded > m_udfBufferCapacity) {
+        // Fall back to one call per row.
+        std::vector<NValue> rowArguments(paramCount);
+        for (int32_t row = 0; row < rowCount; row++) {
+            std::copy(arguments.begin() + row * paramCount,
+                      arguments.begin() + (row + 1) * paramCount,
+                      rowArguments.begin());
+            results.push_back(callJavaUserDefinedFunction(functionId, rowArguments));
+        }
+        return;
+    }
+    resetUDFOutputBuffer();
+
+    m_udfOutput.writeInt(static_cast<int32_t>(bufferSizeNeeded));
+    m_udfOutput.writeInt(functionId);
+    m_udfOutput.writeInt(rowCount);
+    for (size_t i = 0; i < arguments.size(); i++) {
+        arguments[i].serializeTo(m_udfOutput);
+    }
+    assert(bufferSizeNeeded + sizeof(int32_t) == m_udfOutput.position());
+
+    int32_t returnCode = m_topend->callJavaUserDefinedFunctionBatch();
+    if (returnCode == 0) {
+        ReferenceSerializeInputBE udfResultIn(m_udfBuffer + sizeof(int32_t) + bufferSizeNeeded, resultSizeNeeded);
+        for (int32_t row = 0; row < rowCount; row++) {
+            NValue retval = ValueFactory::getNValueOfType(info->returnType);
+            retval.deserializeFromAllocateForStorage(udfResultIn, &m_stringPool);
+            results.push_back(retval);
+        }
+    }
+    else {
+        // Error handling
+        ReferenceSerializeInputBE udfResultIn(m_udfBuffer, m_udfBufferCapacity);
+        string errorMsg = udfResultIn.readTextString();
+        throw SQLException(SQLException::volt_user_defined_function_error, errorMsg);
+    }
+}
+
 void VoltDBEngine::releaseUndoToken(int64_t undoToken) {
     if (m_currentUndoQuantum != NULL && m_currentUndoQuantum->getUndoToken() == undoToken) {
         m_currentUndoQuantum = NULL;
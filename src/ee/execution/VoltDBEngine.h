@@ -223,6 +223,11 @@ class __attribute__((visibility("default"))) VoltDBEngine {
         // Call user-defined function
         NValue callJavaUserDefinedFunction(int32_t functionId, std::vector<NValue>& arguments);
 
+        // Call user-defined function for a batch of rows with a single call into the Java top end.
+        // The arguments of the rows are stored back to back; one result per row is appended to results.
+        void callJavaUserDefinedFunctionBatch(int32_t functionId, std::vector<NValue>& arguments,
+                                              int32_t rowCount, std::vector<NValue>& results);
+
         // Created to transition existing unit tests to context abstraction.
         // If using this somewhere new, consider if you're being lazy.
         void updateExecutorContextUndoQuantumForTest();
@@ -0,0 +1,98 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#include "executors/BatchedUDFProjector.hpp"
+
+#include "expressions/abstractexpression.h"
+#include "expressions/userdefinedfunctionexpression.h"
+
+namespace voltdb {
+
+BatchedUDFProjector::BatchedUDFProjector(const std::vector<AbstractExpression*>& exprs)
+    : m_exprs(exprs)
+    , m_udfs(exprs.size(), NULL)
+    , m_arguments(exprs.size())
+    , m_storage()
+    , m_tupleLength(0)
+    , m_stagedCount(0)
+    , m_tuple()
+{
+    for (size_t ctr = 0; ctr < m_exprs.size(); ctr++) {
+        m_udfs[ctr] = dynamic_cast<const UserDefinedFunctionExpression*>(m_exprs[ctr]);
+    }
+}
+
+bool BatchedUDFProjector::hasUserDefinedFunction(const std::vector<AbstractExpression*>& exprs) {
+    for (size_t ctr = 0; ctr < exprs.size(); ctr++) {
+        if (dynamic_cast<const UserDefinedFunctionExpression*>(exprs[ctr]) != NULL) {
+            return true;
+        }
+    }
+    return false;
+}
+
+void BatchedUDFProjector::init(const TupleSchema* schema) {
+    assert(schema->columnCount() == m_exprs.size());
+    size_t tupleLength = schema->tupleLength() + TUPLE_HEADER_SIZE;
+    if (tupleLength > m_tupleLength) {
+        m_storage.reset(new char[BATCH_SIZE * tupleLength]());
+    }
+    m_tupleLength = tupleLength;
+    m_tuple = TableTuple(schema);
+    // Rows may be left over from an execution that failed part way.
+    m_stagedCount = 0;
+    for (size_t ctr = 0; ctr < m_arguments.size(); ctr++) {
+        m_arguments[ctr].clear();
+    }
+}
+
+bool BatchedUDFProjector::stage(const TableTuple& srcTuple) {
+    assert(m_stagedCount < BATCH_SIZE);
+    TableTuple& dstTuple = stagedTuple(m_stagedCount);
+    for (size_t ctr = 0; ctr < m_exprs.size(); ctr++) {
+        if (m_udfs[ctr] != NULL) {
+            m_udfs[ctr]->evalArguments(&srcTuple, NULL, m_arguments[ctr]);
+        }
+        else {
+            dstTuple.setNValue(static_cast<int>(ctr), m_exprs[ctr]->eval(&srcTuple, NULL));
+        }
+    }
+    return ++m_stagedCount == BATCH_SIZE;
+}
+
+int32_t BatchedUDFProjector::evaluate() {
+    int32_t rowCount = m_stagedCount;
+    m_stagedCount = 0;
+    if (rowCount == 0) {
+        return 0;
+    }
+    for (size_t ctr = 0; ctr < m_exprs.size(); ctr++) {
+        if (m_udfs[ctr] == NULL) {
+            continue;
+        }
+        m_results.clear();
+        m_udfs[ctr]->evalBatch(m_arguments[ctr], rowCount, m_results);
+        m_arguments[ctr].clear();
+        assert(m_results.size() == rowCount);
+        for (int32_t row = 0; row < rowCount; row++) {
+            stagedTuple(row).setNValue(static_cast<int>(ctr), m_results[row]);
+        }
+    }
+    return rowCount;
+}
+
+} // end namespace voltdb
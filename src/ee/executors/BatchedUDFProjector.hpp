@@ -0,0 +1,97 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef EXECUTORS_BATCHED_UDF_PROJECTOR_HPP
+#define EXECUTORS_BATCHED_UDF_PROJECTOR_HPP
+
+#include <vector>
+
+#include "boost/scoped_array.hpp"
+
+#include "common/tabletuple.h"
+#include "common/NValue.hpp"
+
+namespace voltdb {
+
+// Forward declarations
+class AbstractExpression;
+class TupleSchema;
+class UserDefinedFunctionExpression;
+
+/**
+ * Projects tuples whose output columns call Java user-defined functions.
+ *
+ * Evaluating a user-defined function means a call into the Java top end,
+ * which is expensive compared with the function itself.  Rather than making
+ * that call once per row, this class stages up to BATCH_SIZE projected rows,
+ * setting the arguments of the user-defined function columns aside, and then
+ * evaluates each such column for all of the staged rows with a single call.
+ *
+ * Usage:
+ *   init() with the output schema, then stage() each input tuple.  When stage()
+ *   returns true, and once more after the last input tuple, call evaluate() and
+ *   consume the returned number of rows through stagedTuple().
+ */
+class BatchedUDFProjector {
+public:
+    static const int32_t BATCH_SIZE = 512;
+
+    /** Expressions are in output column order, exprs[0] goes into the first field, etc. */
+    BatchedUDFProjector(const std::vector<AbstractExpression*>& exprs);
+
+    /** True if any of the expressions is a call to a user-defined function. */
+    static bool hasUserDefinedFunction(const std::vector<AbstractExpression*>& exprs);
+
+    /** Get ready to stage tuples of the given output schema, dropping any rows left over. */
+    void init(const TupleSchema* schema);
+
+    /**
+     * Project one input tuple, except for the user-defined function columns.
+     * Returns true if the batch is full and must be evaluated before staging more rows.
+     */
+    bool stage(const TableTuple& srcTuple);
+
+    /**
+     * Call the user-defined functions for all staged rows and fill in their columns.
+     * Returns the number of rows, which stay readable through stagedTuple()
+     * until the next call to stage().
+     */
+    int32_t evaluate();
+
+    TableTuple& stagedTuple(int32_t row) {
+        assert(row < BATCH_SIZE);
+        m_tuple.move(m_storage.get() + row * m_tupleLength);
+        return m_tuple;
+    }
+
+private:
+    const std::vector<AbstractExpression*> m_exprs;
+    // For each output column, the user-defined function it calls or NULL.
+    std::vector<const UserDefinedFunctionExpression*> m_udfs;
+    // For each user-defined function column, the arguments of the staged rows, back to back.
+    std::vector<std::vector<NValue> > m_arguments;
+    std::vector<NValue> m_results;
+
+    boost::scoped_array<char> m_storage;
+    size_t m_tupleLength;
+    int32_t m_stagedCount;
+    TableTuple m_tuple;
+};
+
+} // end namespace voltdb
+
+#endif
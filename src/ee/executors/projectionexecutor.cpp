@@ -98,6 +98,9 @@ bool ProjectionExecutor::p_init(AbstractPlanNode *abstractNode,
     if (!node->isInline()) {
         Table* input_table = node->getInputTable();
         m_tuple = TableTuple(input_table->schema());
+        if (BatchedUDFProjector::hasUserDefinedFunction(node->getOutputColumnExpressions())) {
+            m_udfProjector.reset(new BatchedUDFProjector(node->getOutputColumnExpressions()));
+        }
     }
     return true;
 }
@@ -132,6 +135,26 @@ bool ProjectionExecutor::p_execute(const NValueArray &params) {
     //
     TableIterator iterator = input_table->iteratorDeletingAsWeGo();
     assert (m_tuple.sizeInValues() == input_table->columnCount());
+    if (m_udfProjector) {
+        //
+        // Call the user-defined functions once per batch of tuples
+        // rather than once per tuple
+        //
+        m_udfProjector->init(m_outputTable->schema());
+        bool hasMoreTuples = iterator.next(m_tuple);
+        while (hasMoreTuples) {
+            bool isBatchFull = m_udfProjector->stage(m_tuple);
+            hasMoreTuples = iterator.next(m_tuple);
+            if (isBatchFull || ! hasMoreTuples) {
+                int32_t rowCount = m_udfProjector->evaluate();
+                for (int32_t row = 0; row < rowCount; row++) {
+                    m_outputTable->insertTempTuple(m_udfProjector->stagedTuple(row));
+                }
+            }
+        }
+        cleanupInputTempTable(input_table);
+        return true;
+    }
     while (iterator.next(m_tuple)) {
         //
         // Project (or replace) values from input tuple
@@ -47,11 +47,13 @@
 #define HSTOREPROJECTIONEXECUTOR_H
 
 #include <vector>
+#include "boost/scoped_ptr.hpp"
 #include "boost/shared_array.hpp"
 #include "common/common.h"
 #include "common/valuevector.h"
 #include "common/tabletuple.h"
 #include "executors/abstractexecutor.h"
+#include "executors/BatchedUDFProjector.hpp"
 
 namespace voltdb {
 
@@ -86,6 +88,9 @@ class ProjectionExecutor : public AbstractExecutor {
 
         boost::shared_array<AbstractExpression*> expression_array_ptr;
         AbstractExpression** expression_array;
+
+        // Set when some output columns call user-defined functions, to call them a batch at a time.
+        boost::scoped_ptr<BatchedUDFProjector> m_udfProjector;
 };
 
 }
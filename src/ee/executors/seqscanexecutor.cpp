@@ -84,6 +84,15 @@ bool SeqScanExecutor::p_init(AbstractPlanNode* abstract_node,
     // confuses things.
     assert(m_aggExec == NULL || m_insertExec == NULL);
 
+    // An inline aggregate can stop the scan at any tuple, so only batch the
+    // user-defined function calls of a projection into the output table.
+    ProjectionPlanNode* projectionNode =
+        dynamic_cast<ProjectionPlanNode*>(node->getInlinePlanNode(PLAN_NODE_TYPE_PROJECTION));
+    if (projectionNode != NULL && m_aggExec == NULL && m_insertExec == NULL &&
+        BatchedUDFProjector::hasUserDefinedFunction(projectionNode->getOutputColumnExpressions())) {
+        m_udfProjector.reset(new BatchedUDFProjector(projectionNode->getOutputColumnExpressions()));
+    }
+
     //
     // OPTIMIZATION: If there is no predicate for this SeqScan,
     // then we want to just set our OutputTable pointer to be the
@@ -241,6 +250,9 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
         else {
             temp_tuple = m_tmpOutputTable->tempTuple();
         }
+        if (m_udfProjector) {
+            m_udfProjector->init(temp_tuple.getSchema());
+        }
 
         while (postfilter.isUnderLimit() && iterator.next(tuple))
         {
@@ -265,14 +277,23 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
                 if (projectionNode != NULL)
                 {
                     VOLT_TRACE("inline projection...");
-                    // Project the scanned table row onto
-                    // the columns of the select list in the
-                    // select statement.
-                    for (int ctr = 0; ctr < num_of_columns; ctr++) {
-                        NValue value = projectionNode->getOutputColumnExpressions()[ctr]->eval(&tuple, NULL);
-                        temp_tuple.setNValue(ctr, value);
+                    if (m_udfProjector) {
+                        // The user-defined functions are called for
+                        // a whole batch of rows at a time.
+                        if (m_udfProjector->stage(tuple)) {
+                            outputUDFProjectedTuples();
+                        }
+                    }
+                    else {
+                        // Project the scanned table row onto
+                        // the columns of the select list in the
+                        // select statement.
+                        for (int ctr = 0; ctr < num_of_columns; ctr++) {
+                            NValue value = projectionNode->getOutputColumnExpressions()[ctr]->eval(&tuple, NULL);
+                            temp_tuple.setNValue(ctr, value);
+                        }
+                        outputTuple(temp_tuple);
                     }
-                    outputTuple(temp_tuple);
                 }
                 else
                 {
@@ -282,6 +303,10 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
             }
         } // end while we have more tuples to scan
 
+        if (m_udfProjector) {
+            outputUDFProjectedTuples();
+        }
+
         if (m_aggExec != NULL) {
             m_aggExec->p_execute_finish();
         }
@@ -298,6 +323,17 @@ bool SeqScanExecutor::p_execute(const NValueArray &params) {
     return true;
 }
 
+/*
+ * Call the user-defined functions of the inline projection
+ * for the staged rows and output them in scan order.
+ */
+void SeqScanExecutor::outputUDFProjectedTuples() {
+    int32_t rowCount = m_udfProjector->evaluate();
+    for (int32_t row = 0; row < rowCount; row++) {
+        outputTuple(m_udfProjector->stagedTuple(row));
+    }
+}
+
 /*
  * We may output a tuple to an inline aggregate or
  * inline insert node.  If there is a limit or projection, this will have
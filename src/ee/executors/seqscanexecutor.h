@@ -48,9 +48,12 @@
 
 #include "common/common.h"
 #include "common/valuevector.h"
+#include "executors/BatchedUDFProjector.hpp"
 #include "executors/abstractexecutor.h"
 #include "execution/VoltDBEngine.h"
 
+#include "boost/scoped_ptr.hpp"
+
 namespace voltdb
 {
     class AggregateExecutorBase;
@@ -77,6 +80,8 @@ namespace voltdb
          */
         void outputTuple(TableTuple& tuple);
 
+        void outputUDFProjectedTuples();
+
         // These are logically local variables to p_execute.
         // But we need to share them between p_execute and
         // outputTuple, so we save them here.  They come out of
@@ -85,6 +90,10 @@ namespace voltdb
         // freeing them.
         AggregateExecutorBase* m_aggExec;
         InsertExecutor* m_insertExec;
+
+        // Set when the inline projection calls user-defined functions
+        // and its output goes straight to the output table.
+        boost::scoped_ptr<BatchedUDFProjector> m_udfProjector;
     };
 }
 
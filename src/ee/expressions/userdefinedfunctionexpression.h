@@ -0,0 +1,104 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+#ifndef USERDEFINEDFUNCTIONEXPRESSION_H
+#define USERDEFINEDFUNCTIONEXPRESSION_H
+
+#include "common/executorcontext.hpp"
+#include "execution/VoltDBEngine.h"
+#include "expressions/abstractexpression.h"
+
+#include <sstream>
+#include <string>
+#include <vector>
+
+namespace voltdb {
+
+/*
+ * User-defined scalar function.
+ */
+class UserDefinedFunctionExpression : public AbstractExpression {
+public:
+    UserDefinedFunctionExpression(int functionId, const std::vector<AbstractExpression *>& args)
+        : AbstractExpression(EXPRESSION_TYPE_FUNCTION),
+          m_functionId(functionId),
+          m_args(args),
+          m_engine(ExecutorContext::getEngine()) {}
+
+    virtual ~UserDefinedFunctionExpression() {
+        size_t i = m_args.size();
+        while (i--) {
+            delete m_args[i];
+        }
+        delete &m_args;
+    }
+
+    virtual bool hasParameter() const {
+        for (size_t i = 0; i < m_args.size(); i++) {
+            assert(m_args[i]);
+            if (m_args[i]->hasParameter()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    NValue eval(const TableTuple *tuple1, const TableTuple *tuple2) const {
+        std::vector<NValue> nValue(m_args.size());
+        for (int i = 0; i < m_args.size(); ++i) {
+            nValue[i] = m_args[i]->eval(tuple1, tuple2);
+        }
+        return m_engine->callJavaUserDefinedFunction(m_functionId, nValue);
+    }
+
+    /**
+     * Evaluate the arguments for one row of a batch and append them to arguments.
+     * Values that point into the tuple storage are copied to the temp string pool,
+     * the tuples may be gone by the time the batch is evaluated.
+     */
+    void evalArguments(const TableTuple *tuple1, const TableTuple *tuple2,
+                       std::vector<NValue>& arguments) const {
+        for (int i = 0; i < m_args.size(); ++i) {
+            arguments.push_back(m_args[i]->eval(tuple1, tuple2).copyNValue());
+        }
+    }
+
+    /**
+     * Call the function for rowCount rows of arguments collected by evalArguments()
+     * with a single call into the Java top end. One result per row is appended to results.
+     */
+    void evalBatch(std::vector<NValue>& arguments, int32_t rowCount, std::vector<NValue>& results) const {
+        m_engine->callJavaUserDefinedFunctionBatch(m_functionId, arguments, rowCount, results);
+    }
+
+    std::string debugInfo(const std::string &spacer) const {
+        std::stringstream buffer;
+        buffer << spacer << "UserDefinedFunctionExpression (function ID = " << m_functionId << ")" << std::endl;
+        return (buffer.str());
+    }
+
+private:
+    int m_functionId;
+    const std::vector<AbstractExpression *>& m_args;
+    // We need the help from the VoltDBEngine to initiate the call into the Java top end for UDF execution.
+    // So we cache a pointer to the engine object that is tied to the current site thread for direct access.
+    VoltDBEngine* m_engine;
+};
+
+}
+
+#endif
@@ -71,6 +71,7 @@ public:
         kErrorCode_getQueuedExportBytes = 105,         // Retrieve value for stats
         kErrorCode_pushPerFragmentStatsBuffer = 106,   // Indication that per-fragment statistics buffer is next
         kErrorCode_callJavaUserDefinedFunction = 107,  // Notify the frontend to call a Java user-defined function.
+        kErrorCode_callJavaUserDefinedFunctionBatch = 108, // Same as 107, for a batch of rows.
         kErrorCode_needPlan = 110,                     // fetch a plan from java for a fragment
         kErrorCode_progressUpdate = 111,               // Update Java on execution progress
         kErrorCode_decodeBase64AndDecompress = 112     // Decode base64, compressed data
@@ -198,6 +199,8 @@ private:
 
     int callJavaUserDefinedFunction();
 
+    int callJavaUserDefinedFunctionBatch();
+
     // We do not adjust the UDF buffer size in the IPC mode.
     // The buffer sizes are always MAX_MSG_SZ (10M)
     void resizeUDFBuffer(int32_t size) {
@@ -206,6 +209,8 @@ private:
 
     void sendException( int8_t errorCode);
 
+    int sendUDFBufferAndReceiveResult(int8_t requestCode, bool resultsFollowParameters);
+
     int8_t activateTableStream(struct ipc_command *cmd);
     void tableStreamSerializeMore(struct ipc_command *cmd);
     void exportAction(struct ipc_command *cmd);
@@ -871,8 +876,16 @@ void checkBytesRead(ssize_t byteCountExpected, ssize_t byteCountRead, std::strin
 }
 
 int VoltDBIPC::callJavaUserDefinedFunction() {
+    return sendUDFBufferAndReceiveResult(kErrorCode_callJavaUserDefinedFunction, false);
+}
+
+int VoltDBIPC::callJavaUserDefinedFunctionBatch() {
+    return sendUDFBufferAndReceiveResult(kErrorCode_callJavaUserDefinedFunctionBatch, true);
+}
+
+int VoltDBIPC::sendUDFBufferAndReceiveResult(int8_t requestCode, bool resultsFollowParameters) {
     // Send a special status code indicating that a UDF invocation request is coming on the wire.
-    int8_t statusCode = static_cast<int8_t>(kErrorCode_callJavaUserDefinedFunction);
+    int8_t statusCode = requestCode;
     writeOrDie(m_fd, (unsigned char*)&statusCode, sizeof(int8_t));
 
     // Get the UDF buffer size.
@@ -898,7 +911,12 @@ int VoltDBIPC::callJavaUserDefinedFunction() {
     retval = ntohl(retval);
 
     // read buffer content, includes the return value of the UDF.
-    bytes = read(m_fd, m_udfBuffer, udfBufferSizeToRecv);
+    // The results of a batch are expected right after the parameters, an error message at the start.
+    char* udfResultBuffer = m_udfBuffer;
+    if (retval == 0 && resultsFollowParameters) {
+        udfResultBuffer += sizeof(udfBufferSizeToSend) + udfBufferSizeToSend;
+    }
+    bytes = read(m_fd, udfResultBuffer, udfBufferSizeToRecv);
     checkBytesRead(udfBufferSizeToRecv, bytes, "UDF return value buffer content");
     return retval;
 }
@@ -25,6 +25,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SocketChannel;
 import java.util.Set;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
@@ -32,6 +33,7 @@ import java.util.concurrent.atomic.AtomicLong;
 import org.voltcore.logging.Level;
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.network.Connection;
+import org.voltcore.network.PicoNIOWriteStream;
 import org.voltcore.network.PicoNetwork;
 import org.voltcore.network.QueueMonitor;
 import org.voltcore.network.VoltProtocolHandler;
@@ -73,6 +75,38 @@ public class ForeignHost {
 
     public static final int POISON_PILL = -1;
     public static final int STOPNODE_NOTICE = -2;
+    public static final int COALESCED_MESSAGES = -3;
+
+    /*
+     * Pack the messages queued for a host during one iteration of its network thread into a
+     * single frame, optionally holding the first one back for a few microseconds so more can
+     * join it. Every node understands coalesced frames, but only turn this on once the whole
+     * cluster runs a version that does.
+     */
+    static final boolean COALESCING = Boolean.getBoolean("FOREIGN_HOST_COALESCING");
+    static final long COALESCING_LINGER_NANOS =
+            TimeUnit.MICROSECONDS.toNanos(Integer.getInteger("FOREIGN_HOST_COALESCING_LINGER_MICROS", 0));
+
+    /**
+     * Header of a frame of coalesced messages, in the place of a message's source and
+     * destination count. Each message in the frame keeps its own length prefix.
+     */
+    static final PicoNIOWriteStream.CoalescedFrameHeader COALESCED_FRAME_HEADER =
+            new PicoNIOWriteStream.CoalescedFrameHeader() {
+        @Override
+        public int size() {
+            return 8   /* source hsid */
+                 + 4   /* COALESCED_MESSAGES */
+                 + 4;  /* message count */
+        }
+
+        @Override
+        public void put(ByteBuffer buf, int messageCount) {
+            buf.putLong(-1);
+            buf.putInt(COALESCED_MESSAGES);
+            buf.putInt(messageCount);
+        }
+    };
 
     public static final int CRASH_ALL = 0;
     public static final int CRASH_ME = 1;
@@ -158,6 +192,9 @@ public class ForeignHost {
         m_deadHostTimeout = deadHostTimeout;
         m_listeningAddress = listeningAddress;
         m_network = network;
+        if (COALESCING) {
+            m_network.enableCoalescing(COALESCED_FRAME_HEADER, COALESCING_LINGER_NANOS);
+        }
 
         setLogRate(deadHostTimeout);
     }
@@ -385,6 +422,16 @@ public class ForeignHost {
             hostLog.info("Receive StopNode notice for host " + targetHostId);
             m_hostMessenger.addStopNodeNotice(targetHostId);
             return;
+        } else if (destCount == COALESCED_MESSAGES) {
+            final int messageCount = in.getInt();
+            for (int i = 0; i < messageCount; i++) {
+                final int length = in.getInt();
+                final ByteBuffer message = in.slice();
+                message.limit(length);
+                in.position(in.position() + length);
+                handleRead(message, c);
+            }
+            return;
         }
 
         recvDests = new long[destCount];
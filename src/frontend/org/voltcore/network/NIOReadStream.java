@@ -85,13 +85,24 @@ public class NIOReadStream {
      * @param output
      */
     void getBytes(byte[] output) {
-        if (m_totalAvailable < output.length) {
-            throw new IllegalStateException("Requested " + output.length + " bytes; only have "
+        getBytes(output, output.length);
+    }
+
+    /**
+     * Move the next {@code length} bytes to the start of the output array, free read buffers
+     * back to thread local memory pool.
+     * @param output
+     * @param length
+     */
+    void getBytes(byte[] output, int length) {
+        assert(length <= output.length);
+        if (m_totalAvailable < length) {
+            throw new IllegalStateException("Requested " + length + " bytes; only have "
                     + m_totalAvailable + " bytes; call tryRead() first");
         }
 
         int bytesCopied = 0;
-        while (bytesCopied < output.length) {
+        while (bytesCopied < length) {
             BBContainer firstC = m_readBBContainers.peekFirst();
             if (firstC == null) {
                 // Steal the write buffer
@@ -105,7 +116,7 @@ public class NIOReadStream {
 
             // Copy bytes from first into output
             int bytesRemaining = first.remaining();
-            int bytesToCopy = output.length - bytesCopied;
+            int bytesToCopy = length - bytesCopied;
             if (bytesToCopy > bytesRemaining) bytesToCopy = bytesRemaining;
             first.get(output, bytesCopied, bytesToCopy);
             bytesCopied += bytesToCopy;
@@ -22,8 +22,10 @@ import java.nio.ByteBuffer;
 import java.nio.channels.GatheringByteChannel;
 import java.nio.channels.SelectionKey;
 import java.util.ArrayDeque;
+import java.util.Arrays;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.EstTime;
 
@@ -70,6 +72,13 @@ public class NIOWriteStream extends NIOWriteStreamBase implements WriteStream {
 
     protected final QueueMonitor m_monitor;
 
+    /**
+     * Most buffers handed to the channel in one gathering write, well under IOV_MAX
+     */
+    static final int MAX_GATHERING_BUFFERS = 64;
+    private final BBContainer[] m_gatherContainers = new BBContainer[MAX_GATHERING_BUFFERS];
+    private final ByteBuffer[] m_gatherBuffers = new ByteBuffer[MAX_GATHERING_BUFFERS];
+
     /**
      * Set to -1 when there are no pending writes. If there is a pending write it is set to the time
      * of the last successful write or the time the oldest pending write was queued.
@@ -310,10 +319,11 @@ public class NIOWriteStream extends NIOWriteStreamBase implements WriteStream {
     }
 
     /**
-     * Does the work of queueing addititional buffers that have been serialized
-     * and choosing between gathering and regular writes to the channel. Also splits up very large
-     * writes of HeapByteBuffers into many smaller writes so Java doesn't allocate a monster DirectByteBuffer
-     * that will never be freed
+     * Drains the buffers that have been serialized to the channel. Up to MAX_GATHERING_BUFFERS queued buffers
+     * are handed to a single gathering write so a connection with many small pending messages doesn't cost a
+     * syscall per buffer. After a short write the buffer that was partially written becomes the current write
+     * buffer and the untouched ones go back on the front of the queue. All of the buffers come from the
+     * network pool and are direct, so no large HeapByteBuffer is ever handed to the channel.
      * @param channel
      * @return
      * @throws IOException
@@ -331,26 +341,30 @@ public class NIOWriteStream extends NIOWriteStreamBase implements WriteStream {
                     return bytesWritten;
                 }
 
-                ByteBuffer buffer = null;
-                if (m_currentWriteBuffer == null) {
-                    m_currentWriteBuffer = m_queuedBuffers.poll();
-                    buffer = m_currentWriteBuffer.b();
-                    buffer.flip();
-                } else {
-                    buffer = m_currentWriteBuffer.b();
+                int count = 0;
+                if (m_currentWriteBuffer != null) {
+                    m_gatherContainers[count] = m_currentWriteBuffer;
+                    m_gatherBuffers[count++] = m_currentWriteBuffer.b();
+                    m_currentWriteBuffer = null;
+                }
+                while (count < MAX_GATHERING_BUFFERS && !m_queuedBuffers.isEmpty()) {
+                    final BBContainer c = m_queuedBuffers.poll();
+                    c.b().flip();
+                    m_gatherContainers[count] = c;
+                    m_gatherBuffers[count++] = c.b();
                 }
 
-                rc = channel.write(buffer);
-
-                //Discard the buffer back to a pool if no data remains
-                if (buffer.hasRemaining()) {
-                    if (!m_hadBackPressure) {
-                        backpressureStarted();
+                rc = 0;
+                try {
+                    if (count == 1) {
+                        rc = channel.write(m_gatherBuffers[0]);
+                    } else {
+                        rc = channel.write(m_gatherBuffers, 0, count);
                     }
-                } else {
-                    m_currentWriteBuffer.discard();
-                    m_currentWriteBuffer = null;
-                    m_messagesWritten++;
+                    m_writeCalls++;
+                    m_buffersWritten += count;
+                } finally {
+                    retireGatheredBuffers(count);
                 }
                 bytesWritten += rc;
 
@@ -376,4 +390,31 @@ public class NIOWriteStream extends NIOWriteStreamBase implements WriteStream {
         }
         return bytesWritten;
     }
+
+    /**
+     * Discard the gathered buffers that were written completely back to the pool, keep the first one
+     * that wasn't as the current write buffer and return the rest, which the channel never touched,
+     * to the front of the queue in their unflipped state
+     */
+    private void retireGatheredBuffers(int count) {
+        int ii = 0;
+        for (; ii < count && !m_gatherBuffers[ii].hasRemaining(); ii++) {
+            m_gatherContainers[ii].discard();
+            m_messagesWritten++;
+        }
+        if (ii < count) {
+            if (!m_hadBackPressure) {
+                backpressureStarted();
+            }
+            for (int jj = count - 1; jj > ii; jj--) {
+                final ByteBuffer b = m_gatherBuffers[jj];
+                b.position(b.limit());
+                b.limit(b.capacity());
+                m_queuedBuffers.offerFirst(m_gatherContainers[jj]);
+            }
+            m_currentWriteBuffer = m_gatherContainers[ii];
+        }
+        Arrays.fill(m_gatherContainers, 0, count, null);
+        Arrays.fill(m_gatherBuffers, 0, count, null);
+    }
 }
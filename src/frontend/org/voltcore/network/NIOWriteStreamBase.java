@@ -50,6 +50,9 @@ public abstract class NIOWriteStreamBase {
 
     protected long m_bytesWritten = 0;
     protected long m_messagesWritten = 0;
+    // Buffers offered to and number of calls to the channel's write, for buffers per syscall
+    protected long m_buffersWritten = 0;
+    protected long m_writeCalls = 0;
 
     /*
      * Used to provide incremental reads of the amount of
@@ -59,7 +62,13 @@ public abstract class NIOWriteStreamBase {
      */
     private long m_lastBytesWritten = 0;
     private long m_lastMessagesWritten = 0;
+    private long m_lastBuffersWritten = 0;
+    private long m_lastWriteCalls = 0;
 
+    /**
+     * @return bytes written, messages written, buffers handed to the channel and
+     * calls to the channel's write, in that order
+     */
     long[] getBytesAndMessagesWritten(boolean interval) {
         if (interval) {
             final long bytesWrittenThisTime = m_bytesWritten - m_lastBytesWritten;
@@ -67,9 +76,16 @@ public abstract class NIOWriteStreamBase {
 
             final long messagesWrittenThisTime = m_messagesWritten - m_lastMessagesWritten;
             m_lastMessagesWritten = m_messagesWritten;
-            return new long[] { bytesWrittenThisTime, messagesWrittenThisTime };
+
+            final long buffersWrittenThisTime = m_buffersWritten - m_lastBuffersWritten;
+            m_lastBuffersWritten = m_buffersWritten;
+
+            final long writeCallsThisTime = m_writeCalls - m_lastWriteCalls;
+            m_lastWriteCalls = m_writeCalls;
+            return new long[] { bytesWrittenThisTime, messagesWrittenThisTime,
+                                buffersWrittenThisTime, writeCallsThisTime };
         } else {
-            return new long[] {m_bytesWritten, m_messagesWritten};
+            return new long[] {m_bytesWritten, m_messagesWritten, m_buffersWritten, m_writeCalls};
         }
     }
 
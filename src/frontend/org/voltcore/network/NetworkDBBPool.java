@@ -27,7 +27,7 @@ public class NetworkDBBPool {
 
     private final Deque<BBContainer> m_buffers = new ConcurrentLinkedDeque<BBContainer>();
     private static final int LIMIT = Integer.getInteger("NETWORK_DBB_LIMIT", 512);
-    private static final int SIZE = Integer.getInteger("NETWORK_DBB_SIZE", (1024 * 32));
+    static final int SIZE = Integer.getInteger("NETWORK_DBB_SIZE", (1024 * 32));
 
     private final int m_numBuffers;
     private final int m_allocationSize;
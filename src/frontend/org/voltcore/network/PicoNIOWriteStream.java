@@ -22,6 +22,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.GatheringByteChannel;
 import java.util.ArrayDeque;
 
+import org.voltcore.utils.DBBPool.BBContainer;
 import org.voltcore.utils.DeferredSerialization;
 
 /**
@@ -32,11 +33,28 @@ import org.voltcore.utils.DeferredSerialization;
 */
 public class PicoNIOWriteStream extends NIOWriteStreamBase {
 
+    /**
+     * Describes the frame that wraps coalesced messages. The stream only knows that every
+     * message is a length prefixed frame, the protocol decides how the receiver recognizes
+     * a frame full of them.
+     */
+    public interface CoalescedFrameHeader {
+        /** Bytes the header occupies between the length prefix and the first message */
+        int size();
+
+        /** Write the header for a frame of {@code messageCount} messages */
+        void put(ByteBuffer buf, int messageCount);
+    }
+
     /**
      * Contains messages waiting to be serialized and written to the socket
      */
     private final ArrayDeque<DeferredSerialization> m_queuedWrites = new ArrayDeque<DeferredSerialization>();
 
+    private CoalescedFrameHeader m_coalescedFrameHeader = null;
+    private long m_lingerNanos = 0;
+    private long m_firstQueuedNanos = 0;
+
     /*
      * Return the number of messages waiting to be written to the network
      */
@@ -57,6 +75,148 @@ public class PicoNIOWriteStream extends NIOWriteStreamBase {
         return m_queuedWrites;
     }
 
+    @Override
+    int serializeQueuedWrites(final NetworkDBBPool pool) throws IOException {
+        if (m_coalescedFrameHeader != null && m_queuedWrites.size() > 1) {
+            coalesceQueuedWrites();
+        }
+        return super.serializeQueuedWrites(pool);
+    }
+
+    /**
+     * Pack the messages queued since the last time the stream was serialized into frames, each
+     * preceded by the header, so the receiver gets one frame where it would have gotten many.
+     * @param header  header marking a frame of coalesced messages
+     * @param lingerNanos  how long to hold back the first queued message waiting for
+     *                     others to join it, 0 to send whatever is queued right away
+     */
+    void enableCoalescing(CoalescedFrameHeader header, long lingerNanos) {
+        m_coalescedFrameHeader = header;
+        m_lingerNanos = lingerNanos;
+    }
+
+    /**
+     * True if nothing is being written and the queued messages haven't waited out the linger yet
+     */
+    boolean shouldLinger() {
+        return m_lingerNanos > 0 &&
+               !m_queuedWrites.isEmpty() &&
+               super.isEmpty() &&
+               System.nanoTime() - m_firstQueuedNanos < m_lingerNanos;
+    }
+
+    /**
+     * Frames are sized to the room left in the pool buffer serializeQueuedWrites will put them in,
+     * so a frame never takes the slow path of being serialized to the heap and copied across
+     * buffers. A message that doesn't fit in what is left of a buffer goes out on its own.
+     */
+    private void coalesceQueuedWrites() throws IOException {
+        final int headerSize = 4 + m_coalescedFrameHeader.size();
+        final BBContainer last = m_queuedBuffers.peekLast();
+        int room = last == null ? 0 : last.b().remaining();
+        final int count = m_queuedWrites.size();
+        CoalescedSerialization frame = null;
+        for (int ii = 0; ii < count; ii++) {
+            final DeferredSerialization ds = m_queuedWrites.poll();
+            final int size = ds.getSerializedSize();
+            if (size == DeferredSerialization.EMPTY_MESSAGE_LENGTH) {
+                continue;
+            }
+            if (frame != null) {
+                if (frame.getSerializedSize() + size <= room) {
+                    frame.add(ds, size);
+                    continue;
+                }
+                room = queueFrame(frame, room);
+                frame = null;
+            }
+            if (room == 0) {
+                room = NetworkDBBPool.SIZE;
+            }
+            if (headerSize + size <= room) {
+                frame = new CoalescedSerialization(count - ii);
+                frame.add(ds, size);
+            } else {
+                m_queuedWrites.offer(ds);
+                room = roomAfter(room, size);
+            }
+        }
+        if (frame != null) {
+            queueFrame(frame, room);
+        }
+    }
+
+    private int queueFrame(CoalescedSerialization frame, int room) {
+        final DeferredSerialization ds = frame.singleOrFrame();
+        m_queuedWrites.offer(ds);
+        return roomAfter(room, ds == frame ? frame.getSerializedSize() : frame.m_sizes[0]);
+    }
+
+    private static int roomAfter(int room, int size) {
+        if (size <= room) {
+            return room - size;
+        }
+        final int overflow = (size - room) % NetworkDBBPool.SIZE;
+        return overflow == 0 ? 0 : NetworkDBBPool.SIZE - overflow;
+    }
+
+    /**
+     * A frame made up of the header followed by each message, which serializes its own length prefix
+     */
+    private class CoalescedSerialization implements DeferredSerialization {
+        private final DeferredSerialization m_messages[];
+        private final int m_sizes[];
+        private int m_count = 0;
+        private int m_size = 4 + m_coalescedFrameHeader.size();
+
+        CoalescedSerialization(int maxMessages) {
+            m_messages = new DeferredSerialization[maxMessages];
+            m_sizes = new int[maxMessages];
+        }
+
+        void add(DeferredSerialization ds, int size) {
+            m_messages[m_count] = ds;
+            m_sizes[m_count++] = size;
+            m_size += size;
+        }
+
+        DeferredSerialization singleOrFrame() {
+            return m_count == 1 ? m_messages[0] : this;
+        }
+
+        @Override
+        public void serialize(ByteBuffer buf) throws IOException {
+            buf.putInt(buf.capacity() - 4);
+            m_coalescedFrameHeader.put(buf, m_count);
+            final int oldLimit = buf.limit();
+            for (int ii = 0; ii < m_count; ii++) {
+                buf.limit(buf.position() + m_sizes[ii]);
+                final ByteBuffer slice = buf.slice();
+                m_messages[ii].serialize(slice);
+                checkSloppySerialization(slice, m_messages[ii]);
+                buf.position(buf.limit());
+                buf.limit(oldLimit);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            for (int ii = 0; ii < m_count; ii++) {
+                m_messages[ii].cancel();
+            }
+        }
+
+        @Override
+        public int getSerializedSize() {
+            return m_size;
+        }
+
+        @Override
+        public String toString() {
+            return "Coalesced frame of " + m_count + " messages";
+        }
+    }
+
     /**
      * Free the pool resources that are held by this WriteStream. The pool itself is thread local
      * and will be freed when the thread terminates.
@@ -101,6 +261,8 @@ public class PicoNIOWriteStream extends NIOWriteStreamBase {
             }
 
             rc = channel.write(buffer);
+            m_writeCalls++;
+            m_buffersWritten++;
 
             //Discard the buffer back to a pool if no data remains
             if (!buffer.hasRemaining()) {
@@ -121,15 +283,23 @@ public class PicoNIOWriteStream extends NIOWriteStreamBase {
             ds.cancel();
             return;
         }
+        noteFirstQueued();
         m_queuedWrites.offer(ds);
     }
 
+    private void noteFirstQueued() {
+        if (m_lingerNanos > 0 && m_queuedWrites.isEmpty()) {
+            m_firstQueuedNanos = System.nanoTime();
+        }
+    }
+
     public void enqueue(final ByteBuffer buf) {
         assert(!buf.isDirect());//Don't queue direct buffers, they leak memory without a container
         if (buf.remaining() == 0) {
             throw new IllegalArgumentException("Attempted to queue a zero length buffer");
         }
         if (m_isShutdown) return;
+        noteFirstQueued();
         m_queuedWrites.offer(new DeferredSerialization() {
 
             @Override
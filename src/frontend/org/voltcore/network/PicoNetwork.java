@@ -79,6 +79,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.network.VoltNetworkPool.IOStatsIntf;
@@ -102,6 +103,9 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
     private final NIOReadStream m_readStream = new NIOReadStream();
     private final PicoNIOWriteStream m_writeStream = new PicoNIOWriteStream();
     private final ConcurrentLinkedQueue<Runnable> m_tasks = new ConcurrentLinkedQueue<Runnable>();
+    // Set by the first task offered since the network thread last looked, so that
+    // a burst of messages costs one selector wakeup instead of one each
+    private final AtomicBoolean m_wakeupPending = new AtomicBoolean(false);
     private volatile boolean m_shouldStop = false;//volatile boolean is sufficient
     private long m_messagesRead;
     private int m_interestOps = 0;
@@ -166,6 +170,22 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
         }
     }
 
+    /**
+     * Coalesce the messages queued during each iteration of the network thread into
+     * frames marked by {@code header}. Must be called before the network is started.
+     * @param lingerNanos  how long the first queued message may wait for others
+     *                     to join it, 0 to never hold messages back
+     */
+    public void enableCoalescing(PicoNIOWriteStream.CoalescedFrameHeader header, long lingerNanos) {
+        m_writeStream.enableCoalescing(header, lingerNanos);
+    }
+
+    private void wakeup() {
+        if (m_wakeupPending.compareAndSet(false, true)) {
+            m_selector.wakeup();
+        }
+    }
+
     /** Instruct the network to stop after the current loop */
     public void shutdownAsync() throws InterruptedException {
         m_shouldStop = true;
@@ -195,13 +215,19 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                 }
 
                 m_hadWork = false;
+                m_wakeupPending.set(false);
                 Runnable task = null;
                 while ((task = m_tasks.poll()) != null) {
                     m_hadWork = true;
                     task.run();
                 }
                 dispatchReadStream();
-                drainWriteStream();
+                if (!m_shouldStop && m_writeStream.shouldLinger()) {
+                    // Keep selecting without blocking until the linger is up
+                    m_hadWork = true;
+                } else {
+                    drainWriteStream();
+                }
             }
         } catch (CancelledKeyException e) {
             networkLog.warn(
@@ -394,7 +420,9 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                                     read,
                                     messagesRead,
                                     writeInfo[0],
-                                    writeInfo[1]}));
+                                    writeInfo[1],
+                                    writeInfo[2],
+                                    writeInfo[3]}));
             retval.put(
                     -1L,
                     Pair.of(
@@ -403,7 +431,9 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                                     read,
                                     messagesRead,
                                     writeInfo[0],
-                                    writeInfo[1] }));
+                                    writeInfo[1],
+                                    writeInfo[2],
+                                    writeInfo[3] }));
             return retval;
     }
 
@@ -514,7 +544,7 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                 m_writeStream.enqueue(ds);
             }
         });
-        m_selector.wakeup();
+        wakeup();
     }
 
     public void enqueue(final ByteBuffer buf) {
@@ -524,7 +554,7 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
                 m_writeStream.enqueue(buf);
             }
         });
-        m_selector.wakeup();
+        wakeup();
     }
 
     public FutureTask<Void> enqueueAndDrain(final ByteBuffer buf) {
@@ -537,7 +567,7 @@ public class PicoNetwork implements Runnable, Connection, IOStatsIntf
         };
         FutureTask<Void> ft = new FutureTask<Void>(task);
         m_tasks.offer(ft);
-        m_selector.wakeup();
+        wakeup();
         return ft;
     }
 
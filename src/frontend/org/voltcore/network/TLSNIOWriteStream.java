@@ -258,6 +258,10 @@ public class TLSNIOWriteStream extends NIOWriteStream {
                     delta += queued.delta;
                 }
 
+                if (m_outbuf.isReadable()) {
+                    m_writeCalls++;
+                    m_buffersWritten += m_outbuf.numComponents();
+                }
                 rc = m_outbuf.readBytes(channel, m_outbuf.readableBytes());
                 m_outbuf.discardReadComponents();
                 written += rc;
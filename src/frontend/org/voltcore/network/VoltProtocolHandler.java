@@ -71,14 +71,25 @@ public abstract class VoltProtocolHandler implements InputHandler {
             assert m_nextLength > 0;
         }
         if (m_nextLength > 0 && inputStream.dataAvailable() >= m_nextLength) {
-            result = ByteBuffer.allocate(m_nextLength);
+            result = allocateMessageBuffer(m_nextLength);
+            assert(result.arrayOffset() == 0 && result.position() == 0 && result.remaining() == m_nextLength);
             // Copy read buffers to result, move read buffers back to memory pool
-            inputStream.getBytes(result.array());
+            inputStream.getBytes(result.array(), m_nextLength);
             m_nextLength = 0;
         }
         return result;
     }
 
+    /**
+     * Provide the buffer the next message is read into. It must be a heap buffer with an array
+     * offset of 0, positioned at 0 and limited to {@code length}. Every message gets its own
+     * buffer by default. A handler that never retains a message after
+     * {@link #handleMessage(ByteBuffer, Connection)} returns may hand out the same buffer each time.
+     */
+    protected ByteBuffer allocateMessageBuffer(int length) {
+        return ByteBuffer.allocate(length);
+    }
+
     @Override
     public void started(Connection c) {
     }
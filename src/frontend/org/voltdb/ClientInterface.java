@@ -26,6 +26,7 @@ import java.nio.ByteBuffer;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -85,6 +86,7 @@ import org.voltdb.catalog.SnapshotSchedule;
 import org.voltdb.client.ClientAuthScheme;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.client.ProcedureCallback;
+import org.voltdb.client.ProcedureInvocationType;
 import org.voltdb.client.TLSHandshaker;
 import org.voltdb.common.Constants;
 import org.voltdb.dtxn.InitiatorStats.InvocationInfo;
@@ -798,18 +800,28 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
         @Override
         public void handleMessage(ByteBuffer message, Connection c) {
             try {
+                if (message.get(message.position()) == ProcedureInvocationType.BATCH.getValue()) {
+                    for (ClientResponseImpl error : handleBatchRead(message, this, c)) {
+                        writeError(error, c);
+                    }
+                    return;
+                }
                 final ClientResponseImpl error = handleRead(message, this, c);
                 if (error != null) {
-                    ByteBuffer buf = ByteBuffer.allocate(error.getSerializedSize() + 4);
-                    buf.putInt(buf.capacity() - 4);
-                    error.flattenToBuffer(buf).flip();
-                    c.writeStream().enqueue(buf);
+                    writeError(error, c);
                 }
             } catch (Exception e) {
                 throw new RuntimeException(e);
             }
         }
 
+        private void writeError(ClientResponseImpl error, Connection c) {
+            ByteBuffer buf = ByteBuffer.allocate(error.getSerializedSize() + 4);
+            buf.putInt(buf.capacity() - 4);
+            error.flattenToBuffer(buf).flip();
+            c.writeStream().enqueue(buf);
+        }
+
         @Override
         public void started(final Connection c) {
             m_connection = c;
@@ -1472,6 +1484,60 @@ public class ClientInterface implements SnapshotDaemon.DaemonInitiator {
                     new VoltTable[0], ex.getMessage(), ccxn.connectionId());
         }
         AuthUser user =  m_catalogContext.get().authSystem.getUser(handler.getUserName());
+        return dispatchRead(task, user, handler, ccxn);
+    }
+
+    /**
+     * Unpack a batch of invocations sent in one message and dispatch each of them as though it
+     * had arrived on its own. The user is only looked up once for the whole batch.
+     *
+     * return the errors generated for invocations in the batch that need to be returned to the client
+     */
+    final List<ClientResponseImpl> handleBatchRead(ByteBuffer buf, ClientInputHandler handler, Connection ccxn) {
+        final List<StoredProcedureInvocation> tasks;
+        try {
+            buf.get(); // skip the type
+            final int count = buf.getInt();
+            if (count < 0) {
+                throw new IOException("Invocation batch count was < 0: possible corrupt network data.");
+            }
+            tasks = new ArrayList<>(count);
+            final int originalLimit = buf.limit();
+            for (int i = 0; i < count; i++) {
+                final int length = buf.getInt();
+                final int end = buf.position() + length;
+                if (length <= 0 || end > originalLimit) {
+                    throw new IOException("Invocation length in batch was out of bounds: possible corrupt network data.");
+                }
+                buf.limit(end);
+                StoredProcedureInvocation task = new StoredProcedureInvocation();
+                task.initFromBuffer(buf.slice());
+                buf.limit(originalLimit);
+                buf.position(end);
+                tasks.add(task);
+            }
+        } catch (Exception ex) {
+            return Collections.singletonList(new ClientResponseImpl(
+                    ClientResponseImpl.UNEXPECTED_FAILURE,
+                    new VoltTable[0], ex.getMessage(), ccxn.connectionId()));
+        }
+
+        final AuthUser user =  m_catalogContext.get().authSystem.getUser(handler.getUserName());
+        List<ClientResponseImpl> errors = Collections.emptyList();
+        for (StoredProcedureInvocation task : tasks) {
+            final ClientResponseImpl errResp = dispatchRead(task, user, handler, ccxn);
+            if (errResp != null) {
+                if (errors.isEmpty()) {
+                    errors = new ArrayList<>();
+                }
+                errors.add(errResp);
+            }
+        }
+        return errors;
+    }
+
+    private ClientResponseImpl dispatchRead(StoredProcedureInvocation task, AuthUser user,
+            ClientInputHandler handler, Connection ccxn) {
         if (user == null) {
             String errorMessage = "User " + handler.getUserName() + " has been removed from the system via a catalog update";
             authLog.info(errorMessage);
@@ -18,18 +18,15 @@
 package org.voltdb;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.TreeMap;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.network.Connection;
 
-import com.google_voltpatches.common.collect.ImmutableMap;
-import com.google_voltpatches.common.collect.ImmutableMap.Builder;
-
 /**
  * This manages per-partition handles used to identify responses for
  * work done in IV2.  Since the work generated for a partition at each client interface
@@ -59,27 +56,10 @@ public class ClientInterfaceHandleManager
 
     private volatile boolean m_wantsTopologyUpdates = false;
 
-    private ImmutableMap<Integer, PartitionInFlightTracker> m_trackerMap
-        = new Builder<Integer, PartitionInFlightTracker>().build();
-
-    private static class HandleGenerator
-    {
-        private long m_sequence = 0;
-        final private long m_partitionId;
-
-        HandleGenerator(int partitionId)
-        {
-            m_partitionId = partitionId;
-        }
-
-        public long getNextHandle()
-        {
-            if (m_sequence > SEQNUM_MAX) {
-                m_sequence = 0;
-            }
-            return ((m_partitionId << PART_ID_SHIFT) | m_sequence++);
-        }
-    }
+    // Trackers for single partition work indexed by partition id, grown on demand
+    private PartitionInFlightTracker[] m_spTrackers = new PartitionInFlightTracker[0];
+    private PartitionInFlightTracker m_mpTracker = null;
+    private PartitionInFlightTracker m_shortCircuitTracker = null;
 
     static class Iv2InFlight
     {
@@ -101,12 +81,173 @@ public class ClientInterfaceHandleManager
         }
     }
 
+    /**
+     * The in flight work for one partition, kept in a ring buffer in handle order.
+     * Handles for a partition are generated from a sequence so the ring position of
+     * a handle is its offset from the oldest outstanding sequence number and lookups
+     * need neither hashing nor boxing. Responses mostly arrive in order, so the oldest
+     * slot is usually the one freed. Slots freed out of order are left empty until
+     * everything before them is gone.
+     *
+     * When the ring fills up it doubles, unless it is mostly empty slots. That happens when
+     * an old handle stays outstanding while the ones after it complete, e.g. a long running
+     * NT procedure among short circuit reads. The oldest entries are then moved to a side
+     * map, so the ring stays sized by what is outstanding rather than by how many handles
+     * were issued since the oldest one.
+     */
     static class PartitionInFlightTracker {
-        private final HandleGenerator m_generator;
-        private final Map<Long, Iv2InFlight> m_inFlights = new HashMap<Long, Iv2InFlight>();
+        static final int INITIAL_CAPACITY = 64;
+        // The ring is compacted instead of grown when at most 1/SPARSE_RATIO of it is in use
+        static final int SPARSE_RATIO = 4;
+
+        private final long m_partitionId;
+        private Iv2InFlight[] m_ring = new Iv2InFlight[INITIAL_CAPACITY];
+        // Sequence counters are never wrapped, the handle carries them modulo SEQNUM_MAX + 1
+        private long m_head = 0;
+        private long m_tail = 0;
+        // Everything outstanding, in the ring or among the stragglers
+        private int m_size = 0;
+        // Outstanding entries older than m_head, by handle, created when first needed
+        private TreeMap<Long, Iv2InFlight> m_stragglers = null;
+
+        PartitionInFlightTracker(int partitionId) {
+            m_partitionId = partitionId;
+        }
+
+        long nextHandle() {
+            return (m_partitionId << PART_ID_SHIFT) | (m_tail & SEQNUM_MAX);
+        }
+
+        void add(Iv2InFlight inFlight) {
+            if (m_tail - m_head == m_ring.length) {
+                if ((m_size - stragglerCount()) * SPARSE_RATIO <= m_ring.length) {
+                    compact();
+                } else {
+                    grow();
+                }
+            }
+            m_ring[(int)m_tail & (m_ring.length - 1)] = inFlight;
+            m_tail++;
+            m_size++;
+        }
+
+        Iv2InFlight remove(long ciHandle) {
+            final long offset = (getSeqNumFromHandle(ciHandle) - m_head) & SEQNUM_MAX;
+            if (offset >= m_tail - m_head) {
+                return removeStraggler(ciHandle);
+            }
+            final int mask = m_ring.length - 1;
+            final int slot = (int)(m_head + offset) & mask;
+            final Iv2InFlight inFlight = m_ring[slot];
+            if (inFlight == null || inFlight.m_ciHandle != ciHandle) {
+                return null;
+            }
+            m_ring[slot] = null;
+            m_size--;
+            if (offset == 0) {
+                // Skip past anything that was already removed out of order
+                do {
+                    m_head++;
+                } while (m_head < m_tail && m_ring[(int)m_head & mask] == null);
+            }
+            return inFlight;
+        }
+
+        private void grow() {
+            final int mask = m_ring.length - 1;
+            final Iv2InFlight[] ring = new Iv2InFlight[m_ring.length * 2];
+            for (long seq = m_head; seq < m_tail; seq++) {
+                ring[(int)seq & (ring.length - 1)] = m_ring[(int)seq & mask];
+            }
+            m_ring = ring;
+        }
+
+        /**
+         * Move the oldest entries to the stragglers until at most half the ring is between
+         * the head and the tail.
+         */
+        private void compact() {
+            final int mask = m_ring.length - 1;
+            while (m_tail - m_head > m_ring.length / 2
+                    || (m_head < m_tail && m_ring[(int)m_head & mask] == null)) {
+                final int slot = (int)m_head & mask;
+                final Iv2InFlight inFlight = m_ring[slot];
+                if (inFlight != null) {
+                    if (m_stragglers == null) {
+                        m_stragglers = new TreeMap<Long, Iv2InFlight>();
+                    }
+                    m_stragglers.put(inFlight.m_ciHandle, inFlight);
+                    m_ring[slot] = null;
+                }
+                m_head++;
+            }
+        }
+
+        private Iv2InFlight removeStraggler(long ciHandle) {
+            if (m_stragglers == null) {
+                return null;
+            }
+            final Iv2InFlight inFlight = m_stragglers.remove(ciHandle);
+            if (inFlight != null) {
+                m_size--;
+            }
+            return inFlight;
+        }
+
+        private int stragglerCount() {
+            return m_stragglers == null ? 0 : m_stragglers.size();
+        }
+
+        int size() {
+            return m_size;
+        }
 
-        private PartitionInFlightTracker(int partitionId) {
-            m_generator = new HandleGenerator(partitionId);
+        int capacity() {
+            return m_ring.length;
+        }
+
+        /**
+         * Add every outstanding entry to {@code inFlights}, in handle order
+         */
+        void getAll(List<Iv2InFlight> inFlights) {
+            if (m_stragglers != null) {
+                inFlights.addAll(m_stragglers.values());
+            }
+            final int mask = m_ring.length - 1;
+            for (long seq = m_head; seq < m_tail; seq++) {
+                final Iv2InFlight inFlight = m_ring[(int)seq & mask];
+                if (inFlight != null) {
+                    inFlights.add(inFlight);
+                }
+            }
+        }
+
+        /**
+         * Remove and return, in handle order, every entry not for the specified initiator
+         */
+        void removeIfNotInitiator(long initiatorHSId, List<Iv2InFlight> removed) {
+            if (m_stragglers != null) {
+                for (Iterator<Map.Entry<Long, Iv2InFlight>> it = m_stragglers.entrySet().iterator(); it.hasNext();) {
+                    final Iv2InFlight inFlight = it.next().getValue();
+                    if (inFlight.m_initiatorHSId != initiatorHSId) {
+                        it.remove();
+                        m_size--;
+                        removed.add(inFlight);
+                    }
+                }
+            }
+            final int mask = m_ring.length - 1;
+            for (long seq = m_head; seq < m_tail; seq++) {
+                final Iv2InFlight inFlight = m_ring[(int)seq & mask];
+                if (inFlight != null && inFlight.m_initiatorHSId != initiatorHSId) {
+                    m_ring[(int)seq & mask] = null;
+                    m_size--;
+                    removed.add(inFlight);
+                }
+            }
+            while (m_head < m_tail && m_ring[(int)m_head & mask] == null) {
+                m_head++;
+            }
         }
     }
 
@@ -189,20 +330,16 @@ public class ClientInterfaceHandleManager
             partitionId = MP_PART_ID;
         }
 
-        PartitionInFlightTracker tracker = m_trackerMap.get(partitionId);
+        PartitionInFlightTracker tracker = getTracker(partitionId);
         if (tracker == null) {
-            tracker = new PartitionInFlightTracker(partitionId);
-            m_trackerMap =
-                    new Builder<Integer, PartitionInFlightTracker>().
-                    putAll(m_trackerMap).
-                    put(partitionId, tracker).build();
+            tracker = addTracker(partitionId);
         }
 
-        long ciHandle = tracker.m_generator.getNextHandle();
+        long ciHandle = tracker.nextHandle();
         Iv2InFlight inFlight = new Iv2InFlight(ciHandle, clientHandle, messageSize,
                                                creationTimeNanos, procName, initiatorHSId);
 
-        tracker.m_inFlights.put(ciHandle, inFlight);
+        tracker.add(inFlight);
 
         m_outstandingTxns++;
         m_acg.increaseBackpressure(messageSize);
@@ -220,7 +357,7 @@ public class ClientInterfaceHandleManager
          * Check the partition specific queue of handles
          */
         int partitionId = getPartIdFromHandle(ciHandle);
-        PartitionInFlightTracker partitionStuff = m_trackerMap.get(partitionId);
+        PartitionInFlightTracker partitionStuff = getTracker(partitionId);
         if (partitionStuff == null) {
             // whoa, bad
             tmLog.error("Unable to find handle list for partition: " + partitionId +
@@ -228,7 +365,7 @@ public class ClientInterfaceHandleManager
             return null;
         }
 
-        Iv2InFlight inFlight = partitionStuff.m_inFlights.remove(ciHandle);
+        Iv2InFlight inFlight = partitionStuff.remove(ciHandle);
         if (inFlight != null) {
             m_acg.reduceBackpressure(inFlight.m_messageSize);
             m_outstandingTxns--;
@@ -247,7 +384,7 @@ public class ClientInterfaceHandleManager
          * Check the partition specific queue of handles
          */
         int partitionId = getPartIdFromHandle(ciHandle);
-        PartitionInFlightTracker partitionStuff = m_trackerMap.get(partitionId);
+        PartitionInFlightTracker partitionStuff = getTracker(partitionId);
         if (partitionStuff == null) {
             // whoa, bad
             tmLog.error("Unable to find handle list for removal for partition: " + partitionId +
@@ -255,7 +392,7 @@ public class ClientInterfaceHandleManager
             return null;
         }
 
-        Iv2InFlight inFlight = partitionStuff.m_inFlights.remove(ciHandle);
+        Iv2InFlight inFlight = partitionStuff.remove(ciHandle);
         if (inFlight != null) {
             m_acg.reduceBackpressure(inFlight.m_messageSize);
             m_outstandingTxns--;
@@ -279,11 +416,13 @@ public class ClientInterfaceHandleManager
      */
     void freeOutstandingTxns() {
         assert(!shouldCheckThreadIdAssertion() || m_expectedThreadId == Thread.currentThread().getId());
-        for (PartitionInFlightTracker tracker : m_trackerMap.values()) {
-            for (Iv2InFlight inflight : tracker.m_inFlights.values()) {
-                m_outstandingTxns--;
-                m_acg.reduceBackpressure(inflight.m_messageSize);
-            }
+        List<Iv2InFlight> inFlights = new ArrayList<Iv2InFlight>();
+        for (PartitionInFlightTracker tracker : getTrackers()) {
+            tracker.getAll(inFlights);
+        }
+        for (Iv2InFlight inflight : inFlights) {
+            m_outstandingTxns--;
+            m_acg.reduceBackpressure(inflight.m_messageSize);
         }
     }
 
@@ -291,25 +430,62 @@ public class ClientInterfaceHandleManager
         assert(!shouldCheckThreadIdAssertion() || m_expectedThreadId == Thread.currentThread().getId());
         List<Iv2InFlight> retval = new ArrayList<Iv2InFlight>();
 
-        if (!m_trackerMap.containsKey(partitionId)) return retval;
+        PartitionInFlightTracker partitionStuff = getTracker(partitionId);
+        if (partitionStuff == null) return retval;
 
         /*
          * Clear pending responses
          */
-        PartitionInFlightTracker partitionStuff = m_trackerMap.get(partitionId);
-        Iterator<Entry<Long, Iv2InFlight>> iter = partitionStuff.m_inFlights.entrySet().iterator();
-        while (iter.hasNext()) {
-            Entry<Long, Iv2InFlight> entry = iter.next();
-            if (entry.getValue().m_initiatorHSId != initiatorHSId) {
-                iter.remove();
-                retval.add(entry.getValue());
-                m_outstandingTxns--;
-                m_acg.reduceBackpressure(entry.getValue().m_messageSize);
-            }
+        partitionStuff.removeIfNotInitiator(initiatorHSId, retval);
+        for (Iv2InFlight inFlight : retval) {
+            m_outstandingTxns--;
+            m_acg.reduceBackpressure(inFlight.m_messageSize);
         }
         return retval;
     }
 
+    private PartitionInFlightTracker getTracker(int partitionId) {
+        if (partitionId == MP_PART_ID) {
+            return m_mpTracker;
+        } else if (partitionId == SHORT_CIRCUIT_PART_ID) {
+            return m_shortCircuitTracker;
+        } else if (partitionId >= 0 && partitionId < m_spTrackers.length) {
+            return m_spTrackers[partitionId];
+        }
+        return null;
+    }
+
+    private PartitionInFlightTracker addTracker(int partitionId) {
+        PartitionInFlightTracker tracker = new PartitionInFlightTracker(partitionId);
+        if (partitionId == MP_PART_ID) {
+            m_mpTracker = tracker;
+        } else if (partitionId == SHORT_CIRCUIT_PART_ID) {
+            m_shortCircuitTracker = tracker;
+        } else {
+            if (partitionId >= m_spTrackers.length) {
+                m_spTrackers = Arrays.copyOf(m_spTrackers, partitionId + 1);
+            }
+            m_spTrackers[partitionId] = tracker;
+        }
+        return tracker;
+    }
+
+    private List<PartitionInFlightTracker> getTrackers() {
+        List<PartitionInFlightTracker> trackers = new ArrayList<PartitionInFlightTracker>();
+        for (PartitionInFlightTracker tracker : m_spTrackers) {
+            if (tracker != null) {
+                trackers.add(tracker);
+            }
+        }
+        if (m_mpTracker != null) {
+            trackers.add(m_mpTracker);
+        }
+        if (m_shortCircuitTracker != null) {
+            trackers.add(m_shortCircuitTracker);
+        }
+        return trackers;
+    }
+
     // Coward's way out...the thread-safe override of this class will return false for this,
     // which will enable us to keep the thread ID assertions in all of the method calls and
     // not bomb when using the thread-safe version.
@@ -19,6 +19,7 @@ package org.voltdb;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.concurrent.TimeUnit;
 
 import org.json_voltpatches.JSONException;
@@ -66,6 +67,10 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
     /** opaque data optionally provided by and returned to the client */
     private long clientHandle = -1;
 
+    // Recycled by initTransientFromBuffer, the result arrays are indexed by table count
+    private VoltTable[][] m_transientResults = null;
+    private VoltTable[] m_transientTables = null;
+
     public ClientResponseImpl() {}
 
     /**
@@ -154,6 +159,71 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
     }
 
     public void initFromBuffer(ByteBuffer buf) throws IOException {
+        int tableCount = initHeaderFromBuffer(buf);
+        results = new VoltTable[tableCount];
+        for (int i = 0; i < tableCount; i++) {
+            int tableSize = buf.getInt();
+            final int originalLimit = buf.limit();
+            buf.limit(buf.position() + tableSize);
+            final ByteBuffer slice = buf.slice();
+            buf.position(buf.position() + tableSize);
+            buf.limit(originalLimit);
+            results[i] = new VoltTable(slice, false);
+        }
+        setProperly = true;
+    }
+
+    /**
+     * Deserialize a response into this instance, recycling the result tables, their
+     * buffers and the result array left by the previous call. Once the shapes and sizes of
+     * the results have been seen this allocates nothing beyond the status strings.
+     *
+     * The result tables are read-only copies that this response owns, so they do not refer
+     * to {@code buf}, but they are overwritten by the next call to this method.
+     */
+    public void initTransientFromBuffer(ByteBuffer buf) throws IOException {
+        int tableCount = initHeaderFromBuffer(buf);
+        if (m_transientResults == null || m_transientResults.length <= tableCount) {
+            m_transientResults = Arrays.copyOf(m_transientResults == null ? new VoltTable[0][] : m_transientResults,
+                                               tableCount + 1);
+        }
+        if (m_transientResults[tableCount] == null) {
+            m_transientResults[tableCount] = new VoltTable[tableCount];
+        }
+        if (m_transientTables == null || m_transientTables.length < tableCount) {
+            m_transientTables = Arrays.copyOf(m_transientTables == null ? new VoltTable[0] : m_transientTables,
+                                              tableCount);
+        }
+        results = m_transientResults[tableCount];
+        for (int i = 0; i < tableCount; i++) {
+            int tableSize = buf.getInt();
+            VoltTable table = m_transientTables[i];
+            ByteBuffer copy = table == null ? null : table.m_buffer;
+            if (copy == null || copy.capacity() < tableSize) {
+                copy = ByteBuffer.allocate(Math.max(tableSize, copy == null ? 0 : copy.capacity() * 2));
+            }
+            copy.clear();
+            final int originalLimit = buf.limit();
+            buf.limit(buf.position() + tableSize);
+            copy.put(buf);
+            buf.limit(originalLimit);
+            copy.flip();
+            if (table == null) {
+                table = new VoltTable(copy, true);
+                m_transientTables[i] = table;
+            } else {
+                table.initFromBuffer(copy, true);
+            }
+            results[i] = table;
+        }
+        setProperly = true;
+    }
+
+    /**
+     * Read everything preceding the result tables
+     * @return the number of result tables that follow
+     */
+    private int initHeaderFromBuffer(ByteBuffer buf) throws IOException {
         buf.get();//Skip version byte
         clientHandle = buf.getLong();
         byte presentFields = buf.get();
@@ -186,17 +256,7 @@ public class ClientResponseImpl implements ClientResponse, JSONString {
         if (tableCount < 0) {
             throw new IOException("Table count is negative: " + tableCount);
         }
-        results = new VoltTable[tableCount];
-        for (int i = 0; i < tableCount; i++) {
-            int tableSize = buf.getInt();
-            final int originalLimit = buf.limit();
-            buf.limit(buf.position() + tableSize);
-            final ByteBuffer slice = buf.slice();
-            buf.position(buf.position() + tableSize);
-            buf.limit(originalLimit);
-            results[i] = new VoltTable(slice, false);
-        }
-        setProperly = true;
+        return tableCount;
     }
 
     public int getSerializedSize() {
@@ -22,16 +22,18 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
 import java.util.concurrent.ScheduledFuture;
-import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -55,9 +57,17 @@ import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
 import com.google_voltpatches.common.util.concurrent.ListeningScheduledExecutorService;
 import com.google_voltpatches.common.util.concurrent.MoreExecutors;
-import com.google_voltpatches.common.util.concurrent.UnsynchronizedRateLimiter;
-
+import com.google_voltpatches.common.util.concurrent.RateLimiter;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
+import com.google_voltpatches.common.util.concurrent.Uninterruptibles;
 
+/**
+ * Writes a table's snapshot data to a file, compressing each block with {@link CompressionService}.
+ *
+ * Writes are queued and done by the thread {@link SnapshotWriteService} assigned to this
+ * target, which takes as many queued blocks as fit in SNAPSHOT_WRITE_BATCH_BYTES and writes
+ * them with one gathering write. A block's buffer is released as soon as it is compressed.
+ */
 public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     /*
      * Make it possible for test code to block a write and thus snapshot completion
@@ -85,8 +95,17 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     private volatile IOException m_reportedSerializationFailure = null;
 
     private volatile long m_bytesWritten = 0;
+    // Only updated by the write thread
+    private volatile long m_writeCount = 0;
+    private volatile long m_writeNanos = 0;
+    private final long m_openedNanos = System.nanoTime();
+
+    private final SnapshotWriteService m_writeService;
+    private final ListeningExecutorService m_writeThread;
+    private final ConcurrentLinkedQueue<PendingWrite> m_pendingWrites = new ConcurrentLinkedQueue<PendingWrite>();
+    private final AtomicBoolean m_drainQueued = new AtomicBoolean(false);
+    private final AtomicLong m_queuedBytes = new AtomicLong(0);
 
-    private static final Semaphore m_bytesAllowedBeforeSync = new Semaphore((1024 * 1024) * 256);
     private final AtomicInteger m_bytesWrittenSinceLastSync = new AtomicInteger(0);
 
     private final ScheduledFuture<?> m_syncTask;
@@ -105,7 +124,6 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     private final Condition m_noMoreOutstandingWriteTasksCondition =
             m_outstandingWriteTasksLock.newCondition();
 
-    private static final ListeningExecutorService m_es = CoreUtils.getListeningSingleThreadExecutor("Snapshot write service ");
     static final ListeningScheduledExecutorService m_syncService = MoreExecutors.listeningDecorator(
             Executors.newSingleThreadScheduledExecutor(CoreUtils.getThreadFactory("Snapshot sync service")));
 
@@ -130,8 +148,8 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         }
     }
 
-    public static final UnsynchronizedRateLimiter SNAPSHOT_RATELIMITER =
-            UnsynchronizedRateLimiter.create(SNAPSHOT_RATELIMIT_MEGABYTES * 1024.0 * 1024.0, 1, TimeUnit.SECONDS);
+    public static final RateLimiter SNAPSHOT_RATELIMITER =
+            RateLimiter.create(SNAPSHOT_RATELIMIT_MEGABYTES * 1024.0 * 1024.0, 1, TimeUnit.SECONDS);
 
     public static void enforceSnapshotRateLimit(int permits) {
         if (USE_SNAPSHOT_RATELIMIT) {
@@ -183,6 +201,8 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         String hostname = CoreUtils.getHostnameOrAddress();
         m_file = file;
         m_tableName = tableName;
+        m_writeService = SnapshotWriteService.forFile(file);
+        m_writeThread = m_writeService.nextThread();
         m_fos = new FileOutputStream(file);
         m_channel = m_fos.getChannel();
         m_needsFinalClose = !isReplicated;
@@ -302,7 +322,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
                             SNAP_LOG.debug("Asynchronous close syncing snasphot data, presumably graceful", e);
                         }
                     }
-                    m_bytesAllowedBeforeSync.release(bytesSinceLastSync);
+                    m_writeService.m_bytesAllowedBeforeSync.release(bytesSinceLastSync);
 
                     /*
                      * Don't pollute the page cache with snapshot data, use fadvise
@@ -334,6 +354,7 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             }
         }, SNAPSHOT_SYNC_FREQUENCY, SNAPSHOT_SYNC_FREQUENCY, TimeUnit.MILLISECONDS);
         m_syncTask = syncTask;
+        SnapshotWriteService.register(this);
     }
 
     @Override
@@ -373,7 +394,8 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
             }
             m_channel.force(false);
         } finally {
-            m_bytesAllowedBeforeSync.release(m_bytesWrittenSinceLastSync.getAndSet(0));
+            m_writeService.m_bytesAllowedBeforeSync.release(m_bytesWrittenSinceLastSync.getAndSet(0));
+            SnapshotWriteService.deregister(this);
         }
         m_channel.position(8);
         ByteBuffer completed = ByteBuffer.allocate(1);
@@ -399,6 +421,27 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         return 0;
     }
 
+    /**
+     * A block handed to write() that hasn't been written yet
+     */
+    private static final class PendingWrite {
+        final BBContainer m_tupleData;
+        // Null when the block is written as is
+        final ListenableFuture<BBContainer> m_compressed;
+        // Read before the block is compressed, its buffer is gone by the time it is written
+        final int m_partitionId;
+        final int m_queuedBytes;
+        final SettableFuture<Object> m_written = SettableFuture.create();
+
+        PendingWrite(BBContainer tupleData, ListenableFuture<BBContainer> compressed,
+                     int partitionId, int queuedBytes) {
+            m_tupleData = tupleData;
+            m_compressed = compressed;
+            m_partitionId = partitionId;
+            m_queuedBytes = queuedBytes;
+        }
+    }
+
     /*
      * Prepend length is basically synonymous with writing actual tuple data and not
      * the header.
@@ -431,8 +474,12 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         ByteBuffer tupleData = tupleDataCont.b();
 
         m_outstandingWriteTasks.incrementAndGet();
+        final int queuedBytes = tupleData.remaining();
+        final int partitionId = prependLength ? tupleData.getInt(0) : 0;
+        m_queuedBytes.addAndGet(queuedBytes);
+        SnapshotWriteService.queued(queuedBytes);
 
-        Future<BBContainer> compressionTask = null;
+        ListenableFuture<BBContainer> compressionTask = null;
         if (prependLength) {
             BBContainer cont =
                     DBBPool.allocateDirectAndPool(SnapshotSiteProcessor.m_snapshotBufferCompressedLen);
@@ -446,99 +493,168 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
              */
             cont.b().position(12);
             compressionTask = CompressionService.compressAndCRC32cBufferAsync(tupleData, cont);
+            /*
+             * The compressed copy is what gets written, hand the buffer back to the site
+             * right away so it can serialize more while this waits for the disk
+             */
+            compressionTask.addListener(new Runnable() {
+                @Override
+                public void run() {
+                    tupleDataCont.discard();
+                }
+            }, CoreUtils.SAMETHREADEXECUTOR);
         }
-        final Future<BBContainer> compressionTaskFinal = compressionTask;
 
-        ListenableFuture<?> writeTask = m_es.submit(new Callable<Object>() {
-            @Override
-            public Object call() throws Exception {
-                int permitAcquired = 0;
-                try {
-                    if (m_acceptOneWrite) {
-                        m_acceptOneWrite = false;
-                    } else {
-                        if (m_simulateBlockedWrite != null) {
-                            m_simulateBlockedWrite.await();
-                        }
-                        if (m_simulateFullDiskWritingChunk) {
-                            //Make sure to consume the result of the compression
-                            compressionTaskFinal.get().discard();
-                            throw new IOException("Disk full");
-                        }
+        final PendingWrite pending = new PendingWrite(tupleDataCont, compressionTask, partitionId, queuedBytes);
+        m_pendingWrites.offer(pending);
+        if (m_drainQueued.compareAndSet(false, true)) {
+            m_writeThread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    m_drainQueued.set(false);
+                    while (!m_pendingWrites.isEmpty()) {
+                        writeBatch();
                     }
+                }
+            });
+        }
+        return pending.m_written;
+    }
 
-                    final ByteBuffer tupleData = tupleDataCont.b();
-                    int totalWritten = 0;
-                    if (prependLength) {
-                        BBContainer payloadContainer = compressionTaskFinal.get();
-                        try {
-                            final ByteBuffer payloadBuffer = payloadContainer.b();
-                            payloadBuffer.position(0);
-
-                            ByteBuffer lengthPrefix = ByteBuffer.allocate(12);
-                            permitAcquired = payloadBuffer.remaining();
-                            m_bytesAllowedBeforeSync.acquire(permitAcquired);
-                            //Length prefix does not include 4 header items, just compressd payload
-                            //that follows
-                            lengthPrefix.putInt(payloadBuffer.remaining() - 16);//length prefix
-                            lengthPrefix.putInt(tupleData.getInt(0)); // partitionId
-
-                            /*
-                             * Checksum the header and put it in the payload buffer
-                             */
-                            PureJavaCrc32C crc = new PureJavaCrc32C();
-                            crc.update(lengthPrefix.array(), 0, 8);
-                            lengthPrefix.putInt((int)crc.getValue());
-                            lengthPrefix.flip();
-                            payloadBuffer.put(lengthPrefix);
-                            payloadBuffer.position(0);
-
-                            enforceSnapshotRateLimit(payloadBuffer.remaining());
-
-                            /*
-                             * Write payload to file
-                             */
-                            while (payloadBuffer.hasRemaining()) {
-                                totalWritten += m_channel.write(payloadBuffer);
-                            }
-                        } finally {
-                            payloadContainer.discard();
-                        }
-                    } else {
-                        permitAcquired = tupleData.remaining();
-                        m_bytesAllowedBeforeSync.acquire(permitAcquired);
-                        while (tupleData.hasRemaining()) {
-                            totalWritten += m_channel.write(tupleData);
-                        }
+    /**
+     * Write as many of the pending blocks as fit in a batch with one gathering write.
+     * Only runs on the write thread.
+     */
+    private void writeBatch() {
+        final List<PendingWrite> batch = new ArrayList<PendingWrite>();
+        int batchBytes = 0;
+        PendingWrite next;
+        while ((next = m_pendingWrites.peek()) != null &&
+                (batch.isEmpty() || batchBytes + next.m_queuedBytes <= SnapshotWriteService.WRITE_BATCH_BYTES)) {
+            batch.add(m_pendingWrites.poll());
+            batchBytes += next.m_queuedBytes;
+        }
+
+        final List<BBContainer> written = new ArrayList<BBContainer>(batch.size());
+        // blocks before this one have their buffer in written
+        int taken = 0;
+        int permitAcquired = 0;
+        Throwable failure = null;
+        try {
+            if (m_writeFailed) {
+                // don't leave a gap in the file by writing what was queued behind a failed write
+                throw m_writeException;
+            }
+            final ByteBuffer buffers[] = new ByteBuffer[batch.size()];
+            int totalBytes = 0;
+            for (int ii = 0; ii < batch.size(); ii++) {
+                final PendingWrite write = batch.get(ii);
+                if (m_acceptOneWrite) {
+                    m_acceptOneWrite = false;
+                } else {
+                    if (m_simulateBlockedWrite != null) {
+                        m_simulateBlockedWrite.await();
                     }
-                    m_bytesWritten += totalWritten;
-                    m_bytesWrittenSinceLastSync.addAndGet(totalWritten);
-                } catch (IOException e) {
-                    if (permitAcquired > 0) {
-                        m_bytesAllowedBeforeSync.release(permitAcquired);
+                    if (m_simulateFullDiskWritingChunk) {
+                        throw new IOException("Disk full");
                     }
-                    m_writeException = e;
-                    SNAP_LOG.error("Error while attempting to write snapshot data to file " + m_file, e);
-                    m_writeFailed = true;
-                    throw e;
-                } finally {
+                }
+
+                if (write.m_compressed != null) {
+                    final BBContainer payloadContainer = write.m_compressed.get();
+                    written.add(payloadContainer);
+                    taken = ii + 1;
+                    final ByteBuffer payloadBuffer = payloadContainer.b();
+                    payloadBuffer.position(0);
+
+                    ByteBuffer lengthPrefix = ByteBuffer.allocate(12);
+                    //Length prefix does not include 4 header items, just compressd payload
+                    //that follows
+                    lengthPrefix.putInt(payloadBuffer.remaining() - 16);//length prefix
+                    lengthPrefix.putInt(write.m_partitionId); // partitionId
+
+                    /*
+                     * Checksum the header and put it in the payload buffer
+                     */
+                    PureJavaCrc32C crc = new PureJavaCrc32C();
+                    crc.update(lengthPrefix.array(), 0, 8);
+                    lengthPrefix.putInt((int)crc.getValue());
+                    lengthPrefix.flip();
+                    payloadBuffer.put(lengthPrefix);
+                    payloadBuffer.position(0);
+                    buffers[ii] = payloadBuffer;
+                } else {
+                    written.add(write.m_tupleData);
+                    taken = ii + 1;
+                    buffers[ii] = write.m_tupleData.b();
+                }
+                totalBytes += buffers[ii].remaining();
+            }
+
+            m_writeService.m_bytesAllowedBeforeSync.acquire(totalBytes);
+            permitAcquired = totalBytes;
+            enforceSnapshotRateLimit(totalBytes);
+
+            /*
+             * Write the batch to file
+             */
+            final long startNanos = System.nanoTime();
+            long totalWritten = 0;
+            while (totalWritten < totalBytes) {
+                totalWritten += m_channel.write(buffers);
+            }
+            m_writeNanos += System.nanoTime() - startNanos;
+            m_writeCount++;
+            m_bytesWritten += totalWritten;
+            m_bytesWrittenSinceLastSync.addAndGet((int) totalWritten);
+        } catch (Throwable t) {
+            failure = t;
+            if (permitAcquired > 0) {
+                m_writeService.m_bytesAllowedBeforeSync.release(permitAcquired);
+            }
+            if (t instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            if (!m_writeFailed) {
+                m_writeException = t instanceof IOException ? (IOException) t : new IOException(t);
+                SNAP_LOG.error("Error while attempting to write snapshot data to file " + m_file, t);
+                m_writeFailed = true;
+            }
+        } finally {
+            for (BBContainer cont : written) {
+                cont.discard();
+            }
+            for (int ii = taken; ii < batch.size(); ii++) {
+                final PendingWrite write = batch.get(ii);
+                if (write.m_compressed == null) {
+                    write.m_tupleData.discard();
+                } else {
+                    // the compressed copy is in a pooled buffer, it has to go back even if it is never written
                     try {
-                        tupleDataCont.discard();
-                    } finally {
-                        m_outstandingWriteTasksLock.lock();
-                        try {
-                            if (m_outstandingWriteTasks.decrementAndGet() == 0) {
-                                m_noMoreOutstandingWriteTasksCondition.signalAll();
-                            }
-                        } finally {
-                            m_outstandingWriteTasksLock.unlock();
-                        }
+                        Uninterruptibles.getUninterruptibly(write.m_compressed).discard();
+                    } catch (ExecutionException e) {
+                        // failed to compress, nothing to give back
                     }
                 }
-                return null;
             }
-        });
-        return writeTask;
+            for (PendingWrite write : batch) {
+                m_queuedBytes.addAndGet(-write.m_queuedBytes);
+                SnapshotWriteService.written(write.m_queuedBytes);
+                if (failure == null) {
+                    write.m_written.set(null);
+                } else {
+                    write.m_written.setException(failure);
+                }
+                m_outstandingWriteTasksLock.lock();
+                try {
+                    if (m_outstandingWriteTasks.decrementAndGet() == 0) {
+                        m_noMoreOutstandingWriteTasksCondition.signalAll();
+                    }
+                } finally {
+                    m_outstandingWriteTasksLock.unlock();
+                }
+            }
+        }
     }
 
     @Override
@@ -551,6 +667,34 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
         return m_bytesWritten;
     }
 
+    String getDevice() {
+        return m_writeService.getDevice();
+    }
+
+    File getFile() {
+        return m_file;
+    }
+
+    public long getWriteCount() {
+        return m_writeCount;
+    }
+
+    public long getWriteNanos() {
+        return m_writeNanos;
+    }
+
+    public long getQueuedBytes() {
+        return m_queuedBytes.get();
+    }
+
+    /**
+     * Bytes written per second since the file was opened
+     */
+    public double getThroughput() {
+        final long elapsedNanos = Math.max(1, System.nanoTime() - m_openedNanos);
+        return m_bytesWritten / (elapsedNanos / 1000000000.0);
+    }
+
     @Override
     public void setOnCloseHandler(Runnable onClose) {
         m_onCloseHandler = onClose;
@@ -582,15 +726,10 @@ public class DefaultSnapshotDataTarget implements SnapshotDataTarget {
     }
 
     public static void setRate(final Integer megabytesPerSecond) {
-        m_es.execute(new Runnable() {
-            @Override
-            public void run() {
-                if (megabytesPerSecond == null) {
-                    SNAPSHOT_RATELIMITER.setRate(SNAPSHOT_RATELIMIT_MEGABYTES * 1024.0 * 1024.0);
-                } else {
-                    SNAPSHOT_RATELIMITER.setRate(megabytesPerSecond * 1024.0 * 1024.0);
-                }
-            }
-        });
+        if (megabytesPerSecond == null) {
+            SNAPSHOT_RATELIMITER.setRate(SNAPSHOT_RATELIMIT_MEGABYTES * 1024.0 * 1024.0);
+        } else {
+            SNAPSHOT_RATELIMITER.setRate(megabytesPerSecond * 1024.0 * 1024.0);
+        }
     }
 }
@@ -69,6 +69,7 @@ public class IOStats extends StatsSource {
         columns.add(new ColumnInfo("MESSAGES_READ", VoltType.BIGINT));
         columns.add(new ColumnInfo("BYTES_WRITTEN", VoltType.BIGINT));
         columns.add(new ColumnInfo("MESSAGES_WRITTEN", VoltType.BIGINT));
+        columns.add(new ColumnInfo("AVG_BUFFERS_PER_WRITE", VoltType.FLOAT));
 
     }
 
@@ -83,6 +84,8 @@ public class IOStats extends StatsSource {
         rowValues[columnNameToIndex.get("MESSAGES_READ")] = counters[1];
         rowValues[columnNameToIndex.get("BYTES_WRITTEN")] = counters[2];
         rowValues[columnNameToIndex.get("MESSAGES_WRITTEN")] = counters[3];
+        rowValues[columnNameToIndex.get("AVG_BUFFERS_PER_WRITE")] =
+                counters[5] == 0 ? 0.0 : (double)counters[4] / counters[5];
         super.updateStatsRow(rowKey, rowValues);
     }
 
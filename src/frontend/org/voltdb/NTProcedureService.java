@@ -191,6 +191,10 @@ public class NTProcedureService {
                     StatsSelector.PROCEDURE,
                     CoreUtils.getSiteIdFromHSId(m_mailbox.getHSId()),
                     m_statsCollector);
+            VoltDB.instance().getStatsAgent().registerStatsSource(
+                    StatsSelector.PROCEDUREHISTOGRAM,
+                    CoreUtils.getSiteIdFromHSId(m_mailbox.getHSId()),
+                    new ProcedureHistogramStats(CoreUtils.getSiteIdFromHSId(m_mailbox.getHSId()), m_statsCollector));
         }
 
         /**
@@ -252,6 +252,22 @@ public class ParameterConverter {
         }
     }
 
+    /**
+     * Get the class of the values that {@link #tryToMakeCompatible} would return unchanged for a
+     * parameter of type {@code expectedClz} whatever they hold, so that callers can resolve it once
+     * and skip the conversion for them.
+     * @return the class, or null if every value needs to be looked at
+     */
+    public static Class<?> passThroughClass(final Class<?> expectedClz) {
+        if (expectedClz == long.class) return Long.class;
+        if (expectedClz == int.class) return Integer.class;
+        if (expectedClz == short.class) return Short.class;
+        if (expectedClz == byte.class) return Byte.class;
+        if (expectedClz == double.class) return Double.class;
+        if (expectedClz == byte[].class) return byte[].class;
+        return null;
+    }
+
     /**
      * Convert the given value to the type given, if possible.
      *
@@ -19,10 +19,13 @@ package org.voltdb;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.CoreUtils;
 import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.compiler.AdHocCompilerCache;
 
 /**
  * Collects global cache use stats
@@ -63,80 +66,109 @@ public class PlannerStatsCollector extends StatsSource {
     /**
      * Partition ID
      */
-    long m_partitionId;
+    volatile long m_partitionId;
 
     /**
      * Cache 1 level
      */
-    long m_cache1Level = 0;
+    volatile long m_cache1Level = 0;
     long m_lastCache1Level = 0;
 
     /**
      * Cache 2 level
      */
-    long m_cache2Level = 0;
+    volatile long m_cache2Level = 0;
     long m_lastCache2Level = 0;
 
     /**
      * Cache 1 hits
      */
-    long m_cache1Hits = 0;
+    final LongAdder m_cache1Hits = new LongAdder();
     long m_lastCache1Hits = 0;
 
     /**
      * Cache 2 hits
      */
-    long m_cache2Hits = 0;
+    final LongAdder m_cache2Hits = new LongAdder();
     long m_lastCache2Hits = 0;
 
     /**
      * Cache misses
      */
-    long m_cacheMisses = 0;
+    final LongAdder m_cacheMisses = new LongAdder();
     long m_lastCacheMisses = 0;
 
+    /**
+     * Cache 1 and cache 2 evictions, taken from the ad hoc cache when stats are read
+     */
+    final LongAdder m_cache1Evictions = new LongAdder();
+    long m_lastCache1Evictions = 0;
+    final LongAdder m_cache2Evictions = new LongAdder();
+    long m_lastCache2Evictions = 0;
+    private volatile AdHocCompilerCache m_evictionSource;
+
+    /**
+     * Start time passed around for invocations that aren't timed
+     */
+    public static final long NOT_TIMED = Long.MIN_VALUE;
+
     /**
      * Time of last planning start
      */
-    Long m_currentStartTime = null;
+    long m_currentStartTime = NOT_TIMED;
 
     /**
      * Total amount of planning time
      */
-    long m_totalPlanningTime = 0;
+    final LongAdder m_totalPlanningTime = new LongAdder();
     long m_lastTimedPlanningTime = 0;
 
     /**
      * Shortest amount of time used for planning
      */
-    long m_minPlanningTime = Long.MAX_VALUE;
-    long m_lastMinPlanningTime = Long.MAX_VALUE;
+    final AtomicLong m_minPlanningTime = new AtomicLong(Long.MAX_VALUE);
+    final AtomicLong m_lastMinPlanningTime = new AtomicLong(Long.MAX_VALUE);
 
     /**
      * Longest amount of time used for planning
      */
-    long m_maxPlanningTime = Long.MIN_VALUE;
-    long m_lastMaxPlanningTime = Long.MIN_VALUE;
+    final AtomicLong m_maxPlanningTime = new AtomicLong(Long.MIN_VALUE);
+    final AtomicLong m_lastMaxPlanningTime = new AtomicLong(Long.MIN_VALUE);
 
     /**
      * Count of the number of errors that occured during procedure execution
      */
-    long m_failures = 0;
+    final LongAdder m_failures = new LongAdder();
     long m_lastFailures = 0;
 
 
     /**
      * Count of the number of invocations = m_cache1Hits + m_cache2Hits + m_cacheMisses + m_failures;
+     * an AtomicLong rather than a LongAdder because every invocation reads it to decide whether to time itself
      */
-    long m_invocations = 0;
+    final AtomicLong m_invocations = new AtomicLong();
     long m_lastInvocations = 0;
 
+    /**
+     * Time spent waiting for a free planner and the number of plans that waited
+     */
+    final LongAdder m_totalWaitTime = new LongAdder();
+    long m_lastTotalWaitTime = 0;
+    final LongAdder m_waits = new LongAdder();
+    long m_lastWaits = 0;
+
+    /**
+     * When collection started and when interval stats were last returned, for throughput
+     */
+    final long m_startTime = System.nanoTime();
+    long m_lastIntervalTime = m_startTime;
+
     /**
      * Calculate the invocation count based on the cache hit/miss counts.
      * @return  invocation count
      */
     long getInvocations() {
-        return m_invocations;
+        return m_invocations.get();
     }
 
     /**
@@ -170,20 +202,46 @@ public class PlannerStatsCollector extends StatsSource {
      */
     public void updateEECacheStats(long eeCacheSize, long hits, long misses, int partitionId) {
         m_cache1Level = eeCacheSize;
-        m_cache1Hits += hits;
-        m_cacheMisses += misses;
+        m_cache1Hits.add(hits);
+        m_cacheMisses.add(misses);
 
-        m_invocations += hits + misses;
+        m_invocations.addAndGet(hits + misses);
         m_partitionId = partitionId;
     }
 
+    /**
+     * Sets the ad hoc cache whose evictions are reported, collecting whatever the
+     * previous cache evicted since stats were last read.
+     */
+    public void setEvictionSource(AdHocCompilerCache cache) {
+        takeEvictions(m_evictionSource);
+        m_evictionSource = cache;
+    }
+
+    private void takeEvictions(AdHocCompilerCache cache) {
+        if (cache != null) {
+            m_cache1Evictions.add(cache.takeLiteralEvictions());
+            m_cache2Evictions.add(cache.takeCoreEvictions());
+        }
+    }
+
     /**
      * Called before doing planning. Starts timer.
      */
     public void startStatsCollection() {
+        m_currentStartTime = startStatsTimer();
+    }
+
+    /**
+     * Starts timing an invocation when the collector is shared by threads planning concurrently.
+     * @return the start time to hand to {@link #endStatsCollection(long, long, long, long, CacheUse, long)},
+     *         NOT_TIMED if this invocation isn't sampled
+     */
+    public long startStatsTimer() {
         if (getInvocations() % m_collectionFrequency == 0) {
-            m_currentStartTime = System.nanoTime();
+            return System.nanoTime();
         }
+        return NOT_TIMED;
     }
 
     /**
@@ -195,8 +253,25 @@ public class PlannerStatsCollector extends StatsSource {
      * @param partitionId  partition id
      */
     public void endStatsCollection(long cache1Size, long cache2Size, CacheUse cacheUse, long partitionId) {
-        if (m_currentStartTime != null) {
-            long delta = System.nanoTime() - m_currentStartTime;
+        endStatsCollection(m_currentStartTime, -1, cache1Size, cache2Size, cacheUse, partitionId);
+        m_currentStartTime = NOT_TIMED;
+    }
+
+    /**
+     * Called after planning or failing to plan, when the collector is shared by threads
+     * planning concurrently.
+     *
+     * @param startTime    what {@link #startStatsTimer()} returned
+     * @param waitTime     nanoseconds spent waiting for a free planner, -1 if no planner was needed
+     * @param cache1Size   number of entries in level 1 cache
+     * @param cache2Size   number of entries in level 2 cache
+     * @param cacheUse     where the planned statement came from
+     * @param partitionId  partition id
+     */
+    public void endStatsCollection(long startTime, long waitTime, long cache1Size, long cache2Size,
+            CacheUse cacheUse, long partitionId) {
+        if (startTime != NOT_TIMED) {
+            long delta = System.nanoTime() - startTime;
             if (delta < 0) {
                 if (Math.abs(delta) > 1000000000) {
                     log.info("Planner statistics recorded a negative planning time larger than one second: " +
@@ -204,13 +279,16 @@ public class PlannerStatsCollector extends StatsSource {
                 }
             }
             else {
-                m_totalPlanningTime += delta;
-                m_minPlanningTime = Math.min(delta, m_minPlanningTime);
-                m_maxPlanningTime = Math.max(delta, m_maxPlanningTime);
-                m_lastMinPlanningTime = Math.min(delta, m_lastMinPlanningTime);
-                m_lastMaxPlanningTime = Math.max(delta, m_lastMaxPlanningTime);
+                m_totalPlanningTime.add(delta);
+                updateMin(m_minPlanningTime, delta);
+                updateMax(m_maxPlanningTime, delta);
+                updateMin(m_lastMinPlanningTime, delta);
+                updateMax(m_lastMaxPlanningTime, delta);
             }
-            m_currentStartTime = null;
+        }
+        if (waitTime >= 0) {
+            m_totalWaitTime.add(waitTime);
+            m_waits.increment();
         }
 
         m_cache1Level = cache1Size;
@@ -218,23 +296,33 @@ public class PlannerStatsCollector extends StatsSource {
 
         switch(cacheUse) {
           case HIT1:
-            m_cache1Hits++;
+            m_cache1Hits.increment();
             break;
           case HIT2:
-            m_cache2Hits++;
+            m_cache2Hits.increment();
             break;
           case MISS:
-            m_cacheMisses++;
+            m_cacheMisses.increment();
             break;
           case FAIL:
-            m_failures++;
+            m_failures.increment();
             break;
         }
-        m_invocations++;
+        m_invocations.incrementAndGet();
 
         m_partitionId = partitionId;
     }
 
+    private static void updateMin(AtomicLong min, long value) {
+        long current;
+        while (value < (current = min.get()) && !min.compareAndSet(current, value)) {}
+    }
+
+    private static void updateMax(AtomicLong max, long value) {
+        long current;
+        while (value > (current = max.get()) && !max.compareAndSet(current, value)) {}
+    }
+
     /**
      * Update the rowValues array with the latest statistical information.
      * This method is overrides the super class version
@@ -245,45 +333,78 @@ public class PlannerStatsCollector extends StatsSource {
     protected void updateStatsRow(Object rowKey, Object rowValues[]) {
         super.updateStatsRow(rowKey, rowValues);
 
-        rowValues[columnNameToIndex.get("PARTITION_ID")] = m_partitionId;
-        long totalTimedExecutionTime = m_totalPlanningTime;
-        long minExecutionTime = m_minPlanningTime;
-        long maxExecutionTime = m_maxPlanningTime;
-        long cache1Level = m_cache1Level;
-        long cache2Level = m_cache2Level;
-        long cache1Hits  = m_cache1Hits;
-        long cache2Hits  = m_cache2Hits;
-        long cacheMisses = m_cacheMisses;
-        long failureCount = m_failures;
+        takeEvictions(m_evictionSource);
+
+        // Planner threads keep counting while the row is built, snapshot each counter once
+        final long invocations = m_invocations.get();
+        final long totalPlanningTime = m_totalPlanningTime.sum();
+        final long allCache1Level = m_cache1Level;
+        final long allCache2Level = m_cache2Level;
+        final long allCache1Hits = m_cache1Hits.sum();
+        final long allCache2Hits = m_cache2Hits.sum();
+        final long allCacheMisses = m_cacheMisses.sum();
+        final long allCache1Evictions = m_cache1Evictions.sum();
+        final long allCache2Evictions = m_cache2Evictions.sum();
+        final long allFailures = m_failures.sum();
+        final long allWaitTime = m_totalWaitTime.sum();
+        final long allWaits = m_waits.sum();
+
+        long totalTimedExecutionTime = totalPlanningTime;
+        long minExecutionTime = m_minPlanningTime.get();
+        long maxExecutionTime = m_maxPlanningTime.get();
+        long cache1Level = allCache1Level;
+        long cache2Level = allCache2Level;
+        long cache1Hits  = allCache1Hits;
+        long cache2Hits  = allCache2Hits;
+        long cacheMisses = allCacheMisses;
+        long cache1Evictions = allCache1Evictions;
+        long cache2Evictions = allCache2Evictions;
+        long failureCount = allFailures;
+        long totalWaitTime = allWaitTime;
+        long waits = allWaits;
+        final long now = System.nanoTime();
+        long throughput = throughput(invocations, now - m_startTime);
 
         if (m_interval) {
-            totalTimedExecutionTime = m_totalPlanningTime - m_lastTimedPlanningTime;
-            m_lastTimedPlanningTime = m_totalPlanningTime;
+            throughput = throughput(invocations - m_lastInvocations, now - m_lastIntervalTime);
+            m_lastIntervalTime = now;
+
+            totalWaitTime = allWaitTime - m_lastTotalWaitTime;
+            m_lastTotalWaitTime = allWaitTime;
+            waits = allWaits - m_lastWaits;
+            m_lastWaits = allWaits;
+
+            totalTimedExecutionTime = totalPlanningTime - m_lastTimedPlanningTime;
+            m_lastTimedPlanningTime = totalPlanningTime;
+
+            minExecutionTime = m_lastMinPlanningTime.getAndSet(Long.MAX_VALUE);
+            maxExecutionTime = m_lastMaxPlanningTime.getAndSet(Long.MIN_VALUE);
 
-            minExecutionTime = m_lastMinPlanningTime;
-            maxExecutionTime = m_lastMaxPlanningTime;
-            m_lastMinPlanningTime = Long.MAX_VALUE;
-            m_lastMaxPlanningTime = Long.MIN_VALUE;
+            cache1Level = allCache1Level - m_lastCache1Level;
+            m_lastCache1Level = allCache1Level;
 
-            cache1Level = m_cache1Level - m_lastCache1Level;
-            m_lastCache1Level = m_cache1Level;
+            cache2Level = allCache2Level - m_lastCache2Level;
+            m_lastCache2Level = allCache2Level;
 
-            cache2Level = m_cache2Level - m_lastCache2Level;
-            m_lastCache2Level = m_cache2Level;
+            cache1Hits = allCache1Hits - m_lastCache1Hits;
+            m_lastCache1Hits = allCache1Hits;
 
-            cache1Hits = m_cache1Hits - m_lastCache1Hits;
-            m_lastCache1Hits = m_cache1Hits;
+            cache2Hits = allCache2Hits - m_lastCache2Hits;
+            m_lastCache2Hits = allCache2Hits;
 
-            cache2Hits = m_cache2Hits - m_lastCache2Hits;
-            m_lastCache2Hits = m_cache2Hits;
+            cacheMisses = allCacheMisses - m_lastCacheMisses;
+            m_lastCacheMisses = allCacheMisses;
 
-            cacheMisses = m_cacheMisses - m_lastCacheMisses;
-            m_lastCacheMisses = m_cacheMisses;
+            cache1Evictions = allCache1Evictions - m_lastCache1Evictions;
+            m_lastCache1Evictions = allCache1Evictions;
 
-            failureCount = m_failures - m_lastFailures;
-            m_lastFailures = m_failures;
+            cache2Evictions = allCache2Evictions - m_lastCache2Evictions;
+            m_lastCache2Evictions = allCache2Evictions;
 
-            m_lastInvocations = m_invocations;
+            failureCount = allFailures - m_lastFailures;
+            m_lastFailures = allFailures;
+
+            m_lastInvocations = invocations;
         }
 
         rowValues[columnNameToIndex.get(VoltSystemProcedure.CNAME_SITE_ID)] = CoreUtils.getSiteIdFromHSId(m_siteId);
@@ -295,13 +416,25 @@ public class PlannerStatsCollector extends StatsSource {
         rowValues[columnNameToIndex.get("CACHE_MISSES")] = cacheMisses;
         rowValues[columnNameToIndex.get("PLAN_TIME_MIN")] = minExecutionTime;
         rowValues[columnNameToIndex.get("PLAN_TIME_MAX")] = maxExecutionTime;
-        if (getSampleCount() != 0) {
+        final long sampleCount = invocations / m_collectionFrequency;
+        if (sampleCount != 0) {
             rowValues[columnNameToIndex.get("PLAN_TIME_AVG")] =
-                 (totalTimedExecutionTime / getSampleCount());
+                 (totalTimedExecutionTime / sampleCount);
         } else {
             rowValues[columnNameToIndex.get("PLAN_TIME_AVG")] = 0L;
         }
         rowValues[columnNameToIndex.get("FAILURES")] = failureCount;
+        rowValues[columnNameToIndex.get("THROUGHPUT")] = throughput;
+        rowValues[columnNameToIndex.get("PLAN_WAIT_TIME_AVG")] = waits == 0 ? 0L : totalWaitTime / waits;
+        rowValues[columnNameToIndex.get("CACHE1_EVICTIONS")] = cache1Evictions;
+        rowValues[columnNameToIndex.get("CACHE2_EVICTIONS")] = cache2Evictions;
+    }
+
+    /**
+     * @return invocations per second over the elapsed nanoseconds
+     */
+    private static long throughput(long invocations, long elapsed) {
+        return elapsed <= 0 ? 0L : invocations * 1000000000L / elapsed;
     }
 
     /**
@@ -322,6 +455,10 @@ public class PlannerStatsCollector extends StatsSource {
         columns.add(new ColumnInfo("PLAN_TIME_MAX", VoltType.BIGINT));
         columns.add(new ColumnInfo("PLAN_TIME_AVG", VoltType.BIGINT));
         columns.add(new ColumnInfo("FAILURES",      VoltType.BIGINT));
+        columns.add(new ColumnInfo("THROUGHPUT",    VoltType.BIGINT));
+        columns.add(new ColumnInfo("PLAN_WAIT_TIME_AVG", VoltType.BIGINT));
+        columns.add(new ColumnInfo("CACHE1_EVICTIONS", VoltType.BIGINT));
+        columns.add(new ColumnInfo("CACHE2_EVICTIONS", VoltType.BIGINT));
     }
 
     @Override
@@ -0,0 +1,216 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.HdrHistogram_voltpatches.Histogram;
+import org.HdrHistogram_voltpatches.SingleWriterRecorder;
+import org.voltcore.utils.CompressionStrategySnappy;
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * Latency percentiles of a procedure and of each of its statements, from the execution
+ * times its {@link ProcedureStatsCollector} samples.
+ *
+ * The thread recording the statistics puts the sampled times into a recorder per statement,
+ * without locking. Every read takes what was recorded since the last one and adds it to the
+ * statement's total, so a row's histogram is never written while it is read. An interval
+ * row is the total less a copy of the total kept at the previous interval read. Each row
+ * carries its compressed histogram, and the PROCEDUREHISTOGRAM selector merges them into a
+ * row per procedure and statement for the whole cluster.
+ *
+ * The "<ALL>" row is the latency of the whole procedure. A statement row is the latency of
+ * its fragments: a multi-partition statement records its coordinator and worker fragments
+ * as separate samples, so its percentiles describe fragments, not the statement end to end.
+ *
+ * A statement costs about 40KB of heap on each site once it has run and been read: the
+ * histogram the recorder records into and the total. Interval reads add the 20KB copy,
+ * which is only allocated once the first one is made. Each read also allocates, briefly,
+ * a histogram per statement that recorded something since the last read.
+ */
+public class ProcedureHistogramStats extends SiteStatsSource {
+
+    // Any execution time above this is recorded as this
+    static final long HIGHEST_TRACKABLE_MICROS = 60L * 1000000L;
+    // Two digits keeps a histogram around 20KB, the percentiles are within 1%
+    static final int SIGNIFICANT_DIGITS = 2;
+
+    private final ProcedureStatsCollector m_collector;
+    // Where the interval rows are computed
+    private final Histogram m_interval = constructHistogram();
+    private boolean m_isInterval = false;
+
+    public ProcedureHistogramStats(long siteId, ProcedureStatsCollector collector) {
+        super(siteId, false);
+        m_collector = collector;
+    }
+
+    static SingleWriterRecorder constructRecorder() {
+        return new SingleWriterRecorder(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    }
+
+    static Histogram constructHistogram() {
+        return new Histogram(HIGHEST_TRACKABLE_MICROS, SIGNIFICANT_DIGITS);
+    }
+
+    /**
+     * Convert an execution time in nanoseconds to microseconds the histograms can track.
+     */
+    static long toTrackableMicros(long nanos) {
+        return Math.max(1, Math.min(nanos / 1000, HIGHEST_TRACKABLE_MICROS));
+    }
+
+    private static void addPercentileColumns(ArrayList<ColumnInfo> columns) {
+        columns.add(new ColumnInfo("COUNT",     VoltType.BIGINT));  // sampled executions
+        columns.add(new ColumnInfo("P50",       VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("P95",       VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("P99",       VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("P99.9",     VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("P99.99",    VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("MAX",       VoltType.BIGINT));  // microseconds
+        columns.add(new ColumnInfo("HISTOGRAM", VoltType.VARBINARY));
+    }
+
+    private static void setPercentileValues(Object rowValues[], Map<String, Integer> columnIndex,
+                                            AbstractHistogram histogram) {
+        rowValues[columnIndex.get("COUNT")]     = histogram.getTotalCount();
+        rowValues[columnIndex.get("P50")]       = histogram.getValueAtPercentile(50D);
+        rowValues[columnIndex.get("P95")]       = histogram.getValueAtPercentile(95D);
+        rowValues[columnIndex.get("P99")]       = histogram.getValueAtPercentile(99D);
+        rowValues[columnIndex.get("P99.9")]     = histogram.getValueAtPercentile(99.9D);
+        rowValues[columnIndex.get("P99.99")]    = histogram.getValueAtPercentile(99.99D);
+        rowValues[columnIndex.get("MAX")]       = histogram.getMaxValue();
+        rowValues[columnIndex.get("HISTOGRAM")] = histogram.toCompressedBytes(CompressionStrategySnappy.INSTANCE);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("PARTITION_ID", VoltType.INTEGER));
+        columns.add(new ColumnInfo("PROCEDURE", VoltType.STRING));
+        columns.add(new ColumnInfo("STATEMENT", VoltType.STRING));
+        addPercentileColumns(columns);
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object rowValues[]) {
+        super.updateStatsRow(rowKey, rowValues);
+        StatementStats stmtStats = (StatementStats) rowKey;
+        rowValues[columnNameToIndex.get("PARTITION_ID")] = m_collector.getPartitionId();
+        rowValues[columnNameToIndex.get("PROCEDURE")] = m_collector.getProcName();
+        rowValues[columnNameToIndex.get("STATEMENT")] = stmtStats.m_stmtName;
+        if (m_isInterval) {
+            stmtStats.m_latencyTotal.copyInto(m_interval);
+            m_interval.subtract(stmtStats.m_latencyLastInterval);
+            setPercentileValues(rowValues, columnNameToIndex, m_interval);
+            // the next interval starts now
+            stmtStats.m_latencyTotal.copyInto(stmtStats.m_latencyLastInterval);
+        } else {
+            setPercentileValues(rowValues, columnNameToIndex, stmtStats.m_latencyTotal);
+        }
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        m_isInterval = interval;
+        ArrayList<Object> rowKeys = new ArrayList<Object>();
+        for (StatementStats stmtStats : m_collector.getStatementStats()) {
+            SingleWriterRecorder recorder = stmtStats.getLatencyRecorder();
+            if (recorder == null) {
+                continue;
+            }
+            if (stmtStats.m_latencyTotal == null) {
+                stmtStats.m_latencyTotal = constructHistogram();
+            }
+            // Not recycled, so that the recorder only holds the histogram it records into
+            stmtStats.m_latencyTotal.add(recorder.getIntervalHistogram());
+            long count = stmtStats.m_latencyTotal.getTotalCount();
+            if (interval) {
+                if (stmtStats.m_latencyLastInterval == null) {
+                    stmtStats.m_latencyLastInterval = constructHistogram();
+                }
+                count -= stmtStats.m_latencyLastInterval.getTotalCount();
+            }
+            if (count > 0) {
+                rowKeys.add(stmtStats);
+            }
+        }
+        return rowKeys.iterator();
+    }
+
+    /**
+     * Merge the histograms of every site into one row per procedure and statement,
+     * sorted by procedure and statement name.
+     */
+    static VoltTable[] aggregate(VoltTable[] baseStats) {
+        if (baseStats == null || baseStats.length != 1) {
+            return baseStats;
+        }
+
+        Map<String, Map<String, Histogram>> merged = new TreeMap<String, Map<String, Histogram>>();
+        long timestamp = 0;
+        baseStats[0].resetRowPosition();
+        while (baseStats[0].advanceRow()) {
+            timestamp = Math.max(timestamp, baseStats[0].getLong("TIMESTAMP"));
+            String procName = baseStats[0].getString("PROCEDURE");
+            Map<String, Histogram> stmts = merged.get(procName);
+            if (stmts == null) {
+                stmts = new TreeMap<String, Histogram>();
+                merged.put(procName, stmts);
+            }
+            String stmtName = baseStats[0].getString("STATEMENT");
+            Histogram siteHistogram = AbstractHistogram.fromCompressedBytes(
+                    baseStats[0].getVarbinary("HISTOGRAM"), CompressionStrategySnappy.INSTANCE);
+            Histogram histogram = stmts.get(stmtName);
+            if (histogram == null) {
+                stmts.put(stmtName, siteHistogram);
+            } else {
+                histogram.add(siteHistogram);
+            }
+        }
+
+        ArrayList<ColumnInfo> columns = new ArrayList<ColumnInfo>();
+        columns.add(new ColumnInfo("TIMESTAMP", VoltType.BIGINT));
+        columns.add(new ColumnInfo("PROCEDURE", VoltType.STRING));
+        columns.add(new ColumnInfo("STATEMENT", VoltType.STRING));
+        addPercentileColumns(columns);
+        VoltTable result = new VoltTable(columns.toArray(new ColumnInfo[columns.size()]));
+        Map<String, Integer> columnIndex = new HashMap<String, Integer>();
+        for (int i = 0; i < columns.size(); i++) {
+            columnIndex.put(columns.get(i).name, i);
+        }
+
+        Object rowValues[] = new Object[columns.size()];
+        for (Map.Entry<String, Map<String, Histogram>> proc : merged.entrySet()) {
+            for (Map.Entry<String, Histogram> stmt : proc.getValue().entrySet()) {
+                rowValues[columnIndex.get("TIMESTAMP")] = timestamp;
+                rowValues[columnIndex.get("PROCEDURE")] = proc.getKey();
+                rowValues[columnIndex.get("STATEMENT")] = stmt.getKey();
+                setPercentileValues(rowValues, columnIndex, stmt.getValue());
+                result.addRow(rowValues);
+            }
+        }
+        return new VoltTable[] { result };
+    }
+}
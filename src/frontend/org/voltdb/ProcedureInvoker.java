@@ -0,0 +1,107 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Calls the run method of a Java stored procedure without reflection.
+ *
+ * When a procedure class is first loaded its run method is resolved to a method handle
+ * that takes the procedure instance and the already converted parameter array, spreads
+ * the array into the method's arguments and unboxes them as needed. Invoking it costs a
+ * direct call instead of Method.invoke's access checks, argument copying and exception
+ * wrapping. Exceptions thrown by the procedure reach the caller unwrapped.
+ *
+ * There is one invoker per procedure class, shared by the runners of every site and
+ * dropped along with the class when a catalog update replaces it.
+ */
+final class ProcedureInvoker {
+
+    private static final ClassValue<ProcedureInvoker> s_invokers = new ClassValue<ProcedureInvoker>() {
+        @Override
+        protected ProcedureInvoker computeValue(Class<?> procClass) {
+            return new ProcedureInvoker(procClass);
+        }
+    };
+
+    private final Method m_method;
+    private final MethodHandle m_handle;
+
+    /**
+     * Get the invoker for the public run method declared by {@code procClass}.
+     * @throws RuntimeException if the class has no such method
+     */
+    static ProcedureInvoker forClass(Class<?> procClass) {
+        return s_invokers.get(procClass);
+    }
+
+    private ProcedureInvoker(Class<?> procClass) {
+        Method runMethod = null;
+        for (final Method m : procClass.getDeclaredMethods()) {
+            if (m.getName().equals("run") && Modifier.isPublic(m.getModifiers())) {
+                runMethod = m;
+                break;
+            }
+        }
+        if (runMethod == null) {
+            throw new RuntimeException("No \"run\" method found in: " + procClass.getName());
+        }
+        m_method = runMethod;
+
+        MethodHandle handle;
+        try {
+            handle = MethodHandles.publicLookup().unreflect(runMethod);
+        } catch (IllegalAccessException e) {
+            // Procedure classes that aren't public themselves can still be called once the
+            // check is suppressed, just as they could through reflection
+            runMethod.setAccessible(true);
+            try {
+                handle = MethodHandles.publicLookup().unreflect(runMethod);
+            } catch (IllegalAccessException e2) {
+                throw new RuntimeException("Unable to access \"run\" method of: " + procClass.getName(), e2);
+            }
+        }
+        handle = handle.asSpreader(Object[].class, runMethod.getParameterTypes().length);
+        if (Modifier.isStatic(runMethod.getModifiers())) {
+            // Static run methods ignore the instance
+            handle = MethodHandles.dropArguments(handle, 0, Object.class);
+        }
+        m_handle = handle.asType(MethodType.methodType(Object.class, Object.class, Object[].class));
+    }
+
+    Method getMethod() {
+        return m_method;
+    }
+
+    /**
+     * Run the procedure.
+     * @param procedure  an instance of the class this invoker was created for
+     * @param params     one parameter for each argument of the run method, already converted
+     *                   to the argument types
+     * @return whatever the run method returned, null for a void method
+     * @throws Throwable whatever the run method threw
+     */
+    Object invoke(VoltProcedure procedure, Object[] params) throws Throwable {
+        return m_handle.invokeExact((Object) procedure, params);
+    }
+}
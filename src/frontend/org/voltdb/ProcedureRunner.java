@@ -23,7 +23,6 @@ import java.io.StringWriter;
 import java.io.Writer;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -110,7 +109,10 @@ public class ProcedureRunner {
     protected final String m_procedureName;
     protected final VoltProcedure m_procedure;
     protected Method m_procMethod;
+    protected ProcedureInvoker m_procInvoker;
     protected Class<?>[] m_paramTypes;
+    // for each parameter, the class of the values that need no conversion, or null
+    protected Class<?>[] m_paramPassThroughTypes;
 
     // per txn state (are reset after call)
     //
@@ -209,6 +211,11 @@ public class ProcedureRunner {
         VoltDB.instance().getStatsAgent().registerStatsSource(StatsSelector.PROCEDURE,
                                                               site.getCorrespondingSiteId(),
                                                               m_statsCollector);
+        VoltDB.instance().getStatsAgent().registerStatsSource(StatsSelector.PROCEDUREHISTOGRAM,
+                                                              site.getCorrespondingSiteId(),
+                                                              new ProcedureHistogramStats(
+                                                                      site.getCorrespondingSiteId(),
+                                                                      m_statsCollector));
 
         // Read the ProcStatsOption annotation from the procedure class.
         // Basically, it is about setting the sampling interval for this stored procedure.
@@ -278,7 +285,7 @@ public class ProcedureRunner {
         m_perCallStats = m_statsCollector.beginProcedure();
 
         // if we're keeping track, calculate parameter size
-        if (m_perCallStats != null) {
+        if (m_perCallStats.samplingProcedure()) {
             StoredProcedureInvocation invoc = (m_txnState != null ? m_txnState.getInvocation() : null);
             ParameterSet params = (invoc != null ? invoc.getParams() : ParameterSet.fromArrayNoCopy(paramListIn));
             m_perCallStats.setParameterSize(params.getSerializedSize());
@@ -287,7 +294,7 @@ public class ProcedureRunner {
         ClientResponseImpl result = coreCall(paramListIn);
 
         // if we're keeping track, calculate result size
-        if (m_perCallStats != null) {
+        if (m_perCallStats.samplingProcedure()) {
             m_perCallStats.setResultSize(result.getResults());
         }
 
@@ -295,7 +302,7 @@ public class ProcedureRunner {
                                       (result.getStatus() != ClientResponse.USER_ABORT) &&
                                       (result.getStatus() != ClientResponse.SUCCESS),
                                       m_perCallStats);
-        // allow the GC to collect per-call stats if this proc isn't called for a while
+        // the collector reuses the per-call stats token for the next call
         m_perCallStats = null;
 
         return result;
@@ -360,8 +367,12 @@ public class ProcedureRunner {
             }
 
             for (int i = 0; i < m_paramTypes.length; i++) {
+                final Object param = paramList[i];
+                if (param != null && param.getClass() == m_paramPassThroughTypes[i]) {
+                    continue;
+                }
                 try {
-                    paramList[i] = ParameterConverter.tryToMakeCompatible(m_paramTypes[i], paramList[i]);
+                    paramList[i] = ParameterConverter.tryToMakeCompatible(m_paramTypes[i], param);
                     // check the result type in an assert
                     assert(ParameterConverter.verifyParameterConversion(paramList[i], m_paramTypes[i]));
                 } catch (Exception e) {
@@ -378,13 +389,13 @@ public class ProcedureRunner {
                     if (HOST_TRACE_ENABLED) {
                         log.trace("invoking... procMethod=" + m_procMethod.getName() + ", class=" + m_procMethod.getDeclaringClass().getName());
                     }
+                    Object rawResult;
                     try {
-                        Object rawResult = m_procMethod.invoke(m_procedure, paramList);
-                        results = ParameterConverter.getResultsFromRawResults(m_procedureName, rawResult);
-                    } catch (IllegalAccessException e) {
-                        // If reflection fails, invoke the same error handling that other exceptions do
-                        throw new InvocationTargetException(e);
+                        rawResult = m_procInvoker.invoke(m_procedure, paramList);
+                    } catch (Throwable t) {
+                        throw new InvocationTargetException(t);
                     }
+                    results = ParameterConverter.getResultsFromRawResults(m_procedureName, rawResult);
                     log.trace("invoked");
                 }
                 catch (InvocationTargetException itex) {
@@ -398,7 +409,7 @@ public class ProcedureRunner {
                             m_statsCollector.endProcedure(false, true, m_perCallStats);
                         }
                         finally {
-                            // allow the GC to collect per-call stats if this proc isn't called for a while
+                            // the collector reuses the per-call stats token for the next call
                             m_perCallStats = null;
                             // Ensure that ex is always re-thrown even if endProcedure throws an exception.
                             throw (Error)ex;
@@ -1108,21 +1119,9 @@ public class ProcedureRunner {
             }
         } else {
             // this is where, in the case of java procedures, m_procMethod is set
-            for (final Method m : m_procedure.getClass().getDeclaredMethods()) {
-                String name = m.getName();
-                if (name.equals("run")) {
-                    if (Modifier.isPublic(m.getModifiers()) == false) {
-                        continue;
-                    }
-                    m_procMethod = m;
-                    m_paramTypes = m.getParameterTypes();
-                    break;
-                }
-            }
-
-            if (m_procMethod == null) {
-                throw new RuntimeException("No \"run\" method found in: " + m_procedure.getClass().getName());
-            }
+            m_procInvoker = ProcedureInvoker.forClass(m_procedure.getClass());
+            m_procMethod = m_procInvoker.getMethod();
+            m_paramTypes = m_procMethod.getParameterTypes();
             // iterate through the fields and deal with sql statements
             try {
                 stmtMap = ProcedureCompiler.getValidSQLStmts(null, m_procedureName, m_procedure.getClass(), m_procedure,
@@ -1133,6 +1132,13 @@ public class ProcedureRunner {
             }
         }
 
+        if (m_paramTypes != null) {
+            m_paramPassThroughTypes = new Class<?>[m_paramTypes.length];
+            for (int i = 0; i < m_paramTypes.length; i++) {
+                m_paramPassThroughTypes[i] = ParameterConverter.passThroughClass(m_paramTypes[i]);
+            }
+        }
+
         ArrayList<String> stmtNames = new ArrayList<String>(stmtMap.entrySet().size());
         for (final Entry<String, SQLStmt> entry : stmtMap.entrySet()) {
             String name = entry.getKey();
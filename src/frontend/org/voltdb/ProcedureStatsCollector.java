@@ -18,6 +18,7 @@
 package org.voltdb;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
@@ -25,6 +26,7 @@ import java.util.Map.Entry;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.Bits;
 import org.voltdb.StatementStats.SingleCallStatsToken;
 import org.voltdb.StatementStats.StatsData;
 import org.voltdb.catalog.Procedure;
@@ -32,6 +34,15 @@ import org.voltdb.sysprocs.UpdateCore;
 
 /**
  * Derivation of StatsSource to expose timing information of procedure invocations.
+ *
+ * Transactional procedures are only ever run by the site thread that owns this collector,
+ * so it records their statistics without locking or allocating. Reads copy the statistics
+ * out under a sequence counter, and retry if the site thread was recording at the time.
+ * NT procedures run on many threads, so they allocate a token per call and record their
+ * statistics holding the monitor.
+ *
+ * Sampled execution times also go into a latency histogram per statement, which
+ * {@link ProcedureHistogramStats} reports.
  */
 public class ProcedureStatsCollector extends SiteStatsSource {
 
@@ -63,6 +74,7 @@ public class ProcedureStatsCollector extends SiteStatsSource {
     private final int m_partitionId;
     // Mapping from the variable name of the user-defined SQLStmts to its stats.
     private final Map<String, StatementStats> m_stmtStatsMap;
+    private final StatementStats m_procStats;
     private final StatsData m_procStatsData;
     private final boolean m_isTransactional;
     private final boolean m_isUAC;
@@ -91,10 +103,10 @@ public class ProcedureStatsCollector extends SiteStatsSource {
         // Use one StatementStats instance to hold the procedure-wide statistics.
         // The statement name for this StatementStats is "<ALL>".
         // It does not have coordinator task to track.
-        StatementStats procedureWideStats = new StatementStats("<ALL>", false);
-        m_procStatsData = procedureWideStats.m_workerTask;
+        m_procStats = new StatementStats("<ALL>", false);
+        m_procStatsData = m_procStats.m_workerTask;
         // The NULL key entry is reserved for the procedure-wide statistics.
-        m_stmtStatsMap.put(null, procedureWideStats);
+        m_stmtStatsMap.put(null, m_procStats);
         // Add stats entry for each of the individual SQL statements.
         if (stmtNames != null) {
             for (String stmtName : stmtNames) {
@@ -112,30 +124,77 @@ public class ProcedureStatsCollector extends SiteStatsSource {
     // This is not the *real* invocation count, but a fuzzy one we keep to sample 5% of
     // calls without modifying any state. We *only* modify state when a procedure completes.
     AtomicLong fuzzyInvocationCounter = new AtomicLong(0);
+    // The same for transactional procedures, only used by the site thread
+    private long m_siteInvocationCounter = 0;
+    // Handed out for every call of a transactional procedure
+    private final SingleCallStatsToken m_siteToken = new SingleCallStatsToken(0, false);
+
+    // Odd while the statistics are being recorded
+    private final AtomicLong m_recordingSeq = new AtomicLong(0);
+    // Advanced by every read of interval statistics
+    private volatile long m_intervalEpoch = 0;
 
     /**
      * Called when a procedure begins executing. Caches the time the procedure starts.
-     * Note: This does not touch internal mutable state besides fuzzyInvocationCounter.
+     * Note: This does not touch internal mutable state besides the invocation counters.
      */
     public final SingleCallStatsToken beginProcedure() {
-        long invocations = fuzzyInvocationCounter.getAndIncrement();
+        long invocations = m_isTransactional ? m_siteInvocationCounter++ : fuzzyInvocationCounter.getAndIncrement();
 
         boolean samplingProcedure = (invocations % m_procSamplingInterval == 0) || m_isUAC;
         boolean samplingStmts = invocations % m_stmtSamplingInterval == 0;
 
         long startTimeNanos = samplingProcedure ? System.nanoTime() : 0;
 
+        if (m_isTransactional) {
+            m_siteToken.reset(startTimeNanos, samplingStmts);
+            return m_siteToken;
+        }
         return new SingleCallStatsToken(startTimeNanos, samplingStmts);
     }
 
+    private void beginRecording() {
+        // only one thread records at a time, no need for an atomic increment
+        m_recordingSeq.lazySet(m_recordingSeq.get() + 1);
+        // the odd count has to be visible before anything it guards changes
+        Bits.unsafe.storeFence();
+    }
+
+    private void endRecording() {
+        m_recordingSeq.lazySet(m_recordingSeq.get() + 1);
+    }
+
     /**
      * Called after a procedure is finished executing. Compares the start and end time and calculates
      * the statistics.
      *
-     * Synchronized because it modifies internal state and (for NT procs) can be called from multiple
-     * threads. For transactional procs the lock should be uncontended.,
+     * NT procs can finish on multiple threads at once, so they are recorded holding the monitor.
+     * Transactional procs only finish on the site thread and don't need it.
      */
-    public final synchronized void endProcedure(boolean aborted, boolean failed, SingleCallStatsToken statsToken) {
+    public final void endProcedure(boolean aborted, boolean failed, SingleCallStatsToken statsToken) {
+        if (m_isTransactional) {
+            beginRecording();
+            try {
+                recordProcedure(aborted, failed, statsToken);
+            } finally {
+                endRecording();
+            }
+        }
+        else {
+            synchronized (this) {
+                beginRecording();
+                try {
+                    recordProcedure(aborted, failed, statsToken);
+                } finally {
+                    endRecording();
+                }
+            }
+        }
+    }
+
+    private void recordProcedure(boolean aborted, boolean failed, SingleCallStatsToken statsToken) {
+        final long epoch = m_intervalEpoch;
+        m_procStatsData.startInterval(epoch);
         if (aborted) {
             m_procStatsData.m_abortCount++;
         }
@@ -168,6 +227,7 @@ public class ProcedureStatsCollector extends SiteStatsSource {
         m_procStatsData.m_maxExecutionTime = Math.max(duration, m_procStatsData.m_maxExecutionTime);
         m_procStatsData.m_incrMinExecutionTime = Math.min(duration, m_procStatsData.m_incrMinExecutionTime);
         m_procStatsData.m_incrMaxExecutionTime = Math.max(duration, m_procStatsData.m_incrMaxExecutionTime);
+        m_procStats.recordLatency(duration);
 
         m_procStatsData.m_totalResultSize += statsToken.resultSize;
         m_procStatsData.m_minResultSize = Math.min(statsToken.resultSize, m_procStatsData.m_minResultSize);
@@ -181,28 +241,16 @@ public class ProcedureStatsCollector extends SiteStatsSource {
         m_procStatsData.m_incrMinParameterSetSize = Math.min(statsToken.parameterSetSize, m_procStatsData.m_incrMinParameterSetSize);
         m_procStatsData.m_incrMaxParameterSetSize = Math.max(statsToken.parameterSetSize, m_procStatsData.m_incrMaxParameterSetSize);
 
-        // stop here if no statements
-        if (statsToken.stmtStats == null) {
-            return;
-        }
-
-        for (SingleCallStatsToken.PerStmtStats pss : statsToken.stmtStats) {
-            long stmtDuration = 0;
-            int stmtResultSize = 0;
-            int stmtParameterSetSize = 0;
-            if (pss.measurements != null) {
-                stmtDuration = pss.measurements.stmtDuration;
-                stmtResultSize = pss.measurements.stmtResultSize;
-                stmtParameterSetSize = pss.measurements.stmtParameterSetSize;
-            }
-
-            endFragment(pss.stmtName,
-                        pss.isCoordinatorTask,
-                        pss.stmtFailed,
-                        pss.measurements != null,
-                        stmtDuration,
-                        stmtResultSize,
-                        stmtParameterSetSize);
+        for (int i = 0; i < statsToken.stmtCount; i++) {
+            SingleCallStatsToken.PerStmtStats pss = statsToken.stmtStats[i];
+            recordFragment(pss.stmtName,
+                           pss.isCoordinatorTask,
+                           pss.stmtFailed,
+                           pss.measured,
+                           pss.stmtDuration,
+                           pss.stmtResultSize,
+                           pss.stmtParameterSetSize,
+                           epoch);
         }
     }
 
@@ -210,13 +258,44 @@ public class ProcedureStatsCollector extends SiteStatsSource {
      * This function will be called after a statement finish running.
      * It updates the data structures to maintain the statistics.
      */
-    public final synchronized void endFragment(String stmtName,
-                                               boolean isCoordinatorTask,
-                                               boolean failed,
-                                               boolean sampledStmt,
-                                               long duration,
-                                               int resultSize,
-                                               int parameterSetSize)
+    public final void endFragment(String stmtName,
+                                  boolean isCoordinatorTask,
+                                  boolean failed,
+                                  boolean sampledStmt,
+                                  long duration,
+                                  int resultSize,
+                                  int parameterSetSize)
+    {
+        if (m_isTransactional) {
+            beginRecording();
+            try {
+                recordFragment(stmtName, isCoordinatorTask, failed, sampledStmt, duration, resultSize,
+                               parameterSetSize, m_intervalEpoch);
+            } finally {
+                endRecording();
+            }
+        }
+        else {
+            synchronized (this) {
+                beginRecording();
+                try {
+                    recordFragment(stmtName, isCoordinatorTask, failed, sampledStmt, duration, resultSize,
+                                   parameterSetSize, m_intervalEpoch);
+                } finally {
+                    endRecording();
+                }
+            }
+        }
+    }
+
+    private void recordFragment(String stmtName,
+                                boolean isCoordinatorTask,
+                                boolean failed,
+                                boolean sampledStmt,
+                                long duration,
+                                int resultSize,
+                                int parameterSetSize,
+                                long epoch)
     {
         if (stmtName == null) {
             return;
@@ -226,6 +305,7 @@ public class ProcedureStatsCollector extends SiteStatsSource {
             return;
         }
         StatsData dataToUpdate = isCoordinatorTask ? stmtStats.m_coordinatorTask : stmtStats.m_workerTask;
+        dataToUpdate.startInterval(epoch);
         // m_failureCount and m_invocations need to be updated even if the current invocation is not sampled.
         if (failed) {
             dataToUpdate.m_failureCount++;
@@ -256,6 +336,7 @@ public class ProcedureStatsCollector extends SiteStatsSource {
         dataToUpdate.m_maxExecutionTime = Math.max(duration, dataToUpdate.m_maxExecutionTime);
         dataToUpdate.m_incrMinExecutionTime = Math.min(duration, dataToUpdate.m_incrMinExecutionTime);
         dataToUpdate.m_incrMaxExecutionTime = Math.max(duration, dataToUpdate.m_incrMaxExecutionTime);
+        stmtStats.recordLatency(duration);
 
         // sampled size statistics
         dataToUpdate.m_totalResultSize += resultSize;
@@ -370,9 +451,33 @@ public class ProcedureStatsCollector extends SiteStatsSource {
         columns.add(new VoltTable.ColumnInfo("TRANSACTIONAL", VoltType.TINYINT));
     }
 
+    /**
+     * Copy the statistics the site thread recorded into the snapshots the rows are built from.
+     * Reads are serialized by the monitor held by getStatsRows().
+     */
+    private void snapshot(boolean interval) {
+        if (interval) {
+            // the site thread starts the next interval the next time it records
+            m_intervalEpoch++;
+        }
+        final long epoch = m_intervalEpoch;
+        long seq;
+        do {
+            while (((seq = m_recordingSeq.get()) & 1) != 0) {
+                Thread.yield();
+            }
+            for (StatementStats stmtStats : m_stmtStatsMap.values()) {
+                stmtStats.snapshot(epoch);
+            }
+            // the copies have to complete before checking nothing was recorded meanwhile
+            Bits.unsafe.loadFence();
+        } while (seq != m_recordingSeq.get());
+    }
+
     @Override
     protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
         m_incremental = interval;
+        snapshot(interval);
         return new Iterator<Object>() {
             Iterator<Entry<String, StatementStats>> iter = m_stmtStatsMap.entrySet().iterator();
             StatementStats nextToReturn = null;
@@ -416,6 +521,29 @@ public class ProcedureStatsCollector extends SiteStatsSource {
         };
     }
 
+    String getProcName() {
+        return m_procName;
+    }
+
+    int getPartitionId() {
+        return m_partitionId;
+    }
+
+    /**
+     * The statistics of the whole procedure and of each of its statements, for sources that
+     * read what this collector records, e.g. {@link ProcedureHistogramStats}.
+     */
+    Collection<StatementStats> getStatementStats() {
+        return m_stmtStatsMap.values();
+    }
+
+    /**
+     * The statistics of the whole procedure, the "<ALL>" entry of {@link #getStatementStats()}.
+     */
+    StatementStats getProcedureStats() {
+        return m_procStats;
+    }
+
     @Override
     public String toString() {
         return m_procName;
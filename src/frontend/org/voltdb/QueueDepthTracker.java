@@ -19,12 +19,12 @@ package org.voltdb;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.iv2.SiteTasker;
+import org.voltdb.iv2.SiteTaskerQueue;
 
 /**
  * A class to track and generate statistics regarding queue depth.
@@ -39,7 +39,7 @@ public class QueueDepthTracker extends SiteStatsSource {
     private final AtomicInteger m_depth;
     private long m_lastWaitTime;
     private final ArrayBlockingQueue<QueueStatus> m_historicalData;
-    private LinkedTransferQueue<SiteTasker> m_tasks;
+    private SiteTaskerQueue m_tasks;
     private long m_maxWaitTimeWindowSize = 5_000_000_000L; // window size set to 5 seconds
     private long m_maxWaitLastLogTime;
     private volatile long m_recentMaxWaitTime;
@@ -61,10 +61,10 @@ public class QueueDepthTracker extends SiteStatsSource {
         }
     }
 
-    public QueueDepthTracker(long siteId, LinkedTransferQueue<SiteTasker> tasks) {
+    public QueueDepthTracker(long siteId, SiteTaskerQueue tasks) {
         super(siteId, false);
         m_historicalData = new ArrayBlockingQueue<>(10);
-        m_depth = new AtomicInteger(tasks.size());
+        m_depth = new AtomicInteger(0);
         m_lastWaitTime = 0;
         m_maxWaitLastLogTime = System.nanoTime();
         m_recentMaxWaitTime = 0;
@@ -80,7 +80,22 @@ public class QueueDepthTracker extends SiteStatsSource {
     public void pollUpdate(long offerTime) {
         m_depth.decrementAndGet();
         long currentTime = System.nanoTime();
-        m_lastWaitTime = currentTime - offerTime;
+        recordWait(currentTime, currentTime - offerTime);
+    }
+
+    /**
+     * Account for the first {@code count} tasks of {@code tasks} being dequeued together
+     */
+    public void pollUpdate(SiteTasker[] tasks, int count) {
+        m_depth.addAndGet(-count);
+        long currentTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            recordWait(currentTime, currentTime - tasks[i].getQueueOfferTime());
+        }
+    }
+
+    private void recordWait(long currentTime, long waitTime) {
+        m_lastWaitTime = waitTime;
         // if max wait time was last logged less than m_recentWindowSize ago
         // keep the max wait time in m_recentMaxWaitTime
         // or log and reset the recentMaxWaitTime, update last log time
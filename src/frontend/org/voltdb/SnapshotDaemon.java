@@ -217,6 +217,9 @@ public class SnapshotDaemon implements SnapshotCompletionInterest {
         VoltDB.instance().getStatsAgent().registerStatsSource(StatsSelector.SNAPSHOTSTATUS,
                                                               0,
                                                               snapshotStatus);
+        VoltDB.instance().getStatsAgent().registerStatsSource(StatsSelector.SNAPSHOTWRITE,
+                                                              0,
+                                                              new SnapshotWriteStats());
         VoltDB.instance().getSnapshotCompletionMonitor().addInterest(this);
     }
 
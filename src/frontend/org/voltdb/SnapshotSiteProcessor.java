@@ -299,6 +299,18 @@ public class SnapshotSiteProcessor {
         };
     }
 
+    /**
+     * Reschedule the work of every site that is snapshotting, used when
+     * the snapshot writes are no longer backpressured.
+     */
+    static void resumeSnapshotWork() {
+        synchronized (ExecutionSitesCurrentlySnapshotting) {
+            for (Object site : ExecutionSitesCurrentlySnapshotting) {
+                ((SnapshotSiteProcessor) site).rescheduleSnapshotWork();
+            }
+        }
+    }
+
     private void rescheduleSnapshotWork() {
         /*
          * If IV2 is enabled, don't run the potential snapshot work jigger
@@ -563,6 +575,14 @@ public class SnapshotSiteProcessor {
             return null;
         }
 
+        /*
+         * Don't serialize more while the disks are behind, the write service reschedules
+         * the work once they catch up. The blocking case waits for each write anyways.
+         */
+        if (!noSchedule && SnapshotWriteService.isBackpressured()) {
+            return null;
+        }
+
         /*
          * Try to serialize a block from a table, if the table is finished,
          * remove the tasks from the task map and move on to the next table. If a block is
@@ -0,0 +1,152 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
+
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Schedules the writes of {@link DefaultSnapshotDataTarget}s by the device their files are on.
+ *
+ * Each device gets its own write threads, so a slow or busy device doesn't hold up the
+ * others, and several files on one device are written in parallel. A target is assigned one
+ * of its device's threads when it is created and all of its writes happen on that thread,
+ * in the order they were handed over.
+ *
+ * The bytes handed to targets but not yet written are counted for the whole host, and
+ * {@link SnapshotSiteProcessor} stops serializing snapshot data while they are above
+ * SNAPSHOT_WRITE_QUEUE_MEGABYTES, so the EE can't get further ahead of the disks than that.
+ */
+public class SnapshotWriteService {
+    private static final VoltLogger SNAP_LOG = new VoltLogger("SNAPSHOT");
+
+    public static final int THREADS_PER_DEVICE =
+            Math.max(1, Integer.getInteger("SNAPSHOT_WRITE_THREADS_PER_DEVICE", 2));
+    // Up to this many bytes queued for a target go out in one gathering write
+    public static final int WRITE_BATCH_BYTES = Integer.getInteger("SNAPSHOT_WRITE_BATCH_BYTES", 1024 * 1024 * 8);
+    public static final long QUEUE_LIMIT_BYTES =
+            Integer.getInteger("SNAPSHOT_WRITE_QUEUE_MEGABYTES", 128) * 1024L * 1024L;
+    // Written but not yet synced bytes allowed per device
+    private static final int BYTES_ALLOWED_BEFORE_SYNC = (1024 * 1024) * 256;
+    // Idle write threads exit after this long
+    private static final long THREAD_KEEP_ALIVE_MS = 60 * 1000;
+
+    private static final Map<String, SnapshotWriteService> s_devices = new HashMap<String, SnapshotWriteService>();
+    private static final AtomicLong s_queuedBytes = new AtomicLong(0);
+    private static final Set<DefaultSnapshotDataTarget> s_targets =
+            Collections.newSetFromMap(new ConcurrentHashMap<DefaultSnapshotDataTarget, Boolean>());
+
+    private final String m_device;
+    private final ListeningExecutorService m_threads[];
+    private int m_nextThread = 0;
+    final Semaphore m_bytesAllowedBeforeSync = new Semaphore(BYTES_ALLOWED_BEFORE_SYNC);
+
+    private SnapshotWriteService(String device) {
+        m_device = device;
+        m_threads = new ListeningExecutorService[THREADS_PER_DEVICE];
+        for (int ii = 0; ii < THREADS_PER_DEVICE; ii++) {
+            m_threads[ii] = CoreUtils.getCachedSingleThreadExecutor(
+                    "Snapshot write service " + device + " " + ii, THREAD_KEEP_ALIVE_MS);
+        }
+    }
+
+    /**
+     * Get the write service of the device the file is going to be on.
+     */
+    static synchronized SnapshotWriteService forFile(File file) {
+        String device;
+        File dir = file.getAbsoluteFile().getParentFile();
+        try {
+            FileStore store = Files.getFileStore(dir.toPath());
+            device = store.name();
+        } catch (IOException e) {
+            // the write will most likely fail too, don't fail it here
+            SNAP_LOG.debug("Unable to find the device of snapshot directory " + dir, e);
+            device = dir.getPath();
+        }
+        SnapshotWriteService service = s_devices.get(device);
+        if (service == null) {
+            service = new SnapshotWriteService(device);
+            s_devices.put(device, service);
+        }
+        return service;
+    }
+
+    String getDevice() {
+        return m_device;
+    }
+
+    /**
+     * Assign a new target one of this device's write threads, in turn.
+     */
+    synchronized ListeningExecutorService nextThread() {
+        ListeningExecutorService thread = m_threads[m_nextThread];
+        m_nextThread = (m_nextThread + 1) % m_threads.length;
+        return thread;
+    }
+
+    static void queued(int bytes) {
+        s_queuedBytes.addAndGet(bytes);
+    }
+
+    static void written(int bytes) {
+        final long queued = s_queuedBytes.addAndGet(-bytes);
+        if (queued <= QUEUE_LIMIT_BYTES && queued + bytes > QUEUE_LIMIT_BYTES) {
+            // the sites stopped serializing snapshot data, they can go on now
+            SnapshotSiteProcessor.resumeSnapshotWork();
+        }
+    }
+
+    /**
+     * Whether more snapshot data is queued for writing than the limit
+     */
+    public static boolean isBackpressured() {
+        return s_queuedBytes.get() > QUEUE_LIMIT_BYTES;
+    }
+
+    static void register(DefaultSnapshotDataTarget target) {
+        s_targets.add(target);
+    }
+
+    static void deregister(DefaultSnapshotDataTarget target) {
+        s_targets.remove(target);
+    }
+
+    /**
+     * The targets that are currently open, for statistics
+     */
+    static List<DefaultSnapshotDataTarget> getTargets() {
+        return new ArrayList<DefaultSnapshotDataTarget>(s_targets);
+    }
+}
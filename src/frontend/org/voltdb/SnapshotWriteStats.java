@@ -0,0 +1,66 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import org.voltdb.VoltTable.ColumnInfo;
+
+/**
+ * A row for each snapshot file this host is writing, with the device it is on, what has
+ * been written to it so far and how much is still queued for it.
+ */
+public class SnapshotWriteStats extends StatsSource {
+
+    public SnapshotWriteStats() {
+        super(false);
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo("DEVICE", VoltType.STRING));
+        columns.add(new ColumnInfo("PATH", VoltType.STRING));
+        columns.add(new ColumnInfo("FILENAME", VoltType.STRING));
+        columns.add(new ColumnInfo("BYTES_WRITTEN", VoltType.BIGINT));
+        columns.add(new ColumnInfo("WRITES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("WRITE_TIME", VoltType.BIGINT));    // milliseconds
+        columns.add(new ColumnInfo("QUEUED_BYTES", VoltType.BIGINT));
+        columns.add(new ColumnInfo("THROUGHPUT", VoltType.FLOAT));     // megabytes per second
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        DefaultSnapshotDataTarget target = (DefaultSnapshotDataTarget) rowKey;
+        rowValues[columnNameToIndex.get("DEVICE")] = target.getDevice();
+        rowValues[columnNameToIndex.get("PATH")] = target.getFile().getParent();
+        rowValues[columnNameToIndex.get("FILENAME")] = target.getFile().getName();
+        rowValues[columnNameToIndex.get("BYTES_WRITTEN")] = target.getBytesWritten();
+        rowValues[columnNameToIndex.get("WRITES")] = target.getWriteCount();
+        rowValues[columnNameToIndex.get("WRITE_TIME")] = target.getWriteNanos() / 1000000;
+        rowValues[columnNameToIndex.get("QUEUED_BYTES")] = target.getQueuedBytes();
+        rowValues[columnNameToIndex.get("THROUGHPUT")] = target.getThroughput() / (1024.0 * 1024.0);
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        return new ArrayList<Object>(SnapshotWriteService.getTargets()).iterator();
+    }
+}
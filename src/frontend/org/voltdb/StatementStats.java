@@ -17,11 +17,17 @@
 
 package org.voltdb;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+
+import org.HdrHistogram_voltpatches.Histogram;
+import org.HdrHistogram_voltpatches.SingleWriterRecorder;
 
 /**
  * Record statistics for each statement in the stored procedure.
+ *
+ * The site thread running the procedure updates m_workerTask and m_coordinatorTask.
+ * Statistics requests copy them into the snapshots, which are what the accessors below
+ * read, and keep their baselines for interval statistics in the snapshots.
  */
 public final class StatementStats {
     /**
@@ -31,79 +37,119 @@ public final class StatementStats {
     String m_stmtName;
     StatsData m_coordinatorTask = null;
     StatsData m_workerTask;
+    StatsData m_coordinatorSnapshot = null;
+    StatsData m_workerSnapshot;
+
+    // Sampled execution times of both tasks, created when the first one is recorded.
+    // Only the thread recording the statistics writes to it.
+    private volatile SingleWriterRecorder m_latencyRecorder = null;
+    // Only used by ProcedureHistogramStats: everything taken from the recorder, and a copy
+    // of that as of the last interval read
+    Histogram m_latencyTotal = null;
+    Histogram m_latencyLastInterval = null;
 
     public StatementStats(String stmtName, boolean hasCoordinatorTask) {
         m_stmtName = stmtName;
         m_workerTask = new StatsData();
+        m_workerSnapshot = new StatsData();
         if (hasCoordinatorTask) {
             m_coordinatorTask = new StatsData();
+            m_coordinatorSnapshot = new StatsData();
+        }
+    }
+
+    /**
+     * Copy what the site thread has recorded into the snapshots.
+     * @param epoch  the current interval, the interval statistics are for the one before it
+     */
+    void snapshot(long epoch) {
+        m_workerSnapshot.copyFrom(m_workerTask, epoch);
+        if (m_coordinatorTask != null) {
+            m_coordinatorSnapshot.copyFrom(m_coordinatorTask, epoch);
+        }
+    }
+
+    /**
+     * Record a sampled execution time in the latency histogram.
+     * @param duration  execution time in nanoseconds
+     */
+    void recordLatency(long duration) {
+        SingleWriterRecorder recorder = m_latencyRecorder;
+        if (recorder == null) {
+            recorder = ProcedureHistogramStats.constructRecorder();
+            m_latencyRecorder = recorder;
         }
+        recorder.recordValue(ProcedureHistogramStats.toTrackableMicros(duration));
+    }
+
+    SingleWriterRecorder getLatencyRecorder() {
+        return m_latencyRecorder;
     }
 
     // Maybe the worker task got executed and timed multiple times, but all failed.
     // The coordinator task never got executed.
-    // So we do not only need to check if m_coordinatorTask != null, but also need to check
+    // So we do not only need to check if m_coordinatorSnapshot != null, but also need to check
     // if any coordinator task is executed at all.
     private boolean isCoordinatorStatsUsable(boolean incremental) {
-        if (m_coordinatorTask == null) {
+        if (m_coordinatorSnapshot == null) {
             return false;
         }
         if (incremental) {
-            return m_coordinatorTask.m_timedInvocations - m_coordinatorTask.m_lastTimedInvocations > 0;
+            return m_coordinatorSnapshot.m_timedInvocations - m_coordinatorSnapshot.m_lastTimedInvocations > 0;
         }
-        return m_coordinatorTask.m_timedInvocations > 0;
+        return m_coordinatorSnapshot.m_timedInvocations > 0;
     }
 
     // Below is a bunch of access functions to help merging the numbers from the coordinator task and the worker task.
     // ===============================================================================================================
 
-    // m_coordinatorTask may have fewer m_invocations than m_workerTask because m_workerTask
-    // failures can prevent m_coordinatorTask from further execution.
-    // So m_workerTask.m_invocations is accurate for the m_invocations number of the whole statement.
+    // m_coordinatorSnapshot may have fewer m_invocations than m_workerSnapshot because m_workerSnapshot
+    // failures can prevent m_coordinatorSnapshot from further execution.
+    // So m_workerSnapshot.m_invocations is accurate for the m_invocations number of the whole statement.
     // Same for the m_lastInvocations.
     // However, this does not mean the invocation counts for the coordinator task is useless.
     // We need to use them when calculating the min/max times and sizes. See below.
     public long getInvocations() {
-        return m_workerTask.m_invocations;
+        return m_workerSnapshot.m_invocations;
     }
 
     public long getLastInvocationsAndReset() {
-        long retval = m_workerTask.m_lastInvocations;
-        m_workerTask.m_lastInvocations = m_workerTask.m_invocations;
-        if (m_coordinatorTask != null) {
-            m_coordinatorTask.m_lastInvocations = m_coordinatorTask.m_invocations;
+        long retval = m_workerSnapshot.m_lastInvocations;
+        m_workerSnapshot.m_lastInvocations = m_workerSnapshot.m_invocations;
+        if (m_coordinatorSnapshot != null) {
+            m_coordinatorSnapshot.m_lastInvocations = m_coordinatorSnapshot.m_invocations;
         }
         return retval;
     }
 
     public long getTimedInvocations() {
-        return m_workerTask.m_timedInvocations;
+        return m_workerSnapshot.m_timedInvocations;
     }
 
     public long getLastTimedInvocations() {
-        return m_workerTask.m_lastTimedInvocations;
+        return m_workerSnapshot.m_lastTimedInvocations;
     }
 
     public long getLastTimedInvocationsAndReset() {
-        long retval = m_workerTask.m_lastTimedInvocations;
-        m_workerTask.m_lastTimedInvocations = m_workerTask.m_timedInvocations;
-        if (m_coordinatorTask != null) {
-            m_coordinatorTask.m_lastTimedInvocations = m_coordinatorTask.m_timedInvocations;
+        long retval = m_workerSnapshot.m_lastTimedInvocations;
+        m_workerSnapshot.m_lastTimedInvocations = m_workerSnapshot.m_timedInvocations;
+        if (m_coordinatorSnapshot != null) {
+            m_coordinatorSnapshot.m_lastTimedInvocations = m_coordinatorSnapshot.m_timedInvocations;
         }
         return retval;
     }
 
     public long getTotalTimedExecutionTime() {
-        return m_workerTask.m_totalTimedExecutionTime +
-                (m_coordinatorTask == null ? 0 : m_coordinatorTask.m_totalTimedExecutionTime);
+        return m_workerSnapshot.m_totalTimedExecutionTime +
+                (m_coordinatorSnapshot == null ? 0 : m_coordinatorSnapshot.m_totalTimedExecutionTime);
     }
 
     public long getLastTotalTimedExecutionTimeAndReset() {
-        long retval = m_workerTask.m_lastTotalTimedExecutionTime;
-        m_workerTask.m_lastTotalTimedExecutionTime = m_workerTask.m_totalTimedExecutionTime;
-        if (m_coordinatorTask != null) {
-            retval += m_coordinatorTask.m_lastTotalTimedExecutionTime;
-            m_coordinatorTask.m_lastTotalTimedExecutionTime = m_coordinatorTask.m_totalTimedExecutionTime;
+        long retval = m_workerSnapshot.m_lastTotalTimedExecutionTime;
+        m_workerSnapshot.m_lastTotalTimedExecutionTime = m_workerSnapshot.m_totalTimedExecutionTime;
+        if (m_coordinatorSnapshot != null) {
+            retval += m_coordinatorSnapshot.m_lastTotalTimedExecutionTime;
+            m_coordinatorSnapshot.m_lastTotalTimedExecutionTime = m_coordinatorSnapshot.m_totalTimedExecutionTime;
         }
         return retval;
     }
@@ -112,139 +158,139 @@ public final class StatementStats {
     // The answer is NO. This is an approximation.
     public long getMinExecutionTime() {
         if (isCoordinatorStatsUsable(false)) {
-            return m_workerTask.m_minExecutionTime + m_coordinatorTask.m_minExecutionTime;
+            return m_workerSnapshot.m_minExecutionTime + m_coordinatorSnapshot.m_minExecutionTime;
         }
-        return m_workerTask.m_minExecutionTime;
+        return m_workerSnapshot.m_minExecutionTime;
     }
 
     public long getIncrementalMinExecutionTimeAndReset() {
-        long retval = m_workerTask.m_incrMinExecutionTime;
+        long retval = m_workerSnapshot.m_incrMinExecutionTime;
         if (isCoordinatorStatsUsable(true)) {
-            retval += m_coordinatorTask.m_incrMinExecutionTime;
-            m_coordinatorTask.m_incrMinExecutionTime = Long.MAX_VALUE;
+            retval += m_coordinatorSnapshot.m_incrMinExecutionTime;
+            m_coordinatorSnapshot.m_incrMinExecutionTime = Long.MAX_VALUE;
         }
-        m_workerTask.m_incrMinExecutionTime = Long.MAX_VALUE;
+        m_workerSnapshot.m_incrMinExecutionTime = Long.MAX_VALUE;
         return retval;
     }
 
     public long getMaxExecutionTime() {
         if (isCoordinatorStatsUsable(false)) {
-            return m_workerTask.m_maxExecutionTime + m_coordinatorTask.m_maxExecutionTime;
+            return m_workerSnapshot.m_maxExecutionTime + m_coordinatorSnapshot.m_maxExecutionTime;
         }
-        return m_workerTask.m_maxExecutionTime;
+        return m_workerSnapshot.m_maxExecutionTime;
     }
 
     public long getIncrementalMaxExecutionTimeAndReset() {
-        long retval = m_workerTask.m_incrMaxExecutionTime;
+        long retval = m_workerSnapshot.m_incrMaxExecutionTime;
         if (isCoordinatorStatsUsable(true)) {
-            retval += m_coordinatorTask.m_incrMaxExecutionTime;
-            m_coordinatorTask.m_incrMaxExecutionTime = Long.MIN_VALUE;
+            retval += m_coordinatorSnapshot.m_incrMaxExecutionTime;
+            m_coordinatorSnapshot.m_incrMaxExecutionTime = Long.MIN_VALUE;
         }
-        m_workerTask.m_incrMaxExecutionTime = Long.MIN_VALUE;
+        m_workerSnapshot.m_incrMaxExecutionTime = Long.MIN_VALUE;
         return retval;
     }
 
     public long getAbortCount() {
-        return m_workerTask.m_abortCount;
+        return m_workerSnapshot.m_abortCount;
     }
 
     public long getLastAbortCountAndReset() {
         // Only the whole procedure can abort and the procedure stats does not have a coordinator task.
-        long retval = m_workerTask.m_lastAbortCount;
-        m_workerTask.m_lastAbortCount = m_workerTask.m_abortCount;
+        long retval = m_workerSnapshot.m_lastAbortCount;
+        m_workerSnapshot.m_lastAbortCount = m_workerSnapshot.m_abortCount;
         return retval;
     }
 
     public long getFailureCount() {
-        return m_workerTask.m_failureCount +
-                (m_coordinatorTask == null ? 0 : m_coordinatorTask.m_failureCount);
+        return m_workerSnapshot.m_failureCount +
+                (m_coordinatorSnapshot == null ? 0 : m_coordinatorSnapshot.m_failureCount);
     }
 
     public long getLastFailureCountAndReset() {
-        long retval = m_workerTask.m_lastFailureCount;
-        m_workerTask.m_lastFailureCount = m_workerTask.m_failureCount;
-        if (m_coordinatorTask != null) {
-            retval += m_coordinatorTask.m_lastFailureCount;
-            m_coordinatorTask.m_lastFailureCount = m_coordinatorTask.m_failureCount;
+        long retval = m_workerSnapshot.m_lastFailureCount;
+        m_workerSnapshot.m_lastFailureCount = m_workerSnapshot.m_failureCount;
+        if (m_coordinatorSnapshot != null) {
+            retval += m_coordinatorSnapshot.m_lastFailureCount;
+            m_coordinatorSnapshot.m_lastFailureCount = m_coordinatorSnapshot.m_failureCount;
         }
         return retval;
     }
 
     public int getMinResultSize() {
-        return m_workerTask.m_minResultSize;
+        return m_workerSnapshot.m_minResultSize;
     }
 
     // The result size should be taken from the final output, coming from the coordinator task.
     public int getIncrementalMinResultSizeAndReset() {
-        int retval = m_workerTask.m_incrMinResultSize;
-        m_workerTask.m_incrMinResultSize = Integer.MAX_VALUE;
+        int retval = m_workerSnapshot.m_incrMinResultSize;
+        m_workerSnapshot.m_incrMinResultSize = Integer.MAX_VALUE;
         if (isCoordinatorStatsUsable(true)) {
-            m_coordinatorTask.m_incrMinResultSize = Integer.MAX_VALUE;
+            m_coordinatorSnapshot.m_incrMinResultSize = Integer.MAX_VALUE;
         }
         return retval;
     }
 
     public int getMaxResultSize() {
-        return m_workerTask.m_maxResultSize;
+        return m_workerSnapshot.m_maxResultSize;
     }
 
     public int getIncrementalMaxResultSizeAndReset() {
-        int retval = m_workerTask.m_incrMaxResultSize;
-        m_workerTask.m_incrMaxResultSize = Integer.MIN_VALUE;
+        int retval = m_workerSnapshot.m_incrMaxResultSize;
+        m_workerSnapshot.m_incrMaxResultSize = Integer.MIN_VALUE;
         if (isCoordinatorStatsUsable(true)) {
-            m_coordinatorTask.m_incrMaxResultSize = Integer.MIN_VALUE;
+            m_coordinatorSnapshot.m_incrMaxResultSize = Integer.MIN_VALUE;
         }
         return retval;
     }
 
     public long getTotalResultSize() {
-        return m_workerTask.m_totalResultSize;
+        return m_workerSnapshot.m_totalResultSize;
     }
 
     public long getLastTotalResultSizeAndReset() {
-        long retval = m_workerTask.m_lastTotalResultSize;
-        m_workerTask.m_lastTotalResultSize = m_workerTask.m_totalResultSize;
+        long retval = m_workerSnapshot.m_lastTotalResultSize;
+        m_workerSnapshot.m_lastTotalResultSize = m_workerSnapshot.m_totalResultSize;
         if (isCoordinatorStatsUsable(true)) {
-            m_coordinatorTask.m_lastTotalResultSize = m_coordinatorTask.m_totalResultSize;
+            m_coordinatorSnapshot.m_lastTotalResultSize = m_coordinatorSnapshot.m_totalResultSize;
         }
         return retval;
     }
 
     public int getMinParameterSetSize() {
-        return m_workerTask.m_minParameterSetSize;
+        return m_workerSnapshot.m_minParameterSetSize;
     }
 
     public int getIncrementalMinParameterSetSizeAndReset() {
-        int retval = m_workerTask.m_incrMinParameterSetSize;
-        m_workerTask.m_incrMinResultSize = Integer.MAX_VALUE;
-        if (m_coordinatorTask != null) {
-            m_coordinatorTask.m_incrMinResultSize = Integer.MAX_VALUE;
+        int retval = m_workerSnapshot.m_incrMinParameterSetSize;
+        m_workerSnapshot.m_incrMinResultSize = Integer.MAX_VALUE;
+        if (m_coordinatorSnapshot != null) {
+            m_coordinatorSnapshot.m_incrMinResultSize = Integer.MAX_VALUE;
         }
         return retval;
     }
 
     public int getMaxParameterSetSize() {
-        return m_workerTask.m_maxParameterSetSize;
+        return m_workerSnapshot.m_maxParameterSetSize;
     }
 
     public int getIncrementalMaxParameterSetSizeAndReset() {
-        int retval = m_workerTask.m_incrMaxParameterSetSize;
-        m_workerTask.m_incrMaxResultSize = Integer.MIN_VALUE;
-        if (m_coordinatorTask != null) {
-            m_coordinatorTask.m_incrMaxResultSize = Integer.MIN_VALUE;
+        int retval = m_workerSnapshot.m_incrMaxParameterSetSize;
+        m_workerSnapshot.m_incrMaxResultSize = Integer.MIN_VALUE;
+        if (m_coordinatorSnapshot != null) {
+            m_coordinatorSnapshot.m_incrMaxResultSize = Integer.MIN_VALUE;
         }
         return retval;
     }
 
     public long getTotalParameterSetSize() {
-        return m_workerTask.m_totalParameterSetSize;
+        return m_workerSnapshot.m_totalParameterSetSize;
     }
 
     public long getLastTotalParameterSetSizeAndReset() {
-        long retval = m_workerTask.m_lastTotalParameterSetSize;
-        m_workerTask.m_lastTotalParameterSetSize = m_workerTask.m_totalParameterSetSize;
-        if (m_coordinatorTask != null) {
-            m_coordinatorTask.m_lastTotalParameterSetSize = m_coordinatorTask.m_totalParameterSetSize;
+        long retval = m_workerSnapshot.m_lastTotalParameterSetSize;
+        m_workerSnapshot.m_lastTotalParameterSetSize = m_workerSnapshot.m_totalParameterSetSize;
+        if (m_coordinatorSnapshot != null) {
+            m_coordinatorSnapshot.m_lastTotalParameterSetSize = m_coordinatorSnapshot.m_totalParameterSetSize;
         }
         return retval;
     }
@@ -256,48 +302,26 @@ public final class StatementStats {
      * When the procedure is done (commit/abort/whatever), this token is given
      * to the ProcedureStatsCollector in a single (thread-safe) call.
      *
+     * Transactional procedures only run on their site thread, one at a time,
+     * so their collector hands out the same token for every call.
      */
     public static final class SingleCallStatsToken {
-        class PerStmtStats {
-            final String stmtName;
-            final boolean isCoordinatorTask;
-            final boolean stmtFailed;
-            final MeasuredStmtStats measurements;
-
-            PerStmtStats(String stmtName,
-                    boolean isCoordinatorTask,
-                    boolean failed,
-                    MeasuredStmtStats measurements)
-            {
-                this.stmtName = stmtName;
-                this.isCoordinatorTask = isCoordinatorTask;
-                this.stmtFailed = failed;
-                this.measurements = measurements;
-            }
-        }
-
-        /**
-         * Per-statment stats
-         */
-        class MeasuredStmtStats {
-            final long stmtDuration;
-            final int stmtResultSize;
-            final int stmtParameterSetSize;
-
-            MeasuredStmtStats(long duration,
-                              int resultSize,
-                              int paramSetSize)
-            {
-                this.stmtDuration = duration;
-                this.stmtResultSize = resultSize;
-                this.stmtParameterSetSize = paramSetSize;
-            }
+        static final class PerStmtStats {
+            String stmtName;
+            boolean isCoordinatorTask;
+            boolean stmtFailed;
+            // whether the statement was sampled and the measurements below are valid
+            boolean measured;
+            long stmtDuration;
+            int stmtResultSize;
+            int stmtParameterSetSize;
         }
 
-        final long startTimeNanos;
-        final boolean samplingStatements;
-        // stays null until used
-        List<PerStmtStats> stmtStats = null;
+        long startTimeNanos;
+        boolean samplingStatements;
+        // stays null until used, the entries are reused by later calls
+        PerStmtStats[] stmtStats = null;
+        int stmtCount = 0;
 
         int parameterSetSize = 0;
         int resultSize = 0;
@@ -307,6 +331,17 @@ public final class StatementStats {
             this.samplingStatements = samplingStatements;
         }
 
+        /**
+         * Start collecting for another call.
+         */
+        void reset(long startTimeNanos, boolean samplingStatements) {
+            this.startTimeNanos = startTimeNanos;
+            this.samplingStatements = samplingStatements;
+            stmtCount = 0;
+            parameterSetSize = 0;
+            resultSize = 0;
+        }
+
         public boolean samplingProcedure() {
             return startTimeNanos != 0;
         }
@@ -340,26 +375,34 @@ public final class StatementStats {
                                          ParameterSet parameterSet)
         {
             if (stmtStats == null) {
-                stmtStats = new ArrayList<>();
+                stmtStats = new PerStmtStats[8];
             }
-
-            MeasuredStmtStats measuredStmtStats = null;
+            else if (stmtCount == stmtStats.length) {
+                stmtStats = Arrays.copyOf(stmtStats, stmtCount * 2);
+            }
+            PerStmtStats pss = stmtStats[stmtCount];
+            if (pss == null) {
+                pss = new PerStmtStats();
+                stmtStats[stmtCount] = pss;
+            }
+            stmtCount++;
+
+            pss.stmtName = stmtName;
+            pss.isCoordinatorTask = isCoordinatorTask;
+            pss.stmtFailed = failed;
+            pss.measured = samplingStatements;
+            pss.stmtDuration = 0;
+            pss.stmtResultSize = 0;
+            pss.stmtParameterSetSize = 0;
             if (samplingStatements) {
-                int stmtResultSize = 0;
+                pss.stmtDuration = duration;
                 if (result != null) {
-                    stmtResultSize = result.getSerializedSize();
+                    pss.stmtResultSize = result.getSerializedSize();
                 }
-                int stmtParamSize = 0;
                 if (parameterSet != null) {
-                    stmtParamSize += parameterSet.getSerializedSize();
+                    pss.stmtParameterSetSize = parameterSet.getSerializedSize();
                 }
-                measuredStmtStats = new MeasuredStmtStats(duration, stmtResultSize, stmtParamSize);
             }
-
-            stmtStats.add(new PerStmtStats(stmtName,
-                                           isCoordinatorTask,
-                                           failed,
-                                           measuredStmtStats));
         }
     }
 
@@ -441,5 +484,94 @@ public final class StatementStats {
          */
         long m_totalParameterSetSize = 0;
         long m_lastTotalParameterSetSize = 0;
+
+        /**
+         * The interval the site thread collected the m_incr* values in, and the values it
+         * collected in the interval before that. Not used in the snapshots.
+         */
+        long m_intervalEpoch = 0;
+        long m_prevIntervalEpoch = -1;
+        long m_prevIncrMinExecutionTime = Long.MAX_VALUE;
+        long m_prevIncrMaxExecutionTime = Long.MIN_VALUE;
+        int m_prevIncrMinResultSize = Integer.MAX_VALUE;
+        int m_prevIncrMaxResultSize = Integer.MIN_VALUE;
+        int m_prevIncrMinParameterSetSize = Integer.MAX_VALUE;
+        int m_prevIncrMaxParameterSetSize = Integer.MIN_VALUE;
+
+        /**
+         * Called by the site thread before recording, starts collecting the interval minimums
+         * and maximums over if statistics have been requested for the interval since.
+         */
+        void startInterval(long epoch) {
+            if (m_intervalEpoch == epoch) {
+                return;
+            }
+            m_prevIntervalEpoch = m_intervalEpoch;
+            m_prevIncrMinExecutionTime = m_incrMinExecutionTime;
+            m_prevIncrMaxExecutionTime = m_incrMaxExecutionTime;
+            m_prevIncrMinResultSize = m_incrMinResultSize;
+            m_prevIncrMaxResultSize = m_incrMaxResultSize;
+            m_prevIncrMinParameterSetSize = m_incrMinParameterSetSize;
+            m_prevIncrMaxParameterSetSize = m_incrMaxParameterSetSize;
+            m_intervalEpoch = epoch;
+            m_incrMinExecutionTime = Long.MAX_VALUE;
+            m_incrMaxExecutionTime = Long.MIN_VALUE;
+            m_incrMinResultSize = Integer.MAX_VALUE;
+            m_incrMaxResultSize = Integer.MIN_VALUE;
+            m_incrMinParameterSetSize = Integer.MAX_VALUE;
+            m_incrMaxParameterSetSize = Integer.MIN_VALUE;
+        }
+
+        /**
+         * Copy the totals the site thread recorded into this snapshot, along with the
+         * minimums and maximums of the interval before the given one. Leaves the baselines
+         * of the interval statistics alone.
+         */
+        void copyFrom(StatsData live, long epoch) {
+            m_invocations = live.m_invocations;
+            m_timedInvocations = live.m_timedInvocations;
+            m_totalTimedExecutionTime = live.m_totalTimedExecutionTime;
+            m_minExecutionTime = live.m_minExecutionTime;
+            m_maxExecutionTime = live.m_maxExecutionTime;
+            m_abortCount = live.m_abortCount;
+            m_failureCount = live.m_failureCount;
+            m_minResultSize = live.m_minResultSize;
+            m_maxResultSize = live.m_maxResultSize;
+            m_totalResultSize = live.m_totalResultSize;
+            m_minParameterSetSize = live.m_minParameterSetSize;
+            m_maxParameterSetSize = live.m_maxParameterSetSize;
+            m_totalParameterSetSize = live.m_totalParameterSetSize;
+
+            m_incrMinExecutionTime = Long.MAX_VALUE;
+            m_incrMaxExecutionTime = Long.MIN_VALUE;
+            m_incrMinResultSize = Integer.MAX_VALUE;
+            m_incrMaxResultSize = Integer.MIN_VALUE;
+            m_incrMinParameterSetSize = Integer.MAX_VALUE;
+            m_incrMaxParameterSetSize = Integer.MIN_VALUE;
+            if (live.m_intervalEpoch == epoch - 1 || live.m_intervalEpoch == epoch) {
+                // Anything already recorded in the current interval is in the totals being
+                // copied, so its minimums and maximums go with them. They are reported
+                // again with the next interval.
+                mergeIncremental(live.m_incrMinExecutionTime, live.m_incrMaxExecutionTime,
+                                 live.m_incrMinResultSize, live.m_incrMaxResultSize,
+                                 live.m_incrMinParameterSetSize, live.m_incrMaxParameterSetSize);
+            }
+            if (live.m_prevIntervalEpoch == epoch - 1) {
+                mergeIncremental(live.m_prevIncrMinExecutionTime, live.m_prevIncrMaxExecutionTime,
+                                 live.m_prevIncrMinResultSize, live.m_prevIncrMaxResultSize,
+                                 live.m_prevIncrMinParameterSetSize, live.m_prevIncrMaxParameterSetSize);
+            }
+        }
+
+        private void mergeIncremental(long minExecutionTime, long maxExecutionTime,
+                                      int minResultSize, int maxResultSize,
+                                      int minParameterSetSize, int maxParameterSetSize) {
+            m_incrMinExecutionTime = Math.min(m_incrMinExecutionTime, minExecutionTime);
+            m_incrMaxExecutionTime = Math.max(m_incrMaxExecutionTime, maxExecutionTime);
+            m_incrMinResultSize = Math.min(m_incrMinResultSize, minResultSize);
+            m_incrMaxResultSize = Math.max(m_incrMaxResultSize, maxResultSize);
+            m_incrMinParameterSetSize = Math.min(m_incrMinParameterSetSize, minParameterSetSize);
+            m_incrMaxParameterSetSize = Math.max(m_incrMaxParameterSetSize, maxParameterSetSize);
+        }
     }
 }
@@ -74,6 +74,9 @@ public class StatsAgent extends OpsAgent
             request.aggregateTables =
             aggregateProcedureOutputStats(request.aggregateTables);
             break;
+        case PROCEDUREHISTOGRAM:
+            request.aggregateTables = ProcedureHistogramStats.aggregate(request.aggregateTables);
+            break;
         case DRROLE:
             request.aggregateTables = aggregateDRRoleStats(request.aggregateTables);
             break;
@@ -304,6 +307,8 @@ public class StatsAgent extends OpsAgent
         m_procInfo = getProcInfoSupplier();
         m_registeredStatsSources.put(StatsSelector.PROCEDURE,
                 new NonBlockingHashMap<Long, NonBlockingHashSet<StatsSource>>());
+        m_registeredStatsSources.put(StatsSelector.PROCEDUREHISTOGRAM,
+                new NonBlockingHashMap<Long, NonBlockingHashSet<StatsSource>>());
     }
 
     @Override
@@ -489,6 +494,9 @@ public class StatsAgent extends OpsAgent
         case SNAPSHOTSTATUS:
             stats = collectStats(StatsSelector.SNAPSHOTSTATUS, false);
             break;
+        case SNAPSHOTWRITE:
+            stats = collectStats(StatsSelector.SNAPSHOTWRITE, false);
+            break;
         case MEMORY:
             stats = collectStats(StatsSelector.MEMORY, interval);
             break;
@@ -514,6 +522,9 @@ public class StatsAgent extends OpsAgent
         case PROCEDUREDETAIL:
             stats = collectStats(StatsSelector.PROCEDURE, interval);
             break;
+        case PROCEDUREHISTOGRAM:
+            stats = collectStats(StatsSelector.PROCEDUREHISTOGRAM, interval);
+            break;
         case STARVATION:
             stats = collectStats(StatsSelector.STARVATION, interval);
             break;
@@ -559,6 +570,9 @@ public class StatsAgent extends OpsAgent
         case IMPORTER:
             stats = collectStats(StatsSelector.IMPORTER, interval);
             break;
+        case EXPORT:
+            stats = collectStats(StatsSelector.EXPORT, interval);
+            break;
         case DRROLE:
             stats = collectStats(StatsSelector.DRROLE, false);
             break;
@@ -34,9 +34,11 @@ public enum StatsSelector {
     MANAGEMENT,       // Returns pretty much everything
     PROCEDUREPROFILE, // performs an aggregation of the procedure statistics
     SNAPSHOTSTATUS,
+    SNAPSHOTWRITE,    // throughput and queued bytes of the snapshot files being written
     PROCEDUREINPUT,
     PROCEDUREOUTPUT,
     PROCEDUREDETAIL,  // provides more granular statistics for procedure calls at a per-statement level.
+    PROCEDUREHISTOGRAM, // latency percentiles per procedure and statement, merged across the cluster
 
     /*
      * DRPRODUCERPARTITION and DRPRODUCERNODE are internal names
@@ -60,5 +62,6 @@ public enum StatsSelector {
     GC,             // return GC Stats
 
     COMMANDLOG,     // return number of outstanding bytes and txns on this node
-    IMPORTER
+    IMPORTER,
+    EXPORT          // return export ack statistics per source
 }
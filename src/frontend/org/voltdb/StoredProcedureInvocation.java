@@ -410,6 +410,9 @@ public class StoredProcedureInvocation implements JSONString {
             case VERSION2:
                 initVersion2FromBuffer(buf);
                 break;
+            case BATCH:
+                // batches are unpacked by the client interface, a single invocation can't be one
+                throw new IOException("Unexpected invocation batch in invocation deserialization.");
         }
     }
 
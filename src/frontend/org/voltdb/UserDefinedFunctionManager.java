@@ -18,10 +18,14 @@
 package org.voltdb;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import org.hsqldb_voltpatches.FunctionForVoltDB;
 import org.voltcore.logging.VoltLogger;
@@ -103,6 +107,10 @@ public class UserDefinedFunctionManager {
     /**
      * This class maintains the necessary information for each UDF including the class instance and
      * the method ID for the UDF implementation. We run UDFs from this runner.
+     *
+     * The UDF method is bound once, when the runner is built, to method handles that read each
+     * argument straight from the UDF buffer with a reader specialized for its type. Primitive
+     * arguments and results are never boxed, and no argument array is allocated per call.
      */
     public static class UserDefinedFunctionRunner {
         final String m_functionName;
@@ -113,9 +121,64 @@ public class UserDefinedFunctionManager {
         final boolean[] m_boxUpByteArray;
         final VoltType m_returnType;
         final int m_paramCount;
+        // (ByteBuffer)Object: reads the arguments, invokes the function and returns its result.
+        final MethodHandle m_invoker;
+        // (ByteBuffer)void: reads the arguments, invokes the function, then clears the buffer and
+        // writes the result into it. Null if the function has a variable-length return type.
+        final MethodHandle m_invokeAndWriteResult;
+        // (ByteBuffer, ByteBuffer)void: reads one row of arguments from the first buffer, invokes the
+        // function and appends the result to the second one. Null if m_invokeAndWriteResult is null.
+        final MethodHandle m_invokeAndAppendResult;
 
         static final int VAR_LEN_SIZE = Integer.SIZE/8;
 
+        private static final MethodHandle GET_VALUE_FROM_BUFFER;
+        private static final MethodHandle BOX_UP_BYTE_ARRAY;
+        private static final MethodHandle WRITE_VALUE_TO_BUFFER;
+        private static final MethodHandle CLEAR_BUFFER;
+        private static final ImmutableMap<VoltType, MethodHandle> PRIMITIVE_READERS;
+        private static final ImmutableMap<VoltType, MethodHandle> PRIMITIVE_WRITERS;
+        static {
+            final MethodHandles.Lookup lookup = MethodHandles.lookup();
+            try {
+                GET_VALUE_FROM_BUFFER = lookup.findStatic(UserDefinedFunctionRunner.class, "getValueFromBuffer",
+                        MethodType.methodType(Object.class, ByteBuffer.class, VoltType.class));
+                BOX_UP_BYTE_ARRAY = lookup.findStatic(SerializationHelper.class, "boxUpByteArray",
+                        MethodType.methodType(Byte[].class, byte[].class));
+                WRITE_VALUE_TO_BUFFER = lookup.findStatic(UserDefinedFunctionRunner.class, "writeValueToBuffer",
+                        MethodType.methodType(void.class, ByteBuffer.class, VoltType.class, Object.class));
+                CLEAR_BUFFER = lookup.findStatic(UserDefinedFunctionRunner.class, "clearBuffer",
+                        MethodType.methodType(ByteBuffer.class, ByteBuffer.class));
+                PRIMITIVE_READERS = ImmutableMap.<VoltType, MethodHandle>builder()
+                        .put(VoltType.TINYINT, lookup.findVirtual(ByteBuffer.class, "get",
+                                MethodType.methodType(byte.class)))
+                        .put(VoltType.SMALLINT, lookup.findVirtual(ByteBuffer.class, "getShort",
+                                MethodType.methodType(short.class)))
+                        .put(VoltType.INTEGER, lookup.findVirtual(ByteBuffer.class, "getInt",
+                                MethodType.methodType(int.class)))
+                        .put(VoltType.BIGINT, lookup.findVirtual(ByteBuffer.class, "getLong",
+                                MethodType.methodType(long.class)))
+                        .put(VoltType.FLOAT, lookup.findVirtual(ByteBuffer.class, "getDouble",
+                                MethodType.methodType(double.class)))
+                        .build();
+                PRIMITIVE_WRITERS = ImmutableMap.<VoltType, MethodHandle>builder()
+                        .put(VoltType.TINYINT, lookup.findStatic(UserDefinedFunctionRunner.class, "writeTinyInt",
+                                MethodType.methodType(void.class, ByteBuffer.class, byte.class)))
+                        .put(VoltType.SMALLINT, lookup.findStatic(UserDefinedFunctionRunner.class, "writeSmallInt",
+                                MethodType.methodType(void.class, ByteBuffer.class, short.class)))
+                        .put(VoltType.INTEGER, lookup.findStatic(UserDefinedFunctionRunner.class, "writeInteger",
+                                MethodType.methodType(void.class, ByteBuffer.class, int.class)))
+                        .put(VoltType.BIGINT, lookup.findStatic(UserDefinedFunctionRunner.class, "writeBigInt",
+                                MethodType.methodType(void.class, ByteBuffer.class, long.class)))
+                        .put(VoltType.FLOAT, lookup.findStatic(UserDefinedFunctionRunner.class, "writeFloat",
+                                MethodType.methodType(void.class, ByteBuffer.class, double.class)))
+                        .build();
+            }
+            catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
         public UserDefinedFunctionRunner(Function catalogFunction, Object funcInstance) {
             m_functionName = catalogFunction.getFunctionname();
             m_functionId = catalogFunction.getFunctionid();
@@ -153,6 +216,28 @@ public class UserDefinedFunctionManager {
             }
             m_returnType = VoltType.typeFromClass(m_functionMethod.getReturnType());
 
+            MethodHandle function;
+            try {
+                function = MethodHandles.lookup().unreflect(m_functionMethod).bindTo(m_functionInstance);
+            }
+            catch (IllegalAccessException e) {
+                throw new RuntimeException(
+                        String.format("Error loading function %s: cannot access the %s() method.",
+                                m_functionName, methodName), e);
+            }
+            MethodHandle invoker = readArgumentsFromBuffer(function);
+            m_invoker = invoker.asType(MethodType.methodType(Object.class, ByteBuffer.class));
+            if (m_returnType.isVariableLength()) {
+                m_invokeAndWriteResult = null;
+                m_invokeAndAppendResult = null;
+            }
+            else {
+                MethodHandle appender = resultAppender(invoker.type().returnType());
+                m_invokeAndWriteResult = MethodHandles.foldArguments(
+                        MethodHandles.filterArguments(appender, 1, CLEAR_BUFFER), invoker);
+                m_invokeAndAppendResult = MethodHandles.filterArguments(appender, 0, invoker);
+            }
+
             m_logger.debug(String.format("The user-defined function manager is defining function %s (ID = %s)",
                     m_functionName, m_functionId));
 
@@ -165,6 +250,105 @@ public class UserDefinedFunctionManager {
                                                   m_paramTypes);
         }
 
+        /**
+         * Build a (ByteBuffer)R handle which reads each argument of the (P0, ..., Pn-1)R function
+         * from the buffer, in order, with the reader for its VoltType.
+         *
+         * foldArguments() runs the combiner before the target, so each level reads one argument
+         * and prepends it to the argument list of the next level. The arguments accumulate in
+         * reverse order and are put back in declaration order before calling the function.
+         */
+        private MethodHandle readArgumentsFromBuffer(MethodHandle function) {
+            final int n = m_paramCount;
+            final Class<?>[] paramClasses = function.type().parameterArray();
+            MethodHandle target = MethodHandles.dropArguments(function, n, ByteBuffer.class);
+            if (n == 0) {
+                return target;
+            }
+            // (Pn-1, ..., P0, ByteBuffer)R
+            Class<?>[] reversed = new Class<?>[n + 1];
+            int[] reorder = new int[n + 1];
+            for (int i = 0; i < n; i++) {
+                reversed[n - 1 - i] = paramClasses[i];
+                reorder[i] = n - 1 - i;
+            }
+            reversed[n] = ByteBuffer.class;
+            reorder[n] = n;
+            target = MethodHandles.permuteArguments(target,
+                    MethodType.methodType(target.type().returnType(), reversed), reorder);
+            for (int i = n - 1; i >= 0; i--) {
+                // The reader ignores the arguments read before it: (Pi-1, ..., P0, ByteBuffer)Pi
+                MethodHandle reader = MethodHandles.dropArguments(argumentReader(i, paramClasses[i]), 0,
+                        Arrays.copyOfRange(reversed, n - i, n));
+                target = MethodHandles.foldArguments(target, reader);
+            }
+            return target;
+        }
+
+        /**
+         * (ByteBuffer)P reader for parameter i declared as class P.
+         */
+        private MethodHandle argumentReader(int i, Class<?> paramClass) {
+            MethodHandle reader = PRIMITIVE_READERS.get(m_paramTypes[i]);
+            if (reader == null) {
+                reader = MethodHandles.insertArguments(GET_VALUE_FROM_BUFFER, 1, m_paramTypes[i]);
+                if (m_boxUpByteArray[i]) {
+                    reader = MethodHandles.filterReturnValue(
+                            reader.asType(MethodType.methodType(byte[].class, ByteBuffer.class)),
+                            BOX_UP_BYTE_ARRAY);
+                }
+            }
+            // Unboxed or boxed, narrowed or widened: same conversions reflection used to accept.
+            return MethodHandles.explicitCastArguments(reader, MethodType.methodType(paramClass, ByteBuffer.class));
+        }
+
+        /**
+         * (R, ByteBuffer)void writer which puts a function result of class R at the current buffer position.
+         */
+        private MethodHandle resultAppender(Class<?> resultClass) {
+            MethodHandle writer = resultClass.isPrimitive() ? PRIMITIVE_WRITERS.get(m_returnType) : null;
+            if (writer == null) {
+                writer = MethodHandles.insertArguments(WRITE_VALUE_TO_BUFFER, 1, m_returnType);
+            }
+            writer = MethodHandles.explicitCastArguments(writer,
+                    MethodType.methodType(void.class, ByteBuffer.class, resultClass));
+            return MethodHandles.permuteArguments(writer,
+                    MethodType.methodType(void.class, resultClass, ByteBuffer.class), 1, 0);
+        }
+
+        // The primitive result writers encode a null sentinel value as the sentinel value itself,
+        // which is what the boxed path writes for a null result.
+
+        private static void writeTinyInt(ByteBuffer buffer, byte value) {
+            buffer.put(VoltType.TINYINT.getValue());
+            buffer.put(value);
+        }
+
+        private static void writeSmallInt(ByteBuffer buffer, short value) {
+            buffer.put(VoltType.SMALLINT.getValue());
+            buffer.putShort(value);
+        }
+
+        private static void writeInteger(ByteBuffer buffer, int value) {
+            buffer.put(VoltType.INTEGER.getValue());
+            buffer.putInt(value);
+        }
+
+        private static void writeBigInt(ByteBuffer buffer, long value) {
+            buffer.put(VoltType.BIGINT.getValue());
+            buffer.putLong(value);
+        }
+
+        private static void writeFloat(ByteBuffer buffer, double value) {
+            buffer.put(VoltType.FLOAT.getValue());
+            buffer.putDouble(value);
+        }
+
+        private static ByteBuffer clearBuffer(ByteBuffer buffer) {
+            buffer.clear();
+            return buffer;
+        }
+
         // We should refactor those functions into SerializationHelper
 
         private static byte[] readVarbinary(ByteBuffer buffer) {
@@ -301,15 +485,40 @@ public class UserDefinedFunctionManager {
             }
         }
 
+        /**
+         * Read the arguments from the buffer and call the function.
+         * Exceptions thrown by the function are propagated as is.
+         * @return The function result.
+         */
         public Object call(ByteBuffer udfBuffer) throws Throwable {
-            Object[] paramsIn = new Object[m_paramCount];
-            for (int i = 0; i < m_paramCount; i++) {
-                paramsIn[i] = getValueFromBuffer(udfBuffer, m_paramTypes[i]);
-                if (m_boxUpByteArray[i]) {
-                    paramsIn[i] = SerializationHelper.boxUpByteArray((byte[])paramsIn[i]);
-                }
+            return (Object)m_invoker.invokeExact(udfBuffer);
+        }
+
+        /**
+         * Read the arguments from the buffer, call the function and write its result to the
+         * start of the same buffer, without boxing primitive results.
+         * Only valid when the return type is not variable-length, see {@link #hasFixedLengthResult()}.
+         */
+        public void callAndWriteResult(ByteBuffer udfBuffer) throws Throwable {
+            assert(m_invokeAndWriteResult != null);
+            m_invokeAndWriteResult.invokeExact(udfBuffer);
+        }
+
+        /**
+         * Call the function once for each of the {@code rowCount} rows of arguments stored back to
+         * back in {@code udfBuffer}, appending the results to {@code resultBuffer} in row order.
+         * Only valid when the return type is not variable-length, see {@link #hasFixedLengthResult()}.
+         */
+        public void callBatchAndWriteResults(ByteBuffer udfBuffer, int rowCount, ByteBuffer resultBuffer)
+                throws Throwable {
+            assert(m_invokeAndAppendResult != null);
+            for (int i = 0; i < rowCount; i++) {
+                m_invokeAndAppendResult.invokeExact(udfBuffer, resultBuffer);
             }
-            return m_functionMethod.invoke(m_functionInstance, paramsIn);
+        }
+
+        public boolean hasFixedLengthResult() {
+            return m_invokeAndWriteResult != null;
         }
 
         public VoltType getReturnType() {
@@ -112,6 +112,9 @@ rely on the garbage collector.
  * t.addRow(15, "sampleString");<br>
  * t.addRow(-9, "moreData");
  * </code>
+ *
+ * <p>Tables with many rows are faster to build with a {@link VoltTable.RowBuilder},
+ * which appends typed column values without boxing them.</p>
  */
 public final class VoltTable extends VoltTableRow implements JSONString {
 
@@ -142,6 +145,9 @@ public final class VoltTable extends VoltTableRow implements JSONString {
     private int m_memoizedRowOffset = NO_MEMOIZED_ROW_OFFSET;
     private int m_memoizedBufferOffset;
 
+    // row position of a RowBuilder that isn't in the middle of a row
+    private static final int NO_ROW_IN_PROGRESS = -1;
+
     // JSON KEYS FOR SERIALIZATION
     static final String JSON_NAME_KEY = "name";
     static final String JSON_TYPE_KEY = "type";
@@ -363,6 +369,18 @@ public final class VoltTable extends VoltTableRow implements JSONString {
         // no test metadata when creating tables from buffers
         m_extraMetadata = null;
 
+        initFromBuffer(backing, readOnly);
+    }
+
+    /**
+     * Point this table at a different serialized table. The memoized schema and column
+     * offsets are kept when the new table has the same number of columns, so a table that
+     * is recycled across results of the same shape allocates nothing.
+     *
+     * @param backing The buffer containing the serialized table.
+     * @param readOnly Can this table be changed?
+     */
+    void initFromBuffer(ByteBuffer backing, boolean readOnly) {
         m_buffer = backing;
 
         // rowstart represents and offset to the start of row data,
@@ -375,6 +393,25 @@ public final class VoltTable extends VoltTableRow implements JSONString {
         m_buffer.position(m_buffer.limit());
         m_readOnly = readOnly;
 
+        // forget the position and memoized state of any previous table
+        m_memoizedRowOffset = NO_MEMOIZED_ROW_OFFSET;
+        m_activeRowIndex = INVALID_ROW_INDEX;
+        m_position = -1;
+        m_hasCalculatedOffsets = false;
+        m_wasNull = false;
+        if (m_offsets != null && m_offsets.length != m_colCount) {
+            m_offsets = null;
+        }
+        if (m_schemaString != null) {
+            if (m_schemaString.length == m_colCount) {
+                for (int i = 0; i < m_colCount; i++) {
+                    m_schemaString[i] = m_buffer.get(4 + 1 + 2 + i);//headerLength + status code + column count
+                }
+            } else {
+                m_schemaString = null;
+            }
+        }
+
         assert(verifyTableInvariants());
     }
 
@@ -749,6 +786,47 @@ public final class VoltTable extends VoltTableRow implements JSONString {
         return retval;
     }
 
+    /**
+     * Write the null value of a column of type {@code columnType}.
+     */
+    private void addNullValue(VoltType columnType) {
+        switch (columnType) {
+        case TINYINT:
+            m_buffer.put(VoltType.NULL_TINYINT);
+            break;
+        case SMALLINT:
+            m_buffer.putShort(VoltType.NULL_SMALLINT);
+            break;
+        case INTEGER:
+            m_buffer.putInt(VoltType.NULL_INTEGER);
+            break;
+        case TIMESTAMP:
+            m_buffer.putLong(VoltType.NULL_BIGINT);
+            break;
+        case BIGINT:
+            m_buffer.putLong(VoltType.NULL_BIGINT);
+            break;
+        case FLOAT:
+            m_buffer.putDouble(VoltType.NULL_FLOAT);
+            break;
+        case STRING:
+        case GEOGRAPHY:
+        case VARBINARY:
+            m_buffer.putInt(NULL_STRING_INDICATOR);
+            break;
+        case GEOGRAPHY_POINT:
+            GeographyPointValue.serializeNull(m_buffer);
+            break;
+        case DECIMAL:
+            VoltDecimalHelper.serializeNull(m_buffer);
+            break;
+
+        default:
+            throw new VoltTypeException("Unsupported type: " +
+                    columnType);
+        }
+    }
+
     /**
      * Internal method to add a single value to a table, shared by the multiple
      * ways to add rows.
@@ -771,41 +849,7 @@ public final class VoltTable extends VoltTableRow implements JSONString {
                         getColumnName(col), col));
             }
 
-            switch (columnType) {
-            case TINYINT:
-                m_buffer.put(VoltType.NULL_TINYINT);
-                break;
-            case SMALLINT:
-                m_buffer.putShort(VoltType.NULL_SMALLINT);
-                break;
-            case INTEGER:
-                m_buffer.putInt(VoltType.NULL_INTEGER);
-                break;
-            case TIMESTAMP:
-                m_buffer.putLong(VoltType.NULL_BIGINT);
-                break;
-            case BIGINT:
-                m_buffer.putLong(VoltType.NULL_BIGINT);
-                break;
-            case FLOAT:
-                m_buffer.putDouble(VoltType.NULL_FLOAT);
-                break;
-            case STRING:
-            case GEOGRAPHY:
-            case VARBINARY:
-                m_buffer.putInt(NULL_STRING_INDICATOR);
-                break;
-            case GEOGRAPHY_POINT:
-                GeographyPointValue.serializeNull(m_buffer);
-                break;
-            case DECIMAL:
-                VoltDecimalHelper.serializeNull(m_buffer);
-                break;
-
-            default:
-                throw new VoltTypeException("Unsupported type: " +
-                        columnType);
-            }
+            addNullValue(columnType);
         }
         else {
 
@@ -1185,15 +1229,445 @@ public final class VoltTable extends VoltTableRow implements JSONString {
     }
 
     private final void expandBuffer() {
+        expandBuffer(0);
+    }
+
+    private final void expandBuffer(int minCapacity) {
         final int end = m_buffer.position();
         assert(end > m_rowStart);
-        final ByteBuffer buf2 = ByteBuffer.allocate(m_buffer.capacity() * 2);
+        final ByteBuffer buf2 = ByteBuffer.allocate(Math.max(m_buffer.capacity() * 2, minCapacity));
         m_buffer.limit(end);
         m_buffer.position(0);
         buf2.put(m_buffer);
         m_buffer = buf2;
     }
 
+    /**
+     * Grow the table once so that {@code rowCount} more rows of about {@code averageRowSize}
+     * bytes each can be added without growing it again row by row.
+     * @param rowCount Number of rows about to be added.
+     * @param averageRowSize Expected serialized size of each row's column values.
+     */
+    public final void ensureRowCapacity(int rowCount, int averageRowSize) {
+        assert(verifyTableInvariants());
+        if (m_readOnly) {
+            throw new IllegalStateException("Table is read-only. Make a copy before changing.");
+        }
+        final long needed = m_buffer.position() + (long)rowCount * (ROW_HEADER_SIZE + averageRowSize);
+        if (needed > m_buffer.capacity()) {
+            expandBuffer((int)Math.min(needed, Integer.MAX_VALUE - 8));
+            m_buffer.limit(m_buffer.position());
+        }
+        assert(verifyTableInvariants());
+    }
+
+    /**
+     * Get a {@link RowBuilder} that appends rows to this table one typed column value
+     * at a time.
+     * @return A new RowBuilder for this table.
+     */
+    public final RowBuilder rowBuilder() {
+        if (m_readOnly) {
+            throw new IllegalStateException("Table is read-only. Make a copy before changing.");
+        }
+        return new RowBuilder();
+    }
+
+    /**
+     * <p>Appends rows to a {@link VoltTable} without boxing column values. Each put call
+     * writes the next column of the current row straight into the table's buffer, checked
+     * against the column types the builder cached when it was created, and
+     * {@link #endRow()} adds the row to the table. Together with
+     * {@link VoltTable#ensureRowCapacity(int, int)} this builds a table of any size
+     * without allocating anything beyond the table's buffer.</p>
+     *
+     * <p>Example:</p>
+     *
+     * <code>
+     * VoltTable.RowBuilder builder = t.rowBuilder();<br>
+     * builder.putLong(15).putString("sampleString").endRow();<br>
+     * builder.putLong(-9).putNull().endRow();
+     * </code>
+     *
+     * <p>The same conversions apply as for {@link VoltTable#addRow(Object...)}. A put that
+     * fails discards the row in progress, and the table must not be changed any other way
+     * while a row is in progress.</p>
+     */
+    public final class RowBuilder {
+        private final VoltType[] m_columnTypes = new VoltType[m_colCount];
+        private final boolean[] m_columnNullable = new boolean[m_colCount];
+        private final int[] m_columnMaxSize = new int[m_colCount];
+
+        // start of the row in progress, NO_ROW_IN_PROGRESS if there is none
+        private int m_rowPosition = NO_ROW_IN_PROGRESS;
+        private int m_column = 0;
+
+        private RowBuilder() {
+            for (int col = 0; col < m_colCount; col++) {
+                m_columnTypes[col] = getColumnType(col);
+                m_columnNullable[col] = true;
+                m_columnMaxSize[col] = VoltType.MAX_VALUE_LENGTH;
+                // schema checking code that is used for some tests
+                if (m_extraMetadata != null) {
+                    m_columnNullable[col] = m_extraMetadata.originalColumnInfos[col].nullable;
+                    m_columnMaxSize[col] = m_extraMetadata.originalColumnInfos[col].size;
+                }
+            }
+        }
+
+        /**
+         * Set the next column to null.
+         * @return This builder.
+         */
+        public RowBuilder putNull() {
+            final VoltType type = nextColumn(16);
+            if (!m_columnNullable[m_column]) {
+                throw fail(new IllegalArgumentException(
+                        String.format("Column %s at index %d doesn't allow NULL values.",
+                        getColumnName(m_column), m_column)));
+            }
+            addNullValue(type);
+            m_column++;
+            return this;
+        }
+
+        /**
+         * Set the next column, which may be any integer type, a TIMESTAMP in microseconds
+         * or a FLOAT. As for addRow, {@link VoltType#NULL_BIGINT} sets it to null.
+         * @param value Value of the column.
+         * @return This builder.
+         */
+        public RowBuilder putLong(long value) {
+            if (value == VoltType.NULL_BIGINT) {
+                return putNull();
+            }
+            final VoltType type = nextColumn(8);
+            switch (type) {
+            case TINYINT:
+                if (value <= Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+                    throw overflow(value, type);
+                }
+                m_buffer.put((byte)value);
+                break;
+            case SMALLINT:
+                if (value <= Short.MIN_VALUE || value > Short.MAX_VALUE) {
+                    throw overflow(value, type);
+                }
+                m_buffer.putShort((short)value);
+                break;
+            case INTEGER:
+                if (value <= Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+                    throw overflow(value, type);
+                }
+                m_buffer.putInt((int)value);
+                break;
+            case BIGINT:
+            case TIMESTAMP:
+                m_buffer.putLong(value);
+                break;
+            case FLOAT:
+                m_buffer.putDouble(value);
+                break;
+            default:
+                throw mismatch("long", type);
+            }
+            m_column++;
+            return this;
+        }
+
+        /**
+         * Set the next column, which must be a FLOAT. As for addRow,
+         * {@link VoltType#NULL_FLOAT} sets it to null.
+         * @param value Value of the column.
+         * @return This builder.
+         */
+        public RowBuilder putDouble(double value) {
+            if (value == VoltType.NULL_FLOAT) {
+                return putNull();
+            }
+            final VoltType type = nextColumn(8);
+            if (type != VoltType.FLOAT) {
+                throw mismatch("double", type);
+            }
+            m_buffer.putDouble(value);
+            m_column++;
+            return this;
+        }
+
+        /**
+         * Set the next column, which must be a TIMESTAMP.
+         * @param value Value of the column, or null.
+         * @return This builder.
+         */
+        public RowBuilder putTimestamp(TimestampType value) {
+            if (value == null) {
+                return putNull();
+            }
+            final VoltType type = nextColumn(8);
+            if (type != VoltType.TIMESTAMP) {
+                throw mismatch("TimestampType", type);
+            }
+            m_buffer.putLong(value.getTime());
+            m_column++;
+            return this;
+        }
+
+        /**
+         * Set the next column, which must be a STRING. The string is encoded as UTF-8
+         * directly into the table.
+         * @param value Value of the column, or null.
+         * @return This builder.
+         */
+        public RowBuilder putString(String value) {
+            if (value == null) {
+                return putNull();
+            }
+            final int length = utf8Length(value);
+            final VoltType type = nextColumn(4 + length);
+            if (type != VoltType.STRING) {
+                throw mismatch("String", type);
+            }
+            if (value.length() > m_columnMaxSize[m_column]) {
+                throw tooLarge();
+            }
+            m_buffer.putInt(length);
+            putUtf8(value, m_buffer);
+            m_column++;
+            return this;
+        }
+
+        /**
+         * Set the next column, which must be a VARBINARY, or a STRING given as UTF-8 bytes.
+         * @param value Value of the column, or null.
+         * @return This builder.
+         */
+        public RowBuilder putVarbinary(byte[] value) {
+            if (value == null) {
+                return putNull();
+            }
+            final VoltType type = nextColumn(4 + value.length);
+            if (type != VoltType.VARBINARY && type != VoltType.STRING) {
+                throw mismatch("byte[]", type);
+            }
+            if (value.length > m_columnMaxSize[m_column]) {
+                throw tooLarge();
+            }
+            writeStringOrVarbinaryToBuffer(value, m_buffer);
+            m_column++;
+            return this;
+        }
+
+        /**
+         * Set the next column, which must be a DECIMAL.
+         * @param value Value of the column, or null.
+         * @return This builder.
+         */
+        public RowBuilder putDecimal(BigDecimal value) {
+            if (value == null) {
+                return putNull();
+            }
+            final VoltType type = nextColumn(16);
+            if (type != VoltType.DECIMAL) {
+                throw mismatch("BigDecimal", type);
+            }
+            try {
+                VoltDecimalHelper.serializeBigDecimal(value, m_buffer);
+            }
+            catch (RuntimeException e) {
+                throw fail(e);
+            }
+            m_column++;
+            return this;
+        }
+
+        /**
+         * Set the next column, which must be a GEOGRAPHY_POINT.
+         * @param value Value of the column, or null.
+         * @return This builder.
+         */
+        public RowBuilder putGeographyPoint(GeographyPointValue value) {
+            if (value == null) {
+                return putNull();
+            }
+            final VoltType type = nextColumn(GeographyPointValue.getLengthInBytes());
+            if (type != VoltType.GEOGRAPHY_POINT) {
+                throw mismatch("GeographyPointValue", type);
+            }
+            value.flattenToBuffer(m_buffer);
+            m_column++;
+            return this;
+        }
+
+        /**
+         * Set the next column, which must be a GEOGRAPHY.
+         * @param value Value of the column, or null.
+         * @return This builder.
+         */
+        public RowBuilder putGeography(GeographyValue value) {
+            if (value == null) {
+                return putNull();
+            }
+            final int length = value.getLengthInBytes();
+            final VoltType type = nextColumn(4 + length);
+            if (type != VoltType.GEOGRAPHY) {
+                throw mismatch("GeographyValue", type);
+            }
+            m_buffer.putInt(length);
+            value.flattenToBuffer(m_buffer);
+            m_column++;
+            return this;
+        }
+
+        /**
+         * Add the row in progress to the table. Every column must have been set.
+         */
+        public void endRow() {
+            if (m_rowPosition == NO_ROW_IN_PROGRESS || m_column != m_colCount) {
+                throw fail(new IllegalStateException(
+                        (m_rowPosition == NO_ROW_IN_PROGRESS ? 0 : m_column) +
+                        " columns set but table has " + m_colCount + " columns"));
+            }
+            final int rowsize = m_buffer.position() - m_rowPosition - ROW_HEADER_SIZE;
+            if (rowsize > VoltTableRow.MAX_TUPLE_LENGTH) {
+                throw fail(new VoltOverflowException(
+                        "Table row total length larger than allowed max " + VoltTableRow.MAX_TUPLE_LENGTH_STR));
+            }
+            m_buffer.putInt(m_rowPosition, rowsize);
+            m_buffer.limit(m_buffer.position());
+            m_rowCount++;
+            m_buffer.putInt(m_rowStart, m_rowCount);
+            m_rowPosition = NO_ROW_IN_PROGRESS;
+            m_column = 0;
+            assert(verifyTableInvariants());
+        }
+
+        /**
+         * Start a row if there is none in progress and make room for the next column's
+         * value of up to {@code size} bytes.
+         * @return The type of the next column.
+         */
+        private VoltType nextColumn(int size) {
+            if (m_rowPosition == NO_ROW_IN_PROGRESS) {
+                if (m_readOnly) {
+                    throw new IllegalStateException("Table is read-only. Make a copy before changing.");
+                }
+                assert(verifyTableInvariants());
+                m_rowPosition = m_buffer.position();
+                ensureRemaining(ROW_HEADER_SIZE + size);
+                // the row size is filled in by endRow()
+                m_buffer.position(m_rowPosition + ROW_HEADER_SIZE);
+            }
+            else {
+                ensureRemaining(size);
+            }
+            if (m_column == m_colCount) {
+                throw fail(new IllegalArgumentException("Row already has all " + m_colCount + " columns"));
+            }
+            return m_columnTypes[m_column];
+        }
+
+        private void ensureRemaining(int size) {
+            final int needed = m_buffer.position() + size;
+            if (needed > m_buffer.capacity()) {
+                expandBuffer(needed);
+            }
+            // allow the row to use the whole buffer until it ends
+            m_buffer.limit(m_buffer.capacity());
+        }
+
+        /**
+         * Discard the row in progress, so the table is left as it was before the row began.
+         */
+        private <T extends RuntimeException> T fail(T e) {
+            if (m_rowPosition != NO_ROW_IN_PROGRESS) {
+                m_buffer.position(m_rowPosition);
+                m_buffer.limit(m_rowPosition);
+                m_rowPosition = NO_ROW_IN_PROGRESS;
+            }
+            m_column = 0;
+            return e;
+        }
+
+        private VoltTypeException overflow(long value, VoltType type) {
+            return fail(new VoltTypeException("Cast of " + value + " to " + type + " would overflow"));
+        }
+
+        private VoltTypeException mismatch(String valueType, VoltType type) {
+            return fail(new VoltTypeException("Value for column " + m_column + " (" +
+                    getColumnName(m_column) + ") is type " + valueType + " when type " + type +
+                    " was expected."));
+        }
+
+        private VoltOverflowException tooLarge() {
+            return fail(new VoltOverflowException(
+                    "Value in VoltTable.RowBuilder larger than allowed max " +
+                    VoltType.humanReadableSize(m_columnMaxSize[m_column])));
+        }
+    }
+
+    /**
+     * Number of bytes {@code s} takes encoded as UTF-8, the same encoding
+     * {@link String#getBytes(Charset)} produces.
+     */
+    static int utf8Length(String s) {
+        final int chars = s.length();
+        int length = chars;
+        for (int i = 0; i < chars; i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                continue;
+            }
+            if (c < 0x800) {
+                length += 1;
+            }
+            else if (Character.isSurrogate(c)) {
+                // a pair takes four bytes, an unpaired surrogate is replaced by '?'
+                if (Character.isHighSurrogate(c) && i + 1 < chars && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    length += 2;
+                    i++;
+                }
+            }
+            else {
+                length += 2;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * Encode {@code s} as UTF-8 into {@code b} without an intermediate byte array.
+     */
+    static void putUtf8(String s, ByteBuffer b) {
+        final int chars = s.length();
+        for (int i = 0; i < chars; i++) {
+            final char c = s.charAt(i);
+            if (c < 0x80) {
+                b.put((byte)c);
+            }
+            else if (c < 0x800) {
+                b.put((byte)(0xC0 | (c >> 6)));
+                b.put((byte)(0x80 | (c & 0x3F)));
+            }
+            else if (Character.isSurrogate(c)) {
+                if (Character.isHighSurrogate(c) && i + 1 < chars && Character.isLowSurrogate(s.charAt(i + 1))) {
+                    final int cp = Character.toCodePoint(c, s.charAt(++i));
+                    b.put((byte)(0xF0 | (cp >> 18)));
+                    b.put((byte)(0x80 | ((cp >> 12) & 0x3F)));
+                    b.put((byte)(0x80 | ((cp >> 6) & 0x3F)));
+                    b.put((byte)(0x80 | (cp & 0x3F)));
+                }
+                else {
+                    b.put((byte)'?');
+                }
+            }
+            else {
+                b.put((byte)(0xE0 | (c >> 12)));
+                b.put((byte)(0x80 | ((c >> 6) & 0x3F)));
+                b.put((byte)(0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
     /**
      * Tables containing a single row and a single integer column can be read using this convenience
      * method.
@@ -0,0 +1,274 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.google_voltpatches.common.base.Throwables;
+
+/**
+ * A {@link RateLimiter} that discovers the number of outstanding transactions the cluster can
+ * absorb from the round trip times the client observes, instead of steering toward a fixed
+ * internal latency target the way auto-tuning does.
+ *
+ * The limit is adjusted once per sampling window with a latency gradient: the ratio of a long
+ * term average round trip to the round trip of the last window. While the two agree the limit
+ * grows additively by its square root, and as queueing inflates the recent round trip the
+ * gradient shrinks the limit in proportion. A window that saw a timeout shrinks the limit
+ * multiplicatively. The limit only grows while the client is actually using at least half of it,
+ * so an application that submits slowly doesn't inflate it without bound.
+ *
+ * Neither sending nor receiving takes a lock. Permits are a CAS on an in-flight counter and
+ * samples go to cells striped by thread so the network threads don't contend on one cache line.
+ * Whichever thread first notices that the window has elapsed drains the cells and moves the
+ * limit. Senders only synchronize when they have to block for a permit.
+ */
+class AdaptiveRateLimiter extends RateLimiter {
+
+    static final int INITIAL_LIMIT = 20;
+    static final long MIN_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    static final int MIN_WINDOW_SAMPLES = 10;
+
+    // Short term round trips this much above the long term average are still considered unqueued
+    static final double RTT_TOLERANCE = 1.5;
+    static final double MIN_GRADIENT = 0.5;
+    static final double BACKOFF_RATIO = 0.9;
+    static final double SMOOTHING = 0.2;
+    static final double LONG_RTT_DECAY = 0.95;
+
+    // Each stripe is padded out to a 64 byte cache line
+    private static final int CELL_RTT_SUM = 0;
+    private static final int CELL_SAMPLES = 1;
+    private static final int CELL_DROPS = 2;
+    private static final int CELL_STRIDE = 8;
+
+    private final int m_stripeMask;
+    private final AtomicLongArray m_cells;
+
+    private final AtomicInteger m_inflight = new AtomicInteger();
+    private volatile int m_limit;
+    private volatile int m_maxLimit;
+
+    private final Object m_waitLock = new Object();
+    private volatile int m_waiters = 0;
+
+    private final AtomicBoolean m_updating = new AtomicBoolean(false);
+    private volatile long m_windowStartNanos;
+    // Only touched by the thread holding m_updating
+    private double m_smoothedLimit;
+    private double m_longRttNanos = 0;
+    private double m_shortRttNanos = 0;
+
+    AdaptiveRateLimiter() {
+        this(System.nanoTime());
+    }
+
+    AdaptiveRateLimiter(long startNanos) {
+        int stripes = Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+        stripes = Math.min(stripes, 64);
+        m_stripeMask = stripes - 1;
+        m_cells = new AtomicLongArray(stripes * CELL_STRIDE);
+        m_maxLimit = Integer.MAX_VALUE;
+        m_limit = INITIAL_LIMIT;
+        m_smoothedLimit = INITIAL_LIMIT;
+        m_windowStartNanos = startNanos;
+    }
+
+    /**
+     * The transaction rate is never limited. The maximum outstanding becomes the ceiling
+     * for the adaptive limit.
+     */
+    @Override
+    synchronized void setLimits(int txnsPerSec, int maxOutstanding) {
+        m_maxLimit = maxOutstanding;
+        m_maxOutstandingTxns = maxOutstanding;
+        if (m_limit > maxOutstanding) {
+            m_limit = maxOutstanding;
+            m_smoothedLimit = maxOutstanding;
+        }
+    }
+
+    @Override
+    synchronized void enableAutoTuning(int latencyTarget) {
+        throw new IllegalStateException("Auto tuning can not be combined with adaptive rate limiting");
+    }
+
+    @Override
+    int[] getLimits() {
+        return new int[] { Integer.MAX_VALUE, m_limit };
+    }
+
+    int getOutstanding() {
+        return m_inflight.get();
+    }
+
+    @Override
+    void transactionResponseReceived(long timestampNanos, int internalLatency, long roundTripNanos,
+            boolean ignoreBackpressure) {
+        if (roundTripNanos >= 0) {
+            final int base = stripe();
+            m_cells.getAndAdd(base + CELL_RTT_SUM, roundTripNanos);
+            m_cells.getAndIncrement(base + CELL_SAMPLES);
+        }
+        if (!ignoreBackpressure) {
+            release();
+        }
+        maybeUpdateLimit(timestampNanos);
+    }
+
+    @Override
+    void transactionTimedOut(long timestampNanos, boolean ignoreBackpressure) {
+        m_cells.getAndIncrement(stripe() + CELL_DROPS);
+        if (!ignoreBackpressure) {
+            release();
+        }
+        maybeUpdateLimit(timestampNanos);
+    }
+
+    @Override
+    long sendTxnWithOptionalBlockAndReturnCurrentTime(long timestampNanos, long timeoutNanos,
+            boolean ignoreBackpressure) throws TimeoutException {
+        if (ignoreBackpressure || tryAcquire()) {
+            return timestampNanos;
+        }
+
+        final long deadline = timestampNanos + timeoutNanos;
+        synchronized (m_waitLock) {
+            m_waiters++;
+            try {
+                // A releaser decrements the in-flight count before it looks for waiters, so
+                // either it sees this waiter or the retry below sees the freed permit
+                while (!tryAcquire()) {
+                    final long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new TimeoutException();
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(m_waitLock, remaining);
+                }
+            } catch (InterruptedException e) {
+                Throwables.propagate(e);
+            } finally {
+                m_waiters--;
+            }
+        }
+        return System.nanoTime();
+    }
+
+    private boolean tryAcquire() {
+        while (true) {
+            final int inflight = m_inflight.get();
+            if (inflight >= m_limit) {
+                return false;
+            }
+            if (m_inflight.compareAndSet(inflight, inflight + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void release() {
+        m_inflight.decrementAndGet();
+        if (m_waiters > 0) {
+            synchronized (m_waitLock) {
+                m_waitLock.notify();
+            }
+        }
+    }
+
+    private int stripe() {
+        return ((int)Thread.currentThread().getId() & m_stripeMask) * CELL_STRIDE;
+    }
+
+    private void maybeUpdateLimit(long nowNanos) {
+        final long windowStart = m_windowStartNanos;
+        final long window = Math.max(MIN_WINDOW_NANOS, (long)(2 * m_shortRttNanos));
+        if (nowNanos - windowStart < window || !m_updating.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            long rttSum = 0, samples = 0, drops = 0;
+            for (int base = 0; base < m_cells.length(); base += CELL_STRIDE) {
+                samples += m_cells.get(base + CELL_SAMPLES);
+                drops += m_cells.get(base + CELL_DROPS);
+            }
+            // Keep accumulating until the window has enough samples to mean something
+            if (samples < MIN_WINDOW_SAMPLES && drops == 0) {
+                return;
+            }
+            samples = 0;
+            drops = 0;
+            for (int base = 0; base < m_cells.length(); base += CELL_STRIDE) {
+                rttSum += m_cells.getAndSet(base + CELL_RTT_SUM, 0);
+                samples += m_cells.getAndSet(base + CELL_SAMPLES, 0);
+                drops += m_cells.getAndSet(base + CELL_DROPS, 0);
+            }
+            m_windowStartNanos = nowNanos;
+            updateLimit(samples == 0 ? 0 : (double)rttSum / samples, drops > 0);
+        } finally {
+            m_updating.set(false);
+        }
+    }
+
+    private void updateLimit(double shortRtt, boolean dropped) {
+        final int limit = m_limit;
+        if (dropped) {
+            // Back off right away rather than through the smoothing
+            m_smoothedLimit = limit * BACKOFF_RATIO;
+        } else {
+            m_shortRttNanos = shortRtt;
+            if (m_longRttNanos == 0) {
+                m_longRttNanos = shortRtt;
+            } else {
+                m_longRttNanos = m_longRttNanos * LONG_RTT_DECAY + shortRtt * (1 - LONG_RTT_DECAY);
+            }
+            // After a stretch of queueing the long term average lags far behind, pull it down
+            // so the limit can recover
+            if (m_longRttNanos / shortRtt > 2) {
+                m_longRttNanos *= LONG_RTT_DECAY;
+            }
+            // Application limited, the round trips say nothing about how much more the cluster could take
+            if (m_inflight.get() < limit / 2) {
+                return;
+            }
+            final double gradient =
+                    Math.max(MIN_GRADIENT, Math.min(1.0, RTT_TOLERANCE * m_longRttNanos / shortRtt));
+            final double target = limit * gradient + Math.sqrt(limit);
+            m_smoothedLimit = m_smoothedLimit * (1 - SMOOTHING) + target * SMOOTHING;
+        }
+        // The fractional part carries over so small limits can still grow
+        m_smoothedLimit = Math.max(1, Math.min(m_maxLimit, m_smoothedLimit));
+        final int newLimit = (int)m_smoothedLimit;
+        m_limit = newLimit;
+        if (newLimit > limit && m_waiters > 0) {
+            synchronized (m_waitLock) {
+                m_waitLock.notifyAll();
+            }
+        }
+    }
+
+    @Override
+    public void debug() {
+        System.out.printf("Adaptive outstanding txn limit is %d of at most %d\n", m_limit, m_maxLimit);
+        System.out.printf("Current outstanding is %d and recent round trip is %.2fms\n",
+                m_inflight.get(), m_shortRttNanos / TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,148 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.voltdb.client.Distributer.CallbackBookeeping;
+
+/**
+ * Lock-free table of the outstanding invocations on a single connection, keyed by client handle.
+ *
+ * The common case is served by an open array of slots indexed by a hash of the handle, so
+ * registering a call and retiring it on response are each a single CAS with no boxing of the
+ * handle and no per-entry node allocation. Handles are allocated from a counter shared by
+ * every connection, so the hash is a multiplicative one that spreads arithmetic progressions
+ * of handles across the whole array. A handle whose slot is occupied by an older call goes to
+ * an overflow map instead. A handle lives in exactly one of the two places for its whole
+ * life, which is what lets the response path, the timeout path and the connection-lost path
+ * race to remove it and have exactly one of them win.
+ *
+ * Iteration is weakly consistent, like that of the concurrent collections.
+ */
+final class CallbackTable implements Iterable<CallbackBookeeping> {
+
+    static final int DEFAULT_CAPACITY = 8192;
+
+    private static final long GOLDEN_RATIO_64 = 0x9E3779B97F4A7C15L;
+
+    private final AtomicReferenceArray<CallbackBookeeping> m_slots;
+    private final int m_shift;
+    private final ConcurrentHashMap<Long, CallbackBookeeping> m_overflow =
+            new ConcurrentHashMap<Long, CallbackBookeeping>(16, 0.75f, 4);
+
+    CallbackTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param capacity number of slots, rounded up to a power of two
+     */
+    CallbackTable(int capacity) {
+        if (capacity < 2) {
+            throw new IllegalArgumentException("Capacity must be at least 2: " + capacity);
+        }
+        final int bits = 32 - Integer.numberOfLeadingZeros(capacity - 1);
+        m_slots = new AtomicReferenceArray<CallbackBookeeping>(1 << bits);
+        m_shift = 64 - bits;
+    }
+
+    private int slot(long handle) {
+        return (int)((handle * GOLDEN_RATIO_64) >>> m_shift);
+    }
+
+    /**
+     * Register an outstanding call. The handle must not already be present.
+     */
+    void put(CallbackBookeeping cb) {
+        if (!m_slots.compareAndSet(slot(cb.handle), null, cb)) {
+            m_overflow.put(cb.handle, cb);
+        }
+    }
+
+    /**
+     * Remove the call registered for {@code handle}.
+     * @return the bookkeeping for the call, or null if it was never registered or
+     * another thread already removed it
+     */
+    CallbackBookeeping remove(long handle) {
+        final int slot = slot(handle);
+        final CallbackBookeeping cb = m_slots.get(slot);
+        if (cb != null && cb.handle == handle) {
+            // Losing the CAS means another thread retired this exact call
+            return m_slots.compareAndSet(slot, cb, null) ? cb : null;
+        }
+        if (m_overflow.isEmpty()) {
+            return null;
+        }
+        return m_overflow.remove(handle);
+    }
+
+    boolean containsKey(long handle) {
+        final CallbackBookeeping cb = m_slots.get(slot(handle));
+        if (cb != null && cb.handle == handle) {
+            return true;
+        }
+        return m_overflow.containsKey(handle);
+    }
+
+    @Override
+    public Iterator<CallbackBookeeping> iterator() {
+        return new Iterator<CallbackBookeeping>() {
+            private int m_nextSlot = 0;
+            private Iterator<CallbackBookeeping> m_overflowIterator = null;
+            private CallbackBookeeping m_next = advance();
+
+            private CallbackBookeeping advance() {
+                while (m_nextSlot < m_slots.length()) {
+                    final CallbackBookeeping cb = m_slots.get(m_nextSlot++);
+                    if (cb != null) {
+                        return cb;
+                    }
+                }
+                if (m_overflowIterator == null) {
+                    m_overflowIterator = m_overflow.values().iterator();
+                }
+                return m_overflowIterator.hasNext() ? m_overflowIterator.next() : null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return m_next != null;
+            }
+
+            @Override
+            public CallbackBookeeping next() {
+                if (m_next == null) {
+                    throw new NoSuchElementException();
+                }
+                final CallbackBookeeping cb = m_next;
+                m_next = advance();
+                return cb;
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
@@ -111,6 +111,24 @@ public interface Client {
     public boolean callProcedure(ProcedureCallback callback, String procName, Object... parameters)
     throws IOException, NoConnectionsException;
 
+    /**
+     * <p>Asynchronously invoke every procedure call in a {@link ProcedureCallBatch}, sending them to
+     * a single server in one network message. Each call's callback is invoked by the single thread
+     * backing the client instance when that call receives a response, and each call is subject to
+     * the default procedure timeout. If there is backpressure this call will block until the batch
+     * is queued. If configureBlocking(false) is invoked then it will return immediately. Check the
+     * return value to determine if queueing actually took place.</p>
+     *
+     * <p>Requires a server version that understands invocation batches.</p>
+     *
+     * @param batch The procedure calls to invoke.
+     * @return <code>true</code> if the batch was queued and <code>false</code> otherwise.
+     * @throws NoConnectionsException if this {@link Client} instance is not connected to any servers.
+     * @throws IOException if there is a Java network or connection problem.
+     */
+    public boolean callProcedureBatch(ProcedureCallBatch batch)
+    throws IOException, NoConnectionsException;
+
     /**
      * <p>Synchronously invoke a procedure with timeout. Blocks until a result is available. A {@link ProcCallException}
      * is thrown if the response is anything other then success.</p>
@@ -24,6 +24,9 @@ package org.voltdb.client;
  * the the client believes it found a replica for.  Round-robin stats reflect
  * the client's lack of information when client affinity is on and indicate
  * transactions that were routed using the default round-robin algorithm.
+ *
+ * The counters are bumped by every thread that queues an invocation to the
+ * partition, so updates and {@link #clone()} synchronize on the instance.
  */
 public class ClientAffinityStats {
 
@@ -67,12 +70,12 @@ public class ClientAffinityStats {
      * @see java.lang.Object#clone()
      */
     @Override
-    protected Object clone() {
+    protected synchronized Object clone() {
         return new ClientAffinityStats(m_partitionId, m_affinityWrites, m_rrWrites, m_affinityReads,
                m_rrReads);
     }
 
-    void addAffinityWrite()
+    synchronized void addAffinityWrite()
     {
         m_affinityWrites++;
     }
@@ -87,7 +90,7 @@ public class ClientAffinityStats {
         return m_affinityWrites;
     }
 
-    void addRrWrite()
+    synchronized void addRrWrite()
     {
         m_rrWrites++;
     }
@@ -103,7 +106,7 @@ public class ClientAffinityStats {
         return m_rrWrites;
     }
 
-    void addAffinityRead()
+    synchronized void addAffinityRead()
     {
         m_affinityReads++;
     }
@@ -118,7 +121,7 @@ public class ClientAffinityStats {
         return m_affinityReads;
     }
 
-    void addRrRead()
+    synchronized void addRrRead()
     {
         m_rrReads++;
     }
@@ -57,6 +57,7 @@ public class ClientConfig {
     int m_maxTransactionsPerSecond = Integer.MAX_VALUE;
     boolean m_autoTune = false;
     int m_autoTuneTargetInternalLatency = 5;
+    boolean m_adaptiveRateLimiting = false;
     long m_procedureCallTimeoutNanos = DEFAULT_PROCEDURE_TIMOUT_NANOS;
     long m_connectionResponseTimeoutMS = DEFAULT_CONNECTION_TIMOUT_MS;
     boolean m_useClientAffinity = true;
@@ -67,6 +68,7 @@ public class ClientConfig {
     boolean m_sendReadsToReplicasBytDefaultIfCAEnabled = false;
     SslConfig m_sslConfig;
     boolean m_topologyChangeAware = false;
+    boolean m_reuseResponseBuffers = false;
     boolean m_enableSSL = false;
     String m_sslPropsFile = null;
 
@@ -340,6 +342,20 @@ public class ClientConfig {
         m_autoTune = true;
     }
 
+    /**
+     * <p>Enable adaptive rate limiting, which dynamically adjusts the maximum
+     * allowable outstanding transactions from the round trip times observed by the client.
+     * The limit grows while round trips stay near their long term average and shrinks
+     * as they rise or as transactions time out. The value passed to
+     * {@link #setMaxOutstandingTxns(int)} becomes the ceiling for the limit.</p>
+     *
+     * <p>This is an alternative to {@link #enableAutoTune()} and can not be combined
+     * with it or with {@link #setMaxTransactionsPerSecond(int)}.</p>
+     */
+    public void enableAdaptiveRateLimiting() {
+        m_adaptiveRateLimiting = true;
+    }
+
     /**
      * <p>Attempts to route transactions to the correct master partition improving latency
      * and throughput</p>
@@ -363,6 +379,20 @@ public class ClientConfig {
         m_topologyChangeAware = enabled;
     }
 
+    /**
+     * <p>Read each response into a buffer that is reused for the next response on the same
+     * connection instead of a newly allocated one. Together with callbacks implementing
+     * {@link TransientProcedureCallback} this lets the client process responses without
+     * allocating. Responses for other callbacks are copied out of the reused buffer,
+     * so enable this only when most calls use transient callbacks.</p>
+     *
+     * <p>Defaults to false.</p>
+     * @param enabled Enable or disable reuse of response buffers.
+     */
+    public void setReuseResponseBuffers(boolean enabled) {
+        m_reuseResponseBuffers = enabled;
+    }
+
     /**
      * <p>By default, reads are sent to the leader replica for each partition. This
      * is usually optimal for the default read consistency value, SAFE. If you are
@@ -22,6 +22,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -125,6 +126,12 @@ public final class ClientImpl implements Client {
             throw new IllegalArgumentException("The client affinity must be enabled to enable topology awareness.");
         }
 
+        if (config.m_adaptiveRateLimiting &&
+                (config.m_autoTune || config.m_maxTransactionsPerSecond != Integer.MAX_VALUE)) {
+            throw new IllegalArgumentException(
+                    "Adaptive rate limiting can not be combined with auto tuning or a transaction rate limit.");
+        }
+
         if (config.m_enableSSL) {
             m_sslContext = SSLConfiguration.createSslContext(config.m_sslConfig);
         } else {
@@ -138,7 +145,8 @@ public final class ClientImpl implements Client {
                 config.m_useClientAffinity,
                 config.m_sendReadsToReplicasBytDefaultIfCAEnabled,
                 config.m_subject,
-                m_sslContext);
+                m_sslContext,
+                config.m_adaptiveRateLimiting ? new AdaptiveRateLimiter() : new RateLimiter());
         m_distributer.addClientStatusListener(m_listener);
         String username = config.m_username;
         if (config.m_subject != null) {
@@ -146,6 +154,7 @@ public final class ClientImpl implements Client {
         }
         m_username = username;
         m_distributer.setTopologyChangeAware(config.m_topologyChangeAware);
+        m_distributer.setReuseResponseBuffers(config.m_reuseResponseBuffers);
         if (config.m_topologyChangeAware) {
             m_ex = Executors.newSingleThreadScheduledExecutor(CoreUtils.getThreadFactory("Topoaware thread"));
         }
@@ -171,7 +180,10 @@ public final class ClientImpl implements Client {
 
         assert(config.m_maxOutstandingTxns > 0);
         m_blessedThreadIds.addAll(m_distributer.getThreadIds());
-        if (config.m_autoTune) {
+        if (config.m_adaptiveRateLimiting) {
+            m_distributer.m_rateLimiter.setLimits(Integer.MAX_VALUE, config.m_maxOutstandingTxns);
+        }
+        else if (config.m_autoTune) {
             m_distributer.m_rateLimiter.enableAutoTuning(
                     config.m_autoTuneTargetInternalLatency);
         }
@@ -423,6 +435,74 @@ public final class ClientImpl implements Client {
         return internalAsyncCallProcedure(callback, clientTimeoutUnit.toNanos(clientTimeout), invocation);
     }
 
+    @Override
+    public boolean callProcedureBatch(ProcedureCallBatch batch)
+            throws IOException, NoConnectionsException
+    {
+        if (m_isShutdown) {
+            return false;
+        }
+        if (batch.size() == 0) {
+            return true;
+        }
+
+        final List<ProcedureInvocation> invocations = new ArrayList<>(batch.size());
+        final List<ProcedureCallback> callbacks = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            ProcedureCallback callback = batch.m_callbacks.get(i);
+            final Object[] parameters = batch.m_parameters.get(i);
+            if (callback instanceof ProcedureArgumentCacher) {
+                ((ProcedureArgumentCacher) callback).setArgs(parameters);
+            }
+            if (callback == null) {
+                callback = NULL_CALLBACK;
+            }
+            invocations.add(new ProcedureInvocation(m_handle.getAndIncrement(), batch.m_procNames.get(i), parameters));
+            callbacks.add(callback);
+        }
+
+        final long nowNanos = System.nanoTime();
+        //Blessed threads (the ones that invoke callbacks) are not subject to backpressure
+        boolean isBlessed = m_blessedThreadIds.contains(Thread.currentThread().getId());
+        while (!m_distributer.queueBatch(invocations, callbacks, isBlessed, nowNanos,
+                Distributer.USE_DEFAULT_CLIENT_TIMEOUT)) {
+            if ( ! m_blockingQueue) {
+                return false;
+            }
+
+            /*
+             * Wait on backpressure honoring the timeout settings
+             */
+            final long delta = Math.max(1, System.nanoTime() - nowNanos);
+            final long timeout = m_distributer.getProcedureTimeoutNanos();
+            try {
+                if (backpressureBarrier(nowNanos, timeout - delta)) {
+                    final ClientResponse response = new ClientResponseImpl(
+                            ClientResponse.CONNECTION_TIMEOUT,
+                            ClientResponse.UNINITIALIZED_APP_STATUS_CODE,
+                            "",
+                            new VoltTable[0],
+                            String.format("No response received in the allotted time (set to %d ms).",
+                                    TimeUnit.NANOSECONDS.toMillis(timeout)));
+                    for (ProcedureCallback callback : callbacks) {
+                        try {
+                            callback.clientCallback(response);
+                        }
+                        catch (Throwable thrown) {
+                            m_distributer.uncaughtException(callback, response, thrown);
+                        }
+                    }
+                    // every call in the batch has been answered
+                    return true;
+                }
+            }
+            catch (InterruptedException e) {
+                throw new java.io.InterruptedIOException("Interrupted while invoking procedures asynchronously");
+            }
+        }
+        return true;
+    }
+
     @Deprecated
     @Override
     public int calculateInvocationSerializedSize(
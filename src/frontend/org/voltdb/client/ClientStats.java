@@ -56,6 +56,8 @@ public class ClientStats {
     long m_invocationAborts;
     long m_invocationErrors;
     long m_invocationTimeouts;
+    // sum over timed out invocations of how long after the timeout the client reported it
+    long m_timeoutLagNanos;
 
     // cumulative latency measured by client, used to calculate avg. lat.
     long m_roundTripTimeNanos;
@@ -110,6 +112,7 @@ public class ClientStats {
         m_invocationAborts = other.m_invocationAborts;
         m_invocationErrors = other.m_invocationErrors;
         m_invocationTimeouts = other.m_invocationTimeouts;
+        m_timeoutLagNanos = other.m_timeoutLagNanos;
         m_roundTripTimeNanos = other.m_roundTripTimeNanos;
         m_clusterRoundTripTime = other.m_clusterRoundTripTime;
         m_latencyHistogram = other.m_latencyHistogram.copy();
@@ -138,6 +141,7 @@ public class ClientStats {
         retval.m_invocationAborts = newer.m_invocationAborts - older.m_invocationAborts;
         retval.m_invocationErrors = newer.m_invocationErrors - older.m_invocationErrors;
         retval.m_invocationTimeouts = newer.m_invocationTimeouts - older.m_invocationTimeouts;
+        retval.m_timeoutLagNanos = newer.m_timeoutLagNanos - older.m_timeoutLagNanos;
 
         retval.m_roundTripTimeNanos = newer.m_roundTripTimeNanos - older.m_roundTripTimeNanos;
         retval.m_clusterRoundTripTime = newer.m_clusterRoundTripTime - older.m_clusterRoundTripTime;
@@ -186,6 +190,7 @@ public class ClientStats {
         m_invocationAborts += other.m_invocationAborts;
         m_invocationErrors += other.m_invocationErrors;
         m_invocationTimeouts += other.m_invocationTimeouts;
+        m_timeoutLagNanos += other.m_timeoutLagNanos;
 
         m_roundTripTimeNanos += other.m_roundTripTimeNanos;
         m_clusterRoundTripTime += other.m_clusterRoundTripTime;
@@ -197,11 +202,15 @@ public class ClientStats {
         m_bytesReceived += other.m_bytesReceived;
     }
 
-    void update(long roundTripTimeNanos, int clusterRoundTripTime, boolean abort, boolean error, boolean timeout) {
+    void update(long roundTripTimeNanos, int clusterRoundTripTime, boolean abort, boolean error, boolean timeout,
+            long timeoutLagNanos) {
         m_invocationsCompleted++;
         if (abort) m_invocationAborts++;
         if (error) m_invocationErrors++;
-        if (timeout) m_invocationTimeouts++;
+        if (timeout) {
+            m_invocationTimeouts++;
+            m_timeoutLagNanos += timeoutLagNanos;
+        }
         m_roundTripTimeNanos += roundTripTimeNanos;
         m_clusterRoundTripTime += clusterRoundTripTime;
 
@@ -333,6 +342,19 @@ public class ClientStats {
         return m_invocationTimeouts;
     }
 
+    /**
+     * Get the average time in milliseconds between the moment a timed out transaction
+     * reached its timeout and the moment the client reported the timeout, for the time
+     * period covered by this stats instance. This measures how accurately the client
+     * expires transactions; it grows when the client is too loaded to keep up.
+     *
+     * @return Average timeout lag in milliseconds.
+     */
+    public double getAverageTimeoutLag() {
+        if (m_invocationTimeouts == 0) return 0;
+        return (m_timeoutLagNanos / (double)m_invocationTimeouts) / 1000000.0D;
+    }
+
     /**
      * Get the average latency in milliseconds for the time period
      * covered by this stats instance. This is computed by summing the client-measured
@@ -596,6 +618,9 @@ public class ClientStats {
                     (m_roundTripTimeNanos / (double)m_invocationsCompleted) / 1000000.0, m_clusterRoundTripTime / m_invocationsCompleted));
             sb.append(latencyHistoReport()).append("\n");
         }
+        if (m_invocationTimeouts > 0) {
+            sb.append(String.format("    avg timeout lag: %.2f\n", getAverageTimeoutLag()));
+        }
 
         return sb.toString();
     }
@@ -74,6 +74,7 @@ import org.voltdb.common.Constants;
 
 import com.google_voltpatches.common.base.Throwables;
 import com.google_voltpatches.common.collect.ImmutableList;
+import com.google_voltpatches.common.collect.ImmutableMap;
 import com.google_voltpatches.common.collect.ImmutableSet;
 import com.google_voltpatches.common.collect.ImmutableSortedMap;
 import com.google_voltpatches.common.collect.Maps;
@@ -91,10 +92,16 @@ class Distributer {
 
     static int RESUBSCRIPTION_DELAY_MS = Integer.getInteger("RESUBSCRIPTION_DELAY_MS", 10000);
     static final long PING_HANDLE = Long.MAX_VALUE;
+
+    // Bounds on the per connection buffer responses are read into when response buffers are reused
+    static final int INITIAL_RESPONSE_BUFFER = 4096;
+    static final int MAX_REUSED_RESPONSE_BUFFER = 1024 * 1024;
     public static final Long ASYNC_TOPO_HANDLE = PING_HANDLE - 1;
     public static final Long ASYNC_PROC_HANDLE = PING_HANDLE - 2;
     static final long USE_DEFAULT_CLIENT_TIMEOUT = 0;
     static long PARTITION_KEYS_INFO_REFRESH_FREQUENCY = Long.getLong("PARTITION_KEYS_INFO_REFRESH_FREQUENCY", 1000);
+    // Timeouts are milliseconds to minutes, a coarse tick keeps an idle client from waking often
+    static long TIMEOUT_WHEEL_TICK_MICROS = Long.getLong("TIMEOUT_WHEEL_TICK_MICROS", 10000);
 
     // handles used internally are negative and decrement for each call
     public final AtomicLong m_sysHandle = new AtomicLong(-1);
@@ -103,7 +110,7 @@ class Distributer {
     private final CopyOnWriteArrayList<NodeConnection> m_connections =
             new CopyOnWriteArrayList<>();
 
-    private final ArrayList<ClientStatusListenerExt> m_listeners = new ArrayList<>();
+    private final CopyOnWriteArrayList<ClientStatusListenerExt> m_listeners = new CopyOnWriteArrayList<>();
 
     //Selector and connection handling, does all work in blocking selection thread
     private final VoltNetworkPool m_network;
@@ -111,7 +118,7 @@ class Distributer {
     private final SSLContext m_sslContext;
 
     // Temporary until a distribution/affinity algorithm is written
-    private int m_nextConnection = 0;
+    private final AtomicInteger m_nextConnection = new AtomicInteger(0);
 
     private final boolean m_useMultipleThreads;
     private final boolean m_useClientAffinity;
@@ -134,29 +141,63 @@ class Distributer {
         }
     }
 
-    private final Map<Integer, NodeConnection> m_partitionMasters = new HashMap<>();
-    private final Map<Integer, NodeConnection[]> m_partitionReplicas = new HashMap<>();
-    private final Map<Integer, NodeConnection> m_hostIdToConnection = new HashMap<>();
+    /**
+     * Immutable snapshot of everything queue() needs to route an invocation. Writers build a
+     * new snapshot under the distributer monitor and publish it through m_topology, so routing
+     * never has to take the monitor itself.
+     */
+    private static final class Topology {
+        static final Topology EMPTY = new Topology(new NodeConnection[0], null,
+                ImmutableMap.<Integer, NodeConnection>of(), ImmutableMap.<Integer, NodeConnection[]>of());
+
+        final NodeConnection[] m_connections;
+        //This is the instance of the Hashinator we picked from TOPO used only for client affinity.
+        final HashinatorLite m_hashinator;
+        final ImmutableMap<Integer, NodeConnection> m_partitionMasters;
+        final ImmutableMap<Integer, NodeConnection[]> m_partitionReplicas;
+
+        Topology(NodeConnection[] connections,
+                 HashinatorLite hashinator,
+                 ImmutableMap<Integer, NodeConnection> partitionMasters,
+                 ImmutableMap<Integer, NodeConnection[]> partitionReplicas) {
+            m_connections = connections;
+            m_hashinator = hashinator;
+            m_partitionMasters = partitionMasters;
+            m_partitionReplicas = partitionReplicas;
+        }
+
+        Topology withConnections(NodeConnection[] connections) {
+            return new Topology(connections, m_hashinator, m_partitionMasters, m_partitionReplicas);
+        }
+    }
+
+    private volatile Topology m_topology = Topology.EMPTY;
+    private final Map<Integer, NodeConnection> m_hostIdToConnection = new ConcurrentHashMap<>();
     private final AtomicReference<ImmutableSortedMap<String, Procedure>> m_procedureInfo =
                                 new AtomicReference<ImmutableSortedMap<String, Procedure>>();
     private final AtomicReference<ImmutableSet<Integer>> m_partitionKeys = new AtomicReference<ImmutableSet<Integer>>();
     private final AtomicLong m_lastPartitionKeyFetched = new AtomicLong(0);
     private final AtomicReference<ClientResponse> m_partitionUpdateStatus = new AtomicReference<ClientResponse>();
 
-    //This is the instance of the Hashinator we picked from TOPO used only for client affinity.
-    private HashinatorLite m_hashinator = null;
     //This is a global timeout that will be used if a per-procedure timeout is not provided with the procedure call.
     private final long m_procedureCallTimeoutNanos;
     private static final long MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS = 30 * 60 * 1000; // 30 minutes
     private final long m_connectionResponseTimeoutNanos;
-    private final Map<Integer, ClientAffinityStats> m_clientAffinityStats =
-        new HashMap<>();
+    private final ConcurrentMap<Integer, ClientAffinityStats> m_clientAffinityStats =
+        new ConcurrentHashMap<>();
 
-    public final RateLimiter m_rateLimiter = new RateLimiter();
+    /*
+     * Guards reporting the start and end of backpressure to listeners. It is held by queue()
+     * only when it has found every candidate connection backpressured, never on the fast path.
+     */
+    private final Object m_backpressureLock = new Object();
+
+    public final RateLimiter m_rateLimiter;
 
     private final AtomicReference<ImmutableSet<Integer>> m_unconnectedHosts = new AtomicReference<ImmutableSet<Integer>>();
     private AtomicBoolean m_createConnectionUponTopoChangeInProgress = new AtomicBoolean(false);
     private boolean m_topologyChangeAware;
+    private boolean m_reuseResponseBuffers = false;
 
     //private final Timer m_timer;
     private final ScheduledExecutorService m_ex =
@@ -164,6 +205,11 @@ class Distributer {
                 CoreUtils.getThreadFactory("VoltDB Client Reaper Thread"));
     ScheduledFuture<?> m_timeoutReaperHandle;
 
+    // Expires procedure calls, advanced on the reaper thread every tick
+    private final TimeoutWheel m_timeoutWheel =
+        new TimeoutWheel(TimeUnit.MICROSECONDS.toNanos(TIMEOUT_WHEEL_TICK_MICROS), System.nanoTime());
+    ScheduledFuture<?> m_timeoutWheelHandle;
+
     /**
      * Server's instances id. Unique for the cluster
      */
@@ -316,16 +362,15 @@ class Distributer {
         }
     }
 
+    /*
+     * Pings connections that have been quiet and closes the ones that stopped answering.
+     * Procedure call timeouts are handled by m_timeoutWheel.
+     */
     class CallExpiration implements Runnable {
         @Override
         public void run() {
             try {
-                // make a threadsafe copy of all connections
-                ArrayList<NodeConnection> connections = new ArrayList<>();
-                synchronized (Distributer.this) {
-                    connections.addAll(m_connections);
-                }
-
+                final NodeConnection[] connections = m_topology.m_connections;
                 final long nowNanos = System.nanoTime();
 
                 // for each connection
@@ -345,27 +390,6 @@ class Distributer {
                     if ((!c.m_outstandingPing) && (sinceLastResponse > (m_connectionResponseTimeoutNanos / 3))) {
                         c.sendPing();
                     }
-
-                    // for each outstanding procedure
-                    for (final Map.Entry<Long, CallbackBookeeping> e : c.m_callbacks.entrySet()) {
-                        final long handle = e.getKey();
-                        final CallbackBookeeping cb = e.getValue();
-
-                        // if the timeout is expired, call the callback and remove the
-                        // bookeeping data
-                        final long deltaNanos = Math.max(1, nowNanos - cb.timestampNanos);
-                        if (deltaNanos > cb.procedureTimeoutNanos) {
-
-                            //For expected long operations don't use the default timeout
-                            //unless it is > MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS
-                            final boolean isLongOp = isLongOp(cb.name);
-                            if (isLongOp && (deltaNanos < TimeUnit.MILLISECONDS.toNanos(MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS))) {
-                                continue;
-                            }
-
-                            c.handleTimedoutCallback(handle, nowNanos);
-                        }
-                    }
                 }
             } catch (Throwable t) {
                 t.printStackTrace();
@@ -373,6 +397,17 @@ class Distributer {
         }
     }
 
+    class TimeoutWheelTick implements Runnable {
+        @Override
+        public void run() {
+            try {
+                m_timeoutWheel.advance(System.nanoTime());
+            } catch (Throwable t) {
+                t.printStackTrace();
+            }
+        }
+    }
+
     /*
      * Check if the proc name is a procedure that is expected to run long
      * Make the minimum timeoutMS for certain long running system procedures
@@ -389,15 +424,25 @@ class Distributer {
         return false;
     }
 
-    class CallbackBookeeping {
-        public CallbackBookeeping(long timestampNanos, ProcedureCallback callback, String name, long timeoutNanos, boolean ignoreBackpressure) {
+    static final class CallbackBookeeping extends TimeoutWheel.Timeout {
+        public CallbackBookeeping(NodeConnection connection, long handle, long timestampNanos, ProcedureCallback callback, String name, long timeoutNanos, boolean ignoreBackpressure) {
             assert(callback != null);
+            this.connection = connection;
+            this.handle = handle;
             this.timestampNanos = timestampNanos;
             this.callback = callback;
             this.name = name;
             this.procedureTimeoutNanos = timeoutNanos;
             this.ignoreBackpressure = ignoreBackpressure;
         }
+
+        @Override
+        void expire(long nowNanos, long lagNanos) {
+            connection.handleTimedoutCallback(handle, nowNanos, lagNanos);
+        }
+
+        final NodeConnection connection;
+        final long handle;
         long timestampNanos;
         //Timeout in ms 0 means use conenction specified procedure timeoutMS.
         final long procedureTimeoutNanos;
@@ -408,7 +453,7 @@ class Distributer {
 
     class NodeConnection extends VoltProtocolHandler implements org.voltcore.network.QueueMonitor {
         private final AtomicInteger m_callbacksToInvoke = new AtomicInteger(0);
-        private final ConcurrentMap<Long, CallbackBookeeping> m_callbacks = new ConcurrentHashMap<>();
+        private final CallbackTable m_callbacks = new CallbackTable();
         private final NonBlockingHashMap<String, ClientStats> m_stats = new NonBlockingHashMap<>();
         private Connection m_connection;
         private volatile boolean m_isConnected = true;
@@ -417,6 +462,10 @@ class Distributer {
         boolean m_outstandingPing = false;
         ClientStatusListenerExt.DisconnectCause m_closeCause = DisconnectCause.CONNECTION_CLOSED;
 
+        // Only touched by the network thread reading this connection
+        private ByteBuffer m_messageBuffer = null;
+        private final ClientResponseImpl m_transientResponse = new ClientResponseImpl();
+
         public NodeConnection(long ids[]) {}
 
         /*
@@ -427,6 +476,62 @@ class Distributer {
          */
         public void createWork(final long nowNanos, long handle, String name, ByteBuffer c,
                 ProcedureCallback callback, boolean ignoreBackpressure, long timeoutNanos) {
+            if (!registerWork(nowNanos, handle, name, callback, ignoreBackpressure, timeoutNanos)) {
+                return;
+            }
+
+            //Check for disconnect
+            if (!m_isConnected) {
+                failDisconnectedWork(nowNanos, handle, callback, ignoreBackpressure);
+            } else {
+                m_connection.writeStream().enqueue(c);
+            }
+        }
+
+        /*
+         * Like createWork, but every invocation that makes it past the rate limiter goes
+         * out in a single batch message
+         */
+        public void createBatchWork(final long nowNanos, List<ProcedureInvocation> invocations,
+                List<ProcedureCallback> callbacks, boolean ignoreBackpressure, long timeoutNanos) {
+            final List<ProcedureInvocation> registered = new ArrayList<>(invocations.size());
+            final List<ProcedureCallback> registeredCallbacks = new ArrayList<>(invocations.size());
+            for (int i = 0; i < invocations.size(); i++) {
+                final ProcedureInvocation invocation = invocations.get(i);
+                if (registerWork(nowNanos, invocation.getHandle(), invocation.getProcName(), callbacks.get(i),
+                        ignoreBackpressure, timeoutNanos)) {
+                    registered.add(invocation);
+                    registeredCallbacks.add(callbacks.get(i));
+                }
+            }
+            if (registered.isEmpty()) {
+                return;
+            }
+
+            //Check for disconnect
+            if (!m_isConnected) {
+                for (int i = 0; i < registered.size(); i++) {
+                    failDisconnectedWork(nowNanos, registered.get(i).getHandle(), registeredCallbacks.get(i),
+                            ignoreBackpressure);
+                }
+                return;
+            }
+
+            ByteBuffer buf = null;
+            try {
+                buf = serializeBatch(registered);
+            } catch (Exception e) {
+                Throwables.propagate(e);
+            }
+            m_connection.writeStream().enqueue(buf);
+        }
+
+        /**
+         * Take a permit from the rate limiter and register the callback and its timeout
+         * @return false if the invocation timed out waiting for the rate limiter and must not be sent
+         */
+        private boolean registerWork(final long nowNanos, long handle, String name,
+                ProcedureCallback callback, boolean ignoreBackpressure, long timeoutNanos) {
             assert(callback != null);
 
             //How long from the starting point in time to wait to get this stuff done
@@ -453,8 +558,9 @@ class Distributer {
                  * the transaction out on the wire due to max outstanding
                  */
                 final long deltaNanos = Math.max(1, System.nanoTime() - nowNanos);
-                    invokeCallbackWithTimeout(name, callback, deltaNanos, afterRateLimitNanos,  timeoutNanos, handle, ignoreBackpressure);
-                return;
+                    invokeCallbackWithTimeout(name, callback, deltaNanos, afterRateLimitNanos,  timeoutNanos,
+                            Math.max(0, deltaNanos - timeoutNanos), handle, ignoreBackpressure);
+                return false;
             }
 
             assert(m_callbacks.containsKey(handle) == false);
@@ -464,74 +570,56 @@ class Distributer {
             assert(callbacksToInvoke >= 0);
 
             //Optimistically submit the task
-            m_callbacks.put(handle, new CallbackBookeeping(nowNanos, callback, name, timeoutNanos, ignoreBackpressure));
-
-            //Schedule the timeout to fire relative to the amount of time
-            //spent getting to this point. Might fire immediately
-            //some of the time, but that is fine
-            final long timeoutRemaining = timeoutTime - afterRateLimitNanos;
-
-            //Schedule an individual timeout if necessary
-            //If it is a long op, don't bother scheduling a discrete timeout
-            if (timeoutNanos < TimeUnit.SECONDS.toNanos(1) && !isLongOp(name)) {
-                submitDiscreteTimeoutTask(handle, Math.max(0, timeoutRemaining));
+            final CallbackBookeeping cb =
+                new CallbackBookeeping(this, handle, nowNanos, callback, name, timeoutNanos, ignoreBackpressure);
+            m_callbacks.put(cb);
+
+            //Schedule the timeout to fire at the original deadline, which accounts for the amount of
+            //time spent getting to this point. Might fire immediately some of the time, but that is fine.
+            //For expected long operations don't use the default timeout
+            //unless it is > MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS
+            if (isLongOp(name)) {
+                m_timeoutWheel.schedule(cb, nowNanos + Math.max(timeoutNanos,
+                        TimeUnit.MILLISECONDS.toNanos(MINIMUM_LONG_RUNNING_SYSTEM_CALL_TIMEOUT_MS)));
+            } else {
+                m_timeoutWheel.schedule(cb, timeoutTime);
             }
+            return true;
+        }
 
-            //Check for disconnect
-            if (!m_isConnected) {
-                //Check if the disconnect or expiration already handled the callback
-                if (m_callbacks.remove(handle) == null) {
-                    return;
-                }
-                final ClientResponse r = new ClientResponseImpl(
-                        ClientResponse.CONNECTION_LOST, new VoltTable[0],
-                        "Connection to database host (" + m_connection.getHostnameAndIPAndPort() +
-                ") was lost before a response was received");
-                try {
-                    callback.clientCallback(r);
-                } catch (Exception e) {
-                    uncaughtException(callback, r, e);
-                }
-
-                //Drain needs to know when all callbacks have been invoked
-                final int remainingToInvoke = m_callbacksToInvoke.decrementAndGet();
-                assert(remainingToInvoke >= 0);
-
-                //for bookkeeping, but it feels dishonest to call this here
-                m_rateLimiter.transactionResponseReceived(nowNanos, -1, ignoreBackpressure);
+        private void failDisconnectedWork(final long nowNanos, long handle, ProcedureCallback callback,
+                boolean ignoreBackpressure) {
+            //Check if the disconnect or expiration already handled the callback
+            final CallbackBookeeping cb = m_callbacks.remove(handle);
+            if (cb == null) {
                 return;
-            } else {
-                m_connection.writeStream().enqueue(c);
             }
-        }
+            m_timeoutWheel.cancel(cb);
+            final ClientResponse r = new ClientResponseImpl(
+                    ClientResponse.CONNECTION_LOST, new VoltTable[0],
+                    "Connection to database host (" + m_connection.getHostnameAndIPAndPort() +
+            ") was lost before a response was received");
+            try {
+                callback.clientCallback(r);
+            } catch (Exception e) {
+                uncaughtException(callback, r, e);
+            }
 
-        /*
-         * For high precision timeouts, submit a discrete task to a scheduled
-         * executor service to time out the transaction. The timeout task
-         * when run checks if the task is still present in the concurrent map
-         * of tasks and removes it. If it wins the race to remove the map
-         * then the transaction will be timed out even if a response is received
-         * at the same time.
-         *
-         * This will race with the periodic task that checks lower resolution timeouts
-         * and it is fine, the concurrent map makes sure each callback is handled exactly once
-         */
-        void submitDiscreteTimeoutTask(final long handle, long timeoutNanos) {
-            m_ex.schedule(new Runnable() {
-                @Override
-                public void run() {
-                    handleTimedoutCallback(handle, System.nanoTime());
-                }
-            }, timeoutNanos, TimeUnit.NANOSECONDS);
+            //Drain needs to know when all callbacks have been invoked
+            final int remainingToInvoke = m_callbacksToInvoke.decrementAndGet();
+            assert(remainingToInvoke >= 0);
+
+            //for bookkeeping, but it feels dishonest to call this here
+            m_rateLimiter.transactionResponseReceived(nowNanos, -1, -1, ignoreBackpressure);
         }
 
         /*
          * Factor out the boilerplate involved in checking whether a timed out callback
          * still exists and needs to be invoked, or has already been handled by another thread
          */
-        void handleTimedoutCallback(long handle, long nowNanos) {
+        void handleTimedoutCallback(long handle, long nowNanos, long lagNanos) {
             //Callback doesn't have to be there, it may have already
-            //received a response or been expired by the periodic expiration task, or a discrete expiration task
+            //received a response or failed because the connection was lost
             final CallbackBookeeping cb = m_callbacks.remove(handle);
 
             //It was handled during the race
@@ -541,7 +629,8 @@ class Distributer {
 
             final long deltaNanos = Math.max(1, nowNanos - cb.timestampNanos);
 
-            invokeCallbackWithTimeout(cb.name, cb.callback, deltaNanos, nowNanos, cb.procedureTimeoutNanos, handle, cb.ignoreBackpressure);
+            invokeCallbackWithTimeout(cb.name, cb.callback, deltaNanos, nowNanos, cb.procedureTimeoutNanos, lagNanos,
+                    handle, cb.ignoreBackpressure);
         }
 
         /*
@@ -552,6 +641,7 @@ class Distributer {
                                        long deltaNanos,
                                        long nowNanos,
                                        long timeoutNanos,
+                                       long lagNanos,
                                        long handle,
                                        boolean ignoreBackpressure) {
             ClientResponseImpl r = new ClientResponseImpl(
@@ -574,8 +664,8 @@ class Distributer {
             final int remainingToInvoke = m_callbacksToInvoke.decrementAndGet();
             assert(remainingToInvoke >= 0);
 
-            m_rateLimiter.transactionResponseReceived(nowNanos, -1, ignoreBackpressure);
-            updateStatsForTimeout(procName, r.getClientRoundtripNanos(), r.getClusterRoundtrip());
+            m_rateLimiter.transactionTimedOut(nowNanos, ignoreBackpressure);
+            updateStatsForTimeout(procName, r.getClientRoundtripNanos(), r.getClusterRoundtrip(), lagNanos);
         }
 
         void sendPing() {
@@ -595,11 +685,12 @@ class Distributer {
         private void updateStatsForTimeout(
                 final String procName,
                 final long roundTripNanos,
-                final int clusterRoundTrip) {
+                final int clusterRoundTrip,
+                final long timeoutLagNanos) {
             m_connection.queueTask(new Runnable() {
                 @Override
                 public void run() {
-                    updateStats(procName, roundTripNanos, clusterRoundTrip, false, false, true);
+                    updateStats(procName, roundTripNanos, clusterRoundTrip, false, false, true, timeoutLagNanos);
                 }
             });
         }
@@ -610,6 +701,8 @@ class Distributer {
          * @param clusterRoundTrip round trip measured within the VoltDB cluster
          * @param abort true of the procedure was aborted
          * @param failure true if the procedure failed
+         * @param timeout true if the procedure timed out
+         * @param timeoutLagNanos how late the timeout was delivered, if it timed out
          */
         private void updateStats(
                 String procName,
@@ -617,7 +710,8 @@ class Distributer {
                 int clusterRoundTrip,
                 boolean abort,
                 boolean failure,
-                boolean timeout) {
+                boolean timeout,
+                long timeoutLagNanos) {
             ClientStats stats = m_stats.get(procName);
             if (stats == null) {
                 stats = new ClientStats();
@@ -629,24 +723,61 @@ class Distributer {
                 stats.m_endTS = Long.MIN_VALUE;
                 m_stats.put(procName, stats);
             }
-            stats.update(roundTripNanos, clusterRoundTrip, abort, failure, timeout);
+            stats.update(roundTripNanos, clusterRoundTrip, abort, failure, timeout, timeoutLagNanos);
         }
 
         @Override
-        public void handleMessage(ByteBuffer buf, Connection c) {
-            long nowNanos = System.nanoTime();
-            ClientResponseImpl response = new ClientResponseImpl();
+        protected ByteBuffer allocateMessageBuffer(int length) {
+            if (!m_reuseResponseBuffers || length > MAX_REUSED_RESPONSE_BUFFER) {
+                return super.allocateMessageBuffer(length);
+            }
+            if (m_messageBuffer == null || m_messageBuffer.capacity() < length) {
+                m_messageBuffer = ByteBuffer.allocate(Math.max(INITIAL_RESPONSE_BUFFER, Integer.highestOneBit(length - 1) << 1));
+            }
+            m_messageBuffer.clear();
+            m_messageBuffer.limit(length);
+            return m_messageBuffer;
+        }
+
+        /**
+         * Decode a response, into the recycled response for transient callbacks. A response that
+         * outlives the callback can't refer to the reused message buffer, so it gets a copy.
+         */
+        private ClientResponseImpl decodeResponse(ByteBuffer buf, boolean isTransient) {
+            ClientResponseImpl response;
+            if (isTransient) {
+                response = m_transientResponse;
+            } else {
+                response = new ClientResponseImpl();
+                if (buf == m_messageBuffer) {
+                    final ByteBuffer copy = ByteBuffer.allocate(buf.remaining());
+                    copy.put(buf);
+                    copy.flip();
+                    buf = copy;
+                }
+            }
             try {
-                response.initFromBuffer(buf);
+                if (isTransient) {
+                    response.initTransientFromBuffer(buf);
+                } else {
+                    response.initFromBuffer(buf);
+                }
             } catch (IOException e1) {
                 // TODO Auto-generated catch block
                 e1.printStackTrace();
             }
+            return response;
+        }
+
+        @Override
+        public void handleMessage(ByteBuffer buf, Connection c) {
+            long nowNanos = System.nanoTime();
 
             // track the timestamp of the most recent read on this connection
             m_lastResponseTimeNanos = nowNanos;
 
-            final long handle = response.getClientHandle();
+            // The handle follows the version byte
+            final long handle = buf.getLong(buf.position() + 1);
 
             // handle ping response and get out
             if (handle == PING_HANDLE) {
@@ -658,6 +789,7 @@ class Distributer {
                  * for the exception handling, but trying to set + reset the async topo callback
                  * turned out to be pretty challenging
                  */
+                ClientResponseImpl response = decodeResponse(buf, false);
                 ProcedureCallback cb = new TopoUpdateCallback();
                 try {
                     cb.clientCallback(response);
@@ -667,6 +799,7 @@ class Distributer {
 
                 return;
             } else if (handle == ASYNC_PROC_HANDLE) {
+                ClientResponseImpl response = decodeResponse(buf, false);
                 ProcedureCallback cb = new ProcUpdateCallback();
                 try {
                     cb.clientCallback(response);
@@ -678,12 +811,13 @@ class Distributer {
 
             //Race with expiration thread to be the first to remove the callback
             //from the map and process it
-            final CallbackBookeeping stuff = m_callbacks.remove(response.getClientHandle());
+            final CallbackBookeeping stuff = m_callbacks.remove(handle);
 
             // presumably (hopefully) this is a response for a timed-out message
             if (stuff == null) {
                 // also ignore internal (topology and procedure) calls
                 if (handle >= 0) {
+                    ClientResponseImpl response = decodeResponse(buf, false);
                     // notify any listeners of the late response
                     for (ClientStatusListenerExt listener : m_listeners) {
                         listener.lateProcedureResponse(
@@ -695,10 +829,12 @@ class Distributer {
             }
             // handle a proper callback
             else {
+                m_timeoutWheel.cancel(stuff);
                 final long callTimeNanos = stuff.timestampNanos;
                 final long deltaNanos = Math.max(1, nowNanos - callTimeNanos);
                 final ProcedureCallback cb = stuff.callback;
                 assert(cb != null);
+                final ClientResponseImpl response = decodeResponse(buf, cb instanceof TransientProcedureCallback);
                 final byte status = response.getStatus();
                 boolean abort = false;
                 boolean error = false;
@@ -709,8 +845,8 @@ class Distributer {
                 }
 
                 int clusterRoundTrip = response.getClusterRoundtrip();
-                m_rateLimiter.transactionResponseReceived(nowNanos, clusterRoundTrip, stuff.ignoreBackpressure);
-                updateStats(stuff.name, deltaNanos, clusterRoundTrip, abort, error, false);
+                m_rateLimiter.transactionResponseReceived(nowNanos, clusterRoundTrip, deltaNanos, stuff.ignoreBackpressure);
+                updateStats(stuff.name, deltaNanos, clusterRoundTrip, abort, error, false, 0);
                 response.setClientRoundtrip(deltaNanos);
                 assert(response.getHashes() == null) : "A determinism hash snuck into the client wire protocol";
                 try {
@@ -752,7 +888,9 @@ class Distributer {
                 /*
                  * Repair all cluster topology data with the node connection removed
                  */
-                Iterator<Map.Entry<Integer, NodeConnection>> i = m_partitionMasters.entrySet().iterator();
+                final Topology topology = m_topology;
+                Map<Integer, NodeConnection> partitionMasters = new HashMap<>(topology.m_partitionMasters);
+                Iterator<Map.Entry<Integer, NodeConnection>> i = partitionMasters.entrySet().iterator();
                 while (i.hasNext()) {
                     Map.Entry<Integer, NodeConnection> entry = i.next();
                     if (entry.getValue() == this) {
@@ -768,7 +906,8 @@ class Distributer {
                     }
                 }
 
-                Iterator<Map.Entry<Integer, NodeConnection[]>> i2 = m_partitionReplicas.entrySet().iterator();
+                Map<Integer, NodeConnection[]> partitionReplicas = new HashMap<>(topology.m_partitionReplicas);
+                Iterator<Map.Entry<Integer, NodeConnection[]>> i2 = partitionReplicas.entrySet().iterator();
                 List<Pair<Integer, NodeConnection[]>> entriesToRewrite = new ArrayList<>();
                 while (i2.hasNext()) {
                     Map.Entry<Integer, NodeConnection[]> entry = i2.next();
@@ -780,7 +919,7 @@ class Distributer {
                 }
 
                 for (Pair<Integer, NodeConnection[]> entry : entriesToRewrite) {
-                    m_partitionReplicas.remove(entry.getFirst());
+                    partitionReplicas.remove(entry.getFirst());
                     NodeConnection survivors[] = new NodeConnection[entry.getSecond().length - 1];
                     if (survivors.length == 0) {
                         break;
@@ -791,10 +930,14 @@ class Distributer {
                             survivors[zz++] = entry.getSecond()[ii];
                         }
                     }
-                    m_partitionReplicas.put(entry.getFirst(), survivors);
+                    partitionReplicas.put(entry.getFirst(), survivors);
                 }
 
                 m_connections.remove(this);
+                m_topology = new Topology(m_connections.toArray(new NodeConnection[0]),
+                                          topology.m_hashinator,
+                                          ImmutableMap.copyOf(partitionMasters),
+                                          ImmutableMap.copyOf(partitionReplicas));
                 //Notify listeners that a connection has been lost
                 for (ClientStatusListenerExt s : m_listeners) {
                     s.connectionLost(
@@ -837,12 +980,13 @@ class Distributer {
                         ClientResponse.CONNECTION_LOST, new VoltTable[0],
                         "Connection to database host (" + m_connection.getHostnameAndIPAndPort() +
                 ") was lost before a response was received");
-            for (Map.Entry<Long, CallbackBookeeping> e : m_callbacks.entrySet()) {
+            for (CallbackBookeeping e : m_callbacks) {
                 //Check for race with other threads
-                if (m_callbacks.remove(e.getKey()) == null) {
+                final CallbackBookeeping callBk = m_callbacks.remove(e.handle);
+                if (callBk == null) {
                     continue;
                 }
-                final CallbackBookeeping callBk = e.getValue();
+                m_timeoutWheel.cancel(callBk);
                 try {
                     callBk.callback.clientCallback(r);
                 }
@@ -854,7 +998,7 @@ class Distributer {
                 final int remainingToInvoke = m_callbacksToInvoke.decrementAndGet();
                 assert(remainingToInvoke >= 0);
 
-                m_rateLimiter.transactionResponseReceived(System.nanoTime(), -1, callBk.ignoreBackpressure);
+                m_rateLimiter.transactionResponseReceived(System.nanoTime(), -1, -1, callBk.ignoreBackpressure);
             }
         }
 
@@ -864,11 +1008,11 @@ class Distributer {
                 @Override
                 public void run() {
                     /*
-                     * Synchronization on Distributer.this is critical to ensure that queue
+                     * Synchronization on m_backpressureLock is critical to ensure that queue
                      * does not report backpressure AFTER the write stream reports that backpressure
                      * has ended thus resulting in a lost wakeup.
                      */
-                    synchronized (Distributer.this) {
+                    synchronized (m_backpressureLock) {
                         for (final ClientStatusListenerExt csl : m_listeners) {
                             csl.backpressure(false);
                         }
@@ -946,6 +1090,24 @@ class Distributer {
             boolean sendReadsToReplicasBytDefault,
             Subject subject,
             SSLContext sslContext) {
+        this(useMultipleThreads, procedureCallTimeoutNanos, connectionResponseTimeoutMS, useClientAffinity,
+                sendReadsToReplicasBytDefault, subject, sslContext, new RateLimiter());
+    }
+
+    /**
+     * @param rateLimiter  chosen by the client configuration, the reaper reads it as soon as
+     *                     the constructor schedules it
+     */
+    Distributer(
+            boolean useMultipleThreads,
+            long procedureCallTimeoutNanos,
+            long connectionResponseTimeoutMS,
+            boolean useClientAffinity,
+            boolean sendReadsToReplicasBytDefault,
+            Subject subject,
+            SSLContext sslContext,
+            RateLimiter rateLimiter) {
+        m_rateLimiter = rateLimiter;
         m_useMultipleThreads = useMultipleThreads;
         m_sslContext = sslContext;
         if (m_sslContext != null) {
@@ -965,6 +1127,8 @@ class Distributer {
 
         // schedule the task that looks for timed-out proc calls and connections
         m_timeoutReaperHandle = m_ex.scheduleAtFixedRate(new CallExpiration(), 1, 1, TimeUnit.SECONDS);
+        m_timeoutWheelHandle = m_ex.scheduleAtFixedRate(new TimeoutWheelTick(),
+                m_timeoutWheel.getTickNanos(), m_timeoutWheel.getTickNanos(), TimeUnit.NANOSECONDS);
         m_subject = subject;
     }
 
@@ -1046,6 +1210,7 @@ class Distributer {
             m_buildString = (String)socketChannelAndInstanceIdAndBuildString[2];
 
             m_connections.add(cxn);
+            m_topology = m_topology.withConnections(m_connections.toArray(new NodeConnection[0]));
         }
 
         if (m_useClientAffinity) {
@@ -1142,84 +1307,165 @@ class Distributer {
         assert(invocation != null);
         assert(cb != null);
 
-        NodeConnection cxn = null;
-        boolean backpressure = true;
+        final NodeConnection cxn = selectConnectionOrReportBackpressure(invocation, ignoreBackpressure);
+        final boolean backpressure = (cxn == null);
 
         /*
-         * Synchronization is necessary to ensure that m_connections is not modified
-         * as well as to ensure that backpressure is reported correctly
+         * Do the heavy weight serialization outside the backpressure lock.
          */
-        synchronized (this) {
-            final int totalConnections = m_connections.size();
-
-            if (totalConnections == 0) {
-                throw new NoConnectionsException("No connections.");
+        if (cxn != null) {
+            ByteBuffer buf = null;
+            try {
+                buf = serializeSPI(invocation);
+            } catch (Exception e) {
+                Throwables.propagate(e);
             }
+            cxn.createWork(nowNanos, invocation.getHandle(), invocation.getProcName(), buf, cb, ignoreBackpressure, timeoutNanos);
+        }
+        if (m_topologyChangeAware) {
+            createConnectionsUponTopologyChange();
+        }
+        return !backpressure;
+    }
+
+    /**
+     * Queue a batch of invocations to be sent to a single connection in one message, chosen
+     * by routing the first invocation.
+     * @return true if the batch was queued, false if there was backpressure
+     */
+    boolean queueBatch(
+            List<ProcedureInvocation> invocations,
+            List<ProcedureCallback> callbacks,
+            final boolean ignoreBackpressure, final long nowNanos, final long timeoutNanos)
+            throws NoConnectionsException {
+        assert(!invocations.isEmpty());
+        assert(invocations.size() == callbacks.size());
+
+        final NodeConnection cxn = selectConnectionOrReportBackpressure(invocations.get(0), ignoreBackpressure);
+        if (cxn != null) {
+            cxn.createBatchWork(nowNanos, invocations, callbacks, ignoreBackpressure, timeoutNanos);
+        }
+        if (m_topologyChangeAware) {
+            createConnectionsUponTopologyChange();
+        }
+        return cxn != null;
+    }
 
+    /**
+     * @return the connection to send an invocation to, or null after reporting backpressure
+     * to the listeners if every candidate connection has backpressure
+     */
+    private NodeConnection selectConnectionOrReportBackpressure(ProcedureInvocation invocation,
+            boolean ignoreBackpressure) throws NoConnectionsException {
+        /*
+         * Route against an immutable snapshot of the topology so that concurrent callers
+         * never contend on the distributer monitor.
+         */
+        NodeConnection cxn = selectConnection(m_topology, invocation, ignoreBackpressure, true);
+        if (cxn == null) {
             /*
-             * Check if the master for the partition is known. No back pressure check to ensure correct
-             * routing, but backpressure will be managed anyways. This is where we guess partition based on client
-             * affinity and known topology (hashinator initialized).
+             * Every candidate had backpressure. Check again while holding the lock that
+             * offBackPressure reports through, so that backpressure is never reported AFTER the
+             * write stream reported that it ended, which would be a lost wakeup.
              */
-            if (m_useClientAffinity && (m_hashinator != null)) {
-                final ImmutableSortedMap<String, Procedure> procedures = m_procedureInfo.get();
-                Procedure procedureInfo = null;
-                if (procedures != null) {
-                    procedureInfo = procedures.get(invocation.getProcName());
-                }
-                Integer hashedPartition = -1;
-
-                if (procedureInfo != null) {
-                    hashedPartition = Constants.MP_INIT_PID;
-                    if (( ! procedureInfo.multiPart) &&
-                        // User may have passed too few parameters to allow dispatching.
-                        // Avoid an indexing error here to fall through to the proper ProcCallException.
-                            (procedureInfo.partitionParameter < invocation.getPassedParamCount())) {
-                        hashedPartition = m_hashinator.getHashedPartitionForParameter(
-                                procedureInfo.partitionParameterType,
-                                invocation.getPartitionParamValue(procedureInfo.partitionParameter));
+            synchronized (m_backpressureLock) {
+                cxn = selectConnection(m_topology, invocation, ignoreBackpressure, false);
+                if (cxn == null) {
+                    for (ClientStatusListenerExt s : m_listeners) {
+                        s.backpressure(true);
                     }
-                    /*
-                     * If the procedure is read only and single part and the user wants it, load balance across replicas
-                     * This is probably slower for SAFE consistency.
-                     */
-                    if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sendReadsToReplicasBytDefaultIfCAEnabled) {
-                        NodeConnection partitionReplicas[] = m_partitionReplicas.get(hashedPartition);
-                        if (partitionReplicas != null && partitionReplicas.length > 0) {
-                            cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
-                            if (cxn.hadBackPressure()) {
-                                //See if there is one without backpressure, make sure it's still connected
-                                for (NodeConnection nc : partitionReplicas) {
-                                    if (!nc.hadBackPressure() && nc.m_isConnected) {
-                                        cxn = nc;
-                                        break;
-                                    }
+                }
+            }
+        }
+        return cxn;
+    }
+
+    /**
+     * Pick the connection to send an invocation to from a snapshot of the topology.
+     * @param updateAffinityStats true to count the routing decision in the client affinity stats
+     * @return the connection, or null if every candidate connection has backpressure
+     * @throws NoConnectionsException
+     */
+    private NodeConnection selectConnection(
+            Topology topology,
+            ProcedureInvocation invocation,
+            boolean ignoreBackpressure,
+            boolean updateAffinityStats)
+            throws NoConnectionsException {
+        final NodeConnection[] connections = topology.m_connections;
+        final int totalConnections = connections.length;
+
+        if (totalConnections == 0) {
+            throw new NoConnectionsException("No connections.");
+        }
+
+        NodeConnection cxn = null;
+        boolean backpressure = true;
+        final HashinatorLite hashinator = topology.m_hashinator;
+
+        if (m_useClientAffinity && (hashinator != null)) {
+            final ImmutableSortedMap<String, Procedure> procedures = m_procedureInfo.get();
+            Procedure procedureInfo = null;
+            if (procedures != null) {
+                procedureInfo = procedures.get(invocation.getProcName());
+            }
+            Integer hashedPartition = -1;
+
+            if (procedureInfo != null) {
+                hashedPartition = Constants.MP_INIT_PID;
+                if (( ! procedureInfo.multiPart) &&
+                    // User may have passed too few parameters to allow dispatching.
+                    // Avoid an indexing error here to fall through to the proper ProcCallException.
+                        (procedureInfo.partitionParameter < invocation.getPassedParamCount())) {
+                    hashedPartition = hashinator.getHashedPartitionForParameter(
+                            procedureInfo.partitionParameterType,
+                            invocation.getPartitionParamValue(procedureInfo.partitionParameter));
+                }
+                /*
+                 * If the procedure is read only and single part and the user wants it, load balance across replicas
+                 * This is probably slower for SAFE consistency.
+                 */
+                if (!procedureInfo.multiPart && procedureInfo.readOnly && m_sendReadsToReplicasBytDefaultIfCAEnabled) {
+                    NodeConnection partitionReplicas[] = topology.m_partitionReplicas.get(hashedPartition);
+                    if (partitionReplicas != null && partitionReplicas.length > 0) {
+                        cxn = partitionReplicas[ThreadLocalRandom.current().nextInt(partitionReplicas.length)];
+                        if (cxn.hadBackPressure()) {
+                            //See if there is one without backpressure, make sure it's still connected
+                            for (NodeConnection nc : partitionReplicas) {
+                                if (!nc.hadBackPressure() && nc.m_isConnected) {
+                                    cxn = nc;
+                                    break;
                                 }
                             }
-                            if (!cxn.hadBackPressure() || ignoreBackpressure) {
-                                backpressure = false;
-                            }
                         }
-                    } else {
-                        /*
-                         * For writes or SAFE reads, this is the best way to go
-                         */
-                        cxn = m_partitionMasters.get(hashedPartition);
-                        if (cxn != null && !cxn.hadBackPressure() || ignoreBackpressure) {
+                        if (!cxn.hadBackPressure() || ignoreBackpressure) {
                             backpressure = false;
                         }
                     }
+                } else {
+                    /*
+                     * For writes or SAFE reads, this is the best way to go
+                     */
+                    cxn = topology.m_partitionMasters.get(hashedPartition);
+                    if (cxn != null && !cxn.hadBackPressure() || ignoreBackpressure) {
+                        backpressure = false;
+                    }
                 }
-                if (cxn != null && !cxn.m_isConnected) {
-                    // Would be nice to log something here
-                    // Client affinity picked a connection that was actually disconnected.  Reset to null
-                    // and let the round-robin choice pick a connection
-                    cxn = null;
-                }
+            }
+            if (cxn != null && !cxn.m_isConnected) {
+                // Would be nice to log something here
+                // Client affinity picked a connection that was actually disconnected.  Reset to null
+                // and let the round-robin choice pick a connection
+                cxn = null;
+            }
+            if (updateAffinityStats) {
                 ClientAffinityStats stats = m_clientAffinityStats.get(hashedPartition);
                 if (stats == null) {
                     stats = new ClientAffinityStats(hashedPartition, 0, 0, 0, 0);
-                    m_clientAffinityStats.put(hashedPartition, stats);
+                    ClientAffinityStats existing = m_clientAffinityStats.putIfAbsent(hashedPartition, stats);
+                    if (existing != null) {
+                        stats = existing;
+                    }
                 }
                 if (cxn != null) {
                     if (procedureInfo != null && procedureInfo.readOnly) {
@@ -1240,42 +1486,18 @@ class Distributer {
                     }
                 }
             }
-            if (cxn == null) {
-                for (int i=0; i < totalConnections; ++i) {
-                    cxn = m_connections.get(Math.abs(++m_nextConnection % totalConnections));
-                    if (!cxn.hadBackPressure() || ignoreBackpressure) {
-                        // serialize and queue the invocation
-                        backpressure = false;
-                        break;
-                    }
-                }
-            }
-
-            if (backpressure) {
-                cxn = null;
-                for (ClientStatusListenerExt s : m_listeners) {
-                    s.backpressure(true);
+        }
+        if (cxn == null) {
+            for (int i=0; i < totalConnections; ++i) {
+                cxn = connections[Math.abs(m_nextConnection.incrementAndGet() % totalConnections)];
+                if (!cxn.hadBackPressure() || ignoreBackpressure) {
+                    backpressure = false;
+                    break;
                 }
             }
         }
 
-        /*
-         * Do the heavy weight serialization outside the synchronized block.
-         * createWork synchronizes on an individual connection which allows for more concurrency
-         */
-        if (cxn != null) {
-            ByteBuffer buf = null;
-            try {
-                buf = serializeSPI(invocation);
-            } catch (Exception e) {
-                Throwables.propagate(e);
-            }
-            cxn.createWork(nowNanos, invocation.getHandle(), invocation.getProcName(), buf, cb, ignoreBackpressure, timeoutNanos);
-        }
-        if (m_topologyChangeAware) {
-            createConnectionsUponTopologyChange();
-        }
-        return !backpressure;
+        return backpressure ? null : cxn;
     }
 
     /**
@@ -1286,6 +1508,7 @@ class Distributer {
     final void shutdown() throws InterruptedException {
         // stop the old proc call reaper
         m_timeoutReaperHandle.cancel(false);
+        m_timeoutWheelHandle.cancel(false);
         m_ex.shutdown();
         if (CoreUtils.isJunitTest()) {
             m_ex.awaitTermination(1, TimeUnit.SECONDS);
@@ -1318,13 +1541,11 @@ class Distributer {
         }
     }
 
-    synchronized void addClientStatusListener(ClientStatusListenerExt listener) {
-        if (!m_listeners.contains(listener)) {
-            m_listeners.add(listener);
-        }
+    void addClientStatusListener(ClientStatusListenerExt listener) {
+        m_listeners.addIfAbsent(listener);
     }
 
-    synchronized boolean removeClientStatusListener(ClientStatusListenerExt listener) {
+    boolean removeClientStatusListener(ClientStatusListenerExt listener) {
         return m_listeners.remove(listener);
     }
 
@@ -1378,11 +1599,8 @@ class Distributer {
     Map<Integer, ClientAffinityStats> getAffinityStatsSnapshot()
     {
         Map<Integer, ClientAffinityStats> retval = new HashMap<>();
-        // these get modified under this lock in queue()
-        synchronized(this) {
-            for (Entry<Integer, ClientAffinityStats> e : m_clientAffinityStats.entrySet()) {
-                retval.put(e.getKey(), (ClientAffinityStats)e.getValue().clone());
-            }
+        for (Entry<Integer, ClientAffinityStats> e : m_clientAffinityStats.entrySet()) {
+            retval.put(e.getKey(), (ClientAffinityStats)e.getValue().clone());
         }
         return retval;
     }
@@ -1428,11 +1646,12 @@ class Distributer {
 
         //In future let TOPO return cooked bytes when cooked and we use correct recipe
         boolean cooked = false;
+        final HashinatorLite hashinator;
         if (tables.length == 1) {
             //Just in case the new client connects to the old version of Volt that only returns 1 topology table
             // We're going to get the MPI back in this table, so subtract it out from the number of partitions.
             int numPartitions = vt.getRowCount() - 1;
-            m_hashinator = new HashinatorLite(numPartitions); // legacy only
+            hashinator = new HashinatorLite(numPartitions); // legacy only
         } else {
             //Second table contains the hash function
             boolean advanced = tables[1].advanceRow();
@@ -1441,13 +1660,13 @@ class Distributer {
                                    "performance will be lower because transactions can't be routed at this client");
                 return;
             }
-            m_hashinator = new HashinatorLite(
+            hashinator = new HashinatorLite(
                     HashinatorLiteType.valueOf(tables[1].getString("HASHTYPE")),
                     tables[1].getVarbinary("HASHCONFIG"),
                     cooked);
         }
-        m_partitionMasters.clear();
-        m_partitionReplicas.clear();
+        Map<Integer, NodeConnection> partitionMasters = new HashMap<>();
+        Map<Integer, NodeConnection[]> partitionReplicas = new HashMap<>();
         // The MPI's partition ID is 16383 (MpInitiator.MP_INIT_PID), so we shouldn't inadvertently
         // hash to it.  Go ahead and include it in the maps, we can use it at some point to
         // route MP transactions directly to the MPI node.
@@ -1465,13 +1684,17 @@ class Distributer {
                     unconnected.add(hostId);
                }
             }
-            m_partitionReplicas.put(partition, connections.toArray(new NodeConnection[0]));
+            partitionReplicas.put(partition, connections.toArray(new NodeConnection[0]));
 
             Integer leaderHostId = Integer.valueOf(vt.getString("Leader").split(":")[0]);
             if (m_hostIdToConnection.containsKey(leaderHostId)) {
-                m_partitionMasters.put(partition, m_hostIdToConnection.get(leaderHostId));
+                partitionMasters.put(partition, m_hostIdToConnection.get(leaderHostId));
             }
         }
+        m_topology = new Topology(m_topology.m_connections,
+                                  hashinator,
+                                  ImmutableMap.copyOf(partitionMasters),
+                                  ImmutableMap.copyOf(partitionReplicas));
         if (m_topologyChangeAware) {
             m_unconnectedHosts.set(ImmutableSet.copyOf(unconnected));
         }
@@ -1526,7 +1749,7 @@ class Distributer {
      * @return
      */
     public boolean isHashinatorInitialized() {
-        return (m_hashinator != null);
+        return (m_topology.m_hashinator != null);
     }
 
     /**
@@ -1537,17 +1760,19 @@ class Distributer {
      * @return
      */
     public long getPartitionForParameter(byte typeValue, Object value) {
-        if (m_hashinator == null) {
+        final HashinatorLite hashinator = m_topology.m_hashinator;
+        if (hashinator == null) {
             return -1;
         }
-        return m_hashinator.getHashedPartitionForParameter(typeValue, value);
+        return hashinator.getHashedPartitionForParameter(typeValue, value);
     }
 
     public HashinatorLiteType getHashinatorType() {
-        if (m_hashinator == null) {
+        final HashinatorLite hashinator = m_topology.m_hashinator;
+        if (hashinator == null) {
             return HashinatorLiteType.LEGACY;
         }
-        return m_hashinator.getConfigurationType();
+        return hashinator.getConfigurationType();
     }
 
     private ByteBuffer serializeSPI(ProcedureInvocation pi) throws IOException {
@@ -1558,6 +1783,29 @@ class Distributer {
         return buf;
     }
 
+    /*
+     * A batch is the BATCH type byte and a count, followed by each invocation prefixed
+     * with its length
+     */
+    private static ByteBuffer serializeBatch(List<ProcedureInvocation> invocations) throws IOException {
+        int size = 4 + 1 + 4;
+        for (ProcedureInvocation pi : invocations) {
+            size += 4 + pi.getSerializedSize();
+        }
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(buf.capacity() - 4);
+        buf.put(ProcedureInvocationType.BATCH.getValue());
+        buf.putInt(invocations.size());
+        for (ProcedureInvocation pi : invocations) {
+            final int lengthPosition = buf.position();
+            buf.putInt(0);
+            pi.flattenToBuffer(buf);
+            buf.putInt(lengthPosition, buf.position() - lengthPosition - 4);
+        }
+        buf.flip();
+        return buf;
+    }
+
     long getProcedureTimeoutNanos() {
         return m_procedureCallTimeoutNanos;
     }
@@ -1612,6 +1860,10 @@ class Distributer {
         m_topologyChangeAware = topoAware;
     }
 
+    void setReuseResponseBuffers(boolean reuse) {
+        m_reuseResponseBuffers = reuse;
+    }
+
     void createConnectionsUponTopologyChange() {
 
         if(!m_topologyChangeAware || m_createConnectionUponTopoChangeInProgress.get()) {
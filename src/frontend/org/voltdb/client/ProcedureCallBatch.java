@@ -0,0 +1,74 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A group of asynchronous procedure calls that {@link Client#callProcedureBatch(ProcedureCallBatch)}
+ * sends to the cluster in a single network message. The calls may be to the same or to different
+ * procedures. The server that receives the batch dispatches each call to its partition as though
+ * it had arrived on its own, and each call's callback is invoked with its own response.
+ *
+ * <p>Batching saves the per message framing, system call and dispatch overhead, which dominates
+ * for high fan-out ingest with very small procedures. A batch is not a transaction, the calls in it
+ * commit or fail independently and may complete in any order.</p>
+ *
+ * <p>A batch may be reused after it is passed to the client by calling {@link #clear()}.</p>
+ */
+public class ProcedureCallBatch {
+
+    final List<ProcedureCallback> m_callbacks = new ArrayList<ProcedureCallback>();
+    final List<String> m_procNames = new ArrayList<String>();
+    final List<Object[]> m_parameters = new ArrayList<Object[]>();
+
+    /**
+     * Add a call to the batch.
+     *
+     * @param callback {@link ProcedureCallback} that will be invoked with the procedure results, or null.
+     * @param procName class name (not qualified by package) of the procedure to execute.
+     * @param parameters vararg list of procedure's parameter values.
+     * @return this batch
+     */
+    public ProcedureCallBatch add(ProcedureCallback callback, String procName, Object... parameters) {
+        if (procName == null || procName.isEmpty()) {
+            throw new IllegalArgumentException("Procedure name can not be null or empty");
+        }
+        m_callbacks.add(callback);
+        m_procNames.add(procName);
+        m_parameters.add(parameters);
+        return this;
+    }
+
+    /**
+     * @return the number of calls in the batch
+     */
+    public int size() {
+        return m_procNames.size();
+    }
+
+    /**
+     * Remove every call from the batch.
+     */
+    public void clear() {
+        m_callbacks.clear();
+        m_procNames.clear();
+        m_parameters.clear();
+    }
+}
@@ -167,10 +167,12 @@ class RateLimiter {
     /**
      *
      * @param timestampNanos The time as measured when the call is made.
-     * @param internalLatency Latency measurement of this transaction in millis
+     * @param internalLatency Latency measurement of this transaction in millis, -1 if no response was received
+     * @param roundTripNanos Round trip time of this transaction as measured by the client, -1 if no
+     * response was received
      * @param ignoreBackpressure Don't return a permit for backpressure purposes since none was ever taken
      */
-    void transactionResponseReceived(long timestampNanos, int internalLatency, boolean ignoreBackpressure) {
+    void transactionResponseReceived(long timestampNanos, int internalLatency, long roundTripNanos, boolean ignoreBackpressure) {
         if (m_doesAnyTuning) {
             synchronized (this) {
                 ensureCurrentBlockIsKosher(TimeUnit.NANOSECONDS.toMillis(timestampNanos));
@@ -187,6 +189,16 @@ class RateLimiter {
         }
     }
 
+    /**
+     * The transaction timed out before a response was received.
+     *
+     * @param timestampNanos The time as measured when the call is made.
+     * @param ignoreBackpressure Don't return a permit for backpressure purposes since none was ever taken
+     */
+    void transactionTimedOut(long timestampNanos, boolean ignoreBackpressure) {
+        transactionResponseReceived(timestampNanos, -1, -1, ignoreBackpressure);
+    }
+
     /**
      *
      *
@@ -0,0 +1,264 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hierarchical timing wheel used by the {@link Distributer} to expire outstanding invocations.
+ *
+ * Scheduling and cancelling a timeout are O(1) and lock-free: the calling thread pushes the
+ * timeout onto an intrusive stack and the single thread that calls {@link #advance(long)}
+ * moves it into or out of the wheel on its next tick. Everything else about the wheel is
+ * confined to that thread, so the buckets need no synchronization.
+ *
+ * Level 0 has 256 buckets one tick wide. Each of the three levels above it has 64 buckets,
+ * each as wide as the whole level below it, so with the client's default 10ms tick the wheel
+ * spans 2.56s, 164s, 2.9h and 7.8 days. Timeouts further out than that park in the top level and are
+ * re-examined each time their bucket comes around. When a bucket of an upper level comes
+ * due its timeouts cascade down to the level below, and timeouts in level 0 expire when
+ * their bucket comes due. A timeout never expires before its deadline, and it expires at
+ * most one tick plus the scheduling delay of the advancing thread after it.
+ */
+final class TimeoutWheel {
+
+    private static final int LEVEL0_BITS = 8;
+    private static final int LEVELN_BITS = 6;
+    private static final int LEVELS = 4;
+    private static final int LEVEL0_MASK = (1 << LEVEL0_BITS) - 1;
+    private static final int LEVELN_MASK = (1 << LEVELN_BITS) - 1;
+    private static final long MAX_DELTA_TICKS = 1L << (LEVEL0_BITS + (LEVELS - 1) * LEVELN_BITS);
+
+    /**
+     * Something that can be scheduled on the wheel. The links are intrusive so that scheduling
+     * and cancelling allocate nothing. An instance may be scheduled at most once and cancelled
+     * at most once.
+     */
+    static abstract class Timeout {
+        private long m_deadlineNanos;
+        private long m_deadlineTick;
+
+        // Only touched by the advancing thread
+        private Bucket m_bucket;
+        private Timeout m_prev;
+        private Timeout m_next;
+        private boolean m_cancelled;
+
+        // Published to the advancing thread by the CAS that pushes this timeout
+        private Timeout m_nextScheduled;
+        private Timeout m_nextCancelled;
+
+        /**
+         * Invoked on the advancing thread once the deadline has passed.
+         * @param nowNanos the time the wheel was advanced to
+         * @param lagNanos how long after the deadline the timeout expired
+         */
+        abstract void expire(long nowNanos, long lagNanos);
+    }
+
+    private static final class Bucket {
+        private Timeout m_head;
+
+        void add(Timeout t) {
+            t.m_bucket = this;
+            t.m_prev = null;
+            t.m_next = m_head;
+            if (m_head != null) {
+                m_head.m_prev = t;
+            }
+            m_head = t;
+        }
+
+        void remove(Timeout t) {
+            if (t.m_prev != null) {
+                t.m_prev.m_next = t.m_next;
+            } else {
+                m_head = t.m_next;
+            }
+            if (t.m_next != null) {
+                t.m_next.m_prev = t.m_prev;
+            }
+            t.m_bucket = null;
+            t.m_prev = null;
+            t.m_next = null;
+        }
+
+        /**
+         * Unlink every timeout in the bucket and return them as a list chained through m_next
+         */
+        Timeout drain() {
+            final Timeout head = m_head;
+            m_head = null;
+            for (Timeout t = head; t != null; t = t.m_next) {
+                t.m_bucket = null;
+                t.m_prev = null;
+            }
+            return head;
+        }
+    }
+
+    private final long m_tickNanos;
+    private final long m_startNanos;
+    private final Bucket[][] m_levels = new Bucket[LEVELS][];
+    private final AtomicReference<Timeout> m_scheduled = new AtomicReference<Timeout>();
+    private final AtomicReference<Timeout> m_cancelled = new AtomicReference<Timeout>();
+
+    // The last tick that has been fully processed, only touched by the advancing thread
+    private long m_currentTick = 0;
+
+    TimeoutWheel(long tickNanos, long startNanos) {
+        if (tickNanos <= 0) {
+            throw new IllegalArgumentException("Tick must be positive: " + tickNanos);
+        }
+        m_tickNanos = tickNanos;
+        m_startNanos = startNanos;
+        for (int level = 0; level < LEVELS; level++) {
+            final Bucket[] buckets = new Bucket[level == 0 ? 1 << LEVEL0_BITS : 1 << LEVELN_BITS];
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new Bucket();
+            }
+            m_levels[level] = buckets;
+        }
+    }
+
+    long getTickNanos() {
+        return m_tickNanos;
+    }
+
+    /**
+     * Schedule {@code t} to expire at {@code deadlineNanos}, measured with System.nanoTime.
+     * Safe to call from any thread.
+     */
+    void schedule(Timeout t, long deadlineNanos) {
+        t.m_deadlineNanos = deadlineNanos;
+        // Round up so a timeout never fires before its deadline
+        t.m_deadlineTick = (deadlineNanos - m_startNanos + m_tickNanos - 1) / m_tickNanos;
+        Timeout head;
+        do {
+            head = m_scheduled.get();
+            t.m_nextScheduled = head;
+        } while (!m_scheduled.compareAndSet(head, t));
+    }
+
+    /**
+     * Cancel a timeout passed to {@link #schedule}. It is harmless to cancel a timeout that
+     * has already expired. Safe to call from any thread.
+     */
+    void cancel(Timeout t) {
+        Timeout head;
+        do {
+            head = m_cancelled.get();
+            t.m_nextCancelled = head;
+        } while (!m_cancelled.compareAndSet(head, t));
+    }
+
+    /**
+     * Apply pending schedules and cancellations and expire every timeout whose deadline is at
+     * or before {@code nowNanos}. Must always be called from the same thread, or at least never
+     * concurrently.
+     */
+    void advance(long nowNanos) {
+        // Schedules are applied before cancellations so that a call that got its response
+        // before the wheel ever saw it is cancelled in the same pass
+        Timeout t = m_scheduled.getAndSet(null);
+        while (t != null) {
+            final Timeout next = t.m_nextScheduled;
+            t.m_nextScheduled = null;
+            if (!t.m_cancelled) {
+                place(t, nowNanos);
+            }
+            t = next;
+        }
+
+        t = m_cancelled.getAndSet(null);
+        while (t != null) {
+            final Timeout next = t.m_nextCancelled;
+            t.m_nextCancelled = null;
+            if (t.m_bucket != null) {
+                t.m_bucket.remove(t);
+            } else {
+                // Not placed yet or already expired, either way make sure it never fires
+                t.m_cancelled = true;
+            }
+            t = next;
+        }
+
+        final long targetTick = (nowNanos - m_startNanos) / m_tickNanos;
+        while (m_currentTick < targetTick) {
+            final long tick = ++m_currentTick;
+            // Cascade the upper levels, highest first, each time the level below wraps
+            if ((tick & LEVEL0_MASK) == 0) {
+                int level = 1;
+                while (level < LEVELS - 1 && ((tick >>> shift(level)) & LEVELN_MASK) == 0) {
+                    level++;
+                }
+                for (; level >= 1; level--) {
+                    cascade(level, tick, nowNanos);
+                }
+            }
+            expireAll(m_levels[0][(int)(tick & LEVEL0_MASK)].drain(), nowNanos);
+        }
+    }
+
+    private static int shift(int level) {
+        return level == 0 ? 0 : LEVEL0_BITS + (level - 1) * LEVELN_BITS;
+    }
+
+    private void cascade(int level, long tick, long nowNanos) {
+        final int bucket = (int)((tick >>> shift(level)) & LEVELN_MASK);
+        Timeout t = m_levels[level][bucket].drain();
+        while (t != null) {
+            final Timeout next = t.m_next;
+            t.m_next = null;
+            place(t, nowNanos);
+            t = next;
+        }
+    }
+
+    private void place(Timeout t, long nowNanos) {
+        final long delta = t.m_deadlineTick - m_currentTick;
+        if (delta <= 0) {
+            t.m_next = null;
+            expireAll(t, nowNanos);
+            return;
+        }
+        int level = 0;
+        long span = 1L << LEVEL0_BITS;
+        while (level < LEVELS - 1 && delta >= span) {
+            level++;
+            span <<= LEVELN_BITS;
+        }
+        // Beyond the range of the wheel, park in the furthest bucket and look again when it cascades
+        final long tick = (delta < MAX_DELTA_TICKS) ? t.m_deadlineTick : m_currentTick + MAX_DELTA_TICKS - 1;
+        final int mask = (level == 0) ? LEVEL0_MASK : LEVELN_MASK;
+        m_levels[level][(int)((tick >>> shift(level)) & mask)].add(t);
+    }
+
+    private static void expireAll(Timeout t, long nowNanos) {
+        while (t != null) {
+            final Timeout next = t.m_next;
+            t.m_next = null;
+            try {
+                t.expire(nowNanos, Math.max(0, nowNanos - t.m_deadlineNanos));
+            } catch (Throwable e) {
+                e.printStackTrace();
+            }
+            t = next;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.client;
+
+/**
+ * A {@link ProcedureCallback} whose responses are decoded without allocating. Implement this
+ * interface instead of {@link ProcedureCallback} for high rate procedures with small results
+ * where the garbage produced by decoding each response matters.
+ *
+ * <p>The {@link ClientResponse} passed to {@link #clientCallback} and the
+ * {@link org.voltdb.VoltTable}s and rows it returns are recycled for the next response on the
+ * same connection as soon as the callback returns. They are read-only and must not be kept,
+ * handed to another thread or used after the callback returns. Values read out of the tables
+ * are ordinary objects that may be kept. To retain a whole table, copy it by adding its
+ * rows to a table created from {@link org.voltdb.VoltTable#getTableSchema()}.</p>
+ *
+ * <p>Responses the client generates itself, such as for timeouts and lost connections,
+ * are not recycled.</p>
+ *
+ * <p>See {@link ClientConfig#setReuseResponseBuffers(boolean)} to also avoid allocating the
+ * buffer each response is read into.</p>
+ */
+public interface TransientProcedureCallback extends ProcedureCallback {
+}
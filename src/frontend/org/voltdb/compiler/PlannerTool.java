@@ -17,11 +17,15 @@
 
 package org.voltdb.compiler;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
 
 import org.hsqldb_voltpatches.HSQLInterface;
 import org.hsqldb_voltpatches.HSQLInterface.HSQLParseException;
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CoreUtils;
 import org.voltdb.ParameterSet;
 import org.voltdb.PlannerStatsCollector;
 import org.voltdb.PlannerStatsCollector.CacheUse;
@@ -46,16 +50,30 @@ import org.voltdb.utils.Encoder;
  * interactively accept SQL and outputs plans on standard out.
  *
  * Used only for ad hoc queries.
+ *
+ * Statements are planned concurrently. Each one being planned borrows its own
+ * HSQL instance loaded with the schema, and more are loaded on demand, up to
+ * PLANNER_POOL_SIZE of them, when all the existing ones are busy. The instance
+ * returned by getHSQLInterface() is never one of them; its callers still plan
+ * on it under the QueryPlanner.class lock.
  */
 public class PlannerTool {
     private static final VoltLogger hostLog = new VoltLogger("HOST");
     private static final VoltLogger compileLog = new VoltLogger("COMPILE");
 
-    private Database m_database;
-    private byte[] m_catalogHash;
-    private AdHocCompilerCache m_cache;
+    // How many statements can be planned at once, each needs an HSQL instance with the whole schema
+    private static final int POOL_SIZE = Integer.getInteger("PLANNER_POOL_SIZE", CoreUtils.availableProcessors());
+
+    private volatile Database m_database;
+    private volatile byte[] m_catalogHash;
+    private volatile AdHocCompilerCache m_cache;
 
+    // The HSQL instance handed out by getHSQLInterface(), never used for ad hoc planning
     private final HSQLInterface m_hsql;
+    // The schema, to load into additional instances
+    private final List<String> m_ddl = new ArrayList<>();
+    private final LinkedBlockingDeque<HSQLInterface> m_idleHsql = new LinkedBlockingDeque<>();
+    private int m_hsqlCount;
 
     private static PlannerStatsCollector m_plannerStats;
 
@@ -67,8 +85,6 @@ public class PlannerTool {
         m_catalogHash = catalogHash;
         m_cache = AdHocCompilerCache.getCacheForCatalogHash(catalogHash);
 
-        // LOAD HSQL
-        m_hsql = HSQLInterface.loadHsqldb(ParameterizationInfo.getParamStateManager());
         String binDDL = m_database.getSchema();
         String ddl = CompressionService.decodeBase64AndDecompress(binDDL);
         String[] commands = ddl.split("\n");
@@ -77,14 +93,11 @@ public class PlannerTool {
             decoded_cmd = decoded_cmd.trim();
             if (decoded_cmd.length() == 0)
                 continue;
-            try {
-                m_hsql.runDDLCommand(decoded_cmd);
-            }
-            catch (HSQLParseException e) {
-                // need a good error message here
-                throw new RuntimeException("Error creating hsql: " + e.getMessage() + " in DDL statement: " + decoded_cmd);
-            }
+            m_ddl.add(decoded_cmd);
         }
+
+        // LOAD HSQL
+        m_hsql = loadHsql();
         hostLog.debug("hsql loaded");
 
         // Create and register a singleton planner stats collector, if this is the first time.
@@ -100,12 +113,18 @@ public class PlannerTool {
                 }
             }
         }
+        if (m_plannerStats != null) {
+            m_plannerStats.setEvictionSource(m_cache);
+        }
     }
 
     public PlannerTool updateWhenNoSchemaChange(Database database, byte[] catalogHash) {
         m_database = database;
         m_catalogHash = catalogHash;
         m_cache = AdHocCompilerCache.getCacheForCatalogHash(catalogHash);
+        if (m_plannerStats != null) {
+            m_plannerStats.setEvictionSource(m_cache);
+        }
 
         return this;
     }
@@ -114,6 +133,69 @@ public class PlannerTool {
         return m_hsql;
     }
 
+    private HSQLInterface loadHsql() {
+        HSQLInterface hsql = HSQLInterface.loadHsqldb(ParameterizationInfo.getParamStateManager());
+        for (String command : m_ddl) {
+            try {
+                hsql.runDDLCommand(command);
+            }
+            catch (HSQLParseException e) {
+                // need a good error message here
+                throw new RuntimeException("Error creating hsql: " + e.getMessage() + " in DDL statement: " + command);
+            }
+        }
+        return hsql;
+    }
+
+    /**
+     * Borrow an HSQL instance nobody else is planning with, loading another one if
+     * they are all busy and there is room for it in the pool.
+     */
+    private HSQLInterface acquireHsql() {
+        while (true) {
+            HSQLInterface hsql = m_idleHsql.poll();
+            if (hsql != null) {
+                return hsql;
+            }
+            // reserve a slot under the lock, loading the schema is too slow to hold it for
+            final int slot;
+            synchronized (this) {
+                slot = m_hsqlCount < POOL_SIZE ? ++m_hsqlCount : 0;
+            }
+            if (slot > 0) {
+                boolean loaded = false;
+                try {
+                    hsql = loadHsql();
+                    loaded = true;
+                    hostLog.debug("Loaded planner hsql instance " + slot + " of " + POOL_SIZE);
+                    return hsql;
+                }
+                finally {
+                    if (!loaded) {
+                        synchronized (this) {
+                            m_hsqlCount--;
+                        }
+                    }
+                }
+            }
+            try {
+                // wake up now and then in case a failed load gave its slot back
+                hsql = m_idleHsql.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted waiting for a planner", e);
+            }
+            if (hsql != null) {
+                return hsql;
+            }
+        }
+    }
+
+    private void releaseHsql(HSQLInterface hsql) {
+        // the most recently used instance is the warmest
+        m_idleHsql.push(hsql);
+    }
+
     public AdHocPlannedStatement planSqlForTest(String sqlIn) {
         StatementPartitioning infer = StatementPartitioning.inferPartitioning();
         return planSql(sqlIn, infer, false, null, false, false);
@@ -126,23 +208,21 @@ public class PlannerTool {
     /**
      * Stripped down compile that is ONLY used to plan default procedures.
      */
-    public synchronized CompiledPlan planSqlCore(String sql, StatementPartitioning partitioning) {
+    public CompiledPlan planSqlCore(String sql, StatementPartitioning partitioning) {
         TrivialCostModel costModel = new TrivialCostModel();
         DatabaseEstimates estimates = new DatabaseEstimates();
+        final HSQLInterface hsql = acquireHsql();
         QueryPlanner planner = new QueryPlanner(
             sql, "PlannerTool", "PlannerToolProc", m_database,
-            partitioning, m_hsql, estimates, !VoltCompiler.DEBUG_MODE,
+            partitioning, hsql, estimates, !VoltCompiler.DEBUG_MODE,
             costModel, null, null, DeterminismMode.FASTER, false);
 
         CompiledPlan plan = null;
         try {
             // do the expensive full planning.
-            // Keep this lock until we figure out how to do parallel planning
-            synchronized (QueryPlanner.class) {
-                planner.parse();
-                plan = planner.plan();
-                assert(plan != null);
-            }
+            planner.parse();
+            plan = planner.plan();
+            assert(plan != null);
         }
         catch (Exception e) {
             /*
@@ -156,6 +236,9 @@ public class PlannerTool {
             }
             throw new RuntimeException("Error compiling query: " + e.toString() + loggedMsg, e);
         }
+        finally {
+            releaseHsql(hsql);
+        }
 
         if (plan == null) {
             throw new RuntimeException("Null plan received in PlannerTool.planSql");
@@ -164,13 +247,18 @@ public class PlannerTool {
         return plan;
     }
 
-    public synchronized AdHocPlannedStatement planSql(String sqlIn, StatementPartitioning partitioning,
+    public AdHocPlannedStatement planSql(String sqlIn, StatementPartitioning partitioning,
             boolean isExplainMode, final Object[] userParams, boolean isSwapTables, boolean isLargeQuery) {
 
         CacheUse cacheUse = CacheUse.FAIL;
-        if (m_plannerStats != null) {
-            m_plannerStats.startStatsCollection();
-        }
+        final PlannerStatsCollector plannerStats = m_plannerStats;
+        final long startTime = plannerStats != null ? plannerStats.startStatsTimer() : PlannerStatsCollector.NOT_TIMED;
+        long waitTime = -1;
+        HSQLInterface hsql = null;
+        // the catalog may be updated while planning, plan the whole statement against one
+        final Database database = m_database;
+        final byte[] catalogHash = m_catalogHash;
+        final AdHocCompilerCache cache = m_cache;
         boolean hasUserQuestionMark = false;
         boolean wrongNumberParameters = false;
         try {
@@ -193,7 +281,7 @@ public class PlannerTool {
             // point it seems worthwhile to cache such plans, we can explore it.
             if (partitioning.isInferred() && !isLargeQuery) {
                 // Check the literal cache for a match.
-                AdHocPlannedStatement cachedPlan = m_cache.getWithSQL(sqlIn);
+                AdHocPlannedStatement cachedPlan = cache.getWithSQL(sqlIn);
                 if (cachedPlan != null) {
                     cacheUse = CacheUse.HIT1;
                     return cachedPlan;
@@ -209,13 +297,16 @@ public class PlannerTool {
 
             TrivialCostModel costModel = new TrivialCostModel();
             DatabaseEstimates estimates = new DatabaseEstimates();
+            final long waitStart = System.nanoTime();
+            hsql = acquireHsql();
+            waitTime = System.nanoTime() - waitStart;
             QueryPlanner planner = new QueryPlanner(
                     sql,
                     "PlannerTool",
                     "PlannerToolProc",
-                    m_database,
+                    database,
                     partitioning,
-                    m_hsql,
+                    hsql,
                     estimates,
                     !VoltCompiler.DEBUG_MODE,
                     costModel,
@@ -228,13 +319,10 @@ public class PlannerTool {
             String[] extractedLiterals = null;
             String parsedToken = null;
             try {
-                // Keep this lock until we figure out how to do parallel planning
-                synchronized (QueryPlanner.class) {
-                    if (isSwapTables) {
-                        planner.planSwapTables();
-                    } else {
-                        planner.parse();
-                    }
+                if (isSwapTables) {
+                    planner.planSwapTables();
+                } else {
+                    planner.parse();
                 }
                 parsedToken = planner.parameterize();
 
@@ -258,7 +346,7 @@ public class PlannerTool {
                     // QueryPlanner.
                     assert(parsedToken != null);
                     extractedLiterals = planner.extractedParamLiteralValues();
-                    List<BoundPlan> boundVariants = m_cache.getWithParsedToken(parsedToken);
+                    List<BoundPlan> boundVariants = cache.getWithParsedToken(parsedToken);
                     if (boundVariants != null) {
                         assert( ! boundVariants.isEmpty());
                         BoundPlan matched = null;
@@ -286,19 +374,16 @@ public class PlannerTool {
                                                                                    null);
                             ahps.setBoundConstants(matched.m_constants);
                             // parameterized plan from the cache does not have exception
-                            m_cache.put(sql, parsedToken, ahps, extractedLiterals, hasUserQuestionMark, false);
+                            cache.put(sql, parsedToken, ahps, extractedLiterals, hasUserQuestionMark, false);
                             cacheUse = CacheUse.HIT2;
                             return ahps;
                         }
                     }
                 }
 
-                // Keep this lock until we figure out how to do parallel planning
-                synchronized (QueryPlanner.class) {
-                    // If not caching or there was no cache hit, do the expensive full planning.
-                    plan = planner.plan();
-                    assert(plan != null);
-                }
+                // If not caching or there was no cache hit, do the expensive full planning.
+                plan = planner.plan();
+                assert(plan != null);
                 if (plan != null && plan.getStatementPartitioning() != null) {
                     partitioning = plan.getStatementPartitioning();
                 }
@@ -324,7 +409,7 @@ public class PlannerTool {
             //////////////////////
             // OUTPUT THE RESULT
             //////////////////////
-            CorePlan core = new CorePlan(plan, m_catalogHash);
+            CorePlan core = new CorePlan(plan, catalogHash);
             AdHocPlannedStatement ahps = new AdHocPlannedStatement(plan, core);
 
             // Do not put wrong parameter explain query into cache.
@@ -341,13 +426,17 @@ public class PlannerTool {
 
                 assert(parsedToken != null);
                 // Again, plans with inferred partitioning are the only ones supported in the cache.
-                m_cache.put(sqlIn, parsedToken, ahps, extractedLiterals, hasUserQuestionMark, planner.wasBadPameterized());
+                cache.put(sqlIn, parsedToken, ahps, extractedLiterals, hasUserQuestionMark, planner.wasBadPameterized());
             }
             return ahps;
         }
         finally {
-            if (m_plannerStats != null) {
-                m_plannerStats.endStatsCollection(m_cache.getLiteralCacheSize(), m_cache.getCoreCacheSize(), cacheUse, -1);
+            if (hsql != null) {
+                releaseHsql(hsql);
+            }
+            if (plannerStats != null) {
+                plannerStats.endStatsCollection(startTime, waitTime, cache.getLiteralCacheSize(),
+                        cache.getCoreCacheSize(), cacheUse, -1);
             }
         }
     }
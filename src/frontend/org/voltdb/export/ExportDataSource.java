@@ -28,10 +28,14 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedTransferQueue;
 import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.hadoop_voltpatches.util.PureJavaCrc32;
@@ -74,6 +78,17 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
      */
     private static final VoltLogger exportLog = new VoltLogger("EXPORT");
 
+    /*
+     * Acks are coalesced. Each source has at most one ack flush queued on its executor, which
+     * releases everything up to the highest USO acked since the last flush. Acks forwarded to
+     * the other replicas go out once this many bytes were acked since the last one was sent,
+     * and otherwise at most once per interval.
+     */
+    private static final long ACK_FORWARD_BYTES = Long.getLong("EXPORT_ACK_FORWARD_BYTES", 1024 * 1024);
+    private static final long ACK_FORWARD_INTERVAL_MS = Long.getLong("EXPORT_ACK_FORWARD_INTERVAL_MS", 50);
+    // Started on first use, so a JVM that doesn't export never runs it. Guarded by the class.
+    private static ScheduledThreadPoolExecutor s_ackForwardTimer;
+
     private final String m_database;
     private final String m_tableName;
     private String m_partitionColumnName = "";
@@ -85,7 +100,7 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
     public final ArrayList<String> m_columnNames = new ArrayList<String>();
     public final ArrayList<Integer> m_columnTypes = new ArrayList<Integer>();
     public final ArrayList<Integer> m_columnLengths = new ArrayList<Integer>();
-    private long m_firstUnpolledUso = 0;
+    private volatile long m_firstUnpolledUso = 0;
     private final StreamBlockQueue m_committedBuffers;
     private boolean m_endOfStream = false;
     private Runnable m_onDrain;
@@ -97,8 +112,24 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
     private final Semaphore m_bufferPushPermits = new Semaphore(16);
 
     private final int m_nullArrayLength;
-    private long m_lastReleaseOffset = 0;
+    private volatile long m_lastReleaseOffset = 0;
     private long m_lastAckUSO = 0;
+
+    // Polled containers that were discarded and acks from other replicas, not yet flushed
+    private final ConcurrentLinkedQueue<AckingContainer> m_discardedContainers = new ConcurrentLinkedQueue<>();
+    private final AtomicLong m_pendingReplicaAck = new AtomicLong(0);
+    private final AtomicBoolean m_ackFlushQueued = new AtomicBoolean(false);
+    // Only touched on the executor
+    private long m_unforwardedAck = 0;
+    private long m_lastForwardedAck = 0;
+    private long m_lastForwardTime = 0;
+    private boolean m_ackForwardScheduled = false;
+    // Ack statistics
+    private final AtomicLong m_acksReceived = new AtomicLong(0);
+    private volatile long m_ackReleases = 0;
+    private volatile long m_acksForwarded = 0;
+    // {end USO, poll time} of every polled block that is not fully released yet, oldest first
+    private final ConcurrentLinkedQueue<long[]> m_unackedPolls = new ConcurrentLinkedQueue<long[]>();
     //This is for testing only.
     public static boolean m_dontActivateForTest = false;
     //Set if connector "replicated" property is set to true
@@ -347,8 +378,14 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
                 break;
             }
         }
+        // forget the polls this release covers, the oldest one left is still waiting on its ack
+        long[] polled;
+        while ((polled = m_unackedPolls.peek()) != null && polled[0] <= releaseOffset) {
+            m_unackedPolls.poll();
+        }
         m_lastReleaseOffset = releaseOffset;
         m_firstUnpolledUso = Math.max(m_firstUnpolledUso, lastUso);
+        m_ackReleases++;
     }
 
     public String getDatabase() {
@@ -815,6 +852,7 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
             } else {
                 final AckingContainer ackingContainer = new AckingContainer(first_unpolled_block.unreleasedContainer(),
                                                                             first_unpolled_block.uso() + first_unpolled_block.totalUso());
+                m_unackedPolls.offer(new long[] { ackingContainer.m_uso, System.currentTimeMillis() });
                 try {
                     fut.set(ackingContainer);
                 } catch (RejectedExecutionException reex) {
@@ -846,29 +884,115 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
         @Override
         public void discard() {
             checkDoubleFree();
-            RunnableWithES runnable = new RunnableWithES("discard") {
+            m_acksReceived.incrementAndGet();
+            m_discardedContainers.offer(this);
+            queueAckFlush();
+        }
+    }
+
+    private void queueAckFlush() {
+        if (!m_ackFlushQueued.compareAndSet(false, true)) {
+            // the queued flush will pick this ack up
+            return;
+        }
+        RunnableWithES runnable = new RunnableWithES("ack") {
+            @Override
+            public void run() {
+                flushAcks(getLocalExecutorService());
+            }
+        };
+        stashOrSubmitTask(runnable, true, false);
+    }
+
+    /**
+     * Discard the containers that were acked, release up to the highest acked USO and
+     * forward local acks to the other replicas. Runs on the executor.
+     */
+    private void flushAcks(ListeningExecutorService es) {
+        m_ackFlushQueued.set(false);
+        long localAck = 0;
+        final long replicaAck = m_pendingReplicaAck.getAndSet(0);
+        try {
+            AckingContainer cont;
+            while ((cont = m_discardedContainers.poll()) != null) {
+                try {
+                    cont.m_backingCont.discard();
+                } finally {
+                    localAck = Math.max(localAck, cont.m_uso);
+                }
+            }
+            try {
+                // ENG-12282: acks from the other replicas are ignored once we are master, see ack()
+                final long releaseOffset = m_mastershipAccepted.get() ? localAck : Math.max(localAck, replicaAck);
+                if (!es.isShutdown() && releaseOffset > 0) {
+                    ackImpl(releaseOffset, null);
+                }
+            } finally {
+                if (localAck != 0) {
+                    forwardAck(localAck);
+                }
+            }
+        } catch (Exception e) {
+            exportLog.error("Error acking export buffer", e);
+        } catch (Error e) {
+            VoltDB.crashLocalVoltDB("Error acking export buffer", true, e);
+        }
+    }
+
+    /**
+     * Forward a local ack now if enough was acked since the last one, or schedule it
+     * to go out with whatever else gets acked until the interval is up. Runs on the executor.
+     */
+    private void forwardAck(long uso) {
+        m_unforwardedAck = Math.max(m_unforwardedAck, uso);
+        final long sinceLastForward = System.currentTimeMillis() - m_lastForwardTime;
+        if (m_unforwardedAck - m_lastForwardedAck >= ACK_FORWARD_BYTES || sinceLastForward >= ACK_FORWARD_INTERVAL_MS) {
+            forwardPendingAck();
+        } else if (!m_ackForwardScheduled) {
+            m_ackForwardScheduled = true;
+            scheduleAckForward(new Runnable() {
                 @Override
                 public void run() {
-                    try {
-                        m_backingCont.discard();
-                        try {
-                            if (!getLocalExecutorService().isShutdown()) {
-                                ackImpl(m_uso, null);
+                    RunnableWithES runnable = new RunnableWithES("forwardAck") {
+                        @Override
+                        public void run() {
+                            m_ackForwardScheduled = false;
+                            // nothing goes out after the drain ack
+                            if (m_onDrain != null && m_unforwardedAck != m_lastForwardedAck) {
+                                forwardPendingAck();
                             }
-                        } finally {
-                            forwardAckToOtherReplicas(m_uso);
                         }
-                    } catch (Exception e) {
-                        exportLog.error("Error acking export buffer", e);
-                    } catch (Error e) {
-                        VoltDB.crashLocalVoltDB("Error acking export buffer", true, e);
-                    }
+                    };
+                    stashOrSubmitTask(runnable, true, false);
                 }
-            };
-            stashOrSubmitTask(runnable, true, false);
+            }, ACK_FORWARD_INTERVAL_MS - sinceLastForward);
+        }
+    }
+
+    private static synchronized void scheduleAckForward(Runnable task, long delayMillis) {
+        if (s_ackForwardTimer == null) {
+            s_ackForwardTimer = CoreUtils.getScheduledThreadPoolExecutor("Export ack forwarder", 1,
+                    CoreUtils.SMALL_STACK_SIZE);
+        }
+        s_ackForwardTimer.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop the thread that sends out deferred ack forwards, export is shutting down.
+     */
+    static synchronized void shutdownAckForwardTimer() {
+        if (s_ackForwardTimer != null) {
+            s_ackForwardTimer.shutdownNow();
+            s_ackForwardTimer = null;
         }
     }
 
+    private void forwardPendingAck() {
+        m_lastForwardedAck = m_unforwardedAck;
+        m_lastForwardTime = System.currentTimeMillis();
+        forwardAckToOtherReplicas(m_unforwardedAck);
+    }
+
     private void forwardAckToOtherReplicas(long uso) {
         if (m_runEveryWhere && m_replicaRunning) {
             //we dont forward if we are running as replica in replicated export
@@ -899,6 +1023,7 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
             for( Long siteId: p.getSecond()) {
                 mbx.send(siteId, bpm);
             }
+            m_acksForwarded++;
         }
     }
 
@@ -919,6 +1044,17 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
             return;
         }
 
+        m_acksReceived.incrementAndGet();
+        if (uso != Long.MIN_VALUE) {
+            // coalesced with the other acks, only the drain ack needs a task of its own
+            long pending;
+            do {
+                pending = m_pendingReplicaAck.get();
+            } while (uso > pending && !m_pendingReplicaAck.compareAndSet(pending, uso));
+            queueAckFlush();
+            return;
+        }
+
         final Exception captureAckCallStack = new Exception("Ack message received from " + CoreUtils.hsIdToString(srcHSId) +
                                                             " for generation " + generation +
                                                             ", current generation is " + m_generation);
@@ -1040,6 +1176,42 @@ public class ExportDataSource implements Comparable<ExportDataSource> {
         }
     }
 
+    /**
+     * @return acks received for this source, both local ones and ones from other replicas
+     */
+    public long getAcksReceived() {
+        return m_acksReceived.get();
+    }
+
+    /**
+     * @return how many times acked bytes were released, once per coalesced group of acks
+     */
+    public long getAckReleases() {
+        return m_ackReleases;
+    }
+
+    /**
+     * @return how many acks were forwarded to the other replicas
+     */
+    public long getAcksForwarded() {
+        return m_acksForwarded;
+    }
+
+    /**
+     * @return bytes polled by the export client that have not been acked and released yet
+     */
+    public long getAckLagBytes() {
+        return Math.max(0, m_firstUnpolledUso - m_lastReleaseOffset);
+    }
+
+    /**
+     * @return how long the oldest polled but unacked data has been waiting, 0 if there is none
+     */
+    public long getAckLagMillis() {
+        final long[] oldest = m_unackedPolls.peek();
+        return oldest == null ? 0 : Math.max(0, System.currentTimeMillis() - oldest[1]);
+    }
+
     public ExportFormat getExportFormat() {
         return m_format;
     }
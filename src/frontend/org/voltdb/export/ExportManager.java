@@ -20,6 +20,7 @@ package org.voltdb.export;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -39,6 +40,7 @@ import org.voltcore.utils.COWSortedMap;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.Pair;
 import org.voltdb.CatalogContext;
+import org.voltdb.StatsSelector;
 import org.voltdb.VoltDB;
 import org.voltdb.catalog.CatalogMap;
 import org.voltdb.catalog.Cluster;
@@ -300,6 +302,7 @@ public class ExportManager
         CatalogMap<Connector> connectors = getConnectors(catalogContext);
 
         m_self = em;
+        VoltDB.instance().getStatsAgent().registerStatsSource(StatsSelector.EXPORT, myHostId, new ExportStats(em));
         if (hasEnabledConnectors(connectors)) {
             em.createInitialExportProcessor(catalogContext, connectors, true, partitions, isRejoin);
         } else {
@@ -396,6 +399,10 @@ public class ExportManager
         exportLog.info(String.format("Export is enabled and can overflow to %s.", VoltDB.instance().getExportOverflowPath()));
     }
 
+    Collection<ExportGeneration> getGenerations() {
+        return m_generations.values();
+    }
+
     public HostMessenger getHostMessenger() {
         return m_messenger;
     }
@@ -678,6 +685,7 @@ public class ExportManager
             proc.shutdown();
         }
         m_generations.clear();
+        ExportDataSource.shutdownAckForwardTimer();
     }
 
     public static long getQueuedExportBytes(int partitionId, String signature) {
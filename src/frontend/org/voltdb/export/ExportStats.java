@@ -0,0 +1,88 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.export;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.voltdb.StatsSource;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.VoltType;
+
+/**
+ * Ack statistics for every export data source on this host, one row per source
+ * in each generation. Counts are cumulative.
+ */
+public class ExportStats extends StatsSource {
+
+    public static final String PARTITION_ID_COL = "PARTITION_ID";
+    public static final String SOURCE_NAME_COL = "SOURCE";
+    public static final String GENERATION_COL = "GENERATION";
+    public static final String ACKS_RECEIVED_COL = "ACKS_RECEIVED";
+    public static final String ACK_RELEASES_COL = "ACK_RELEASES";
+    public static final String ACKS_FORWARDED_COL = "ACKS_FORWARDED";
+    public static final String ACK_LAG_BYTES_COL = "ACK_LAG_BYTES";
+    public static final String ACK_LAG_MILLIS_COL = "ACK_LAG_MILLIS";
+
+    private final ExportManager m_manager;
+
+    public ExportStats(ExportManager manager) {
+        super(false);
+        m_manager = manager;
+    }
+
+    @Override
+    protected void populateColumnSchema(ArrayList<ColumnInfo> columns) {
+        super.populateColumnSchema(columns);
+        columns.add(new ColumnInfo(PARTITION_ID_COL, VoltType.INTEGER));
+        columns.add(new ColumnInfo(SOURCE_NAME_COL, VoltType.STRING));
+        columns.add(new ColumnInfo(GENERATION_COL, VoltType.BIGINT));
+        columns.add(new ColumnInfo(ACKS_RECEIVED_COL, VoltType.BIGINT));
+        columns.add(new ColumnInfo(ACK_RELEASES_COL, VoltType.BIGINT));
+        columns.add(new ColumnInfo(ACKS_FORWARDED_COL, VoltType.BIGINT));
+        columns.add(new ColumnInfo(ACK_LAG_BYTES_COL, VoltType.BIGINT));
+        columns.add(new ColumnInfo(ACK_LAG_MILLIS_COL, VoltType.BIGINT));
+    }
+
+    @Override
+    protected void updateStatsRow(Object rowKey, Object[] rowValues) {
+        ExportDataSource source = (ExportDataSource) rowKey;
+        rowValues[columnNameToIndex.get(PARTITION_ID_COL)] = source.getPartitionId();
+        rowValues[columnNameToIndex.get(SOURCE_NAME_COL)] = source.getTableName();
+        rowValues[columnNameToIndex.get(GENERATION_COL)] = source.getGeneration();
+        rowValues[columnNameToIndex.get(ACKS_RECEIVED_COL)] = source.getAcksReceived();
+        rowValues[columnNameToIndex.get(ACK_RELEASES_COL)] = source.getAckReleases();
+        rowValues[columnNameToIndex.get(ACKS_FORWARDED_COL)] = source.getAcksForwarded();
+        rowValues[columnNameToIndex.get(ACK_LAG_BYTES_COL)] = source.getAckLagBytes();
+        rowValues[columnNameToIndex.get(ACK_LAG_MILLIS_COL)] = source.getAckLagMillis();
+        super.updateStatsRow(rowKey, rowValues);
+    }
+
+    @Override
+    protected Iterator<Object> getStatsRowKeyIterator(boolean interval) {
+        List<Object> sources = new ArrayList<>();
+        for (ExportGeneration generation : m_manager.getGenerations()) {
+            for (Map<String, ExportDataSource> partitionSources : generation.getDataSourceByPartition().values()) {
+                sources.addAll(partitionSources.values());
+            }
+        }
+        return sources.iterator();
+    }
+}
@@ -18,7 +18,6 @@
 package org.voltdb.export.processors;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -331,13 +330,7 @@ public class GuestProcessor implements ExportDataProcessor {
                                 final ByteBuffer buf = cont.b();
                                 buf.position(startPosition);
                                 edb.onBlockStart();
-                                buf.order(ByteOrder.LITTLE_ENDIAN);
-                                while (buf.hasRemaining()) {
-                                    int length = buf.getInt();
-                                    byte[] rowdata = new byte[length];
-                                    buf.get(rowdata, 0, length);
-                                    edb.processRow(length, rowdata);
-                                }
+                                edb.processRows(edb.getRowCursor().reset(buf));
                                 edb.onBlockCompletion();
                                 break;
                             } catch (RestartBlockException e) {
@@ -18,7 +18,6 @@
 package org.voltdb.export.processors;
 
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.*;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadLocalRandom;
@@ -171,13 +170,7 @@ public class StandaloneGuestProcessor implements StandaloneExportDataProcessor {
                                 final ByteBuffer buf = cont.b();
                                 buf.position(startPosition);
                                 edb.onBlockStart();
-                                buf.order(ByteOrder.LITTLE_ENDIAN);
-                                while (buf.hasRemaining()) {
-                                    int length = buf.getInt();
-                                    byte[] rowdata = new byte[length];
-                                    buf.get(rowdata, 0, length);
-                                    edb.processRow(length, rowdata);
-                                }
+                                edb.processRows(edb.getRowCursor().reset(buf));
                                 edb.onBlockCompletion();
                                 break;
                             } catch (RestartBlockException e) {
@@ -0,0 +1,809 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.exportclient;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.json_voltpatches.JSONStringer;
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.CompressionStrategySnappy;
+import org.voltcore.utils.CoreUtils;
+import org.voltdb.VoltDB;
+import org.voltdb.VoltType;
+import org.voltdb.export.AdvertisedDataSource;
+import org.voltdb.export.ExportManager;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.utils.VoltFile;
+
+import com.google_voltpatches.common.base.Charsets;
+import com.google_voltpatches.common.base.Throwables;
+import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+
+/**
+ * Writes each exported stream partition to rolling local files in a compact columnar
+ * layout, for loading into analytics tools without parsing CSV.
+ *
+ * Rows are gathered column by column into row groups. Each column of a row group is
+ * encoded on its own, with run lengths for fixed width columns that repeat and with a
+ * dictionary for variable length columns that have few distinct values, and is then
+ * compressed with Snappy when that makes it smaller. A row group ends when it reaches
+ * the configured number of rows and at the end of every export block, so that nothing
+ * the export stream considers acknowledged is held only in memory.
+ *
+ * Files are named {@code nonce-table-partition-generation-date.vcol} and carry an
+ * {@code active-} prefix while they are being written. Every {@code period} they are
+ * finished with a footer and renamed. All numbers are big endian.
+ * <pre>
+ * file      := "VCOL" version:byte schemaLength:int schema rowGroup* footer
+ * schema    := JSON object with "table name", "generation id", "partition id" and a
+ *              "columns" array of {"name", "type"}, UTF-8
+ * rowGroup  := 'R' rowCount:int length:int column{columnCount}
+ * column    := encoding:byte codec:byte rawLength:int storedLength:int data
+ * raw data  := nullBitmap[(rowCount + 7) / 8] values
+ * footer    := 'F' rowGroupCount:int (offset:long rowCount:int){rowGroupCount}
+ *              rowCount:long footerOffset:long "VCOL"
+ * </pre>
+ * Values are stored for every row, nulls as zero or as an empty value, and the high bit
+ * of each bitmap byte is the first of its eight rows. TINYINT, SMALLINT, INTEGER, BIGINT,
+ * TIMESTAMP (microseconds) and FLOAT (IEEE 754 bits) are 1, 2, 4, 8, 8 and 8 bytes wide.
+ * Every other type is an int length followed by the value: STRING as UTF-8, VARBINARY as
+ * is, DECIMAL as a scale byte and the two's complement unscaled value, GEOGRAPHY_POINT and
+ * GEOGRAPHY in their VoltDB serialized form.
+ * <ul>
+ * <li>PLAIN (0): one value per row.</li>
+ * <li>RUN_LENGTH (1): fixed width values only, a sequence of (count:int value).</li>
+ * <li>DICTIONARY (2): variable length values only, dictionarySize:int, the distinct
+ * values, then one unsigned index per row, a byte wide for up to 256 values and two
+ * bytes wide otherwise.</li>
+ * </ul>
+ * The codec is NONE (0) or SNAPPY (1). A file that was never finished has no footer, but
+ * its row groups can still be read in sequence. {@link ColumnarFileReader} reads the format.
+ */
+public class ColumnarFileExportClient extends ExportClientBase {
+
+    private static final VoltLogger m_logger = new VoltLogger("ExportClient");
+    private static final TimeUnit TIME_PERIOD_UNIT =
+            TimeUnit.valueOf(System.getProperty("__EXPORT_FILE_ROTATE_PERIOD_UNIT__", TimeUnit.MINUTES.name()));
+
+    static final byte[] MAGIC = { 'V', 'C', 'O', 'L' };
+    static final byte FORMAT_VERSION = 1;
+    static final byte ROW_GROUP_MARKER = 'R';
+    static final byte FOOTER_MARKER = 'F';
+    static final byte ENCODING_PLAIN = 0;
+    static final byte ENCODING_RUN_LENGTH = 1;
+    static final byte ENCODING_DICTIONARY = 2;
+    static final byte CODEC_NONE = 0;
+    static final byte CODEC_SNAPPY = 1;
+    static final int MAX_DICTIONARY_SIZE = 1 << 16;
+    static final String EXTENSION = ".vcol";
+    private static final String ACTIVE_PREFIX = "active-";
+
+    private String m_nonce;
+    private File m_outDir;
+    private int m_period;
+    private int m_rowGroupSize;
+    private boolean m_compress;
+    private boolean m_skipinternal;
+    private String m_dateFormatString;
+    private final List<ColumnarFileDecoder> m_decoders = new ArrayList<>();
+    // timer used to roll files
+    private ScheduledExecutorService m_ses;
+
+    //For test
+    public static String TEST_VOLTDB_ROOT = null;
+
+    public String getVoltDBRootPath() {
+        return TEST_VOLTDB_ROOT != null ? TEST_VOLTDB_ROOT : VoltDB.instance().getVoltDBRootPath();
+    }
+
+    @Override
+    public void configure(Properties conf) throws Exception {
+        String nonce = conf.getProperty("nonce");
+        if (nonce == null) {
+            throw new IllegalArgumentException("ColumnarFileExport: must provide a filename nonce");
+        }
+        String dir = conf.getProperty("outdir");
+        if (dir == null || dir.length() == 0) {
+            dir = getVoltDBRootPath() + File.separator + "columnar_export";
+        }
+        File outdir = new VoltFile(dir);
+        if (!outdir.isAbsolute()) {
+            outdir = new File(getVoltDBRootPath(), outdir.getPath());
+        }
+        if (!outdir.exists()) {
+            if (!outdir.mkdir()) {
+                throw new IllegalArgumentException("Error: " + outdir.getPath() + " cannot be created");
+            }
+        }
+        if (!outdir.canRead() || !outdir.canWrite() || !outdir.canExecute()) {
+            throw new IllegalArgumentException("Error: " + outdir.getPath() + " must be readable, writable and executable");
+        }
+
+        int period = Integer.parseInt(conf.getProperty("period", "60"));
+        if (period < 1) {
+            throw new IllegalArgumentException("Error: Specified value for period must be >= 1.");
+        }
+        int rowGroupSize = Integer.parseInt(conf.getProperty("rowgroup", "65536"));
+        if (rowGroupSize < 1) {
+            throw new IllegalArgumentException("Error: Specified value for rowgroup must be >= 1.");
+        }
+        String compression = conf.getProperty("compression", "snappy").trim();
+        if (!compression.equalsIgnoreCase("snappy") && !compression.equalsIgnoreCase("none")) {
+            throw new IllegalArgumentException("Error: compression must be one of snappy or none");
+        }
+        String dateformatString = conf.getProperty("dateformat", "yyyyMMddHHmmss").trim();
+        // fail on a bad pattern now rather than at the first roll
+        new SimpleDateFormat(dateformatString);
+
+        //Dont do actual config in check mode.
+        boolean configcheck = Boolean.parseBoolean(conf.getProperty(ExportManager.CONFIG_CHECK_ONLY, "false"));
+        if (configcheck) {
+            return;
+        }
+        setRunEverywhere(Boolean.parseBoolean(conf.getProperty("replicated", "false")));
+
+        m_nonce = nonce;
+        m_outDir = outdir;
+        m_period = period;
+        m_rowGroupSize = rowGroupSize;
+        m_compress = compression.equalsIgnoreCase("snappy");
+        m_skipinternal = Boolean.parseBoolean(conf.getProperty("skipinternals", "false"));
+        m_dateFormatString = dateformatString;
+
+        Runnable rotator = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    roll();
+                } catch (Throwable t) {
+                    m_logger.warn("Failed to roll columnar export files periodically.", t);
+                }
+            }
+        };
+        m_ses = CoreUtils.getScheduledThreadPoolExecutor(
+                "Columnar export rotate timer for nonce " + nonce, 1, CoreUtils.SMALL_STACK_SIZE);
+        m_ses.scheduleWithFixedDelay(rotator, m_period, m_period, TIME_PERIOD_UNIT);
+    }
+
+    @Override
+    public ColumnarFileDecoder constructExportDecoder(AdvertisedDataSource source) {
+        ColumnarFileDecoder decoder = new ColumnarFileDecoder(source);
+        synchronized (m_decoders) {
+            m_decoders.add(decoder);
+        }
+        return decoder;
+    }
+
+    /**
+     * Finish every open file. Each decoder does it on its own thread, between blocks.
+     */
+    void roll() {
+        List<ColumnarFileDecoder> decoders;
+        synchronized (m_decoders) {
+            decoders = new ArrayList<>(m_decoders);
+        }
+        for (final ColumnarFileDecoder decoder : decoders) {
+            try {
+                decoder.getExecutor().submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        decoder.closeFile();
+                    }
+                });
+            } catch (Exception e) {
+                // the decoder was shut down after it was listed
+                m_logger.debug("Skipped rolling a decoder that is no longer running", e);
+            }
+        }
+    }
+
+    @Override
+    public void shutdown() {
+        if (m_ses != null) {
+            m_ses.shutdown();
+            try {
+                m_ses.awaitTermination(365, TimeUnit.DAYS);
+            } catch (InterruptedException e) {
+                Throwables.propagate(e);
+            }
+        }
+        List<ColumnarFileDecoder> decoders;
+        synchronized (m_decoders) {
+            decoders = new ArrayList<>(m_decoders);
+        }
+        for (ColumnarFileDecoder decoder : decoders) {
+            decoder.sourceNoLongerAdvertised(decoder.m_source);
+        }
+    }
+
+    /**
+     * Writes the rows of one stream partition. Everything except construction runs on
+     * the decoder's own thread.
+     */
+    class ColumnarFileDecoder extends ExportDecoderBase {
+        private final ListeningExecutorService m_es;
+        private final int m_firstField;
+        private final ColumnChunk[] m_columns;
+        private final byte[] m_schema;
+        private int m_rows = 0;
+
+        private FileChannel m_channel;
+        private File m_activeFile;
+        private File m_finishedFile;
+        private long m_fileLength;
+        private long m_blockStartLength;
+        // offset and row count of each row group in the open file
+        private final List<long[]> m_rowGroups = new ArrayList<>();
+
+        ColumnarFileDecoder(AdvertisedDataSource source) {
+            super(source);
+            m_es = CoreUtils.getListeningSingleThreadExecutor(
+                    "Columnar export decoder for partition " + source.partitionId
+                    + " table " + source.tableName + " generation " + source.m_generation, CoreUtils.MEDIUM_STACK_SIZE);
+            m_firstField = getFirstField(m_skipinternal);
+            m_columns = new ColumnChunk[source.columnTypes.size() - m_firstField];
+            for (int i = 0; i < m_columns.length; i++) {
+                VoltType type = source.columnTypes.get(m_firstField + i);
+                m_columns[i] = fixedWidth(type) > 0 ? new FixedColumn(type) : new VariableColumn(type);
+            }
+            m_schema = schemaFor(source, m_firstField).getBytes(Charsets.UTF_8);
+        }
+
+        @Override
+        public ListeningExecutorService getExecutor() {
+            return m_es;
+        }
+
+        @Override
+        public void onBlockStart() throws RestartBlockException {
+            // drop whatever was gathered from a block that is being restarted
+            clearColumns();
+            try {
+                if (m_channel == null) {
+                    openFile();
+                }
+            } catch (IOException e) {
+                rateLimitedLogError(m_logger, "Failed to create columnar export file, directory may be unavailable/unwritable, or not enough space: %s",
+                        Throwables.getStackTraceAsString(e));
+                throw new RestartBlockException("Fail to start the block", e, true);
+            }
+            m_blockStartLength = m_fileLength;
+        }
+
+        @Override
+        public boolean processRow(int rowSize, byte[] rowData) {
+            ByteBuffer block = ByteBuffer.allocate(rowSize + 4).order(ByteOrder.LITTLE_ENDIAN);
+            block.putInt(rowSize).put(rowData, 0, rowSize).flip();
+            try {
+                processRows(getRowCursor().reset(block));
+            } catch (RestartBlockException e) {
+                return false;
+            }
+            return true;
+        }
+
+        @Override
+        public void processRows(ExportRowCursor rows) throws RestartBlockException {
+            while (true) {
+                try {
+                    if (!rows.advanceRow()) {
+                        return;
+                    }
+                } catch (IOException e) {
+                    rateLimitedLogError(m_logger, "failed to process export row %s", Throwables.getStackTraceAsString(e));
+                    continue;
+                }
+                appendRow(rows);
+                if (m_rows >= m_rowGroupSize) {
+                    flushRowGroup();
+                }
+            }
+        }
+
+        @Override
+        public void onBlockCompletion() throws RestartBlockException {
+            if (m_rows > 0) {
+                flushRowGroup();
+            }
+        }
+
+        @Override
+        public void sourceNoLongerAdvertised(AdvertisedDataSource source) {
+            synchronized (m_decoders) {
+                if (!m_decoders.remove(this)) {
+                    return;
+                }
+            }
+            m_es.execute(new Runnable() {
+                @Override
+                public void run() {
+                    closeFile();
+                }
+            });
+            m_es.shutdown();
+            try {
+                m_es.awaitTermination(365, TimeUnit.DAYS);
+            } catch (InterruptedException e) {
+                Throwables.propagate(e);
+            }
+        }
+
+        private void appendRow(ExportRowCursor rows) {
+            try {
+                for (int i = 0; i < m_columns.length; i++) {
+                    m_columns[i].append(rows, m_firstField + i);
+                }
+                m_rows++;
+            } catch (RuntimeException e) {
+                // keep the columns in step by dropping the partial row
+                for (ColumnChunk column : m_columns) {
+                    column.truncate(m_rows);
+                }
+                rateLimitedLogError(m_logger, "failed to process export row %s", Throwables.getStackTraceAsString(e));
+            }
+        }
+
+        private void clearColumns() {
+            for (ColumnChunk column : m_columns) {
+                column.truncate(0);
+            }
+            m_rows = 0;
+        }
+
+        private void openFile() throws IOException {
+            final String name = m_nonce + "-" + m_source.tableName + "-" + m_source.partitionId + "-"
+                    + m_source.m_generation + "-" + new SimpleDateFormat(m_dateFormatString).format(new Date());
+            // Rolls within the same second get a sequence number
+            String unique = name;
+            for (int i = 1; new File(m_outDir, unique + EXTENSION).exists()
+                    || new File(m_outDir, ACTIVE_PREFIX + unique + EXTENSION).exists(); i++) {
+                unique = name + "-" + i;
+            }
+            File active = new VoltFile(m_outDir, ACTIVE_PREFIX + unique + EXTENSION);
+            @SuppressWarnings("resource")
+            FileChannel channel = new RandomAccessFile(active, "rw").getChannel();
+            ByteBuffer header = ByteBuffer.allocate(MAGIC.length + 1 + 4 + m_schema.length);
+            header.put(MAGIC).put(FORMAT_VERSION).putInt(m_schema.length).put(m_schema).flip();
+            try {
+                writeFully(channel, header, 0);
+            } catch (IOException e) {
+                channel.close();
+                active.delete();
+                throw e;
+            }
+            m_channel = channel;
+            m_activeFile = active;
+            m_finishedFile = new VoltFile(m_outDir, unique + EXTENSION);
+            m_fileLength = header.limit();
+            m_rowGroups.clear();
+        }
+
+        /**
+         * Write the footer, close the open file if there is one and move it out of the
+         * active state. Files that never got a row are removed.
+         */
+        void closeFile() {
+            if (m_channel == null) {
+                return;
+            }
+            try {
+                if (m_rowGroups.isEmpty()) {
+                    m_channel.close();
+                    if (!m_activeFile.delete()) {
+                        m_logger.warn("Failed to delete empty export file " + m_activeFile.getPath());
+                    }
+                    return;
+                }
+                ByteBuffer footer = ByteBuffer.allocate(1 + 4 + m_rowGroups.size() * 12 + 8 + 8 + MAGIC.length);
+                footer.put(FOOTER_MARKER).putInt(m_rowGroups.size());
+                long rowCount = 0;
+                for (long[] rowGroup : m_rowGroups) {
+                    footer.putLong(rowGroup[0]).putInt((int) rowGroup[1]);
+                    rowCount += rowGroup[1];
+                }
+                footer.putLong(rowCount).putLong(m_fileLength).put(MAGIC).flip();
+                writeFully(m_channel, footer, m_fileLength);
+                m_channel.truncate(m_fileLength + footer.limit());
+                m_channel.close();
+                if (!m_activeFile.renameTo(m_finishedFile)) {
+                    m_logger.error("Failed to rename export file from " + m_activeFile.getPath() + " to " + m_finishedFile.getPath());
+                }
+            } catch (IOException e) {
+                // The row groups are intact, the file just won't have a footer
+                m_logger.error("Failed to finish export file " + m_activeFile.getPath(), e);
+                try {
+                    m_channel.close();
+                } catch (IOException ignore) {}
+            } finally {
+                m_channel = null;
+                m_rowGroups.clear();
+            }
+        }
+
+        private void flushRowGroup() throws RestartBlockException {
+            try {
+                writeRowGroup();
+            } catch (IOException e) {
+                abortBlock(e);
+            }
+        }
+
+        private void writeRowGroup() throws IOException {
+            final byte[][] chunks = new byte[m_columns.length][];
+            int length = 0;
+            for (int i = 0; i < m_columns.length; i++) {
+                chunks[i] = m_columns[i].encode(m_rows, m_compress);
+                length += chunks[i].length;
+            }
+            ByteBuffer rowGroup = ByteBuffer.allocate(1 + 4 + 4 + length);
+            rowGroup.put(ROW_GROUP_MARKER).putInt(m_rows).putInt(length);
+            for (byte[] chunk : chunks) {
+                rowGroup.put(chunk);
+            }
+            rowGroup.flip();
+            writeFully(m_channel, rowGroup, m_fileLength);
+            m_rowGroups.add(new long[] { m_fileLength, m_rows });
+            m_fileLength += rowGroup.limit();
+            clearColumns();
+        }
+
+        /**
+         * Undo everything the failed block wrote so its restart doesn't repeat rows.
+         */
+        private void abortBlock(IOException cause) throws RestartBlockException {
+            rateLimitedLogError(m_logger, "Failed to write columnar export file, file may be unavailable/unwritable, or not enough space: %s",
+                    Throwables.getStackTraceAsString(cause));
+            clearColumns();
+            while (!m_rowGroups.isEmpty() && m_rowGroups.get(m_rowGroups.size() - 1)[0] >= m_blockStartLength) {
+                m_rowGroups.remove(m_rowGroups.size() - 1);
+            }
+            m_fileLength = m_blockStartLength;
+            try {
+                m_channel.truncate(m_blockStartLength);
+            } catch (IOException e) {
+                // Give up on this file, the block will start a new one
+                m_logger.error("Failed to truncate export file " + m_activeFile.getPath(), e);
+                try {
+                    m_channel.close();
+                } catch (IOException ignore) {}
+                m_channel = null;
+                m_rowGroups.clear();
+            }
+            throw new RestartBlockException("Failed to write the block.", cause, true);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+        while (buf.hasRemaining()) {
+            position += channel.write(buf, position);
+        }
+    }
+
+    static String schemaFor(AdvertisedDataSource source, int firstField) {
+        try {
+            JSONStringer json = new JSONStringer();
+            json.object();
+            json.key("table name").value(source.tableName);
+            json.key("generation id").value(source.m_generation);
+            json.key("partition id").value(source.partitionId);
+            json.key("columns").array();
+            for (int i = firstField; i < source.columnNames.size(); i++) {
+                json.object();
+                json.key("name").value(source.columnNames.get(i));
+                json.key("type").value(source.columnTypes.get(i).name());
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+            return json.toString();
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to serialize the schema of " + source.tableName, e);
+        }
+    }
+
+    /**
+     * @return the width a column of this type is stored with, or 0 if it is variable length
+     */
+    static int fixedWidth(VoltType type) {
+        switch (type) {
+        case TINYINT:
+            return 1;
+        case SMALLINT:
+            return 2;
+        case INTEGER:
+            return 4;
+        case BIGINT:
+        case TIMESTAMP:
+        case FLOAT:
+            return 8;
+        default:
+            return 0;
+        }
+    }
+
+    /**
+     * The values of one column for the rows of the current row group.
+     */
+    private static abstract class ColumnChunk {
+        final VoltType m_type;
+        byte[] m_nulls = new byte[128];
+        int m_size = 0;
+
+        ColumnChunk(VoltType type) {
+            m_type = type;
+        }
+
+        abstract void append(ExportRowCursor rows, int column);
+
+        void truncate(int size) {
+            for (int i = size; i < m_size; i++) {
+                m_nulls[i >> 3] &= ~(0x80 >>> (i & 7));
+            }
+            m_size = size;
+        }
+
+        /** Make room for one more row and record whether it is null. */
+        void appendNull(boolean isNull) {
+            if ((m_size >> 3) >= m_nulls.length) {
+                m_nulls = Arrays.copyOf(m_nulls, m_nulls.length * 2);
+            }
+            if (isNull) {
+                m_nulls[m_size >> 3] |= 0x80 >>> (m_size & 7);
+            }
+        }
+
+        boolean isNull(int row) {
+            return (m_nulls[row >> 3] & (0x80 >>> (row & 7))) != 0;
+        }
+
+        /**
+         * Encode the first {@code rows} values, which must be all of them.
+         * @return the column header followed by the stored data
+         */
+        byte[] encode(int rows, boolean compress) throws IOException {
+            assert(rows == m_size);
+            final int bitmapLength = (rows + 7) >> 3;
+            ByteBuffer raw = encodeValues(rows, bitmapLength);
+            System.arraycopy(m_nulls, 0, raw.array(), 1 + 1 + 4 + 4, bitmapLength);
+            final byte encoding = raw.get(0);
+            final int rawLength = raw.position() - 10;
+            byte[] stored = null;
+            if (compress) {
+                byte[] uncompressed = Arrays.copyOfRange(raw.array(), 10, 10 + rawLength);
+                stored = CompressionStrategySnappy.INSTANCE.compress(uncompressed);
+                if (stored.length >= rawLength) {
+                    stored = null;
+                }
+            }
+            if (stored == null) {
+                raw.put(1, CODEC_NONE).putInt(2, rawLength).putInt(6, rawLength);
+                return Arrays.copyOf(raw.array(), raw.position());
+            }
+            ByteBuffer chunk = ByteBuffer.allocate(10 + stored.length);
+            chunk.put(encoding).put(CODEC_SNAPPY).putInt(rawLength).putInt(stored.length).put(stored);
+            return chunk.array();
+        }
+
+        /**
+         * Lay out the column: a 10 byte header whose first byte is the encoding, room for
+         * the null bitmap, then the values. The buffer is left positioned after the values.
+         */
+        abstract ByteBuffer encodeValues(int rows, int bitmapLength);
+    }
+
+    private static final class FixedColumn extends ColumnChunk {
+        private final int m_width;
+        private long[] m_values = new long[1024];
+
+        FixedColumn(VoltType type) {
+            super(type);
+            m_width = fixedWidth(type);
+        }
+
+        @Override
+        void append(ExportRowCursor rows, int column) {
+            final boolean isNull = rows.isNull(column);
+            long value = 0;
+            if (!isNull) {
+                value = (m_type == VoltType.FLOAT) ? Double.doubleToRawLongBits(rows.getDouble(column)) : rows.getLong(column);
+            }
+            appendNull(isNull);
+            if (m_size == m_values.length) {
+                m_values = Arrays.copyOf(m_values, m_values.length * 2);
+            }
+            m_values[m_size++] = value;
+        }
+
+        @Override
+        ByteBuffer encodeValues(int rows, int bitmapLength) {
+            int runs = 0;
+            for (int i = 0; i < rows; i++) {
+                if (i == 0 || m_values[i] != m_values[i - 1]) {
+                    runs++;
+                }
+            }
+            final boolean runLength = (long) runs * (4 + m_width) < (long) rows * m_width;
+            ByteBuffer buf = ByteBuffer.allocate(10 + bitmapLength + (runLength ? runs * (4 + m_width) : rows * m_width));
+            buf.put(runLength ? ENCODING_RUN_LENGTH : ENCODING_PLAIN);
+            buf.position(10 + bitmapLength);
+            if (runLength) {
+                int start = 0;
+                for (int i = 1; i <= rows; i++) {
+                    if (i == rows || m_values[i] != m_values[start]) {
+                        buf.putInt(i - start);
+                        putValue(buf, m_values[start]);
+                        start = i;
+                    }
+                }
+            } else {
+                for (int i = 0; i < rows; i++) {
+                    putValue(buf, m_values[i]);
+                }
+            }
+            return buf;
+        }
+
+        private void putValue(ByteBuffer buf, long value) {
+            switch (m_width) {
+            case 1:
+                buf.put((byte) value);
+                break;
+            case 2:
+                buf.putShort((short) value);
+                break;
+            case 4:
+                buf.putInt((int) value);
+                break;
+            default:
+                buf.putLong(value);
+            }
+        }
+    }
+
+    private static final class VariableColumn extends ColumnChunk {
+        private static final byte[] EMPTY = new byte[0];
+        private byte[][] m_values = new byte[1024][];
+
+        VariableColumn(VoltType type) {
+            super(type);
+        }
+
+        @Override
+        void append(ExportRowCursor rows, int column) {
+            final boolean isNull = rows.isNull(column);
+            final byte[] value = isNull ? EMPTY : serialize(rows, column);
+            appendNull(isNull);
+            if (m_size == m_values.length) {
+                m_values = Arrays.copyOf(m_values, m_values.length * 2);
+            }
+            m_values[m_size++] = value;
+        }
+
+        private byte[] serialize(ExportRowCursor rows, int column) {
+            switch (m_type) {
+            case STRING:
+                return rows.getString(column).getBytes(Charsets.UTF_8);
+            case VARBINARY:
+                return rows.getVarbinary(column);
+            case DECIMAL: {
+                BigDecimal value = rows.getDecimal(column);
+                byte[] unscaled = value.unscaledValue().toByteArray();
+                byte[] bytes = new byte[unscaled.length + 1];
+                bytes[0] = (byte) value.scale();
+                System.arraycopy(unscaled, 0, bytes, 1, unscaled.length);
+                return bytes;
+            }
+            case GEOGRAPHY_POINT: {
+                ByteBuffer buf = ByteBuffer.allocate(GeographyPointValue.getLengthInBytes());
+                rows.getGeographyPoint(column).flattenToBuffer(buf);
+                return buf.array();
+            }
+            case GEOGRAPHY: {
+                GeographyValue value = rows.getGeography(column);
+                ByteBuffer buf = ByteBuffer.allocate(value.getLengthInBytes());
+                value.flattenToBuffer(buf);
+                return buf.array();
+            }
+            default:
+                throw new IllegalArgumentException("Unsupported column type " + m_type);
+            }
+        }
+
+        @Override
+        void truncate(int size) {
+            Arrays.fill(m_values, size, Math.max(size, m_size), null);
+            super.truncate(size);
+        }
+
+        @Override
+        ByteBuffer encodeValues(int rows, int bitmapLength) {
+            // Only worth a dictionary if values repeat on average
+            int nonNull = 0;
+            for (int i = 0; i < rows; i++) {
+                if (!isNull(i)) {
+                    nonNull++;
+                }
+            }
+            final int maxDictionary = Math.min(MAX_DICTIONARY_SIZE, nonNull / 2);
+            Map<ByteBuffer, Integer> dictionary = new HashMap<>();
+            List<byte[]> entries = new ArrayList<>();
+            int dictionaryLength = 0;
+            int plainLength = 0;
+            for (int i = 0; i < rows; i++) {
+                plainLength += 4 + m_values[i].length;
+                if (dictionary == null || isNull(i)) {
+                    continue;
+                }
+                ByteBuffer key = ByteBuffer.wrap(m_values[i]);
+                if (!dictionary.containsKey(key)) {
+                    if (entries.size() == maxDictionary) {
+                        dictionary = null;
+                        continue;
+                    }
+                    dictionary.put(key, entries.size());
+                    entries.add(m_values[i]);
+                    dictionaryLength += 4 + m_values[i].length;
+                }
+            }
+
+            if (dictionary == null || entries.isEmpty()) {
+                ByteBuffer buf = ByteBuffer.allocate(10 + bitmapLength + plainLength);
+                buf.put(ENCODING_PLAIN);
+                buf.position(10 + bitmapLength);
+                for (int i = 0; i < rows; i++) {
+                    buf.putInt(m_values[i].length).put(m_values[i]);
+                }
+                return buf;
+            }
+            final boolean narrow = entries.size() <= 256;
+            ByteBuffer buf = ByteBuffer.allocate(10 + bitmapLength + 4 + dictionaryLength + rows * (narrow ? 1 : 2));
+            buf.put(ENCODING_DICTIONARY);
+            buf.position(10 + bitmapLength);
+            buf.putInt(entries.size());
+            for (byte[] entry : entries) {
+                buf.putInt(entry.length).put(entry);
+            }
+            for (int i = 0; i < rows; i++) {
+                final int index = isNull(i) ? 0 : dictionary.get(ByteBuffer.wrap(m_values[i]));
+                if (narrow) {
+                    buf.put((byte) index);
+                } else {
+                    buf.putShort((short) index);
+                }
+            }
+            return buf;
+        }
+    }
+}
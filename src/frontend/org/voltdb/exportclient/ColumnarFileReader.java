@@ -0,0 +1,283 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.exportclient;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.json_voltpatches.JSONArray;
+import org.json_voltpatches.JSONException;
+import org.json_voltpatches.JSONObject;
+import org.voltcore.utils.CompressionStrategySnappy;
+import org.voltdb.VoltType;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+
+import com.google_voltpatches.common.base.Charsets;
+
+/**
+ * Reads the files written by {@link ColumnarFileExportClient}, one row group at a time.
+ * Values come back as the same objects {@link ExportDecoderBase#decodeRow(byte[])} decodes
+ * export rows to. Files that are still active, or were never finished, can be read up to
+ * their last complete row group.
+ */
+public class ColumnarFileReader implements Closeable {
+
+    private final DataInputStream m_in;
+    private final String m_tableName;
+    private final long m_generation;
+    private final int m_partitionId;
+    private final List<String> m_columnNames = new ArrayList<>();
+    private final List<VoltType> m_columnTypes = new ArrayList<>();
+    private boolean m_done = false;
+
+    public ColumnarFileReader(File file) throws IOException {
+        m_in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        try {
+            byte[] magic = new byte[ColumnarFileExportClient.MAGIC.length];
+            m_in.readFully(magic);
+            if (!Arrays.equals(magic, ColumnarFileExportClient.MAGIC)) {
+                throw new IOException(file + " is not a columnar export file");
+            }
+            byte version = m_in.readByte();
+            if (version != ColumnarFileExportClient.FORMAT_VERSION) {
+                throw new IOException("Unsupported columnar export file version " + version + " in " + file);
+            }
+            byte[] schema = new byte[m_in.readInt()];
+            m_in.readFully(schema);
+            JSONObject json = new JSONObject(new String(schema, Charsets.UTF_8));
+            m_tableName = json.getString("table name");
+            m_generation = json.getLong("generation id");
+            m_partitionId = json.getInt("partition id");
+            JSONArray columns = json.getJSONArray("columns");
+            for (int i = 0; i < columns.length(); i++) {
+                JSONObject column = columns.getJSONObject(i);
+                m_columnNames.add(column.getString("name"));
+                m_columnTypes.add(VoltType.typeFromString(column.getString("type")));
+            }
+        } catch (IOException | JSONException | RuntimeException e) {
+            m_in.close();
+            if (e instanceof IOException) {
+                throw (IOException) e;
+            }
+            throw new IOException("Invalid columnar export file header in " + file, e);
+        }
+    }
+
+    public String getTableName() {
+        return m_tableName;
+    }
+
+    public long getGeneration() {
+        return m_generation;
+    }
+
+    public int getPartitionId() {
+        return m_partitionId;
+    }
+
+    public List<String> getColumnNames() {
+        return Collections.unmodifiableList(m_columnNames);
+    }
+
+    public List<VoltType> getColumnTypes() {
+        return Collections.unmodifiableList(m_columnTypes);
+    }
+
+    /**
+     * Read the next row group.
+     * @return its rows, or null once there are no more complete row groups
+     */
+    public List<Object[]> readRowGroup() throws IOException {
+        if (m_done) {
+            return null;
+        }
+        final int rowCount;
+        final byte[] data;
+        try {
+            byte marker = m_in.readByte();
+            if (marker != ColumnarFileExportClient.ROW_GROUP_MARKER) {
+                // the footer, only needed for seeking
+                m_done = true;
+                return null;
+            }
+            rowCount = m_in.readInt();
+            data = new byte[m_in.readInt()];
+            m_in.readFully(data);
+        } catch (EOFException e) {
+            // an unfinished file, the last row group may be incomplete
+            m_done = true;
+            return null;
+        }
+
+        List<Object[]> rows = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            rows.add(new Object[m_columnTypes.size()]);
+        }
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        for (int column = 0; column < m_columnTypes.size(); column++) {
+            final byte encoding = buf.get();
+            final byte codec = buf.get();
+            final int rawLength = buf.getInt();
+            byte[] stored = new byte[buf.getInt()];
+            buf.get(stored);
+            byte[] raw = stored;
+            if (codec == ColumnarFileExportClient.CODEC_SNAPPY) {
+                raw = CompressionStrategySnappy.INSTANCE.uncompress(stored);
+            } else if (codec != ColumnarFileExportClient.CODEC_NONE) {
+                throw new IOException("Unknown codec " + codec + " for column " + m_columnNames.get(column));
+            }
+            if (raw.length != rawLength) {
+                throw new IOException("Corrupt data for column " + m_columnNames.get(column));
+            }
+            decodeColumn(ByteBuffer.wrap(raw), encoding, column, rows);
+        }
+        return rows;
+    }
+
+    private void decodeColumn(ByteBuffer raw, byte encoding, int column, List<Object[]> rows) throws IOException {
+        final VoltType type = m_columnTypes.get(column);
+        final int rowCount = rows.size();
+        final byte[] nulls = new byte[(rowCount + 7) >> 3];
+        raw.get(nulls);
+        final int width = ColumnarFileExportClient.fixedWidth(type);
+
+        if (width > 0) {
+            if (encoding == ColumnarFileExportClient.ENCODING_RUN_LENGTH) {
+                int row = 0;
+                while (row < rowCount) {
+                    final int run = raw.getInt();
+                    final long value = getFixed(raw, width);
+                    for (int end = row + run; row < end; row++) {
+                        setValue(rows, row, column, nulls, toObject(type, value));
+                    }
+                }
+            } else if (encoding == ColumnarFileExportClient.ENCODING_PLAIN) {
+                for (int row = 0; row < rowCount; row++) {
+                    setValue(rows, row, column, nulls, toObject(type, getFixed(raw, width)));
+                }
+            } else {
+                throw new IOException("Unknown encoding " + encoding + " for column " + m_columnNames.get(column));
+            }
+            return;
+        }
+
+        if (encoding == ColumnarFileExportClient.ENCODING_DICTIONARY) {
+            final int size = raw.getInt();
+            Object[] dictionary = new Object[size];
+            for (int i = 0; i < size; i++) {
+                dictionary[i] = toObject(type, getVariable(raw));
+            }
+            final boolean narrow = size <= 256;
+            for (int row = 0; row < rowCount; row++) {
+                final int index = narrow ? raw.get() & 0xff : raw.getShort() & 0xffff;
+                setValue(rows, row, column, nulls, dictionary[index]);
+            }
+        } else if (encoding == ColumnarFileExportClient.ENCODING_PLAIN) {
+            for (int row = 0; row < rowCount; row++) {
+                byte[] value = getVariable(raw);
+                if (!isNull(nulls, row)) {
+                    rows.get(row)[column] = toObject(type, value);
+                }
+            }
+        } else {
+            throw new IOException("Unknown encoding " + encoding + " for column " + m_columnNames.get(column));
+        }
+    }
+
+    private static boolean isNull(byte[] nulls, int row) {
+        return (nulls[row >> 3] & (0x80 >>> (row & 7))) != 0;
+    }
+
+    private static void setValue(List<Object[]> rows, int row, int column, byte[] nulls, Object value) {
+        rows.get(row)[column] = isNull(nulls, row) ? null : value;
+    }
+
+    private static long getFixed(ByteBuffer raw, int width) {
+        switch (width) {
+        case 1:
+            return raw.get();
+        case 2:
+            return raw.getShort();
+        case 4:
+            return raw.getInt();
+        default:
+            return raw.getLong();
+        }
+    }
+
+    private static byte[] getVariable(ByteBuffer raw) {
+        byte[] value = new byte[raw.getInt()];
+        raw.get(value);
+        return value;
+    }
+
+    private static Object toObject(VoltType type, long value) {
+        switch (type) {
+        case TINYINT:
+            return (byte) value;
+        case SMALLINT:
+            return (short) value;
+        case INTEGER:
+            return (int) value;
+        case BIGINT:
+            return value;
+        case TIMESTAMP:
+            return new TimestampType(value);
+        case FLOAT:
+            return Double.longBitsToDouble(value);
+        default:
+            throw new IllegalArgumentException("Unsupported fixed width type " + type);
+        }
+    }
+
+    private static Object toObject(VoltType type, byte[] value) {
+        switch (type) {
+        case STRING:
+            return new String(value, Charsets.UTF_8);
+        case VARBINARY:
+            return value;
+        case DECIMAL:
+            return new BigDecimal(new BigInteger(Arrays.copyOfRange(value, 1, value.length)), value[0]);
+        case GEOGRAPHY_POINT:
+            return GeographyPointValue.unflattenFromBuffer(ByteBuffer.wrap(value));
+        case GEOGRAPHY:
+            return GeographyValue.unflattenFromBuffer(ByteBuffer.wrap(value));
+        default:
+            throw new IllegalArgumentException("Unsupported variable length type " + type);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        m_in.close();
+    }
+}
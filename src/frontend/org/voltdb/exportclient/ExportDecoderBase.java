@@ -79,6 +79,7 @@ public abstract class ExportDecoderBase {
     protected final ArrayList<VoltType> m_tableSchema;
     private int m_partitionColumnIndex = PARTITION_ID_INDEX;
     private final ExportFormat m_exportFormat;
+    private ExportRowCursor m_rowCursor;
 
     public ExportDecoderBase(AdvertisedDataSource source) {
         m_source = source;
@@ -99,6 +100,43 @@ public abstract class ExportDecoderBase {
      */
     abstract public boolean processRow(int rowSize, byte[] rowData) throws RestartBlockException;
 
+    /**
+     * Process every row of a block. The default copies each row out of the block and hands
+     * it to {@link #processRow(int, byte[])}. Decoders that care about throughput override
+     * this to read the rows in place through the cursor instead.
+     *
+     * The block is only valid until this returns. If it throws a RestartBlockException the
+     * whole block is processed again from its first row. A row that can't be decoded is
+     * logged and skipped, as processRow does, and the rest of the block is still processed.
+     *
+     * @param rows
+     *            a cursor positioned before the first row of the block
+     */
+    public void processRows(ExportRowCursor rows) throws RestartBlockException {
+        while (true) {
+            try {
+                if (!rows.advanceRow()) {
+                    return;
+                }
+            } catch (IOException e) {
+                m_logger.error("Unable to decode export row, skipping it", e);
+                continue;
+            }
+            processRow(rows.getRowLength(), rows.copyRow());
+        }
+    }
+
+    /**
+     * Get the cursor the export processor hands to {@link #processRows(ExportRowCursor)},
+     * created on first use for this source's schema and reused for every block.
+     */
+    public final ExportRowCursor getRowCursor() {
+        if (m_rowCursor == null) {
+            m_rowCursor = new ExportRowCursor(m_tableSchema, m_exportFormat);
+        }
+        return m_rowCursor;
+    }
+
     abstract public void sourceNoLongerAdvertised(AdvertisedDataSource source);
 
     /**
@@ -153,6 +191,17 @@ public abstract class ExportDecoderBase {
         }
     }
 
+    /**
+     * Get the value used to route a row, that of the partition column or of the one
+     * configured in its place.
+     *
+     * @param values
+     *            every column of the row, as decoded by {@link ExportRowCursor#getValues(Object[])}
+     */
+    protected Object getPartitionValue(Object[] values) {
+        return values[m_partitionColumnIndex];
+    }
+
     /**
      * Decode a byte array of row data into ExportRowData
      *
@@ -464,6 +513,11 @@ public abstract class ExportDecoderBase {
      */
     static public String decodeString(final ByteBuffer bb) {
         final int strlength = bb.getInt();
+        if (!bb.hasArray()) {
+            final byte[] strdata = new byte[strlength];
+            bb.get(strdata);
+            return new String(strdata, Charsets.UTF_8);
+        }
         final int position = bb.position();
         String decoded = new String(bb.array(), bb.arrayOffset() + position, strlength, Charsets.UTF_8);
         bb.position(position + strlength);
@@ -0,0 +1,467 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with VoltDB.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package org.voltdb.exportclient;
+
+import static org.voltdb.exportclient.ExportDecoderBase.decodeBigInt;
+import static org.voltdb.exportclient.ExportDecoderBase.decodeDecimal;
+import static org.voltdb.exportclient.ExportDecoderBase.decodeFloat;
+import static org.voltdb.exportclient.ExportDecoderBase.decodeGeography;
+import static org.voltdb.exportclient.ExportDecoderBase.decodeGeographyPoint;
+import static org.voltdb.exportclient.ExportDecoderBase.decodeInteger;
+import static org.voltdb.exportclient.ExportDecoderBase.decodeSmallInt;
+import static org.voltdb.exportclient.ExportDecoderBase.decodeString;
+import static org.voltdb.exportclient.ExportDecoderBase.decodeTimestamp;
+import static org.voltdb.exportclient.ExportDecoderBase.decodeTinyInt;
+import static org.voltdb.exportclient.ExportDecoderBase.decodeVarbinary;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.util.List;
+
+import org.voltdb.VoltType;
+import org.voltdb.export.AdvertisedDataSource.ExportFormat;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+
+/**
+ * Reads the rows of an export block in place.
+ *
+ * A block is a sequence of rows, each an int length followed by the row's null flags and
+ * its non-null column values, all little endian. The cursor steps through the rows of the
+ * block it was {@link #reset(ByteBuffer) reset} to and locates the columns of the current
+ * row, so that they can be read by index with the typed getters without first copying the
+ * row out of the block. A decoder keeps one cursor and reuses it for every block, so
+ * stepping through a block allocates nothing; only the values returned as objects are new.
+ *
+ * The block buffer, and everything the cursor returns that isn't a new object, is only
+ * valid until the decoder returns from {@link ExportDecoderBase#processRows(ExportRowCursor)}.
+ */
+public final class ExportRowCursor {
+
+    private final VoltType[] m_types;
+    private final ExportFormat m_format;
+    private final int m_nullFlagsLength;
+    // absolute offset of each column of the current row, -1 for null
+    private final int[] m_offsets;
+
+    private ByteBuffer m_block;
+    // for the relative reads of the decoders and for bulk copies, so the block's own
+    // position is never moved
+    private ByteBuffer m_copier;
+    private int m_nextRow;
+    private int m_rowOffset = -1;
+    private int m_rowLength = 0;
+    private byte[] m_scratch = new byte[64];
+
+    public ExportRowCursor(List<VoltType> columnTypes, ExportFormat format) {
+        m_types = columnTypes.toArray(new VoltType[columnTypes.size()]);
+        m_format = format;
+        m_nullFlagsLength = (m_types.length + 7) >> 3;
+        m_offsets = new int[m_types.length];
+    }
+
+    /**
+     * Point the cursor before the first row of {@code block}. The rows start at the
+     * block's position and end at its limit. The block is switched to little endian
+     * but its position and limit are left alone.
+     * @return this cursor
+     */
+    public ExportRowCursor reset(ByteBuffer block) {
+        block.order(ByteOrder.LITTLE_ENDIAN);
+        m_block = block;
+        m_copier = block.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        m_nextRow = block.position();
+        m_rowOffset = -1;
+        m_rowLength = 0;
+        return this;
+    }
+
+    /**
+     * Move to the next row of the block.
+     * @return false once there are no more rows
+     * @throws IOException if the row is malformed or has a column type the format can't hold.
+     *         The next call moves on to the following row, unless this row's length was bad
+     *         and there is no telling where that row starts, then there are no more rows.
+     */
+    public boolean advanceRow() throws IOException {
+        if (m_nextRow >= m_block.limit()) {
+            m_rowOffset = -1;
+            return false;
+        }
+        m_rowLength = m_block.getInt(m_nextRow);
+        m_rowOffset = m_nextRow + 4;
+        if (m_rowLength < 0 || m_rowLength > m_block.limit() - m_rowOffset) {
+            m_nextRow = m_block.limit();
+            throw new IOException("Export row of length " + m_rowLength + " at offset " + m_rowOffset +
+                    " doesn't fit in the block");
+        }
+        m_nextRow = m_rowOffset + m_rowLength;
+        if (m_rowLength < m_nullFlagsLength) {
+            throw new IOException("Export row of length " + m_rowLength + " at offset " + m_rowOffset +
+                    " is shorter than its null flags");
+        }
+
+        // The flag for column i is bit 0x80 >>> (i % 8) of byte i / 8
+        int offset = m_rowOffset + m_nullFlagsLength;
+        for (int i = 0; i < m_types.length; i++) {
+            if ((m_block.get(m_rowOffset + (i >> 3)) & (0x80 >>> (i & 7))) != 0) {
+                m_offsets[i] = -1;
+            } else {
+                m_offsets[i] = offset;
+                offset += columnLength(m_types[i], offset);
+            }
+        }
+        if (offset > m_nextRow) {
+            throw new IOException("Export row of length " + m_rowLength + " at offset " + m_rowOffset +
+                    " is shorter than its columns");
+        }
+        return true;
+    }
+
+    private int columnLength(VoltType type, int offset) throws IOException {
+        if (m_format == ExportFormat.ORIGINAL) {
+            switch (type) {
+            case TINYINT:
+            case SMALLINT:
+            case INTEGER:
+            case BIGINT:
+            case FLOAT:
+            case TIMESTAMP:
+                return 8;
+            case STRING:
+            case VARBINARY:
+            case DECIMAL:
+                return 4 + m_block.getInt(offset);
+            default:
+                // GEOGRAPHY and GEOGRAPHY_POINT came after the original format
+                throw new IOException("Invalid column type: " + type);
+            }
+        }
+        switch (type) {
+        case TINYINT:
+            return 1;
+        case SMALLINT:
+            return 2;
+        case INTEGER:
+            return 4;
+        case BIGINT:
+        case FLOAT:
+        case TIMESTAMP:
+            return 8;
+        case STRING:
+        case VARBINARY:
+        case GEOGRAPHY:
+            return 4 + m_block.getInt(offset);
+        case DECIMAL:
+            return 2 + m_block.get(offset + 1);
+        case GEOGRAPHY_POINT:
+            return GeographyPointValue.getLengthInBytes();
+        default:
+            throw new IOException("Invalid column type: " + type);
+        }
+    }
+
+    public int getColumnCount() {
+        return m_types.length;
+    }
+
+    public VoltType getColumnType(int column) {
+        return m_types[column];
+    }
+
+    /**
+     * @return the block the cursor is reading
+     */
+    public ByteBuffer getBlock() {
+        return m_block;
+    }
+
+    /**
+     * @return the absolute offset in the block of the current row's data, just past its length
+     */
+    public int getRowOffset() {
+        return m_rowOffset;
+    }
+
+    /**
+     * @return the length of the current row's data
+     */
+    public int getRowLength() {
+        return m_rowLength;
+    }
+
+    /**
+     * Copy the current row's data out of the block, in the form
+     * {@link ExportDecoderBase#processRow(int, byte[])} takes it.
+     */
+    public byte[] copyRow() {
+        final byte[] row = new byte[m_rowLength];
+        copy(m_rowOffset, row, row.length);
+        return row;
+    }
+
+    private void copy(int offset, byte[] to, int length) {
+        at(offset).get(to, 0, length);
+    }
+
+    /**
+     * @return the block, positioned at {@code offset}, for the {@link ExportDecoderBase} decoders
+     */
+    private ByteBuffer at(int offset) {
+        m_copier.position(offset);
+        return m_copier;
+    }
+
+    public boolean isNull(int column) {
+        return offset(column) < 0;
+    }
+
+    private int offset(int column) {
+        if (m_rowOffset < 0) {
+            throw new IllegalStateException("No current row");
+        }
+        return m_offsets[column];
+    }
+
+    private int nonNullOffset(int column) {
+        final int offset = offset(column);
+        if (offset < 0) {
+            throw new IllegalStateException("Column " + column + " is null");
+        }
+        return offset;
+    }
+
+    /**
+     * Read a TINYINT, SMALLINT, INTEGER, BIGINT or TIMESTAMP column, timestamps in
+     * microseconds. The column must not be null.
+     */
+    public long getLong(int column) {
+        final int offset = nonNullOffset(column);
+        if (m_format == ExportFormat.ORIGINAL) {
+            switch (m_types[column]) {
+            case TINYINT:
+                return (byte) decodeBigInt(at(offset));
+            case SMALLINT:
+                return (short) decodeBigInt(at(offset));
+            case INTEGER:
+                return (int) decodeBigInt(at(offset));
+            case BIGINT:
+            case TIMESTAMP:
+                return decodeBigInt(at(offset));
+            default:
+                throw mismatch(column, "long");
+            }
+        }
+        switch (m_types[column]) {
+        case TINYINT:
+            return decodeTinyInt(at(offset));
+        case SMALLINT:
+            return decodeSmallInt(at(offset));
+        case INTEGER:
+            return decodeInteger(at(offset));
+        case BIGINT:
+        case TIMESTAMP:
+            return decodeBigInt(at(offset));
+        default:
+            throw mismatch(column, "long");
+        }
+    }
+
+    /**
+     * Read a FLOAT column. The column must not be null.
+     */
+    public double getDouble(int column) {
+        final int offset = nonNullOffset(column);
+        if (m_types[column] != VoltType.FLOAT) {
+            throw mismatch(column, "double");
+        }
+        return decodeFloat(at(offset));
+    }
+
+    /**
+     * Read a STRING column.
+     * @return the string, or null if the column is null
+     */
+    public String getString(int column) {
+        final int offset = offset(column);
+        if (offset < 0) {
+            return null;
+        }
+        if (m_types[column] != VoltType.STRING) {
+            throw mismatch(column, "String");
+        }
+        if (m_format == ExportFormat.ORIGINAL) {
+            return decodeLegacyString(offset);
+        }
+        return decodeString(at(offset));
+    }
+
+    /**
+     * The original format decoded strings, and the decimals held as strings, with the
+     * platform charset.
+     */
+    private String decodeLegacyString(int offset) {
+        final Charset charset = Charset.defaultCharset();
+        final int length = m_block.getInt(offset);
+        if (m_block.hasArray()) {
+            return new String(m_block.array(), m_block.arrayOffset() + offset + 4, length, charset);
+        }
+        // Direct blocks are staged through a scratch array the cursor keeps
+        if (m_scratch.length < length) {
+            m_scratch = new byte[Math.max(length, m_scratch.length * 2)];
+        }
+        copy(offset + 4, m_scratch, length);
+        return new String(m_scratch, 0, length, charset);
+    }
+
+    /**
+     * Read a VARBINARY column.
+     * @return a copy of the value, or null if the column is null
+     */
+    public byte[] getVarbinary(int column) {
+        final int offset = offset(column);
+        if (offset < 0) {
+            return null;
+        }
+        if (m_types[column] != VoltType.VARBINARY) {
+            throw mismatch(column, "byte[]");
+        }
+        return (byte[]) decodeVarbinary(at(offset));
+    }
+
+    /**
+     * Read a DECIMAL column.
+     * @return the value, or null if the column is null
+     */
+    public BigDecimal getDecimal(int column) {
+        final int offset = offset(column);
+        if (offset < 0) {
+            return null;
+        }
+        if (m_types[column] != VoltType.DECIMAL) {
+            throw mismatch(column, "BigDecimal");
+        }
+        if (m_format == ExportFormat.ORIGINAL) {
+            return new BigDecimal(decodeLegacyString(offset));
+        }
+        return decodeDecimal(at(offset));
+    }
+
+    /**
+     * Read a TIMESTAMP column.
+     * @return the value, or null if the column is null
+     */
+    public TimestampType getTimestamp(int column) {
+        final int offset = offset(column);
+        if (offset < 0) {
+            return null;
+        }
+        if (m_types[column] != VoltType.TIMESTAMP) {
+            throw mismatch(column, "TimestampType");
+        }
+        return decodeTimestamp(at(offset));
+    }
+
+    /**
+     * Read a GEOGRAPHY_POINT column.
+     * @return the value, or null if the column is null
+     */
+    public GeographyPointValue getGeographyPoint(int column) {
+        final int offset = offset(column);
+        if (offset < 0) {
+            return null;
+        }
+        if (m_types[column] != VoltType.GEOGRAPHY_POINT) {
+            throw mismatch(column, "GeographyPointValue");
+        }
+        return decodeGeographyPoint(at(offset));
+    }
+
+    /**
+     * Read a GEOGRAPHY column.
+     * @return the value, or null if the column is null
+     */
+    public GeographyValue getGeography(int column) {
+        final int offset = offset(column);
+        if (offset < 0) {
+            return null;
+        }
+        if (m_types[column] != VoltType.GEOGRAPHY) {
+            throw mismatch(column, "GeographyValue");
+        }
+        return decodeGeography(at(offset));
+    }
+
+    /**
+     * Read any column as the object {@link ExportDecoderBase#decodeRow(byte[])} would
+     * decode it to.
+     * @return the value, or null if the column is null
+     */
+    public Object get(int column) {
+        if (isNull(column)) {
+            return null;
+        }
+        switch (m_types[column]) {
+        case TINYINT:
+            return (byte) getLong(column);
+        case SMALLINT:
+            return (short) getLong(column);
+        case INTEGER:
+            return (int) getLong(column);
+        case BIGINT:
+            return getLong(column);
+        case FLOAT:
+            return getDouble(column);
+        case TIMESTAMP:
+            return getTimestamp(column);
+        case STRING:
+            return getString(column);
+        case VARBINARY:
+            return getVarbinary(column);
+        case DECIMAL:
+            return getDecimal(column);
+        case GEOGRAPHY_POINT:
+            return getGeographyPoint(column);
+        case GEOGRAPHY:
+            return getGeography(column);
+        default:
+            throw mismatch(column, "Object");
+        }
+    }
+
+    /**
+     * Decode every column of the current row into {@code values}, which can be reused
+     * from row to row.
+     * @return {@code values}
+     */
+    public Object[] getValues(Object[] values) {
+        for (int i = 0; i < m_types.length; i++) {
+            values[i] = get(i);
+        }
+        return values;
+    }
+
+    private IllegalArgumentException mismatch(int column, String javaType) {
+        return new IllegalArgumentException("Column " + column + " of type " + m_types[column] +
+                " can't be read as " + javaType);
+    }
+}
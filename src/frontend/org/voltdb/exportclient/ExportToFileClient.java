@@ -17,18 +17,22 @@
 
 package org.voltdb.exportclient;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Properties;
@@ -36,9 +40,15 @@ import java.util.Set;
 import java.util.TimeZone;
 import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import org.apache.commons.lang3.StringEscapeUtils;
@@ -54,14 +64,23 @@ import org.voltdb.exportclient.ExportDecoderBase.BinaryEncoding;
 import org.voltdb.exportclient.decode.CSVWriterDecoder;
 import org.voltdb.utils.VoltFile;
 
+import com.google_voltpatches.common.base.Charsets;
 import com.google_voltpatches.common.base.Throwables;
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 import com.google_voltpatches.common.util.concurrent.ListeningExecutorService;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
 
 import au.com.bytecode.opencsv_voltpatches.CSVWriter;
 
 /**
  * Uses the Export feature of VoltDB to write exported tables to files.
  *
+ * Every partition of a table gets its own decoder, running on its own thread, that
+ * formats rows into an in memory chunk. Completed chunks go to the write stage of the
+ * table's file, which a small pool of writer threads drains in batches, so partitions
+ * exporting the same table only meet on a lock-free queue. A decoder doesn't finish a
+ * block until the file has its rows.
  */
 public class ExportToFileClient extends ExportClientBase {
 
@@ -69,6 +88,12 @@ public class ExportToFileClient extends ExportClientBase {
     private static final TimeUnit TIME_PERIOD_UNIT =
             TimeUnit.valueOf(System.getProperty("__EXPORT_FILE_ROTATE_PERIOD_UNIT__", TimeUnit.MINUTES.name()));
     private static final int EXPORT_DELIM_NUM_CHARACTERS = 4;
+    // decoders hand over what they have formatted once it reaches this size
+    private static final int CHUNK_SIZE = 1024 * 1024;
+    // the most a writer thread writes before its next flush
+    private static final int MAX_BATCH_BYTES = 4 * 1024 * 1024;
+    // batches a writer thread takes from one file before it moves on to others
+    private static final int MAX_BATCHES_PER_TURN = 16;
 
     // These get put in from of the batch folders
     // active means the folder is being written to
@@ -80,8 +105,8 @@ public class ExportToFileClient extends ExportClientBase {
     protected String m_nonce;
     // outDir is the folder that will contain the raw files or batch folders
     protected File m_outDir;
-    // the set of active decoders
-    protected HashMap<Long, HashMap<String, ExportToFileDecoder>> m_tableDecoders;
+    // the set of active decoders, one per partition of each table
+    protected final Set<ExportToFileDecoder> m_decoders = new HashSet<>();
     // how often to roll batches / files
     protected int m_period;
     // use thread-local to avoid SimpleDateFormat thread-safety issues
@@ -103,6 +128,19 @@ public class ExportToFileClient extends ExportClientBase {
     // timer used to roll batches
     protected ScheduledExecutorService m_ses;
 
+    // threads that append formatted chunks to the files
+    protected ListeningExecutorService m_writerPool;
+    // bytes of formatted rows each file may have waiting to be written
+    protected int m_writeQueueBytes;
+    // how often written data is forced to disk, 0 for every batch, negative for never
+    protected long m_fsyncIntervalNanos;
+
+    protected final PipelineStats m_stats = new PipelineStats();
+    private long m_lastRollNanos = System.nanoTime();
+    private long m_lastRollRows = 0;
+    private long m_lastRollBytes = 0;
+    private long m_lastRollBatches = 0;
+
     protected BinaryEncoding m_binaryEncoding;
 
     // date formatter time zone
@@ -118,7 +156,7 @@ public class ExportToFileClient extends ExportClientBase {
 
     class PeriodicExportContext {
         File m_dirContainingFiles;
-        final Map<FileHandle, CSVWriter> m_writers = Collections.synchronizedMap(new TreeMap<FileHandle, CSVWriter>());
+        final Map<FileHandle, ExportFileWriter> m_writers = Collections.synchronizedMap(new TreeMap<FileHandle, ExportFileWriter>());
         boolean m_hasClosed = false;
         protected Date start;
         protected final Set<String> m_batchSchemasWritten = new HashSet<>();
@@ -255,21 +293,16 @@ public class ExportToFileClient extends ExportClientBase {
             if (m_hasClosed) return;
 
             // flush and close any files that are open
-            for (Entry<FileHandle, CSVWriter> entry : m_writers.entrySet()) {
-                CSVWriter writer = entry.getValue();
+            for (Entry<FileHandle, ExportFileWriter> entry : m_writers.entrySet()) {
+                ExportFileWriter writer = entry.getValue();
                 if (writer == null) {
                     m_logger.info("Null writer found for: " + entry.getKey().toString());
                     continue;
                 }
                 try {
-                    writer.flush();
                     writer.close();
                 } catch (IOException e) {
                     m_logger.error("Failed to flush or close file, export file may be unavailable/unwritable, or not enough space.", e);
-                } finally {
-                    if (writer.checkError()) {
-                        m_logger.error("Failed to flush or close file, export file may be unavailable/unwritable, or not enough space.");
-                    }
                 }
             }
 
@@ -351,12 +384,23 @@ public class ExportToFileClient extends ExportClientBase {
             notifyRollIsComplete(notifySet);
         }
 
-        CSVWriter getWriter(String tableName, long generation) throws IOException {
+        /**
+         * Get the write stage of the file for a table, creating the file if this is the
+         * first partition of the table to write in this period.
+         */
+        ExportFileWriter getWriter(String tableName, long generation) throws IOException {
             FileHandle handle = new FileHandle(tableName, generation);
-            CSVWriter writer = m_writers.get(handle);
-            if (writer != null)
+            synchronized (m_writers) {
+                ExportFileWriter writer = m_writers.get(handle);
+                if (writer != null)
+                    return writer;
+                writer = createWriter(handle);
+                m_writers.put(handle, writer);
                 return writer;
+            }
+        }
 
+        private ExportFileWriter createWriter(FileHandle handle) throws IOException {
             String path = handle.getPath(ACTIVE_PREFIX);
             File newFile = new VoltFile(path);
             if (newFile.exists()) {
@@ -366,18 +410,7 @@ public class ExportToFileClient extends ExportClientBase {
                 throw new RuntimeException();
             }
             try {
-                OutputStreamWriter osw = new OutputStreamWriter(new FileOutputStream(newFile, false), "UTF-8");
-                if (m_fullDelimiters != null) {
-                    writer = new CSVWriter(new BufferedWriter(osw, 4096 * 4),
-                            m_fullDelimiters[0], m_fullDelimiters[1], m_fullDelimiters[2], String.valueOf(m_fullDelimiters[3]));
-                }
-                else if (m_delimiter == ',')
-                    // CSV
-                    writer = new CSVWriter(new BufferedWriter(osw, 4096 * 4), m_delimiter);
-                else {
-                    // TSV
-                    writer = CSVWriter.getStrictTSVWriter(new BufferedWriter(osw, 4096 * 4));
-                }
+                return new ExportFileWriter(path, new FileOutputStream(newFile, false));
             }
             catch (Exception e) {
                 if (e instanceof IOException) {
@@ -389,8 +422,6 @@ public class ExportToFileClient extends ExportClientBase {
                 }
 
             }
-            m_writers.put(handle, writer);
-            return writer;
         }
 
         void writeSchema(String tableName, long generation, String schema) throws IOException {
@@ -452,23 +483,292 @@ public class ExportToFileClient extends ExportClientBase {
     }
 
 
+    /**
+     * Counters for each stage of the pipeline, summed over every decoder and file of
+     * the client.
+     */
+    public static class PipelineStats {
+        final AtomicLong m_rowsDecoded = new AtomicLong();
+        final AtomicLong m_bytesDecoded = new AtomicLong();
+        final AtomicLong m_queuedBytes = new AtomicLong();
+        final AtomicLong m_maxQueuedBytes = new AtomicLong();
+        final AtomicLong m_bytesWritten = new AtomicLong();
+        final AtomicLong m_writeBatches = new AtomicLong();
+        final AtomicLong m_fsyncs = new AtomicLong();
+
+        void queued(int bytes) {
+            final long queued = m_queuedBytes.addAndGet(bytes);
+            long max;
+            while (queued > (max = m_maxQueuedBytes.get()) && !m_maxQueuedBytes.compareAndSet(max, queued)) {}
+        }
+
+        /** Rows formatted by the decoders. */
+        public long getRowsDecoded() {
+            return m_rowsDecoded.get();
+        }
+
+        /** Bytes of formatted rows handed to the write stage. */
+        public long getBytesDecoded() {
+            return m_bytesDecoded.get();
+        }
+
+        /** Bytes handed to the write stage that aren't written yet. */
+        public long getQueuedBytes() {
+            return m_queuedBytes.get();
+        }
+
+        /** The most bytes that were ever waiting to be written at once. */
+        public long getMaxQueuedBytes() {
+            return m_maxQueuedBytes.get();
+        }
+
+        public long getBytesWritten() {
+            return m_bytesWritten.get();
+        }
+
+        /** Flushes to the files, each writing one or more chunks. */
+        public long getWriteBatches() {
+            return m_writeBatches.get();
+        }
+
+        public long getFsyncs() {
+            return m_fsyncs.get();
+        }
+    }
+
+    /**
+     * The write stage of one output file. Decoders hand it chunks of formatted rows and
+     * it appends them to the file from a writer pool thread, taking whatever has queued
+     * up since its last write as one batch with one flush. Only one pool thread works on
+     * a file at a time. Chunks waiting to be written are limited to m_writeQueueBytes,
+     * past that decoders block until the file catches up.
+     */
+    class ExportFileWriter {
+        private final String m_path;
+        private final FileOutputStream m_fos;
+        private final BufferedOutputStream m_out;
+        private final ConcurrentLinkedQueue<Chunk> m_pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean m_scheduled = new AtomicBoolean(false);
+        private final Semaphore m_capacity = new Semaphore(m_writeQueueBytes);
+        private volatile boolean m_closed = false;
+        // only touched by the thread draining the file
+        private final List<Chunk> m_batch = new ArrayList<>();
+        private long m_lastSyncNanos = System.nanoTime();
+
+        private final Runnable m_drain = new Runnable() {
+            @Override
+            public void run() {
+                drain();
+            }
+        };
+
+        ExportFileWriter(String path, FileOutputStream fos) {
+            m_path = path;
+            m_fos = fos;
+            m_out = new BufferedOutputStream(fos, 256 * 1024);
+        }
+
+        /**
+         * Queue {@code length} bytes of {@code data} to be appended to the file. The array
+         * belongs to the writer from here on.
+         * @return a future that completes once the bytes are written, or fails with the
+         * IOException that kept them from being written
+         */
+        ListenableFuture<Void> write(byte[] data, int length) throws InterruptedException {
+            if (m_closed) {
+                return Futures.immediateFailedFuture(new IOException("Export file " + m_path + " is closed"));
+            }
+            final Chunk chunk = new Chunk(data, length, Math.min(length, m_writeQueueBytes));
+            m_capacity.acquire(chunk.m_permits);
+            m_stats.queued(length);
+            m_pending.offer(chunk);
+            schedule();
+            return chunk.m_done;
+        }
+
+        /**
+         * Write everything that was queued, then flush and close the file.
+         */
+        void close() throws IOException {
+            m_closed = true;
+            final Chunk closer = new Chunk(null, 0, 0);
+            m_pending.offer(closer);
+            schedule();
+            try {
+                closer.m_done.get();
+            } catch (InterruptedException e) {
+                Throwables.propagate(e);
+            } catch (ExecutionException e) {
+                Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+                Throwables.propagate(e.getCause());
+            }
+        }
+
+        private void schedule() {
+            if (m_scheduled.compareAndSet(false, true)) {
+                try {
+                    m_writerPool.execute(m_drain);
+                } catch (RejectedExecutionException e) {
+                    // the client is shutting down, finish the file here
+                    m_drain.run();
+                }
+            }
+        }
+
+        private void drain() {
+            try {
+                for (int i = 0; i < MAX_BATCHES_PER_TURN && writeBatch(); i++) {}
+            } finally {
+                m_scheduled.set(false);
+                // a chunk offered while the flag was still set would otherwise sit there
+                if (!m_pending.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+        /**
+         * @return false if there was nothing to write
+         */
+        private boolean writeBatch() {
+            long bytes = 0;
+            Chunk closer = null;
+            Chunk chunk;
+            while (bytes < MAX_BATCH_BYTES && (chunk = m_pending.poll()) != null) {
+                if (chunk.m_data == null) {
+                    closer = chunk;
+                    break;
+                }
+                m_batch.add(chunk);
+                bytes += chunk.m_length;
+            }
+            if (m_batch.isEmpty() && closer == null) {
+                return false;
+            }
+
+            IOException failure = null;
+            try {
+                for (Chunk c : m_batch) {
+                    m_out.write(c.m_data, 0, c.m_length);
+                }
+                m_out.flush();
+                final long now = System.nanoTime();
+                if (m_fsyncIntervalNanos == 0 || (m_fsyncIntervalNanos > 0 && now - m_lastSyncNanos >= m_fsyncIntervalNanos)) {
+                    m_fos.getFD().sync();
+                    m_lastSyncNanos = now;
+                    m_stats.m_fsyncs.incrementAndGet();
+                }
+            } catch (IOException e) {
+                rateLimitedLogError(m_logger, "Failed to write to %s, export file may be unavailable/unwritable, or not enough space.", m_path);
+                failure = e;
+            }
+            if (!m_batch.isEmpty()) {
+                m_stats.m_writeBatches.incrementAndGet();
+                if (failure == null) {
+                    m_stats.m_bytesWritten.addAndGet(bytes);
+                }
+            }
+            for (Chunk c : m_batch) {
+                m_stats.m_queuedBytes.addAndGet(-c.m_length);
+                m_capacity.release(c.m_permits);
+                if (failure == null) {
+                    c.m_done.set(null);
+                } else {
+                    c.m_done.setException(failure);
+                }
+            }
+            m_batch.clear();
+
+            if (closer != null) {
+                try {
+                    if (m_fsyncIntervalNanos >= 0) {
+                        m_fos.getFD().sync();
+                        m_stats.m_fsyncs.incrementAndGet();
+                    }
+                    m_out.close();
+                    closer.m_done.set(null);
+                } catch (IOException e) {
+                    closer.m_done.setException(e);
+                }
+                // anything that raced with the close can't be written any more
+                while ((chunk = m_pending.poll()) != null) {
+                    m_stats.m_queuedBytes.addAndGet(-chunk.m_length);
+                    m_capacity.release(chunk.m_permits);
+                    chunk.m_done.setException(new IOException("Export file " + m_path + " is closed"));
+                }
+                return false;
+            }
+            return true;
+        }
+    }
+
+    private static final class Chunk {
+        final byte[] m_data;
+        final int m_length;
+        final int m_permits;
+        final SettableFuture<Void> m_done = SettableFuture.create();
+
+        Chunk(byte[] data, int length, int permits) {
+            m_data = data;
+            m_length = length;
+            m_permits = permits;
+        }
+    }
+
+    /**
+     * Where a decoder formats its rows. The full buffer is handed to the write stage
+     * rather than copied out of the stream.
+     */
+    private static final class ChunkStream extends ByteArrayOutputStream {
+        ChunkStream() {
+            super(CHUNK_SIZE + 64 * 1024);
+        }
+
+        byte[] detach() {
+            final byte[] data = buf;
+            buf = new byte[data.length];
+            count = 0;
+            return data;
+        }
+    }
+
+    CSVWriter newCSVWriter(Writer out) {
+        if (m_fullDelimiters != null) {
+            return new CSVWriter(out,
+                    m_fullDelimiters[0], m_fullDelimiters[1], m_fullDelimiters[2], String.valueOf(m_fullDelimiters[3]));
+        }
+        else if (m_delimiter == ',') {
+            // CSV
+            return new CSVWriter(out, m_delimiter);
+        }
+        else {
+            // TSV
+            return CSVWriter.getStrictTSVWriter(out);
+        }
+    }
+
     // This class outputs exported rows converted to CSV or TSV values
-    // for the table named in the constructor's AdvertisedDataSource
+    // for one partition of the table named in the constructor's AdvertisedDataSource
     class ExportToFileDecoder extends ExportDecoderBase {
         private final long m_generation;
         private final String m_tableName;
         protected String m_schemaString = "ERROR SERIALIZING SCHEMA";
-        private final HashSet<AdvertisedDataSource> m_sources = new HashSet<>();
-        private FutureTask<CSVWriter> m_firstBlockTask;
-        private CSVWriter m_writer;
+        private FutureTask<ExportFileWriter> m_firstBlockTask;
+        private ExportFileWriter m_writer;
+        // rows are formatted into m_chunk and handed to m_writer a chunk at a time
+        private final ChunkStream m_chunk = new ChunkStream();
+        private final CSVWriter m_csv;
+        private ListenableFuture<Void> m_lastWrite;
         private final CSVWriterDecoder m_csvWriterDecoder;
+        // reused for every row
+        private final Object[] m_rowValues;
         private final ListeningExecutorService m_es;
 
         private void resetWriter() {
-            m_firstBlockTask = new FutureTask<>(new Callable<CSVWriter>() {
+            m_firstBlockTask = new FutureTask<>(new Callable<ExportFileWriter>() {
                 @Override
-                public CSVWriter call() throws Exception {
-                    CSVWriter writer = m_current.getWriter(m_tableName, m_generation);
+                public ExportFileWriter call() throws Exception {
+                    ExportFileWriter writer = m_current.getWriter(m_tableName, m_generation);
                     m_current.writeSchema(m_tableName, m_generation, m_schemaString);
                     return writer;
                 }
@@ -494,6 +794,7 @@ public class ExportToFileClient extends ExportClientBase {
 
             setSchemaForSource(source);
             resetWriter();
+            m_csv = newCSVWriter(new OutputStreamWriter(m_chunk, Charsets.UTF_8));
 
             CSVWriterDecoder.Builder builder = new CSVWriterDecoder.Builder();
             builder
@@ -505,6 +806,7 @@ public class ExportToFileClient extends ExportClientBase {
                 .skipInternalFields(m_skipinternal)
                 ;
             m_csvWriterDecoder = builder.build();
+            m_rowValues = new Object[source.columnTypes.size()];
         }
 
         /**
@@ -546,21 +848,80 @@ public class ExportToFileClient extends ExportClientBase {
 
             try {
                 ExportRowData rd = decodeRow(rowData);
-                m_csvWriterDecoder.decode(m_writer,rd.values);
+                m_csvWriterDecoder.decode(m_csv,rd.values);
+                m_stats.m_rowsDecoded.incrementAndGet();
+                if (m_chunk.size() >= CHUNK_SIZE) {
+                    handOff();
+                }
             }
             catch (Exception e) {
-                rateLimitedLogError(m_logger, "failed to to process export row %s", Throwables.getStackTraceAsString(e));
+                rateLimitedLogError(m_logger, "failed to process export row %s", Throwables.getStackTraceAsString(e));
                 return false;
             }
             return true;
         }
 
+        @Override
+        public void processRows(ExportRowCursor rows) {
+            int decoded = 0;
+            try {
+                while (true) {
+                    try {
+                        if (!rows.advanceRow()) {
+                            break;
+                        }
+                        m_csvWriterDecoder.decode(m_csv, rows.getValues(m_rowValues));
+                        decoded++;
+                    }
+                    catch (Exception e) {
+                        rateLimitedLogError(m_logger, "failed to process export row %s", Throwables.getStackTraceAsString(e));
+                    }
+                    // the output stream writer buffers a little, so this only ever overshoots slightly
+                    if (m_chunk.size() >= CHUNK_SIZE) {
+                        handOff();
+                    }
+                }
+            }
+            catch (IOException e) {
+                // handing off only flushes the formatter to memory
+                Throwables.propagate(e);
+            }
+            catch (InterruptedException e) {
+                Throwables.propagate(e);
+            }
+            finally {
+                m_stats.m_rowsDecoded.addAndGet(decoded);
+            }
+        }
+
+        /**
+         * Give what has been formatted so far to the file's write stage.
+         */
+        private void handOff() throws IOException, InterruptedException {
+            m_csv.flush();
+            final int length = m_chunk.size();
+            if (length == 0) {
+                return;
+            }
+            m_stats.m_bytesDecoded.addAndGet(length);
+            m_lastWrite = m_writer.write(m_chunk.detach(), length);
+        }
+
         /**
          * Get and hold the current batch folder.
          * Ask the batch object for a stream to write to.
          */
         @Override
         public void onBlockStart() throws RestartBlockException{
+            // drop anything formatted for a block that is being restarted
+            try {
+                m_csv.flush();
+            } catch (IOException e) {
+                // only ever writes to memory
+                Throwables.propagate(e);
+            }
+            m_chunk.reset();
+            m_lastWrite = null;
             m_batchLock.readLock().lock();
             try {
                 m_firstBlockTask.run();
@@ -588,31 +949,37 @@ public class ExportToFileClient extends ExportClientBase {
          */
         @Override
         public void onBlockCompletion() throws RestartBlockException {
+            boolean written = false;
             try {
-                m_writer.flush();
+                handOff();
+                // the file's writes are in order, so the last one covers the whole block
+                if (m_lastWrite != null) {
+                    m_lastWrite.get();
+                }
+                written = true;
+            } catch (ExecutionException e) {
+                m_logger.error("Failed to write, export file may be unavailable/unwritable, or not enough space.", e.getCause());
             } catch (Throwable t) {
                 Throwables.propagate(t);
             } finally {
+                m_lastWrite = null;
                 m_batchLock.readLock().unlock();
-                if (m_writer.checkError()) {
+                if (m_csv.checkError()) {
                     rateLimitedLogError(m_logger, "Failed to flush, export file may be unavailable/unwritable, or not enough space.");
-                    m_writer.resetWriter();
+                    m_csv.resetWriter();
                     throw new RestartBlockException("Failed to complete the block.", true);
                 }
             }
+            if (!written) {
+                throw new RestartBlockException("Failed to complete the block.", true);
+            }
         }
 
         @Override
         public void sourceNoLongerAdvertised(AdvertisedDataSource source) {
             m_batchLock.writeLock().lock();
             try {
-                HashMap<String, ExportToFileDecoder> decoders = m_tableDecoders.get(m_generation);
-                if (decoders != null) {
-                    decoders.remove(m_tableName);
-                    if (decoders.isEmpty()) {
-                        m_tableDecoders.remove(m_generation);
-                    }
-                }
+                m_decoders.remove(this);
             } finally {
                 m_batchLock.writeLock().unlock();
             }
@@ -630,26 +997,20 @@ public class ExportToFileClient extends ExportClientBase {
     public ExportToFileDecoder constructExportDecoder(AdvertisedDataSource source) {
         m_batchLock.writeLock().lock();
         try {
-            // For every source that provides part of a table, use the same
-            // export decoder.
-            String table_name = source.tableName;
-            HashMap<String, ExportToFileDecoder> decoders = m_tableDecoders.get(source.m_generation);
-            if (decoders == null) {
-                decoders = new HashMap<>();
-                m_tableDecoders.put(source.m_generation, decoders);
-            }
-            ExportToFileDecoder decoder = decoders.get(table_name);
-            if (decoder == null) {
-                decoder = new ExportToFileDecoder(source, table_name, source.m_generation);
-                decoders.put(table_name, decoder);
-            }
-            decoder.m_sources.add(source);
-            return decoders.get(table_name);
+            // Every partition gets its own decoder, the partitions of a table
+            // share the table's file
+            ExportToFileDecoder decoder = new ExportToFileDecoder(source, source.tableName, source.m_generation);
+            m_decoders.add(decoder);
+            return decoder;
         } finally {
             m_batchLock.writeLock().unlock();
         }
     }
 
+    public PipelineStats getPipelineStats() {
+        return m_stats;
+    }
+
     @Override
     public void shutdown() {
         m_ses.shutdown();
@@ -660,6 +1021,7 @@ public class ExportToFileClient extends ExportClientBase {
         }
         m_batchLock.writeLock().lock();
         m_current.closeAllWriters();
+        m_writerPool.shutdown();
     }
 
     /**
@@ -675,16 +1037,35 @@ public class ExportToFileClient extends ExportClientBase {
 
             m_logger.trace("Rolling batch.");
 
-            for( Map<String, ExportToFileDecoder> genDecoders: m_tableDecoders.values()) {
-                for( ExportToFileDecoder decoder: genDecoders.values()) {
-                    decoder.resetWriter();
-                }
+            for (ExportToFileDecoder decoder : m_decoders) {
+                decoder.resetWriter();
             }
 
         } finally {
             m_batchLock.writeLock().unlock();
         }
         previous.closeAllWriters();
+        logPipelineStats();
+    }
+
+    private void logPipelineStats() {
+        final long now = System.nanoTime();
+        final long rows = m_stats.getRowsDecoded();
+        final long bytes = m_stats.getBytesWritten();
+        final long batches = m_stats.getWriteBatches();
+        if (rows != m_lastRollRows) {
+            final double seconds = Math.max(1, now - m_lastRollNanos) / (double) TimeUnit.SECONDS.toNanos(1);
+            m_logger.info(String.format(
+                    "File export for nonce %s decoded %d rows (%.0f/s) and wrote %d bytes (%.0f/s) in %d batches. "
+                    + "%d bytes are waiting to be written, at most %d were.",
+                    m_nonce, rows - m_lastRollRows, (rows - m_lastRollRows) / seconds,
+                    bytes - m_lastRollBytes, (bytes - m_lastRollBytes) / seconds, batches - m_lastRollBatches,
+                    m_stats.getQueuedBytes(), m_stats.getMaxQueuedBytes()));
+        }
+        m_lastRollNanos = now;
+        m_lastRollRows = rows;
+        m_lastRollBytes = bytes;
+        m_lastRollBatches = batches;
     }
 
     public String getVoltDBRootPath() {
@@ -747,6 +1128,21 @@ public class ExportToFileClient extends ExportClientBase {
         boolean batched = Boolean.parseBoolean(conf.getProperty("batched", "false"));
         boolean withSchema = Boolean.parseBoolean(conf.getProperty("with-schema", "false"));
 
+        int writerThreads = Integer.parseInt(conf.getProperty("writerthreads",
+                Integer.toString(Math.min(4, CoreUtils.availableProcessors()))).trim());
+        if (writerThreads < 1) {
+            throw new IllegalArgumentException("Error: Specified value for writerthreads must be >= 1.");
+        }
+        // -1 leaves syncing to the operating system, 0 syncs every write batch
+        long fsyncInterval = Long.parseLong(conf.getProperty("fsyncinterval", "-1").trim());
+        if (fsyncInterval < -1) {
+            throw new IllegalArgumentException("Error: Specified value for fsyncinterval must be >= -1.");
+        }
+        int writeQueueKb = Integer.parseInt(conf.getProperty("writequeuekb", "16384").trim());
+        if (writeQueueKb < 1) {
+            throw new IllegalArgumentException("Error: Specified value for writequeuekb must be >= 1.");
+        }
+
         String fullDelimiters = conf.getProperty("delimiters");
         if (fullDelimiters != null) {
             fullDelimiters = StringEscapeUtils.unescapeJava(fullDelimiters);
@@ -778,7 +1174,10 @@ public class ExportToFileClient extends ExportClientBase {
                 batched,
                 withSchema,
                 tz,
-                encoding);
+                encoding,
+                writerThreads,
+                fsyncInterval,
+                writeQueueKb);
     }
 
     private void configureInternal(
@@ -792,12 +1191,14 @@ public class ExportToFileClient extends ExportClientBase {
                               final boolean batched,
                               final boolean withSchema,
                               final TimeZone tz,
-                              final BinaryEncoding be) {
+                              final BinaryEncoding be,
+                              final int writerThreads,
+                              final long fsyncInterval,
+                              final int writeQueueKb) {
         m_delimiter = delimiter;
         m_extension = (delimiter == ',') ? ".csv" : ".tsv";
         m_nonce = nonce;
         m_outDir = outdir;
-        m_tableDecoders = new HashMap<>();
         m_period = period;
         m_dateFormatOriginalString = dateformatString;
         // SimpleDateFormat isn't threadsafe
@@ -813,6 +1214,10 @@ public class ExportToFileClient extends ExportClientBase {
         m_skipinternal = skipinternal;
         m_batched = batched;
         m_withSchema = withSchema;
+        m_fsyncIntervalNanos = fsyncInterval < 0 ? -1 : TimeUnit.MILLISECONDS.toNanos(fsyncInterval);
+        m_writeQueueBytes = (int) Math.min(Integer.MAX_VALUE, writeQueueKb * 1024L);
+        m_writerPool = CoreUtils.getListeningExecutorService("Export file writer for nonce " + nonce, writerThreads);
+        m_lastRollNanos = System.nanoTime();
 
         if (fullDelimiters != null) {
             fullDelimiters = StringEscapeUtils.unescapeHtml4(fullDelimiters);
@@ -19,6 +19,7 @@
 
 package org.voltdb.exportclient;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.net.Socket;
@@ -175,6 +176,9 @@ public class SocketExporter extends ExportClientBase {
         long totalDecodeTime = 0;
         long timerStart = 0;
         final CSVStringDecoder m_decoder;
+        // reused for every row and block
+        private final Object[] m_rowValues;
+        private final ByteArrayOutputStream m_blockBytes = new ByteArrayOutputStream();
 
         @Override
         public ListeningExecutorService getExecutor() {
@@ -193,6 +197,7 @@ public class SocketExporter extends ExportClientBase {
                 .skipInternalFields(m_skipInternals)
             ;
             m_decoder = builder.build();
+            m_rowValues = new Object[source.columnTypes.size()];
             m_es =
                     CoreUtils.getListeningSingleThreadExecutor(
                             "Socket Export decoder for partition " + source.partitionId
@@ -244,6 +249,37 @@ public class SocketExporter extends ExportClientBase {
             return true;
         }
 
+        /**
+         * Encode the whole block and send it to each endpoint with a single write,
+         * rather than writing and flushing every row.
+         */
+        @Override
+        public void processRows(ExportRowCursor rows) throws RestartBlockException {
+            try {
+                if (haplist.isEmpty()) {
+                    connect();
+                }
+                if (haplist.isEmpty()) {
+                    m_logger.rateLimitedLog(120, Level.ERROR, null, "Failed to connect to export socket endpoint %s, some servers may be down.", host);
+                    throw new RestartBlockException(true);
+                }
+                m_blockBytes.reset();
+                while (rows.advanceRow()) {
+                    String decoded = m_decoder.decode(null, rows.getValues(m_rowValues));
+                    m_blockBytes.write(decoded.getBytes());
+                    m_blockBytes.write('\n');
+                }
+                for (OutputStream hap : haplist.values()) {
+                    m_blockBytes.writeTo(hap);
+                    hap.flush();
+                }
+            } catch (Exception e) {
+                m_logger.error(e.getLocalizedMessage());
+                haplist.clear();
+                throw new RestartBlockException(true);
+            }
+        }
+
         @Override
         public void onBlockCompletion() {
             try {
@@ -46,6 +46,7 @@ import org.voltdb.exportclient.ExportClientBase;
 import org.voltdb.exportclient.ExportClientLogger;
 import org.voltdb.exportclient.ExportDecoderBase;
 import org.voltdb.exportclient.ExportDecoderBase.BinaryEncoding;
+import org.voltdb.exportclient.ExportRowCursor;
 import org.voltdb.exportclient.decode.CSVStringDecoder;
 
 import com.google_voltpatches.common.base.Splitter;
@@ -291,6 +292,18 @@ public class KafkaExportClient extends ExportClientBase {
         final List<Future<RecordMetadata>> m_futures = new ArrayList<>();
         private final AtomicBoolean m_failure = new AtomicBoolean(false);
         final ListeningExecutorService m_es;
+        // reused for every row
+        private final Object[] m_rowValues;
+        private final Callback m_sendCallback = new Callback() {
+            @Override
+            public void onCompletion(RecordMetadata metadata, Exception e) {
+                if (e != null){
+                    LOG.warn("Failed to send data. Verify if the kafka server matches bootstrap.servers %s", e,
+                            m_producerConfig.getProperty(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG));
+                    m_failure.compareAndSet(false, true);
+                }
+            }
+        };
 
         public KafkaExportDecoder(AdvertisedDataSource source) {
             super(source);
@@ -318,6 +331,7 @@ public class KafkaExportClient extends ExportClientBase {
                     + " generation " + source.m_generation, CoreUtils.MEDIUM_STACK_SIZE);
 
             m_decoder = builder.build();
+            m_rowValues = new Object[source.columnTypes.size()];
         }
 
         final void checkOnFirstRow() throws RestartBlockException {
@@ -375,21 +389,37 @@ public class KafkaExportClient extends ExportClientBase {
                 LOG.error("Unable to decode notification", e);
                 return false;
             }
-            String decoded = m_decoder.decode(null, rd.values);
+            send(rd.values, rd.partitionValue);
+            return true;
+        }
+
+        @Override
+        public void processRows(ExportRowCursor rows) throws RestartBlockException {
+            if (!m_primed) checkOnFirstRow();
+
+            while (true) {
+                try {
+                    if (!rows.advanceRow()) {
+                        return;
+                    }
+                } catch (IOException e) {
+                    // non restartable structural failure, skip the row like processRow does
+                    LOG.error("Unable to decode notification", e);
+                    continue;
+                }
+                rows.getValues(m_rowValues);
+                send(m_rowValues, getPartitionValue(m_rowValues));
+            }
+        }
+
+        private void send(Object[] values, Object partitionValue) throws RestartBlockException {
+            String decoded = m_decoder.decode(null, values);
             //Use partition value by default if its null use partition id.
             //partition value will be null only if partition column is overridden table.column and is nullable
-            String pval = (rd.partitionValue == null) ? String.valueOf(rd.partitionId) : rd.partitionValue.toString();
+            String pval = (partitionValue == null) ? String.valueOf(m_source.partitionId) : partitionValue.toString();
             ProducerRecord<String, String> krec = new ProducerRecord<String, String>(m_topic, pval, decoded);
             try {
-                m_futures.add(m_producer.send(krec, new Callback() {
-                    public void onCompletion(RecordMetadata metadata, Exception e) {
-                        if (e != null){
-                            LOG.warn("Failed to send data. Verify if the kafka server matches bootstrap.servers %s", e,
-                                    m_producerConfig.getProperty(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG));
-                            m_failure.compareAndSet(false, true);
-                        }
-                    }
-                }));
+                m_futures.add(m_producer.send(krec, m_sendCallback));
             } catch (KafkaException e) {
                 LOG.warn("Unable to send %s", e, krec);
                 throw new RestartBlockException("Unable to send message", e, true);
@@ -399,7 +429,6 @@ public class KafkaExportClient extends ExportClientBase {
                 m_primed = false;
                 throw new RestartBlockException("Unable to send message", e, true);
             }
-            return true;
         }
 
         @Override
@@ -20,7 +20,6 @@ package org.voltdb.jni;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
-import java.lang.reflect.InvocationTargetException;
 import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.nio.ByteBuffer;
@@ -269,6 +268,12 @@ public class ExecutionEngineIPC extends ExecutionEngine {
          */
         static final int kErrorCode_callJavaUserDefinedFunction = 107;
 
+        /**
+         * Instruct the Java side to invoke a user-defined function once for
+         * each row of a batch of arguments and return all of the results.
+         */
+        static final int kErrorCode_callJavaUserDefinedFunctionBatch = 108;
+
         ByteBuffer getBytes(int size) throws IOException {
             ByteBuffer header = ByteBuffer.allocate(size);
             while (header.hasRemaining()) {
@@ -342,13 +347,9 @@ public class ExecutionEngineIPC extends ExecutionEngine {
                     m_connection.write();
                     return;
                 }
-                catch (InvocationTargetException ex1) {
-                    // Exceptions thrown during Java reflection will be wrapped into this InvocationTargetException.
-                    // We need to get its cause and throw that to the user.
-                    throwable = ex1.getCause();
-                }
-                catch (Throwable ex2) {
-                    throwable = ex2;
+                catch (Throwable ex) {
+                    // The function is invoked through a method handle, so whatever it throws arrives here unwrapped.
+                    throwable = ex;
                 }
                 // Getting here means the execution was not successful.
                 m_data.clear();
@@ -366,6 +367,46 @@ public class ExecutionEngineIPC extends ExecutionEngine {
             }
         }
 
+        // Internal function to receive and execute a batched UDF invocation request.
+        void callJavaUserDefinedFunctionBatchInternal() {
+            try {
+                // Read the request content from the wire.
+                int bufferSize = m_connection.readInt();
+                final ByteBuffer udfBuffer = ByteBuffer.allocate(bufferSize);
+                while (udfBuffer.hasRemaining()) {
+                    int read = m_socketChannel.read(udfBuffer);
+                    if (read == -1) {
+                        throw new EOFException();
+                    }
+                }
+                udfBuffer.flip();
+
+                int functionId = udfBuffer.getInt();
+                int rowCount = udfBuffer.getInt();
+                UserDefinedFunctionRunner udfRunner = m_functionManager.getFunctionRunnerById(functionId);
+                assert(udfRunner != null && udfRunner.hasFixedLengthResult());
+                m_data.clear();
+                try {
+                    // Put the status code for success (zero) into the buffer,
+                    // followed by the results of all rows.
+                    m_data.putInt(0);
+                    udfRunner.callBatchAndWriteResults(udfBuffer, rowCount, m_data);
+                }
+                catch (Throwable ex) {
+                    // Exception thrown, put return code = -1.
+                    m_data.clear();
+                    m_data.putInt(-1);
+                    byte[] errorMsg = ex.toString().getBytes(Constants.UTF8ENCODING);
+                    SerializationHelper.writeVarbinary(errorMsg, m_data);
+                }
+                m_data.flip();
+                m_connection.write();
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
         /**
          * Read a single byte indicating a return code. This method has evolved
          * to include providing dependency tables necessary for the completion of previous
@@ -533,6 +574,9 @@ public class ExecutionEngineIPC extends ExecutionEngine {
                 else if (status == kErrorCode_callJavaUserDefinedFunction) {
                     callJavaUserDefinedFunctionInternal();
                 }
+                else if (status == kErrorCode_callJavaUserDefinedFunctionBatch) {
+                    callJavaUserDefinedFunctionBatchInternal();
+                }
                 else {
                     break;
                 }
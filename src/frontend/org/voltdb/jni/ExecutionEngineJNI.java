@@ -18,7 +18,6 @@
 package org.voltdb.jni;
 
 import java.io.IOException;
-import java.lang.reflect.InvocationTargetException;
 import java.nio.ByteBuffer;
 import java.util.List;
 
@@ -769,6 +768,12 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         Throwable throwable = null;
         Object returnValue = null;
         try {
+            if (udfRunner.hasFixedLengthResult()) {
+                // Call the user-defined function and write its result in place,
+                // the buffer is always large enough for a fixed-length value.
+                udfRunner.callAndWriteResult(m_udfBuffer);
+                return 0;
+            }
             // Call the user-defined function.
             returnValue = udfRunner.call(m_udfBuffer);
 
@@ -809,15 +814,44 @@ public class ExecutionEngineJNI extends ExecutionEngine {
             // Return zero status code for a successful execution.
             return 0;
         }
-        catch (InvocationTargetException ex1) {
-            // Exceptions thrown during Java reflection will be wrapped into this InvocationTargetException.
-            // We need to get its cause and throw that to the user.
-            throwable = ex1.getCause();
-        }
-        catch (Throwable ex2) {
-            throwable = ex2;
+        catch (Throwable ex) {
+            // The function is invoked through a method handle, so whatever it throws arrives here unwrapped.
+            throwable = ex;
         }
         // Getting here means the execution was not successful.
+        writeUDFErrorMessage(throwable);
+        return -1;
+    }
+
+    /**
+     * Run a user-defined function over a batch of rows with a single call from the EE.
+     * The buffer holds the buffer size, the function ID, the row count and then
+     * the arguments of each row back to back. The results are written right after
+     * the arguments, one type byte and one fixed-length value per row.
+     * The EE only batches functions with a fixed-length return type and makes sure
+     * the buffer has room for all of the results before calling.
+     */
+    public int callJavaUserDefinedFunctionBatch() {
+        m_udfBuffer.clear();
+        // The buffer size excludes the size integer itself, so the results go at (4 + size).
+        int resultOffset = 4 + m_udfBuffer.getInt();
+        int functionId = m_udfBuffer.getInt();
+        int rowCount = m_udfBuffer.getInt();
+        UserDefinedFunctionRunner udfRunner = m_functionManager.getFunctionRunnerById(functionId);
+        assert(udfRunner != null && udfRunner.hasFixedLengthResult());
+        ByteBuffer resultBuffer = m_udfBuffer.duplicate();
+        resultBuffer.position(resultOffset);
+        try {
+            udfRunner.callBatchAndWriteResults(m_udfBuffer, rowCount, resultBuffer);
+            return 0;
+        }
+        catch (Throwable ex) {
+            writeUDFErrorMessage(ex);
+        }
+        return -1;
+    }
+
+    private void writeUDFErrorMessage(Throwable throwable) {
         try {
             assert(throwable != null);
             byte[] errorMsg = throwable.toString().getBytes(Constants.UTF8ENCODING);
@@ -832,7 +866,6 @@ public class ExecutionEngineJNI extends ExecutionEngine {
         catch (IOException e) {
             throw new RuntimeException(e);
         }
-        return -1;
     }
 
     @Override
@@ -72,8 +72,20 @@ public abstract class AbstractParsedStmt {
 
     protected String m_contentDeterminismMessage = null;
 
-     // Internal statement counter
-    public static int NEXT_STMT_ID = 0;
+    // Internal statement counter, per thread since statements are parsed concurrently
+    private static final ThreadLocal<int[]> NEXT_STMT_ID = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[] { 0 };
+        }
+    };
+
+    /**
+     * @return an id that is unique within the statement currently being parsed on this thread
+     */
+    public static int nextStmtId() {
+        return NEXT_STMT_ID.get()[0]++;
+    }
 
     // The unique id to identify the statement
     public int m_stmtId;
@@ -187,7 +199,7 @@ public abstract class AbstractParsedStmt {
             throw new RuntimeException("Unexpected Element: " + stmtTypeElement.name);
         }
         // Set the unique id
-        retval.m_stmtId = NEXT_STMT_ID++;
+        retval.m_stmtId = nextStmtId();
         return retval;
     }
 
@@ -221,7 +233,7 @@ public abstract class AbstractParsedStmt {
             Database db, String joinOrder) {
 
         // reset the statement counters
-        NEXT_STMT_ID = 0;
+        NEXT_STMT_ID.get()[0] = 0;
         AbstractParsedStmt retval = getParsedStmt(stmtTypeElement, paramValues, db);
 
         parse(retval, sql, stmtTypeElement, joinOrder);
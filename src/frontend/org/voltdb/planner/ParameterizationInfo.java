@@ -48,12 +48,15 @@ public class ParameterizationInfo {
 
     /**
      * Stores the current count of parameters that we've
-     * assigned to the parameter vector in the EE.
-     *
-     * TODO: this will need to become thread safe
-     * when parallel planning is possible.
+     * assigned to the parameter vector in the EE, for the
+     * statement being planned on this thread.
      */
-    static private int curParamIndex = 0;
+    static private final ThreadLocal<int[]> curParamIndex = new ThreadLocal<int[]>() {
+        @Override
+        protected int[] initialValue() {
+            return new int[] { 0 };
+        }
+    };
 
     /**
      * Get the next parameter index for the current statement.
@@ -62,9 +65,7 @@ public class ParameterizationInfo {
      * @return the next index
      */
     public static int getNextParamIndex() {
-        int nextOffset = curParamIndex;
-        ++curParamIndex;
-        return nextOffset;
+        return curParamIndex.get()[0]++;
     }
 
     /**
@@ -72,7 +73,7 @@ public class ParameterizationInfo {
      * a new statement.
      */
     public static void resetCurrentParamIndex() {
-        curParamIndex = 0;
+        curParamIndex.get()[0] = 0;
     }
 
     /**
@@ -38,6 +38,13 @@ public interface BinaryDeque {
         public BBContainer getContainer(int minimumSize);
     }
 
+    /*
+     * Allocator for readers that never modify what they poll. A deque may skip
+     * it and return read-only views of its own storage instead of copies.
+     */
+    public static interface ReadOnlyOutputContainerFactory extends OutputContainerFactory {
+    }
+
     /**
      * Store a buffer chain as a single object in the deque. IOException may be thrown if the object
      * is larger then the implementation defined max. 64 megabytes in the case of PersistentBinaryDeque.
@@ -18,8 +18,10 @@
 package org.voltdb.utils;
 
 import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.Bits;
 import org.voltcore.utils.DBBPool;
 import org.voltcore.utils.DBBPool.BBContainer;
+import org.voltcore.utils.DBBPool.MBBContainer;
 import org.voltcore.utils.DeferredSerialization;
 import org.voltdb.utils.BinaryDeque.OutputContainerFactory;
 
@@ -30,7 +32,9 @@ import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel.MapMode;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -38,10 +42,23 @@ import java.util.Map;
  * Segments only support appending objects. A segment will throw an IOException if an attempt
  * to insert an object that exceeds the remaining space is made. A segment can be used
  * for reading and writing, but not both at the same time.
+ *
+ * When mapped reads are enabled, segments that were opened only for reading, which is what
+ * a reader catching up on older segments gets, are memory mapped the first time they are polled.
+ * Entries are then copied or decompressed straight out of the mapping, and readers polling with a
+ * {@link BinaryDeque.ReadOnlyOutputContainerFactory} get uncompressed entries as read-only slices
+ * of it without any copy. The mapping is unmapped once every reader has moved past the segment
+ * and every slice was discarded.
  */
 public class PBDRegularSegment extends PBDSegment {
     private static final VoltLogger LOG = new VoltLogger("HOST");
 
+    // Read segments that aren't being written to through a memory mapping, only affects new segments
+    static boolean MMAP_READS = Boolean.getBoolean("PBD_MMAP_READS");
+    // How far ahead of the readers of a mapping the kernel is asked to page in
+    private static final int READ_AHEAD_BYTES = Integer.getInteger("PBD_READ_AHEAD_BYTES", 1024 * 1024 * 16);
+    private static boolean s_adviseFailureLogged = false;
+
     private final Map<String, SegmentReader> m_readCursors = new HashMap<>();
     private final Map<String, SegmentReader> m_closedCursors = new HashMap<>();
 
@@ -53,12 +70,107 @@ public class PBDRegularSegment extends PBDSegment {
 
     private DBBPool.BBContainer m_tmpHeaderBuf = null;
 
+    private final boolean m_mmapReads;
+    private boolean m_openForWrite = false;
+    // the mapping readers are currently using, if any
+    private MappedRegion m_mapping = null;
+
     public PBDRegularSegment(Long index, File file) {
         super(file);
         m_index = index;
+        m_mmapReads = MMAP_READS;
         reset();
     }
 
+    /**
+     * A mapping of the whole segment and the number of slices of it that are in use.
+     * Slices can be discarded by any thread, not just with the deque's monitor held.
+     */
+    private static final class MappedRegion {
+        private final MBBContainer m_mapping;
+        private int m_slicesInUse = 0;
+        private boolean m_released = false;
+        // where the kernel was last asked to page in up to
+        private long m_advisedUpTo = 0;
+
+        MappedRegion(MBBContainer mapping) {
+            m_mapping = mapping;
+        }
+
+        ByteBuffer view(int position, int length) {
+            final ByteBuffer entry = m_mapping.b().duplicate();
+            entry.limit(position + length).position(position);
+            return entry.slice();
+        }
+
+        /**
+         * A view that stays usable, and keeps the segment mapped, until it is discarded.
+         */
+        synchronized ByteBuffer slice(int position, int length) {
+            m_slicesInUse++;
+            return view(position, length).asReadOnlyBuffer();
+        }
+
+        synchronized void sliceDiscarded() {
+            m_slicesInUse--;
+            unmapIfUnused();
+        }
+
+        /**
+         * The segment is done with the mapping, unmap it once the last slice is discarded.
+         */
+        synchronized void release() {
+            m_released = true;
+            unmapIfUnused();
+        }
+
+        private void unmapIfUnused() {
+            if (m_released && m_slicesInUse == 0) {
+                m_mapping.discard();
+            }
+        }
+
+        /**
+         * Keep the kernel paging in ahead of a reader that just got to {@code position}.
+         */
+        void readAhead(long position) {
+            final long size = m_mapping.b().capacity();
+            if (m_advisedUpTo >= size || position + READ_AHEAD_BYTES / 2 < m_advisedUpTo) {
+                return;
+            }
+            final long start = (position / Bits.pageSize()) * Bits.pageSize();
+            final long length = Math.min(size - start, READ_AHEAD_BYTES);
+            try {
+                final long retval = PosixAdvise.madvise(m_mapping.address() + start, length, PosixAdvise.POSIX_MADV_WILLNEED);
+                if (retval != 0 && !s_adviseFailureLogged) {
+                    s_adviseFailureLogged = true;
+                    LOG.info("Failed to madvise PBD segment read ahead, this is harmless: " + retval);
+                }
+                m_advisedUpTo = start + length;
+            } catch (Throwable t) {
+                if (!s_adviseFailureLogged) {
+                    s_adviseFailureLogged = true;
+                    LOG.info("Unable to madvise PBD segment read ahead, this is harmless", t);
+                }
+                m_advisedUpTo = size;
+            }
+        }
+    }
+
+    /**
+     * Map the segment if it should be read through a mapping and isn't yet.
+     * @return the mapping, or null to read through the file channel
+     */
+    private MappedRegion mapping() throws IOException {
+        if (!m_mmapReads || m_openForWrite) {
+            return null;
+        }
+        if (m_mapping == null) {
+            m_mapping = new MappedRegion(DBBPool.wrapMBB(m_fc.map(MapMode.READ_ONLY, 0, m_fc.size())));
+        }
+        return m_mapping;
+    }
+
     @Override
     public long segmentId()
     {
@@ -152,6 +264,7 @@ public class PBDRegularSegment extends PBDSegment {
             m_syncedSinceLastEdit = false;
         }
         assert(m_ras == null);
+        m_openForWrite = forWrite;
         m_ras = new RandomAccessFile( m_file, forWrite ? "rw" : "r");
         m_fc = m_ras.getChannel();
         m_tmpHeaderBuf = DBBPool.allocateDirect(SEGMENT_HEADER_BYTES);
@@ -180,7 +293,12 @@ public class PBDRegularSegment extends PBDSegment {
 
     private void incrementNumEntries(int size) throws IOException
     {
-        m_numOfEntries++;
+        incrementNumEntries(1, size);
+    }
+
+    private void incrementNumEntries(int count, int size) throws IOException
+    {
+        m_numOfEntries += count;
         m_size += size;
 
         m_tmpHeaderBuf.b().clear();
@@ -223,6 +341,10 @@ public class PBDRegularSegment extends PBDSegment {
 
     private void closeReadersAndFile() throws IOException {
         m_readCursors.clear();
+        if (m_mapping != null) {
+            m_mapping.release();
+            m_mapping = null;
+        }
         try {
             if (m_ras != null) {
                 m_ras.close();
@@ -333,6 +455,47 @@ public class PBDRegularSegment extends PBDSegment {
         }
     }
 
+    @Override
+    public int append(List<FramedEntry> entries, int from) throws IOException
+    {
+        if (m_closed) throw new IOException("Segment closed");
+        int available = remaining();
+        int end = from;
+        long length = 0;
+        int uncompressedSize = 0;
+        while (end < entries.size() && entries.get(end).length() <= available) {
+            final FramedEntry entry = entries.get(end++);
+            available -= entry.length();
+            length += entry.length();
+            uncompressedSize += entry.m_uncompressedSize;
+        }
+        final int count = end - from;
+        if (count == 0) {
+            return 0;
+        }
+
+        m_syncedSinceLastEdit = false;
+        final DBBPool.BBContainer headers = DBBPool.allocateDirectAndPool(count * OBJECT_HEADER_BYTES);
+        try {
+            final ByteBuffer[] buffers = new ByteBuffer[count * 2];
+            for (int i = 0; i < count; i++) {
+                final FramedEntry entry = entries.get(from + i);
+                headers.b().putInt(entry.m_data.b().remaining());
+                headers.b().putInt(entry.m_flags);
+                buffers[i * 2] = (ByteBuffer) headers.b().duplicate().flip().position(i * OBJECT_HEADER_BYTES);
+                buffers[i * 2 + 1] = entry.m_data.b().duplicate();
+            }
+            while (length > 0) {
+                length -= m_fc.write(buffers);
+            }
+        } finally {
+            headers.discard();
+        }
+
+        incrementNumEntries(count, uncompressedSize);
+        return count;
+    }
+
     @Override
     public int size() {
         return m_size;
@@ -395,6 +558,11 @@ public class PBDRegularSegment extends PBDSegment {
                 return null;
             }
 
+            final MappedRegion mapping = mapping();
+            if (mapping != null) {
+                return wrapForDiscard(pollMapped(mapping, factory));
+            }
+
             final long writePos = m_fc.position();
             m_fc.position(m_readOffset);
 
@@ -452,26 +620,82 @@ public class PBDRegularSegment extends PBDSegment {
                 m_bytesRead += uncompressedLen;
                 m_objectReadIndex++;
 
-                return new DBBPool.BBContainer(retcont.b()) {
-                    private boolean m_discarded = false;
+                return wrapForDiscard(retcont);
+            } finally {
+                m_readOffset = m_fc.position();
+                m_fc.position(writePos);
+            }
+        }
 
+        /**
+         * Read the next entry out of the mapping, checking it the same way reads from the
+         * file channel are checked.
+         */
+        private BBContainer pollMapped(final MappedRegion mapping, OutputContainerFactory factory) throws IOException {
+            final ByteBuffer map = mapping.m_mapping.b();
+            if (m_readOffset + OBJECT_HEADER_BYTES > map.limit()) {
+                throw new EOFException();
+            }
+            final int length = map.getInt((int) m_readOffset);
+            final int flags = map.getInt((int) m_readOffset + 4);
+            final boolean compressed = (flags & FLAG_COMPRESSED) != 0;
+            if (length < 1) {
+                throw new IOException("Read an invalid length");
+            }
+            final int start = (int) m_readOffset + OBJECT_HEADER_BYTES;
+            if (start + length > map.limit()) {
+                throw new EOFException();
+            }
+            mapping.readAhead(start + length);
+
+            final BBContainer retcont;
+            final int uncompressedLen;
+            if (compressed) {
+                final ByteBuffer entry = mapping.view(start, length);
+                uncompressedLen = CompressionService.uncompressedLength(entry);
+                retcont = factory.getContainer(uncompressedLen);
+                retcont.b().limit(uncompressedLen);
+                CompressionService.decompressBuffer(entry, retcont.b());
+            } else if (factory instanceof BinaryDeque.ReadOnlyOutputContainerFactory) {
+                uncompressedLen = length;
+                retcont = new BBContainer(mapping.slice(start, length)) {
                     @Override
                     public void discard() {
                         checkDoubleFree();
-                        if (m_discarded) {
-                            LOG.error("PBD Container discarded more than once");
-                            return;
-                        }
-
-                        m_discarded = true;
-                        retcont.discard();
-                        m_discardCount++;
+                        mapping.sliceDiscarded();
                     }
                 };
-            } finally {
-                m_readOffset = m_fc.position();
-                m_fc.position(writePos);
+            } else {
+                uncompressedLen = length;
+                retcont = factory.getContainer(length);
+                retcont.b().limit(length);
+                retcont.b().put(mapping.view(start, length));
+                retcont.b().flip();
             }
+
+            m_readOffset = start + length;
+            m_bytesRead += uncompressedLen;
+            m_objectReadIndex++;
+            return retcont;
+        }
+
+        private BBContainer wrapForDiscard(final BBContainer retcont) {
+            return new DBBPool.BBContainer(retcont.b()) {
+                private boolean m_discarded = false;
+
+                @Override
+                public void discard() {
+                    checkDoubleFree();
+                    if (m_discarded) {
+                        LOG.error("PBD Container discarded more than once");
+                        return;
+                    }
+
+                    m_discarded = true;
+                    retcont.discard();
+                    m_discardCount++;
+                }
+            };
         }
 
         @Override
@@ -23,7 +23,9 @@ import org.voltcore.utils.DeferredSerialization;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.List;
 
 public abstract class PBDSegment {
 
@@ -96,6 +98,73 @@ public abstract class PBDSegment {
         public boolean isClosed();
     }
 
+    /**
+     * An object that is ready to be appended to a segment, compressed if it is going to be,
+     * along with what goes in its header.
+     */
+    static final class FramedEntry {
+        // positioned at the bytes that follow the object header
+        final DBBPool.BBContainer m_data;
+        final int m_flags;
+        final int m_uncompressedSize;
+
+        private FramedEntry(DBBPool.BBContainer data, int flags, int uncompressedSize) {
+            m_data = data;
+            m_flags = flags;
+            m_uncompressedSize = uncompressedSize;
+        }
+
+        /**
+         * Bytes the entry takes up in a segment, header included
+         */
+        int length() {
+            return OBJECT_HEADER_BYTES + m_data.b().remaining();
+        }
+
+        void discard() {
+            m_data.discard();
+        }
+
+        /**
+         * Frame a buffer, taking ownership of it. Compression follows the same rules as
+         * {@link PBDSegment#offer(DBBPool.BBContainer, boolean)}.
+         */
+        static FramedEntry frame(DBBPool.BBContainer cont, boolean compress) throws IOException {
+            final ByteBuffer buf = cont.b();
+            final int remaining = buf.remaining();
+            if (!compress || remaining < 32 || !buf.isDirect()) {
+                return new FramedEntry(cont, NO_FLAGS, remaining);
+            }
+            DBBPool.BBContainer destBuf = DBBPool.allocateDirectAndPool(CompressionService.maxCompressedLength(remaining));
+            try {
+                final int compressedSize = CompressionService.compressBuffer(buf, destBuf.b());
+                destBuf.b().limit(compressedSize);
+            } catch (IOException | RuntimeException e) {
+                destBuf.discard();
+                throw e;
+            } finally {
+                cont.discard();
+            }
+            return new FramedEntry(destBuf, FLAG_COMPRESSED, remaining);
+        }
+
+        /**
+         * Frame a deferred serialization, serializing it now.
+         */
+        static FramedEntry frame(DeferredSerialization ds) throws IOException {
+            final DBBPool.BBContainer destBuf = DBBPool.allocateDirectAndPool(ds.getSerializedSize() + OBJECT_HEADER_BYTES);
+            try {
+                final int written = PBDUtils.writeDeferredSerialization(destBuf.b(), ds);
+                destBuf.b().flip();
+                destBuf.b().position(OBJECT_HEADER_BYTES);
+                return new FramedEntry(destBuf, NO_FLAGS, written);
+            } catch (IOException | RuntimeException e) {
+                destBuf.discard();
+                throw e;
+            }
+        }
+    }
+
     private static final String TRUNCATOR_CURSOR = "__truncator__";
     static final int NO_FLAGS = 0;
     static final int FLAG_COMPRESSED = 1;
@@ -162,6 +231,13 @@ public abstract class PBDSegment {
 
     abstract int offer(DeferredSerialization ds) throws IOException;
 
+    /**
+     * Append entries starting at {@code from}, for as long as they fit, with one gathering
+     * write and one update of the segment header. The entries stay owned by the caller.
+     * @return the number of entries appended, 0 if the first one doesn't fit
+     */
+    abstract int append(List<FramedEntry> entries, int from) throws IOException;
+
     // TODO: javadoc
     abstract int size();
 
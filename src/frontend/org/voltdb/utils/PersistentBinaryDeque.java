@@ -21,12 +21,17 @@ import java.io.FileFilter;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.LockSupport;
 
 import org.voltcore.logging.VoltLogger;
 import org.voltcore.utils.DBBPool;
@@ -35,10 +40,14 @@ import org.voltcore.utils.DeferredSerialization;
 import org.voltcore.utils.Pair;
 import org.voltdb.EELibraryLoader;
 import org.voltdb.utils.BinaryDeque.TruncatorResponse.Status;
+import org.voltdb.utils.PBDSegment.FramedEntry;
 import org.voltdb.utils.PBDSegment.PBDSegmentReader;
 
 import com.google_voltpatches.common.base.Joiner;
 import com.google_voltpatches.common.base.Throwables;
+import com.google_voltpatches.common.util.concurrent.Futures;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
+import com.google_voltpatches.common.util.concurrent.SettableFuture;
 
 /**
  * A deque that specializes in providing persistence of binary objects to disk. Any object placed
@@ -49,10 +58,20 @@ import com.google_voltpatches.common.base.Throwables;
  * once all objects from the segment have been polled and all the containers returned by poll have been discarded.
  * Push is implemented by creating new segments at the head of the deque containing the objects to be pushed.
  *
+ * In group commit mode offers and syncs don't touch the segments on the caller's thread. Offers are
+ * compressed and framed by the caller and left on a lock-free queue for a writer thread, which appends
+ * everything that queued up while it was busy to the tail segment in one write and then does a single
+ * sync for every sync requested in the meantime. Callers wait on futures that complete once that is done,
+ * so many producers can spill into one deque without queuing up on its monitor one write at a time.
+ * Group commit is enabled with the PBD_GROUP_COMMIT system property or by the constructor.
  */
 public class PersistentBinaryDeque implements BinaryDeque {
     private static final VoltLogger LOG = new VoltLogger("HOST");
 
+    private static final boolean GROUP_COMMIT = Boolean.getBoolean("PBD_GROUP_COMMIT");
+    // the most the writer thread takes from its queue at once
+    private static final int MAX_GROUP_BYTES = Integer.getInteger("PBD_MAX_GROUP_BYTES", 8 * 1024 * 1024);
+
     public static class UnsafeOutputContainerFactory implements OutputContainerFactory {
         @Override
         public BBContainer getContainer(int minimumSize) {
@@ -235,7 +254,15 @@ public class PersistentBinaryDeque implements BinaryDeque {
         }
     }
 
+    /**
+     * For readers that only read what they poll, see {@link ReadOnlyOutputContainerFactory}.
+     */
+    public static class UnsafeReadOnlyOutputContainerFactory extends UnsafeOutputContainerFactory
+            implements ReadOnlyOutputContainerFactory {
+    }
+
     public static final OutputContainerFactory UNSAFE_CONTAINER_FACTORY = new UnsafeOutputContainerFactory();
+    public static final OutputContainerFactory UNSAFE_READ_ONLY_CONTAINER_FACTORY = new UnsafeReadOnlyOutputContainerFactory();
 
     /**
      * Processors also log using this facility.
@@ -254,6 +281,8 @@ public class PersistentBinaryDeque implements BinaryDeque {
     private final HashMap<String, ReadCursor> m_readCursors = new HashMap<>();
     private int m_numObjects;
     private int m_numDeleted;
+    // null unless in group commit mode
+    private final GroupCommitWriter m_groupWriter;
 
     /**
      * Create a persistent binary deque with the specified nonce and storage
@@ -279,6 +308,20 @@ public class PersistentBinaryDeque implements BinaryDeque {
      * @throws IOException
      */
     public PersistentBinaryDeque(final String nonce, final File path, VoltLogger logger, final boolean deleteEmpty) throws IOException {
+        this(nonce, path, logger, deleteEmpty, GROUP_COMMIT);
+    }
+
+    /**
+     * Create a persistent binary deque with the specified nonce and storage back at the specified path.
+     *
+     * @param nonce
+     * @param path
+     * @param deleteEmpty
+     * @param groupCommit  write offers and do syncs on a writer thread of the deque's own
+     * @throws IOException
+     */
+    public PersistentBinaryDeque(final String nonce, final File path, VoltLogger logger, final boolean deleteEmpty,
+            final boolean groupCommit) throws IOException {
         EELibraryLoader.loadExecutionEngineLibrary(true);
         m_path = path;
         m_nonce = nonce;
@@ -392,6 +435,228 @@ public class PersistentBinaryDeque implements BinaryDeque {
 
         m_numObjects = countNumObjects();
         assertions();
+
+        m_groupWriter = groupCommit ? new GroupCommitWriter() : null;
+    }
+
+    /**
+     * An offer or sync waiting for the writer thread. Offers arrive framed.
+     */
+    private static final class PendingWrite {
+        final FramedEntry m_entry;
+        // completes with the uncompressed size of an offer, null for a sync
+        final SettableFuture<Integer> m_done = SettableFuture.create();
+
+        PendingWrite(FramedEntry entry) {
+            m_entry = entry;
+        }
+
+        boolean isSync() {
+            return m_entry == null;
+        }
+    }
+
+    /**
+     * The writer thread of a deque in group commit mode.
+     */
+    private class GroupCommitWriter implements Runnable {
+        private final ConcurrentLinkedQueue<PendingWrite> m_pending = new ConcurrentLinkedQueue<>();
+        private final Thread m_thread;
+        private volatile boolean m_idle = false;
+        private volatile boolean m_stopping = false;
+        private volatile boolean m_stopped = false;
+        // only used by the writer thread
+        private final List<PendingWrite> m_group = new ArrayList<>();
+        private final List<FramedEntry> m_entries = new ArrayList<>();
+
+        GroupCommitWriter() {
+            m_thread = new Thread(this, "PBD writer - " + m_nonce);
+            m_thread.setDaemon(true);
+            m_thread.start();
+        }
+
+        ListenableFuture<Integer> submit(PendingWrite write) {
+            if (m_stopping) {
+                return failClosed(write);
+            }
+            m_pending.offer(write);
+            // the writer may have stopped without seeing it
+            if (m_stopped && m_pending.remove(write)) {
+                return failClosed(write);
+            }
+            if (m_idle) {
+                LockSupport.unpark(m_thread);
+            }
+            return write.m_done;
+        }
+
+        private ListenableFuture<Integer> failClosed(PendingWrite write) {
+            if (write.m_entry != null) {
+                write.m_entry.discard();
+            }
+            write.m_done.setException(new IOException("Cannot write: PBD has been Closed"));
+            return write.m_done;
+        }
+
+        /**
+         * Finish what was submitted so far and stop the thread.
+         */
+        void shutdown() {
+            m_stopping = true;
+            LockSupport.unpark(m_thread);
+            boolean interrupted = false;
+            while (m_thread.isAlive()) {
+                try {
+                    m_thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                PendingWrite write = m_pending.poll();
+                if (write == null) {
+                    if (m_stopping) {
+                        break;
+                    }
+                    m_idle = true;
+                    if (m_pending.isEmpty() && !m_stopping) {
+                        LockSupport.park(this);
+                    }
+                    m_idle = false;
+                    continue;
+                }
+                long bytes = 0;
+                do {
+                    m_group.add(write);
+                    if (!write.isSync()) {
+                        bytes += write.m_entry.length();
+                    }
+                } while (bytes < MAX_GROUP_BYTES && (write = m_pending.poll()) != null);
+                try {
+                    writeGroup();
+                } catch (Throwable t) {
+                    LOG.error("Unexpected failure writing to PBD " + m_nonce, t);
+                    for (PendingWrite w : m_group) {
+                        if (!w.m_done.isDone()) {
+                            if (w.m_entry != null) {
+                                w.m_entry.discard();
+                            }
+                            w.m_done.setException(t);
+                        }
+                    }
+                } finally {
+                    m_group.clear();
+                    m_entries.clear();
+                }
+            }
+            m_stopped = true;
+            PendingWrite write;
+            while ((write = m_pending.poll()) != null) {
+                failClosed(write);
+            }
+        }
+
+        /**
+         * Append every offer in the group, in order, then sync once if any sync was requested.
+         * The futures are completed once the deque's monitor is released.
+         */
+        private void writeGroup() {
+            boolean syncRequested = false;
+            for (PendingWrite write : m_group) {
+                if (write.isSync()) {
+                    syncRequested = true;
+                } else {
+                    m_entries.add(write.m_entry);
+                }
+            }
+
+            IOException syncFailure = null;
+            final IOException[] failures = new IOException[m_entries.size()];
+            synchronized (PersistentBinaryDeque.this) {
+                if (m_closed) {
+                    Arrays.fill(failures, new IOException("Cannot write: PBD has been Closed"));
+                    syncFailure = failures.length > 0 ? failures[0] : new IOException("Cannot sync(): PBD has been Closed");
+                } else {
+                    assertions();
+                    appendEntries(syncRequested, failures);
+                    assertions();
+                    if (syncRequested) {
+                        try {
+                            syncSegments();
+                        } catch (IOException e) {
+                            syncFailure = e;
+                        }
+                    }
+                }
+            }
+
+            int entry = 0;
+            for (PendingWrite write : m_group) {
+                if (write.isSync()) {
+                    if (syncFailure == null) {
+                        write.m_done.set(null);
+                    } else {
+                        write.m_done.setException(syncFailure);
+                    }
+                } else {
+                    write.m_entry.discard();
+                    final IOException failure = failures[entry++];
+                    if (failure == null) {
+                        write.m_done.set(write.m_entry.m_uncompressedSize);
+                    } else {
+                        write.m_done.setException(failure);
+                    }
+                }
+            }
+        }
+
+        private void appendEntries(boolean syncRequested, IOException[] failures) {
+            PBDSegment tail = peekLastSegment();
+            boolean freshSegment = false;
+            int next = 0;
+            while (next < m_entries.size()) {
+                try {
+                    final int appended = tail.append(m_entries, next);
+                    if (appended > 0) {
+                        m_numObjects += appended;
+                        next += appended;
+                        freshSegment = false;
+                    } else if (freshSegment) {
+                        failures[next++] = new IOException("Failed to offer object in PBD");
+                    } else {
+                        // the segment is about to be closed, sync it now if it has to be
+                        if (syncRequested) {
+                            tail.sync();
+                        }
+                        tail = addSegment(tail);
+                        freshSegment = true;
+                    }
+                } catch (IOException e) {
+                    while (next < m_entries.size()) {
+                        failures[next++] = e;
+                    }
+                }
+            }
+        }
+    }
+
+    private static <T> T waitFor(ListenableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted waiting for PBD write", e);
+        } catch (ExecutionException e) {
+            Throwables.propagateIfInstanceOf(e.getCause(), IOException.class);
+            throw Throwables.propagate(e.getCause());
+        }
     }
 
     private int countNumObjects() throws IOException {
@@ -533,12 +798,44 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized void offer(BBContainer object) throws IOException {
+    public void offer(BBContainer object) throws IOException {
         offer(object, true);
     }
 
     @Override
-    public synchronized void offer(BBContainer object, boolean allowCompression) throws IOException {
+    public void offer(BBContainer object, boolean allowCompression) throws IOException {
+        if (m_groupWriter != null) {
+            assert !Thread.holdsLock(this) : "The PBD writer thread needs the monitor to finish the offer";
+            waitFor(offerAsync(object, allowCompression));
+            return;
+        }
+        offerInline(object, allowCompression);
+    }
+
+    /**
+     * Offer an object without waiting for it to be written. In group commit mode the object is
+     * compressed here and written by the writer thread, otherwise it is written before returning.
+     * Either way the object belongs to the deque from here on.
+     * @return a future that completes once the object is in the deque, or fails with the
+     * IOException that kept it out
+     */
+    public ListenableFuture<?> offerAsync(BBContainer object, boolean allowCompression) {
+        try {
+            if (m_groupWriter == null) {
+                offerInline(object, allowCompression);
+                return Futures.immediateFuture(null);
+            }
+            if (m_closed) {
+                throw new IOException("Closed");
+            }
+            return m_groupWriter.submit(
+                    new PendingWrite(FramedEntry.frame(object, object.b().isDirect() && allowCompression)));
+        } catch (IOException e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    private synchronized void offerInline(BBContainer object, boolean allowCompression) throws IOException {
         assertions();
         if (m_closed) {
             throw new IOException("Closed");
@@ -558,7 +855,18 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized int offer(DeferredSerialization ds) throws IOException {
+    public int offer(DeferredSerialization ds) throws IOException {
+        if (m_groupWriter != null) {
+            assert !Thread.holdsLock(this) : "The PBD writer thread needs the monitor to finish the offer";
+            if (m_closed) {
+                throw new IOException("Cannot offer(): PBD has been Closed");
+            }
+            return waitFor(m_groupWriter.submit(new PendingWrite(FramedEntry.frame(ds))));
+        }
+        return offerInline(ds);
+    }
+
+    private synchronized int offerInline(DeferredSerialization ds) throws IOException {
         assertions();
         if (m_closed) {
             throw new IOException("Cannot offer(): PBD has been Closed");
@@ -756,10 +1064,41 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized void sync() throws IOException {
+    public void sync() throws IOException {
+        if (m_groupWriter != null) {
+            assert !Thread.holdsLock(this) : "The PBD writer thread needs the monitor to sync";
+            waitFor(syncAsync());
+            return;
+        }
+        synchronized (this) {
+            if (m_closed) {
+                throw new IOException("Cannot sync(): PBD has been Closed");
+            }
+            syncSegments();
+        }
+    }
+
+    /**
+     * Persist everything offered so far without waiting. In group commit mode every sync requested
+     * while the writer thread was busy is done with one sync, otherwise the sync is done before returning.
+     * @return a future that completes once the objects offered before the call are on disk
+     */
+    public ListenableFuture<?> syncAsync() {
+        if (m_groupWriter == null) {
+            try {
+                sync();
+                return Futures.immediateFuture(null);
+            } catch (IOException e) {
+                return Futures.immediateFailedFuture(e);
+            }
+        }
         if (m_closed) {
-            throw new IOException("Cannot sync(): PBD has been Closed");
+            return Futures.immediateFailedFuture(new IOException("Cannot sync(): PBD has been Closed"));
         }
+        return m_groupWriter.submit(new PendingWrite(null));
+    }
+
+    private void syncSegments() throws IOException {
         for (PBDSegment segment : m_segments.values()) {
             if (!segment.isClosed()) {
                 segment.sync();
@@ -768,7 +1107,14 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized void close() throws IOException {
+    public void close() throws IOException {
+        if (m_groupWriter != null) {
+            m_groupWriter.shutdown();
+        }
+        closeSegments();
+    }
+
+    private synchronized void closeSegments() throws IOException {
         if (m_closed) {
             return;
         }
@@ -792,7 +1138,14 @@ public class PersistentBinaryDeque implements BinaryDeque {
     }
 
     @Override
-    public synchronized void closeAndDelete() throws IOException {
+    public void closeAndDelete() throws IOException {
+        if (m_groupWriter != null) {
+            m_groupWriter.shutdown();
+        }
+        deleteSegments();
+    }
+
+    private synchronized void deleteSegments() throws IOException {
         if (m_closed) {
             return;
         }
@@ -267,6 +267,9 @@ public class SerializationHelper {
     }
 
     public static Byte[] boxUpByteArray(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
         Byte[] retval = new Byte[bytes.length];
         for (int i = 0; i < bytes.length; i++) {
             retval[i] = bytes[i];
@@ -0,0 +1,121 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.voltcore.logging.VoltLogger;
+import org.voltcore.utils.DBBPool;
+import org.voltdb.utils.PersistentBinaryDeque;
+import org.voltdb.utils.VoltFile;
+
+/**
+ * Compares PersistentBinaryDeque offers written inline under the deque's monitor with
+ * offers handed to its group commit writer thread. Several producers offer into one
+ * deque, optionally syncing every few offers the way export overflow does, and the
+ * throughput and offer latency percentiles of each mode are printed.
+ *
+ * Usage: PBDOfferBench [directory] [producers] [offers per producer] [object bytes] [sync every n offers, 0 for never]
+ */
+public class PBDOfferBench {
+
+    public static void main(String[] args) throws Exception {
+        final File dir = new File(args.length > 0 ? args[0] : "/tmp/pbdbench");
+        final int producers = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+        final int offers = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        final int objectBytes = args.length > 3 ? Integer.parseInt(args[3]) : 64 * 1024;
+        final int syncEvery = args.length > 4 ? Integer.parseInt(args[4]) : 16;
+
+        System.out.printf("%d producers offering %d objects of %d bytes each, syncing every %d offers\n",
+                producers, offers, objectBytes, syncEvery);
+        // the first round of each warms up
+        for (int round = 0; round < 3; round++) {
+            run(dir, false, producers, offers, objectBytes, syncEvery);
+            run(dir, true, producers, offers, objectBytes, syncEvery);
+        }
+    }
+
+    private static void run(File dir, boolean groupCommit, final int producers, final int offers,
+            final int objectBytes, final int syncEvery) throws Exception {
+        if (dir.exists()) {
+            VoltFile.recursivelyDelete(dir);
+        }
+        dir.mkdirs();
+        final PersistentBinaryDeque pbd =
+                new PersistentBinaryDeque("bench", dir, new VoltLogger("HOST"), true, groupCommit);
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService es = Executors.newFixedThreadPool(producers);
+        final List<Future<long[]>> results = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            results.add(es.submit(new Callable<long[]>() {
+                @Override
+                public long[] call() throws Exception {
+                    final long[] latencies = new long[offers];
+                    start.await();
+                    for (int i = 0; i < offers; i++) {
+                        final ByteBuffer buf = ByteBuffer.allocateDirect(objectBytes);
+                        while (buf.remaining() >= 8) {
+                            buf.putLong(i);
+                        }
+                        buf.clear();
+                        final long before = System.nanoTime();
+                        pbd.offer(DBBPool.wrapBB(buf), false);
+                        if (syncEvery > 0 && (i + 1) % syncEvery == 0) {
+                            pbd.sync();
+                        }
+                        latencies[i] = System.nanoTime() - before;
+                    }
+                    return latencies;
+                }
+            }));
+        }
+
+        final long startTime = System.nanoTime();
+        start.countDown();
+        final long[] all = new long[producers * offers];
+        int filled = 0;
+        for (Future<long[]> result : results) {
+            final long[] latencies = result.get();
+            System.arraycopy(latencies, 0, all, filled, latencies.length);
+            filled += latencies.length;
+        }
+        final double seconds = (System.nanoTime() - startTime) / 1000000000.0;
+        es.shutdown();
+        pbd.closeAndDelete();
+
+        Arrays.sort(all);
+        final double megabytes = (double) all.length * objectBytes / (1024 * 1024);
+        System.out.printf("%-12s %8.1f MB/s %10.0f offers/s   offer latency p50 %7.1f us  p99 %8.1f us  max %9.1f us\n",
+                groupCommit ? "group commit" : "inline",
+                megabytes / seconds, all.length / seconds,
+                all[all.length / 2] / 1000.0, all[(int) (all.length * 0.99)] / 1000.0, all[all.length - 1] / 1000.0);
+    }
+}
@@ -0,0 +1,130 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.math.BigDecimal;
+import java.util.Random;
+
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.types.TimestampType;
+
+/**
+ * Table shapes shared by the JMH benchmarks so that VoltTable, ParameterSet and
+ * ClientResponse numbers are measured against the same data.
+ *
+ * <ul>
+ * <li>narrow: a key/value pair of longs, typical of KV style procedures</li>
+ * <li>mixed: one column of each common fixed and variable width type</li>
+ * <li>wide: 32 columns of alternating BIGINT and short VARCHAR values</li>
+ * </ul>
+ */
+public final class BenchmarkSchemas {
+
+    public static final String NARROW = "narrow";
+    public static final String MIXED = "mixed";
+    public static final String WIDE = "wide";
+
+    private BenchmarkSchemas() {}
+
+    public static ColumnInfo[] columns(String schema) {
+        if (NARROW.equals(schema)) {
+            return new ColumnInfo[] {
+                    new ColumnInfo("ID", VoltType.BIGINT),
+                    new ColumnInfo("VAL", VoltType.BIGINT)
+            };
+        }
+        else if (MIXED.equals(schema)) {
+            return new ColumnInfo[] {
+                    new ColumnInfo("ID", VoltType.BIGINT),
+                    new ColumnInfo("COUNTER", VoltType.INTEGER),
+                    new ColumnInfo("FLAGS", VoltType.TINYINT),
+                    new ColumnInfo("RATIO", VoltType.FLOAT),
+                    new ColumnInfo("NAME", VoltType.STRING),
+                    new ColumnInfo("PAYLOAD", VoltType.VARBINARY),
+                    new ColumnInfo("AMOUNT", VoltType.DECIMAL),
+                    new ColumnInfo("UPDATED", VoltType.TIMESTAMP)
+            };
+        }
+        else if (WIDE.equals(schema)) {
+            ColumnInfo[] columns = new ColumnInfo[32];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = (i % 2 == 0)
+                        ? new ColumnInfo("L" + i, VoltType.BIGINT)
+                        : new ColumnInfo("S" + i, VoltType.STRING);
+            }
+            return columns;
+        }
+        throw new IllegalArgumentException("Unknown benchmark schema: " + schema);
+    }
+
+    /**
+     * Generate {@code rowCount} rows of deterministic values matching {@link #columns(String)}.
+     */
+    public static Object[][] rows(String schema, int rowCount) {
+        ColumnInfo[] columns = columns(schema);
+        Random r = new Random(0);
+        Object[][] rows = new Object[rowCount][];
+        for (int row = 0; row < rowCount; row++) {
+            Object[] values = new Object[columns.length];
+            for (int col = 0; col < columns.length; col++) {
+                values[col] = value(columns[col].type, r);
+            }
+            rows[row] = values;
+        }
+        return rows;
+    }
+
+    public static VoltTable table(String schema, int rowCount) {
+        VoltTable table = new VoltTable(columns(schema));
+        for (Object[] row : rows(schema, rowCount)) {
+            table.addRow(row);
+        }
+        return table;
+    }
+
+    private static Object value(VoltType type, Random r) {
+        switch (type) {
+        case TINYINT:
+            return (byte) r.nextInt(Byte.MAX_VALUE);
+        case INTEGER:
+            return r.nextInt();
+        case BIGINT:
+            return r.nextLong();
+        case FLOAT:
+            return r.nextDouble();
+        case STRING:
+            return "value-" + r.nextInt(100000);
+        case VARBINARY:
+            byte[] bytes = new byte[16];
+            r.nextBytes(bytes);
+            return bytes;
+        case DECIMAL:
+            return new BigDecimal(r.nextInt(1000000)).movePointLeft(4);
+        case TIMESTAMP:
+            return new TimestampType(Math.abs(r.nextLong() % 4000000000000000L));
+        default:
+            throw new IllegalArgumentException("No generator for " + type);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Steady state handle churn in {@link ClientInterfaceHandleManager} with a fixed number of
+ * transactions in flight spread round robin over the partitions. Each operation creates a
+ * handle for a new transaction and retires the oldest one, the way responses usually come back.
+ * {@code boxedMapBaseline} does the same against per-partition maps of boxed handles, which is
+ * how the handle manager used to keep track of them, to show the difference at a glance.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ClientInterfaceHandleManagerBenchmark {
+
+    @Param({"1", "1000", "100000"})
+    public int inFlight;
+
+    @Param({"1", "16"})
+    public int partitions;
+
+    private ClientInterfaceHandleManager m_cihm;
+    private long[] m_handles;
+    private int m_oldest;
+    private int m_nextPartition;
+
+    private Map<Integer, Map<Long, ClientInterfaceHandleManager.Iv2InFlight>> m_boxed;
+    private long[] m_boxedSequences;
+    private long[] m_boxedHandles;
+
+    @Setup
+    public void setup() {
+        m_cihm = new ClientInterfaceHandleManager(false, null, null, AdmissionControlGroup.getDummy());
+        m_boxed = new HashMap<Integer, Map<Long, ClientInterfaceHandleManager.Iv2InFlight>>();
+        m_boxedSequences = new long[partitions];
+        for (int i = 0; i < partitions; i++) {
+            m_boxed.put(i, new HashMap<Long, ClientInterfaceHandleManager.Iv2InFlight>());
+        }
+        m_handles = new long[inFlight];
+        m_boxedHandles = new long[inFlight];
+        m_nextPartition = 0;
+        for (int i = 0; i < inFlight; i++) {
+            m_handles[i] = m_cihm.getHandle(true, nextPartition(), i, 100, 0, "bench", 0, false);
+        }
+        for (int i = 0; i < inFlight; i++) {
+            boxedAdd(i);
+        }
+        m_oldest = 0;
+    }
+
+    private int nextPartition() {
+        final int partition = m_nextPartition;
+        m_nextPartition = (partition + 1) % partitions;
+        return partition;
+    }
+
+    @Benchmark
+    public ClientInterfaceHandleManager.Iv2InFlight handleManager() {
+        final ClientInterfaceHandleManager.Iv2InFlight retired = m_cihm.findHandle(m_handles[m_oldest]);
+        m_handles[m_oldest] = m_cihm.getHandle(true, nextPartition(), m_oldest, 100, 0, "bench", 0, false);
+        m_oldest = (m_oldest + 1) % inFlight;
+        return retired;
+    }
+
+    @Benchmark
+    public ClientInterfaceHandleManager.Iv2InFlight boxedMapBaseline() {
+        final long handle = m_boxedHandles[m_oldest];
+        final ClientInterfaceHandleManager.Iv2InFlight retired =
+                m_boxed.get(ClientInterfaceHandleManager.getPartIdFromHandle(handle)).remove(handle);
+        boxedAdd(m_oldest);
+        m_oldest = (m_oldest + 1) % inFlight;
+        return retired;
+    }
+
+    private void boxedAdd(int index) {
+        final int partition = nextPartition();
+        final long handle = ((long)partition << ClientInterfaceHandleManager.PART_ID_SHIFT) |
+                m_boxedSequences[partition]++;
+        m_boxed.get(partition).put(handle,
+                new ClientInterfaceHandleManager.Iv2InFlight(handle, index, 100, 0, "bench", 0));
+        m_boxedHandles[index] = handle;
+    }
+}
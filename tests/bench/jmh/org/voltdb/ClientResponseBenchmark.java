@@ -0,0 +1,81 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.voltdb.client.ClientResponse;
+
+/**
+ * Server side response serialization and client side response decoding of
+ * {@link ClientResponseImpl} carrying a single result table.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ClientResponseBenchmark {
+
+    @Param({BenchmarkSchemas.NARROW, BenchmarkSchemas.MIXED, BenchmarkSchemas.WIDE})
+    public String schema;
+
+    @Param({"1", "100", "10000"})
+    public int rows;
+
+    private ClientResponseImpl m_response;
+    private ByteBuffer m_flattenTarget;
+    private ByteBuffer m_serialized;
+
+    @Setup
+    public void setup() {
+        VoltTable[] results = new VoltTable[] { BenchmarkSchemas.table(schema, rows) };
+        m_response = new ClientResponseImpl(ClientResponse.SUCCESS, results, null, 42);
+        m_flattenTarget = ByteBuffer.allocate(m_response.getSerializedSize());
+        m_serialized = ByteBuffer.allocate(m_response.getSerializedSize());
+        m_response.flattenToBuffer(m_serialized);
+        m_serialized.flip();
+    }
+
+    @Benchmark
+    public ByteBuffer flattenToBuffer() {
+        m_flattenTarget.clear();
+        return m_response.flattenToBuffer(m_flattenTarget);
+    }
+
+    @Benchmark
+    public ClientResponseImpl initFromBuffer() throws IOException {
+        ClientResponseImpl response = new ClientResponseImpl();
+        response.initFromBuffer(m_serialized.duplicate());
+        return response;
+    }
+}
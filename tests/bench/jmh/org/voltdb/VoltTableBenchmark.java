@@ -0,0 +1,157 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.types.TimestampType;
+
+/**
+ * Row building, serialization and row iteration costs of {@link VoltTable}.
+ * Each invocation processes a full table of {@code rows} rows, so divide ops/s
+ * by the row count for a per-row figure.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class VoltTableBenchmark {
+
+    @Param({BenchmarkSchemas.NARROW, BenchmarkSchemas.MIXED, BenchmarkSchemas.WIDE})
+    public String schema;
+
+    @Param({"1", "100", "10000"})
+    public int rows;
+
+    private ColumnInfo[] m_columns;
+    private VoltType[] m_types;
+    private Object[][] m_rows;
+    private int m_averageRowSize;
+    private VoltTable m_table;
+    private ByteBuffer m_flattenTarget;
+    private ByteBuffer m_serialized;
+
+    @Setup
+    public void setup() {
+        m_columns = BenchmarkSchemas.columns(schema);
+        m_types = new VoltType[m_columns.length];
+        for (int i = 0; i < m_columns.length; i++) {
+            m_types[i] = m_columns[i].type;
+        }
+        m_rows = BenchmarkSchemas.rows(schema, rows);
+        m_table = BenchmarkSchemas.table(schema, rows);
+        m_averageRowSize = m_table.getSerializedSize() / rows;
+        m_flattenTarget = ByteBuffer.allocate(m_table.getSerializedSize());
+        m_serialized = ByteBuffer.allocate(m_table.getSerializedSize());
+        m_table.flattenToBuffer(m_serialized);
+        m_serialized.flip();
+    }
+
+    @Benchmark
+    public VoltTable addRows() {
+        VoltTable table = new VoltTable(m_columns);
+        for (Object[] row : m_rows) {
+            table.addRow(row);
+        }
+        return table;
+    }
+
+    @Benchmark
+    public VoltTable buildRows() {
+        VoltTable table = new VoltTable(m_columns);
+        buildRows(table);
+        return table;
+    }
+
+    @Benchmark
+    public VoltTable buildRowsPresized() {
+        VoltTable table = new VoltTable(m_columns);
+        table.ensureRowCapacity(rows, m_averageRowSize);
+        buildRows(table);
+        return table;
+    }
+
+    private void buildRows(VoltTable table) {
+        VoltTable.RowBuilder builder = table.rowBuilder();
+        for (Object[] row : m_rows) {
+            for (int col = 0; col < row.length; col++) {
+                final Object value = row[col];
+                switch (m_types[col]) {
+                case TINYINT:
+                case INTEGER:
+                case BIGINT:
+                    builder.putLong(((Number) value).longValue());
+                    break;
+                case FLOAT:
+                    builder.putDouble((Double) value);
+                    break;
+                case STRING:
+                    builder.putString((String) value);
+                    break;
+                case VARBINARY:
+                    builder.putVarbinary((byte[]) value);
+                    break;
+                case DECIMAL:
+                    builder.putDecimal((BigDecimal) value);
+                    break;
+                case TIMESTAMP:
+                    builder.putTimestamp((TimestampType) value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("No builder call for " + m_types[col]);
+                }
+            }
+            builder.endRow();
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer flattenToBuffer() {
+        m_flattenTarget.clear();
+        m_table.flattenToBuffer(m_flattenTarget);
+        return m_flattenTarget;
+    }
+
+    @Benchmark
+    public void deserializeAndIterate(Blackhole bh) {
+        VoltTable table = PrivateVoltTableFactory.createVoltTableFromBuffer(m_serialized.duplicate(), true);
+        final int columnCount = table.getColumnCount();
+        while (table.advanceRow()) {
+            for (int col = 0; col < columnCount; col++) {
+                bh.consume(table.get(col, table.getColumnType(col)));
+            }
+        }
+    }
+}
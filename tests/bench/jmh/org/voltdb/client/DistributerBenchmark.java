@@ -0,0 +1,277 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.voltcore.network.Connection;
+import org.voltcore.network.QueueMonitor;
+import org.voltcore.network.ReverseDNSCache;
+import org.voltcore.network.VoltNetworkPool;
+import org.voltcore.network.VoltProtocolHandler;
+import org.voltdb.ClientResponseImpl;
+import org.voltdb.VoltTable;
+import org.voltdb.VoltType;
+
+/**
+ * Client side dispatch cost of {@link Distributer#queue}: routing, serialization,
+ * callback bookkeeping and response handling against an in-process server that
+ * answers every invocation with a canned one row response.
+ *
+ * Run with {@code -t N} to measure contention between application threads sharing
+ * one Distributer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class DistributerBenchmark {
+
+    static final int BATCH = 1000;
+    static final int BASE_PORT = 21312;
+
+    @Param({"1", "3"})
+    public int connections;
+
+    private final List<EchoServer> m_servers = new ArrayList<>();
+    private Distributer m_distributer;
+    private final AtomicLong m_handles = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        ReverseDNSCache.start();
+        m_distributer = new Distributer(false,
+                ClientConfig.DEFAULT_PROCEDURE_TIMOUT_NANOS,
+                ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                false, false, null, null);
+        for (int i = 0; i < connections; i++) {
+            EchoServer server = new EchoServer(BASE_PORT + i);
+            server.start();
+            m_servers.add(server);
+            m_distributer.createConnection("localhost", "", "", BASE_PORT + i, ClientAuthScheme.HASH_SHA256);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        m_distributer.shutdown();
+        for (EchoServer server : m_servers) {
+            server.shutdown();
+        }
+        m_servers.clear();
+    }
+
+    /**
+     * Per application thread completion tracking so threads only wait for their own calls.
+     */
+    @State(Scope.Thread)
+    public static class Outstanding implements ProcedureCallback {
+        final AtomicInteger m_outstanding = new AtomicInteger();
+
+        @Override
+        public void clientCallback(ClientResponse response) {
+            m_outstanding.decrementAndGet();
+        }
+
+        void await() {
+            while (m_outstanding.get() > 0) {
+                Thread.yield();
+            }
+        }
+    }
+
+    /**
+     * Queue a batch of small invocations and wait for every response. Reported ops/s are
+     * round trips per second, including the rate limiter's max outstanding back pressure.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void queueRoundTrip(Outstanding outstanding) throws Exception {
+        for (int i = 0; i < BATCH; i++) {
+            ProcedureInvocation invocation =
+                    new ProcedureInvocation(m_handles.incrementAndGet(), "Put", 12345L, "value");
+            outstanding.m_outstanding.incrementAndGet();
+            // back pressure, the invocation was not queued; keep trying so that every
+            // counted operation is a completed round trip
+            while (!m_distributer.queue(invocation, outstanding, false, System.nanoTime(),
+                                        Distributer.USE_DEFAULT_CLIENT_TIMEOUT)) {
+                Thread.yield();
+            }
+        }
+        outstanding.await();
+    }
+
+    /**
+     * Answers every invocation with the same pre-serialized response after patching in the
+     * client handle.
+     */
+    static class EchoServer extends Thread {
+        private final ServerSocketChannel m_socket;
+        private final VoltNetworkPool m_network;
+        private final AtomicBoolean m_shutdown = new AtomicBoolean(false);
+        private final List<SocketChannel> m_channels = new ArrayList<>();
+        private final ByteBuffer m_response;
+
+        EchoServer(int port) throws IOException {
+            super("JMH echo server " + port);
+            m_network = new VoltNetworkPool();
+            m_network.start();
+            m_socket = ServerSocketChannel.open();
+            m_socket.configureBlocking(false);
+            m_socket.socket().bind(new InetSocketAddress(port));
+
+            VoltTable result = new VoltTable(new VoltTable.ColumnInfo("modified_tuples", VoltType.BIGINT));
+            result.addRow(1);
+            ClientResponseImpl response =
+                    new ClientResponseImpl(ClientResponse.SUCCESS, new VoltTable[] { result }, null, 0);
+            m_response = ByteBuffer.allocate(4 + response.getSerializedSize());
+            m_response.putInt(m_response.capacity() - 4);
+            response.flattenToBuffer(m_response);
+            m_response.flip();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!m_shutdown.get()) {
+                    SocketChannel client = m_socket.accept();
+                    if (client == null) {
+                        Thread.sleep(1);
+                        continue;
+                    }
+                    client.configureBlocking(true);
+                    handshake(client);
+                    client.configureBlocking(false);
+                    m_channels.add(client);
+                    m_network.registerChannel(client, new Handler(), null, null);
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * Consume the login message and accept any credentials.
+         */
+        private void handshake(SocketChannel client) throws IOException {
+            ByteBuffer length = ByteBuffer.allocate(4);
+            while (length.hasRemaining()) {
+                client.read(length);
+            }
+            length.flip();
+            ByteBuffer login = ByteBuffer.allocate(length.getInt());
+            while (login.hasRemaining()) {
+                client.read(login);
+            }
+
+            ByteBuffer response = ByteBuffer.allocate(34);
+            response.putInt(30);
+            response.put((byte)0);  // version
+            response.put((byte)0);  // success
+            response.putInt(0);     // host id
+            response.putLong(0);    // connection id
+            response.putLong(0);    // instance id timestamp
+            response.putInt(0);     // instance id leader address
+            response.putInt(0);     // empty build string
+            response.flip();
+            while (response.hasRemaining()) {
+                client.write(response);
+            }
+        }
+
+        void shutdown() throws Exception {
+            m_shutdown.set(true);
+            join();
+            m_network.shutdown();
+            m_socket.close();
+            for (SocketChannel sc : m_channels) {
+                sc.close();
+            }
+        }
+
+        private class Handler extends VoltProtocolHandler {
+            @Override
+            public int getMaxRead() {
+                return Integer.MAX_VALUE;
+            }
+
+            @Override
+            public void handleMessage(ByteBuffer message, Connection c) {
+                // version byte, then the procedure name, then the client handle
+                message.get();
+                final int nameLength = message.getInt();
+                message.position(message.position() + nameLength);
+                final long handle = message.getLong();
+
+                ByteBuffer response = ByteBuffer.allocate(m_response.remaining());
+                response.put(m_response.duplicate());
+                // length prefix plus version byte precede the handle
+                response.putLong(5, handle);
+                response.flip();
+                c.writeStream().enqueue(response);
+            }
+
+            @Override
+            public Runnable offBackPressure() {
+                return new Runnable() {
+                    @Override
+                    public void run() {}
+                };
+            }
+
+            @Override
+            public Runnable onBackPressure() {
+                return new Runnable() {
+                    @Override
+                    public void run() {}
+                };
+            }
+
+            @Override
+            public QueueMonitor writestreamMonitor() {
+                return null;
+            }
+        }
+    }
+}
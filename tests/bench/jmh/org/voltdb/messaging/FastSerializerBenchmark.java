@@ -0,0 +1,120 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.messaging;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Primitive and string encoding through {@link FastSerializer} and decoding through
+ * {@link FastDeserializer}. Each invocation writes or reads {@code values} records of
+ * (long, int, double, string). Supersedes the Japex SerializeIntegerBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class FastSerializerBenchmark {
+
+    @Param({"1", "100", "10000"})
+    public int values;
+
+    @Param({"false", "true"})
+    public boolean direct;
+
+    private String[] m_strings;
+    private FastSerializer m_reused;
+    private ByteBuffer m_serialized;
+
+    @Setup
+    public void setup() throws IOException {
+        m_strings = new String[values];
+        for (int i = 0; i < values; i++) {
+            m_strings[i] = "string value " + i;
+        }
+        m_reused = new FastSerializer(true, direct);
+        write(m_reused);
+        m_serialized = ByteBuffer.allocate(m_reused.size());
+        m_serialized.put(m_reused.getBBContainer().b());
+        m_serialized.flip();
+        m_reused.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        m_reused.discard();
+    }
+
+    private void write(FastSerializer fs) throws IOException {
+        for (int i = 0; i < values; i++) {
+            fs.writeLong(i);
+            fs.writeInt(i);
+            fs.writeDouble(i);
+            fs.writeString(m_strings[i]);
+        }
+    }
+
+    /**
+     * A new serializer per call, the common pattern for messages and responses.
+     */
+    @Benchmark
+    public int serializeFresh() throws IOException {
+        FastSerializer fs = new FastSerializer(true, direct);
+        try {
+            write(fs);
+            return fs.size();
+        } finally {
+            fs.discard();
+        }
+    }
+
+    @Benchmark
+    public int serializeReused() throws IOException {
+        m_reused.clear();
+        write(m_reused);
+        return m_reused.size();
+    }
+
+    @Benchmark
+    public void deserialize(Blackhole bh) throws IOException {
+        FastDeserializer fds = new FastDeserializer(m_serialized.duplicate());
+        for (int i = 0; i < values; i++) {
+            bh.consume(fds.readLong());
+            bh.consume(fds.readInt());
+            bh.consume(fds.readDouble());
+            bh.consume(fds.readString());
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltcore.messaging;
+
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.mockito.ArgumentCaptor;
+import org.voltcore.network.PicoNetwork;
+
+import junit.framework.TestCase;
+
+public class TestForeignHost extends TestCase {
+
+    private static final long SOURCE_HSID = 17L;
+    private static final long DEST_HSID = 42L;
+
+    /** A single message as it is framed inside a coalesced frame: source, destinations, body */
+    private static ByteBuffer innerMessage(long destHSId, VoltMessage message) throws Exception {
+        ByteBuffer body = VoltMessage.toBuffer(message);
+        ByteBuffer buf = ByteBuffer.allocate(8 + 4 + 8 + body.remaining());
+        buf.putLong(SOURCE_HSID);
+        buf.putInt(1);
+        buf.putLong(destHSId);
+        buf.put(body);
+        buf.flip();
+        return buf;
+    }
+
+    public void testCoalescedMessagesDeliveredInOrder() throws Exception {
+        final int count = 10;
+        List<ByteBuffer> messages = new ArrayList<>();
+        int frameSize = 8 + 4 + 4;
+        for (int i = 0; i < count; i++) {
+            byte[] payload = new byte[i * 7];
+            for (int j = 0; j < payload.length; j++) {
+                payload[j] = (byte) i;
+            }
+            ByteBuffer message = innerMessage(DEST_HSID, new BinaryPayloadMessage(new byte[] { (byte) i }, payload));
+            messages.add(message);
+            frameSize += 4 + message.remaining();
+        }
+
+        // laid out the same way as ForeignHost.COALESCED_FRAME_HEADER followed by the messages
+        ByteBuffer frame = ByteBuffer.allocate(frameSize);
+        frame.putLong(-1);
+        frame.putInt(ForeignHost.COALESCED_MESSAGES);
+        frame.putInt(count);
+        for (ByteBuffer message : messages) {
+            frame.putInt(message.remaining());
+            frame.put(message);
+        }
+        assertFalse(frame.hasRemaining());
+        frame.flip();
+
+        HostMessenger messenger = mock(HostMessenger.class);
+        Mailbox mailbox = mock(Mailbox.class);
+        when(messenger.getMessageFactory()).thenReturn(new VoltMessageFactory());
+        when(messenger.validateForeignHostId(anyInt())).thenReturn(true);
+        when(messenger.getMailbox(DEST_HSID)).thenReturn(mailbox);
+
+        SocketChannel socket = SocketChannel.open();
+        try {
+            ForeignHost fh = new ForeignHost(messenger, 1, socket, 10000, null, mock(PicoNetwork.class));
+            fh.m_handler.handleMessage(frame, null);
+        } finally {
+            socket.close();
+        }
+        assertFalse(frame.hasRemaining());
+
+        ArgumentCaptor<VoltMessage> delivered = ArgumentCaptor.forClass(VoltMessage.class);
+        verify(mailbox, times(count)).deliver(delivered.capture());
+        List<VoltMessage> received = delivered.getAllValues();
+        assertEquals(count, received.size());
+        for (int i = 0; i < count; i++) {
+            BinaryPayloadMessage message = (BinaryPayloadMessage) received.get(i);
+            assertEquals(SOURCE_HSID, message.m_sourceHSId);
+            assertEquals(1, message.m_metadata.length);
+            assertEquals((byte) i, message.m_metadata[0]);
+            assertEquals(i * 7, message.m_payload.length);
+            for (byte b : message.m_payload) {
+                assertEquals((byte) i, b);
+            }
+        }
+    }
+}
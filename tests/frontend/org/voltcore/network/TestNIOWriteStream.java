@@ -50,6 +50,7 @@
 
 package org.voltcore.network;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
@@ -121,6 +122,8 @@ public class TestNIOWriteStream extends TestCase {
         private boolean didOversizeWrite = false;
         private boolean wrotePartial = false;
         public boolean m_open = true;
+        public int gatheringWrites = 0;
+        public final ByteArrayOutputStream received = new ByteArrayOutputStream();
 
         public int m_behavior;
         public static int SINK = 0;     // accept all data
@@ -141,7 +144,9 @@ public class TestNIOWriteStream extends TestCase {
             }
             if (m_behavior == SINK) {
                 int remaining = src.remaining();
-                src.position(src.limit());
+                while (src.hasRemaining()) {
+                    received.write(src.get());
+                }
                 return remaining;
             }
             else if (m_behavior == FULL) {
@@ -155,6 +160,7 @@ public class TestNIOWriteStream extends TestCase {
                 }
                 ByteBuffer copy = ByteBuffer.allocate(src.remaining());
                 src.get(copy.array(), 0, src.remaining()/2);
+                received.write(copy.array(), 0, copy.capacity() - src.remaining());
                 return src.remaining();
             }
             assert(false);
@@ -203,8 +209,28 @@ public class TestNIOWriteStream extends TestCase {
         @Override
         public long write(ByteBuffer[] srcs, int offset, int length)
                 throws IOException {
-            // TODO Auto-generated method stub
-            return 0;
+            gatheringWrites++;
+            long written = 0;
+            for (int ii = offset; ii < offset + length; ii++) {
+                if (!srcs[ii].hasRemaining()) {
+                    continue;
+                }
+                final int rc;
+                try {
+                    rc = write(srcs[ii]);
+                } catch (IOException e) {
+                    // Like writev, report the progress made and fail on the next call
+                    if (written > 0) {
+                        return written;
+                    }
+                    throw e;
+                }
+                written += rc;
+                if (srcs[ii].hasRemaining()) {
+                    break;
+                }
+            }
+            return written;
         }
     }
 
@@ -374,6 +400,48 @@ public class TestNIOWriteStream extends TestCase {
         assertEquals(0, acg.getPendingBytes());
     }
 
+    public void testGatheringWrite() throws IOException {
+        MockChannel channel = new MockChannel(MockChannel.PARTIAL, 0);
+        MockPort port = new MockPort();
+        NIOWriteStream wstream = new NIOWriteStream(port);
+
+        // The pool hands out 4 byte buffers so each message gets a buffer of its own
+        final int messages = NIOWriteStream.MAX_GATHERING_BUFFERS + 36;
+        for (int ii = 0; ii < messages; ii++) {
+            ByteBuffer tmp = ByteBuffer.allocate(4);
+            tmp.putInt(ii);
+            tmp.flip();
+            wstream.enqueue(tmp);
+        }
+        wstream.serializeQueuedWrites(pool);
+        assertEquals(messages, wstream.getOutstandingMessageCount());
+
+        // Half of the first buffer, the rest go back in the queue untouched
+        assertEquals(2, wstream.drainTo(channel));
+        assertEquals(2, channel.gatheringWrites);
+        assertEquals(messages - 1, wstream.getOutstandingMessageCount());
+        assertTrue(wstream.hadBackPressure());
+
+        channel.m_behavior = MockChannel.SINK;
+        assertEquals(messages * 4 - 2, wstream.drainTo(channel));
+        assertTrue(wstream.isEmpty());
+        assertFalse(wstream.hadBackPressure());
+        assertEquals(4, channel.gatheringWrites);
+
+        ByteBuffer received = ByteBuffer.wrap(channel.received.toByteArray());
+        assertEquals(messages * 4, received.remaining());
+        for (int ii = 0; ii < messages; ii++) {
+            assertEquals(ii, received.getInt());
+        }
+
+        long[] written = wstream.getBytesAndMessagesWritten(false);
+        assertEquals(messages * 4, written[0]);
+        assertEquals(messages, written[1]);
+        assertEquals(NIOWriteStream.MAX_GATHERING_BUFFERS * 3 + 36, written[2]);
+        assertEquals(4, written[3]);
+        wstream.shutdown();
+    }
+
     public void testLargeNonDirectWrite() throws IOException {
         MockChannel channel = new MockChannel(MockChannel.SINK, 0);
         MockPort port = new MockPort();
@@ -23,18 +23,22 @@
 
 package org.voltcore.network;
 
+import java.io.IOException;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
+import java.nio.channels.Pipe;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
 import java.util.HashSet;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import org.voltcore.utils.DeferredSerialization;
 
 import junit.framework.TestCase;
 
@@ -196,4 +200,71 @@ public class TestPicoNetwork extends TestCase {
             rawChannel.read(buf);
         }
     }
+
+    private static DeferredSerialization message(final int value) {
+        return new DeferredSerialization() {
+            @Override
+            public void serialize(ByteBuffer buf) throws IOException {
+                buf.putInt(4);
+                buf.putInt(value);
+            }
+
+            @Override
+            public void cancel() {}
+
+            @Override
+            public int getSerializedSize() throws IOException {
+                return 8;
+            }
+        };
+    }
+
+    @Test
+    public void testCoalescing() throws Exception {
+        PicoNIOWriteStream stream = new PicoNIOWriteStream();
+        stream.enableCoalescing(new PicoNIOWriteStream.CoalescedFrameHeader() {
+            @Override
+            public int size() {
+                return 8;
+            }
+
+            @Override
+            public void put(ByteBuffer buf, int messageCount) {
+                buf.putInt(-3);
+                buf.putInt(messageCount);
+            }
+        }, TimeUnit.SECONDS.toNanos(60));
+
+        for (int i = 0; i < 10; i++) {
+            stream.enqueue(message(i));
+        }
+        // Nothing is being written yet so the messages wait for more to join them
+        assertTrue(stream.shouldLinger());
+
+        NetworkDBBPool pool = new NetworkDBBPool();
+        Pipe pipe = Pipe.open();
+        try {
+            stream.serializeQueuedWrites(pool);
+            stream.drainTo(pipe.sink());
+            assertTrue(stream.isEmpty());
+
+            ByteBuffer frame = ByteBuffer.allocate(4 + 8 + 10 * 8);
+            while (frame.hasRemaining()) {
+                pipe.source().read(frame);
+            }
+            frame.flip();
+            assertEquals(frame.capacity() - 4, frame.getInt());
+            assertEquals(-3, frame.getInt());
+            assertEquals(10, frame.getInt());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(4, frame.getInt());
+                assertEquals(i, frame.getInt());
+            }
+        } finally {
+            stream.shutdown();
+            pool.clear();
+            pipe.sink().close();
+            pipe.source().close();
+        }
+    }
 }
@@ -39,6 +39,7 @@ import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -48,6 +49,7 @@ import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.BlockingQueue;
@@ -79,6 +81,7 @@ import org.voltdb.VoltDB.Configuration;
 import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.catalog.Catalog;
 import org.voltdb.client.ClientResponse;
+import org.voltdb.client.ProcedureInvocationType;
 import org.voltdb.compiler.VoltProjectBuilder;
 import org.voltdb.iv2.Cartographer;
 import org.voltdb.messaging.InitiateResponseMessage;
@@ -411,6 +414,48 @@ public class TestClientInterface {
         when(m_volt.getMode()).thenReturn(OperationMode.RUNNING);
     }
 
+    @Test
+    public void testInvocationBatch() throws Exception {
+        ByteBuffer[] invocations = new ByteBuffer[] {
+                createMsg("hello", 1), createMsg("hellooooo", 1), createMsg("hello", 2) };
+        int size = 1 + 4;
+        for (ByteBuffer invocation : invocations) {
+            size += 4 + invocation.remaining();
+        }
+        ByteBuffer msg = ByteBuffer.allocate(size);
+        msg.put(ProcedureInvocationType.BATCH.getValue());
+        msg.putInt(invocations.length);
+        for (ByteBuffer invocation : invocations) {
+            msg.putInt(invocation.remaining());
+            msg.put(invocation);
+        }
+        msg.flip();
+
+        // Only the invalid procedure is answered right away, the others are dispatched
+        List<ClientResponseImpl> errors = m_ci.handleBatchRead(msg, m_handler, m_cxn);
+        assertEquals(1, errors.size());
+        assertEquals(ClientResponse.UNEXPECTED_FAILURE, errors.get(0).getStatus());
+
+        ArgumentCaptor<Iv2InitiateTaskMessage> messageCaptor =
+            ArgumentCaptor.forClass(Iv2InitiateTaskMessage.class);
+        verify(m_messenger, times(2)).send(anyLong(), messageCaptor.capture());
+        List<Iv2InitiateTaskMessage> messages = messageCaptor.getAllValues();
+        assertEquals("hello", messages.get(0).getStoredProcedureName());
+        assertEquals(1, messages.get(0).getStoredProcedureInvocation().getParameterAtIndex(0));
+        assertEquals("hello", messages.get(1).getStoredProcedureName());
+        assertEquals(2, messages.get(1).getStoredProcedureInvocation().getParameterAtIndex(0));
+
+        // A truncated batch is rejected as a whole
+        msg = ByteBuffer.allocate(1 + 4 + 4);
+        msg.put(ProcedureInvocationType.BATCH.getValue());
+        msg.putInt(1);
+        msg.putInt(100);
+        msg.flip();
+        errors = m_ci.handleBatchRead(msg, m_handler, m_cxn);
+        assertEquals(1, errors.size());
+        assertEquals(ClientResponse.UNEXPECTED_FAILURE, errors.get(0).getStatus());
+    }
+
     @Test
     public void testInvalidProcedure() throws IOException {
         ByteBuffer msg = createMsg("hellooooo", 1);
@@ -117,4 +117,137 @@ public class TestClientInterfaceHandleManager {
             assertEquals(31337 + i, inf.m_clientHandle);
         }
     }
+
+    @Test
+    public void testManyOutstandingOutOfOrder() throws Exception
+    {
+        Connection mockConnection = mock(Connection.class);
+        ClientInterfaceHandleManager dut =
+                new ClientInterfaceHandleManager(
+                        false,
+                        mockConnection,
+                        null,
+                        AdmissionControlGroup.getDummy());
+        // Enough to grow the ring several times, retiring every third one early
+        List<Long> handles = new ArrayList<Long>();
+        for (int i = 0; i < 1000; i++) {
+            handles.add(dut.getHandle(true, 3, i, 10, 10l, "foo", 0, false));
+            if (i % 3 == 2) {
+                assertEquals(i - 1, dut.findHandle(handles.get(i - 1)).m_clientHandle);
+            }
+        }
+        assertEquals(1000 - 333, dut.getOutstandingTxns());
+        for (int i = 0; i < 1000; i++) {
+            ClientInterfaceHandleManager.Iv2InFlight inflight = dut.findHandle(handles.get(i));
+            if (i % 3 == 1) {
+                assertTrue(inflight == null);
+            } else {
+                assertEquals(i, inflight.m_clientHandle);
+            }
+        }
+        assertEquals(0, dut.getOutstandingTxns());
+
+        // The sequence keeps going after the partition drains
+        long handle = dut.getHandle(true, 3, 1000, 10, 10l, "foo", 0, false);
+        assertEquals(1000, ClientInterfaceHandleManager.getSeqNumFromHandle(handle));
+        assertEquals(1000, dut.findHandle(handle).m_clientHandle);
+        assertTrue(dut.findHandle(handle) == null);
+    }
+
+    @Test
+    public void testStuckHandleDoesNotGrowRing() throws Exception
+    {
+        Connection mockConnection = mock(Connection.class);
+        ClientInterfaceHandleManager dut =
+                new ClientInterfaceHandleManager(
+                        false,
+                        mockConnection,
+                        null,
+                        AdmissionControlGroup.getDummy());
+        // a long running NT procedure followed by many fast short circuit reads
+        long stuck = dut.getHandle(true, 0, -1, 10, 10l, "slow", 0, true);
+        for (int i = 0; i < 1000000; i++) {
+            long handle = dut.getHandle(true, 0, i, 10, 10l, "fast", 0, true);
+            assertEquals(i, dut.findHandle(handle).m_clientHandle);
+        }
+        assertEquals(1, dut.getOutstandingTxns());
+        assertEquals(-1, dut.findHandle(stuck).m_clientHandle);
+        assertTrue(dut.findHandle(stuck) == null);
+        assertEquals(0, dut.getOutstandingTxns());
+
+        // the tracker itself, with a stuck handle among others that are outstanding
+        ClientInterfaceHandleManager.PartitionInFlightTracker tracker =
+                new ClientInterfaceHandleManager.PartitionInFlightTracker(5);
+        List<ClientInterfaceHandleManager.Iv2InFlight> outstanding =
+                new ArrayList<ClientInterfaceHandleManager.Iv2InFlight>();
+        for (int i = 0; i < 1000000; i++) {
+            ClientInterfaceHandleManager.Iv2InFlight inFlight =
+                    new ClientInterfaceHandleManager.Iv2InFlight(tracker.nextHandle(), i, 10, 10l, "foo", i % 2);
+            tracker.add(inFlight);
+            outstanding.add(inFlight);
+            // keep handle 0 and every ten thousandth one, complete the rest in order a few behind
+            while (outstanding.size() > 8) {
+                ClientInterfaceHandleManager.Iv2InFlight oldest = outstanding.remove(0);
+                if (oldest.m_clientHandle % 10000 != 0) {
+                    assertTrue(tracker.remove(oldest.m_ciHandle) == oldest);
+                }
+            }
+            assertTrue(tracker.capacity() <= 4 * ClientInterfaceHandleManager.PartitionInFlightTracker.INITIAL_CAPACITY);
+        }
+        assertEquals(100 + 8, tracker.size());
+
+        List<ClientInterfaceHandleManager.Iv2InFlight> removed = new ArrayList<ClientInterfaceHandleManager.Iv2InFlight>();
+        tracker.removeIfNotInitiator(1, removed);
+        long last = -1;
+        for (ClientInterfaceHandleManager.Iv2InFlight inFlight : removed) {
+            assertEquals(0, inFlight.m_initiatorHSId);
+            assertTrue(inFlight.m_clientHandle > last);
+            last = inFlight.m_clientHandle;
+        }
+        assertEquals(100 + 4, removed.size());
+        List<ClientInterfaceHandleManager.Iv2InFlight> remaining = new ArrayList<ClientInterfaceHandleManager.Iv2InFlight>();
+        tracker.getAll(remaining);
+        assertEquals(4, remaining.size());
+        assertEquals(4, tracker.size());
+        for (ClientInterfaceHandleManager.Iv2InFlight inFlight : remaining) {
+            assertTrue(tracker.remove(inFlight.m_ciHandle) == inFlight);
+        }
+        assertEquals(0, tracker.size());
+    }
+
+    @Test
+    public void testRemoveHandlesForPartitionAndInitiator() throws Exception
+    {
+        Connection mockConnection = mock(Connection.class);
+        ClientInterfaceHandleManager dut =
+                new ClientInterfaceHandleManager(
+                        false,
+                        mockConnection,
+                        null,
+                        AdmissionControlGroup.getDummy());
+        List<Long> handles = new ArrayList<Long>();
+        for (int i = 0; i < 10; i++) {
+            handles.add(dut.getHandle(true, 5, i, 10, 10l, "foo", i % 2, false));
+        }
+        long other = dut.getHandle(true, 6, 100, 10, 10l, "foo", 1, false);
+
+        List<ClientInterfaceHandleManager.Iv2InFlight> dropped =
+                dut.removeHandlesForPartitionAndInitiator(5, 0L);
+        assertEquals(5, dropped.size());
+        for (int i = 0; i < 5; i++) {
+            // In handle order
+            assertEquals(i * 2 + 1, dropped.get(i).m_clientHandle);
+        }
+        assertEquals(6, dut.getOutstandingTxns());
+        for (int i = 0; i < 10; i++) {
+            ClientInterfaceHandleManager.Iv2InFlight inflight = dut.findHandle(handles.get(i));
+            if (i % 2 == 1) {
+                assertTrue(inflight == null);
+            } else {
+                assertEquals(i, inflight.m_clientHandle);
+            }
+        }
+        assertEquals(100, dut.findHandle(other).m_clientHandle);
+        assertTrue(dut.removeHandlesForPartitionAndInitiator(42, 0L).isEmpty());
+    }
 }
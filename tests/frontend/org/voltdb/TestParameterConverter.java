@@ -587,4 +587,23 @@ public class TestParameterConverter extends TestCase
                     "String is not properly hex-encoded"));
         }
     }
+
+    public void testPassThroughClassesAreUnchanged() throws Exception {
+        Object[][] cases = {
+                { long.class, new Long(VoltType.NULL_BIGINT) },
+                { int.class, new Integer(7) },
+                { short.class, new Short(VoltType.NULL_SMALLINT) },
+                { byte.class, new Byte((byte) 3) },
+                { double.class, new Double(VoltType.NULL_FLOAT) },
+                { byte[].class, new byte[] { 1, 2 } } };
+        for (Object[] c : cases) {
+            Class<?> expected = (Class<?>) c[0];
+            assertEquals(c[1].getClass(), ParameterConverter.passThroughClass(expected));
+            assertSame(c[1], ParameterConverter.tryToMakeCompatible(expected, c[1]));
+        }
+        // values of these are converted, so they can't skip the converter
+        assertNull(ParameterConverter.passThroughClass(Long.class));
+        assertNull(ParameterConverter.passThroughClass(String.class));
+        assertNull(ParameterConverter.passThroughClass(long[].class));
+    }
 }
@@ -0,0 +1,114 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import junit.framework.TestCase;
+
+public class TestProcedureInvoker extends TestCase {
+
+    public static class PrimitiveArgs extends VoltProcedure {
+        public long run(long a, int b, short c, byte d, double e, String f, byte[] g) {
+            return a + b + c + d + (long) e + f.length() + g.length;
+        }
+    }
+
+    public static class NoArgs extends VoltProcedure {
+        int m_calls = 0;
+
+        public VoltTable[] run() {
+            m_calls++;
+            return new VoltTable[0];
+        }
+    }
+
+    public static class VoidReturn extends VoltProcedure {
+        public void run(VoltTable table) {
+        }
+    }
+
+    public static class StaticRun extends VoltProcedure {
+        public static long run(long a) {
+            return a * 2;
+        }
+    }
+
+    public static class Throws extends VoltProcedure {
+        public long run(long a) {
+            throw new VoltAbortException("abort " + a);
+        }
+    }
+
+    public static class NoRun extends VoltProcedure {
+        public long execute(long a) {
+            return a;
+        }
+    }
+
+    static class NotPublic extends VoltProcedure {
+        public long run(long a) {
+            return -a;
+        }
+    }
+
+    public void testInvoke() throws Throwable {
+        ProcedureInvoker invoker = ProcedureInvoker.forClass(PrimitiveArgs.class);
+        assertEquals("run", invoker.getMethod().getName());
+        Object result = invoker.invoke(new PrimitiveArgs(),
+                new Object[] { 1L, 2, (short) 3, (byte) 4, 5.5, "abcdef", new byte[7] });
+        assertEquals(28L, result);
+
+        NoArgs noArgs = new NoArgs();
+        ProcedureInvoker noArgsInvoker = ProcedureInvoker.forClass(NoArgs.class);
+        assertEquals(0, ((VoltTable[]) noArgsInvoker.invoke(noArgs, new Object[0])).length);
+        noArgsInvoker.invoke(noArgs, new Object[0]);
+        assertEquals(2, noArgs.m_calls);
+
+        assertNull(ProcedureInvoker.forClass(VoidReturn.class).invoke(new VoidReturn(), new Object[] { null }));
+        assertEquals(42L, ProcedureInvoker.forClass(StaticRun.class).invoke(new StaticRun(), new Object[] { 21L }));
+        assertEquals(-3L, ProcedureInvoker.forClass(NotPublic.class).invoke(new NotPublic(), new Object[] { 3L }));
+    }
+
+    public void testSharedPerClass() {
+        assertSame(ProcedureInvoker.forClass(PrimitiveArgs.class), ProcedureInvoker.forClass(PrimitiveArgs.class));
+        assertNotSame(ProcedureInvoker.forClass(PrimitiveArgs.class), ProcedureInvoker.forClass(NoArgs.class));
+    }
+
+    public void testExceptionsAreNotWrapped() throws Throwable {
+        try {
+            ProcedureInvoker.forClass(Throws.class).invoke(new Throws(), new Object[] { 9L });
+            fail();
+        } catch (VoltProcedure.VoltAbortException e) {
+            assertEquals("abort 9", e.getMessage());
+        }
+    }
+
+    public void testNoRunMethod() {
+        try {
+            ProcedureInvoker.forClass(NoRun.class);
+            fail();
+        } catch (RuntimeException e) {
+            assertTrue(e.getMessage().contains("No \"run\" method found"));
+        }
+    }
+}
@@ -0,0 +1,310 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb;
+
+import java.lang.reflect.InvocationTargetException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.voltdb.UserDefinedFunctionManager.UserDefinedFunctionRunner;
+import org.voltdb.catalog.Catalog;
+import org.voltdb.catalog.Database;
+import org.voltdb.catalog.Function;
+import org.voltdb.types.GeographyPointValue;
+import org.voltdb.types.GeographyValue;
+import org.voltdb.types.TimestampType;
+import org.voltdb.utils.SerializationHelper;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks the method handles a UDF runner binds against the reflective call it replaced:
+ * same arguments read from the buffer, same result returned and written, same exception.
+ */
+public class TestUserDefinedFunctionRunner extends TestCase {
+
+    public static class Functions {
+        public byte tinyint(byte a, byte b) { return (byte) (a + b); }
+        public short smallint(short a, short b) { return (short) (a + b); }
+        public int integer(int a, int b) { return a + b; }
+        public long bigint(long a, long b) { return a + b; }
+        public double flt(double a, double b) { return a + b; }
+
+        public Byte boxedTinyint(Byte a) { return a; }
+        public Short boxedSmallint(Short a) { return a; }
+        public Integer boxedInteger(Integer a) { return a; }
+        public Long boxedBigint(Long a) { return a; }
+        public Double boxedFlt(Double a) { return a; }
+        public Long nullBigint(long a) { return null; }
+
+        public String string(String a, String b) { return a == null || b == null ? null : a + b; }
+        public byte[] varbinary(byte[] a) { return a; }
+        public Byte[] boxedVarbinary(Byte[] a) { return a; }
+        public TimestampType timestamp(TimestampType a) { return a; }
+        public BigDecimal decimal(BigDecimal a) { return a; }
+        public GeographyPointValue point(GeographyPointValue a) { return a; }
+        public GeographyValue geography(GeographyValue a) { return a; }
+
+        public long noArgs() { return 42; }
+        public String mixed(int a, String b, double c, Long d) { return a + b + c + d; }
+        public int fails(int a) {
+            if (a < 0) {
+                throw new IllegalArgumentException("negative " + a);
+            }
+            return a;
+        }
+    }
+
+    private static final GeographyValue POLYGON =
+            GeographyValue.fromWKT("POLYGON((0 0, 1 0, 1 1, 0 1, 0 0))");
+
+    private Database m_database;
+    private int m_nextFunctionId = 1;
+
+    @Override
+    public void setUp() {
+        Catalog catalog = new Catalog();
+        catalog.execute("add / clusters cluster\nadd /clusters#cluster databases database\n");
+        m_database = catalog.getClusters().get("cluster").getDatabases().get("database");
+    }
+
+    private UserDefinedFunctionRunner bind(String methodName) {
+        final int functionId = m_nextFunctionId++;
+        Function function = m_database.getFunctions().add(methodName + functionId);
+        function.setFunctionname(methodName);
+        function.setFunctionid(functionId);
+        function.setClassname(Functions.class.getName());
+        function.setMethodname(methodName);
+        return new UserDefinedFunctionRunner(function, new Functions());
+    }
+
+    /**
+     * Lay out the arguments the way the EE does: each value serialized without a type byte.
+     */
+    private static ByteBuffer arguments(UserDefinedFunctionRunner runner, Object... args) throws Exception {
+        assertEquals(runner.m_paramCount, args.length);
+        ByteBuffer buffer = ByteBuffer.allocate(1024 * 64);
+        for (int i = 0; i < args.length; i++) {
+            int typePosition = buffer.position();
+            UserDefinedFunctionRunner.writeValueToBuffer(buffer, runner.m_paramTypes[i], args[i]);
+            // drop the type byte
+            ByteBuffer value = buffer.duplicate();
+            value.flip();
+            value.position(typePosition + 1);
+            ByteBuffer copy = ByteBuffer.allocate(value.remaining());
+            copy.put(value);
+            copy.flip();
+            buffer.position(typePosition);
+            buffer.put(copy);
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * The call as it was made before the runner bound method handles.
+     */
+    private static Object reflectiveCall(UserDefinedFunctionRunner runner, ByteBuffer udfBuffer) throws Throwable {
+        Object[] paramsIn = new Object[runner.m_paramCount];
+        for (int i = 0; i < runner.m_paramCount; i++) {
+            paramsIn[i] = UserDefinedFunctionRunner.getValueFromBuffer(udfBuffer, runner.m_paramTypes[i]);
+            if (runner.m_boxUpByteArray[i]) {
+                paramsIn[i] = SerializationHelper.boxUpByteArray((byte[])paramsIn[i]);
+            }
+        }
+        try {
+            return runner.m_functionMethod.invoke(runner.m_functionInstance, paramsIn);
+        }
+        catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static byte[] writtenResult(UserDefinedFunctionRunner runner, Object result) throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocate(1024 * 64);
+        UserDefinedFunctionRunner.writeValueToBuffer(buffer, runner.getReturnType(), result);
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private static void assertSameValue(Object expected, Object actual) {
+        if (expected instanceof byte[]) {
+            assertTrue(Arrays.equals((byte[]) expected, (byte[]) actual));
+        }
+        else if (expected instanceof Byte[]) {
+            assertTrue(Arrays.equals((Byte[]) expected, (Byte[]) actual));
+        }
+        else {
+            assertEquals(expected, actual);
+        }
+    }
+
+    /**
+     * Call the function every way the runner can and compare each with the reflective call.
+     */
+    private Object check(String methodName, Object... args) throws Throwable {
+        UserDefinedFunctionRunner runner = bind(methodName);
+        Object expected = reflectiveCall(runner, arguments(runner, args));
+        Object actual = runner.call(arguments(runner, args));
+        assertSameValue(expected, actual);
+
+        if (runner.hasFixedLengthResult()) {
+            byte[] expectedBytes = writtenResult(runner, expected);
+            ByteBuffer udfBuffer = arguments(runner, args);
+            udfBuffer.limit(udfBuffer.capacity());
+            runner.callAndWriteResult(udfBuffer);
+            assertEquals(expectedBytes.length, udfBuffer.position());
+            assertTrue(Arrays.equals(expectedBytes, Arrays.copyOf(udfBuffer.array(), udfBuffer.position())));
+
+            // Three rows of the same arguments, three copies of the same result
+            ByteBuffer oneRow = arguments(runner, args);
+            ByteBuffer batch = ByteBuffer.allocate(oneRow.remaining() * 3);
+            for (int i = 0; i < 3; i++) {
+                batch.put(oneRow.duplicate());
+            }
+            batch.flip();
+            ByteBuffer results = ByteBuffer.allocate(expectedBytes.length * 3);
+            runner.callBatchAndWriteResults(batch, 3, results);
+            assertFalse(batch.hasRemaining());
+            assertFalse(results.hasRemaining());
+            for (int i = 0; i < 3; i++) {
+                assertTrue(Arrays.equals(expectedBytes,
+                        Arrays.copyOfRange(results.array(), i * expectedBytes.length, (i + 1) * expectedBytes.length)));
+            }
+        }
+        else {
+            assertTrue(runner.getReturnType().isVariableLength());
+        }
+        return actual;
+    }
+
+    public void testPrimitiveTypes() throws Throwable {
+        assertEquals((byte) 3, check("tinyint", (byte) 1, (byte) 2));
+        assertEquals((short) 300, check("smallint", (short) 100, (short) 200));
+        assertEquals(70000, check("integer", 30000, 40000));
+        assertEquals(5000000000L, check("bigint", 2000000000L, 3000000000L));
+        assertEquals(1.5, check("flt", 1.0, 0.5));
+        assertEquals(42L, check("noArgs"));
+    }
+
+    public void testBoxedTypes() throws Throwable {
+        assertEquals((byte) 7, check("boxedTinyint", (byte) 7));
+        assertEquals((short) 7, check("boxedSmallint", (short) 7));
+        assertEquals(7, check("boxedInteger", 7));
+        assertEquals(7L, check("boxedBigint", 7L));
+        assertEquals(7.5, check("boxedFlt", 7.5));
+    }
+
+    public void testVariableAndObjectTypes() throws Throwable {
+        assertEquals("ab", check("string", "a", "b"));
+        assertTrue(Arrays.equals(new byte[] { 1, 2, 3 }, (byte[]) check("varbinary", new byte[] { 1, 2, 3 })));
+        assertTrue(Arrays.equals(new Byte[] { 1, 2, 3 },
+                (Byte[]) check("boxedVarbinary", (Object) new Byte[] { 1, 2, 3 })));
+        assertEquals(new TimestampType(123456789L), check("timestamp", new TimestampType(123456789L)));
+        assertEquals(new BigDecimal("12.345000000000"), check("decimal", new BigDecimal("12.345")));
+        assertEquals(new GeographyPointValue(1, 2), check("point", new GeographyPointValue(1, 2)));
+        assertEquals(POLYGON.toString(), check("geography", POLYGON).toString());
+        assertEquals("1x2.53", check("mixed", 1, "x", 2.5, 3L));
+    }
+
+    public void testNullArguments() throws Throwable {
+        // Fixed-length nulls arrive as their sentinel values, primitive or boxed
+        assertEquals(VoltType.NULL_TINYINT, check("boxedTinyint", VoltType.NULL_TINYINT));
+        assertEquals(VoltType.NULL_SMALLINT, check("boxedSmallint", VoltType.NULL_SMALLINT));
+        assertEquals(VoltType.NULL_INTEGER, check("boxedInteger", VoltType.NULL_INTEGER));
+        assertEquals(VoltType.NULL_BIGINT, check("boxedBigint", VoltType.NULL_BIGINT));
+        assertEquals(VoltType.NULL_FLOAT, check("boxedFlt", VoltType.NULL_FLOAT));
+        assertEquals(VoltType.NULL_INTEGER, check("integer", VoltType.NULL_INTEGER, 0));
+        // The others arrive as null
+        assertNull(check("string", null, "b"));
+        assertNull(check("varbinary", (Object) null));
+        // Used to throw a NullPointerException boxing the missing array
+        assertNull(check("boxedVarbinary", (Object) null));
+        assertNull(check("timestamp", (Object) null));
+        assertNull(check("decimal", (Object) null));
+        assertNull(check("point", (Object) null));
+        assertNull(check("geography", (Object) null));
+        assertEquals("-2147483648null-1.7E308-9223372036854775808",
+                check("mixed", VoltType.NULL_INTEGER, null, VoltType.NULL_FLOAT, VoltType.NULL_BIGINT));
+    }
+
+    public void testNullResult() throws Throwable {
+        // A null from a fixed-length function is written as the type's null value
+        assertNull(check("nullBigint", 1L));
+        UserDefinedFunctionRunner runner = bind("nullBigint");
+        ByteBuffer udfBuffer = arguments(runner, 1L);
+        udfBuffer.limit(udfBuffer.capacity());
+        runner.callAndWriteResult(udfBuffer);
+        udfBuffer.flip();
+        assertEquals(VoltType.BIGINT.getValue(), udfBuffer.get());
+        assertEquals(VoltType.NULL_BIGINT, udfBuffer.getLong());
+    }
+
+    public void testExceptionFromFunction() throws Throwable {
+        assertEquals(5, check("fails", 5));
+        UserDefinedFunctionRunner runner = bind("fails");
+
+        Throwable expected = null;
+        try {
+            reflectiveCall(runner, arguments(runner, -1));
+        }
+        catch (Throwable t) {
+            expected = t;
+        }
+        assertNotNull(expected);
+
+        // Whatever the function throws arrives unwrapped, from every entry point
+        try {
+            runner.call(arguments(runner, -1));
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals(expected.getMessage(), e.getMessage());
+        }
+        try {
+            ByteBuffer udfBuffer = arguments(runner, -1);
+            udfBuffer.limit(udfBuffer.capacity());
+            runner.callAndWriteResult(udfBuffer);
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals(expected.getMessage(), e.getMessage());
+        }
+
+        // A batch stops at the failing row, the rows before it have their results
+        ByteBuffer batch = ByteBuffer.allocate(12);
+        batch.putInt(1).putInt(-2).putInt(3);
+        batch.flip();
+        ByteBuffer results = ByteBuffer.allocate(15);
+        try {
+            runner.callBatchAndWriteResults(batch, 3, results);
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("negative -2", e.getMessage());
+        }
+        assertEquals(5, results.position());
+        assertEquals(1, results.getInt(1));
+    }
+}
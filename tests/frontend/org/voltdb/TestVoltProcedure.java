@@ -54,9 +54,15 @@ import static org.mockito.Mockito.doReturn;
 import static org.mockito.Mockito.mock;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.HdrHistogram_voltpatches.AbstractHistogram;
+import org.voltcore.utils.CompressionStrategySnappy;
 import org.voltcore.utils.CoreUtils;
+import org.voltdb.StatementStats.SingleCallStatsToken;
 import org.voltdb.VoltTable.ColumnInfo;
 import org.voltdb.client.ClientResponse;
 import org.voltdb.types.TimestampType;
@@ -467,6 +473,166 @@ public class TestVoltProcedure extends TestCase {
         assertFalse(statsRow[0][9].equals(0));
         assertFalse(statsRow[0][10].equals(0));
         assertTrue(((Long)statsRow[0][10]) > 0L);
+        // every sampled call is in the latency histogram too
+        Object histogramRow[][] = agent.m_histogramSource.getStatsRows(false, 0L);
+        assertEquals(1, histogramRow.length);
+        assertEquals(statsRow[0][8], histogramRow[0][7]);
+    }
+
+    private static Object[] statsRowFor(Object[][] rows, String stmtName) {
+        for (Object[] row : rows) {
+            if (stmtName.equals(row[6])) {
+                return row;
+            }
+        }
+        return null;
+    }
+
+    private static void callForStats(ProcedureStatsCollector collector, long stmtDuration) {
+        SingleCallStatsToken token = collector.beginProcedure();
+        token.recordStatementStats("stmt", false, false, stmtDuration, null, null);
+        collector.endProcedure(false, false, token);
+    }
+
+    public void testProcedureStatsIntervals() throws Exception {
+        ProcedureStatsCollector collector = new ProcedureStatsCollector(executionSiteId, 0, "StatsProc", true,
+                new ArrayList<String>(Arrays.asList("stmt")), true);
+        collector.setProcSamplingInterval(1);
+        collector.setStmtSamplingInterval(1);
+
+        // the same token is handed out for every call of a transactional procedure
+        assertSame(collector.beginProcedure(), collector.beginProcedure());
+
+        for (int i = 0; i < 10; i++) {
+            callForStats(collector, 100 + i);
+        }
+        Object[] row = statsRowFor(collector.getStatsRows(true, 0L), "stmt");
+        assertEquals(10L, row[7]);
+        assertEquals(100L, row[9]);
+        assertEquals(109L, row[10]);
+
+        for (int i = 0; i < 5; i++) {
+            callForStats(collector, 50 + i);
+        }
+        row = statsRowFor(collector.getStatsRows(true, 0L), "stmt");
+        assertEquals(5L, row[7]);
+        assertEquals(50L, row[9]);
+        assertEquals(54L, row[10]);
+        // nothing new since the last interval
+        assertNull(statsRowFor(collector.getStatsRows(true, 0L), "stmt"));
+        // and the totals are unaffected
+        row = statsRowFor(collector.getStatsRows(false, 0L), "stmt");
+        assertEquals(15L, row[7]);
+        assertEquals(50L, row[9]);
+        assertEquals(109L, row[10]);
+
+        // reading while the site thread records loses nothing
+        final ProcedureStatsCollector racingCollector = new ProcedureStatsCollector(executionSiteId, 0, "StatsProc",
+                true, new ArrayList<String>(Arrays.asList("stmt")), true);
+        racingCollector.setProcSamplingInterval(1);
+        racingCollector.setStmtSamplingInterval(1);
+        final int calls = 200000;
+        final AtomicBoolean done = new AtomicBoolean(false);
+        Thread site = new Thread() {
+            @Override
+            public void run() {
+                for (int i = 0; i < calls; i++) {
+                    callForStats(racingCollector, 10);
+                }
+                done.set(true);
+            }
+        };
+        site.start();
+        long invocations = 0;
+        boolean finished;
+        do {
+            finished = done.get();
+            Object[][] rows = racingCollector.getStatsRows(true, 0L);
+            Object[] stmtRow = statsRowFor(rows, "stmt");
+            Object[] procRow = statsRowFor(rows, "<ALL>");
+            if (stmtRow != null) {
+                // the statement and the procedure are always recorded together
+                assertEquals(procRow[7], stmtRow[7]);
+                assertEquals(10L, stmtRow[9]);
+                assertEquals(10L, stmtRow[10]);
+                invocations += (Long) stmtRow[7];
+            }
+            else {
+                assertNull(procRow);
+            }
+        } while (!finished);
+        site.join();
+        assertEquals(calls, invocations);
+        row = statsRowFor(racingCollector.getStatsRows(false, 0L), "<ALL>");
+        assertEquals((long) calls, row[7]);
+    }
+
+    private static void assertWithinPercent(long expected, Object actual) {
+        assertTrue(actual + " is not within 1% of " + expected, Math.abs((Long) actual - expected) <= expected / 100);
+    }
+
+    public void testProcedureHistogramStats() throws Exception {
+        VoltTable stats = null;
+        for (int partition = 0; partition < 2; partition++) {
+            ProcedureStatsCollector collector = new ProcedureStatsCollector(executionSiteId, partition, "StatsProc",
+                    true, new ArrayList<String>(Arrays.asList("stmt")), true);
+            collector.setProcSamplingInterval(1);
+            collector.setStmtSamplingInterval(1);
+            ProcedureHistogramStats histogramStats = new ProcedureHistogramStats(executionSiteId, collector);
+            assertEquals(0, histogramStats.getStatsRows(false, 0L).length);
+            if (stats == null) {
+                ArrayList<ColumnInfo> columns = histogramStats.getColumnSchema();
+                stats = new VoltTable(columns.toArray(new ColumnInfo[columns.size()]));
+            }
+
+            // 1ms to 100ms on the first partition, 101ms to 200ms on the second
+            for (int i = 1; i <= 100; i++) {
+                callForStats(collector, (partition * 100 + i) * 1000000L);
+            }
+            Object[][] totalRows = histogramStats.getStatsRows(false, 0L);
+            assertEquals(2, totalRows.length);
+            for (Object[] siteRow : totalRows) {
+                assertEquals(100L, siteRow[stats.getColumnIndex("COUNT")]);
+                stats.addRow(siteRow);
+            }
+            Object[] row = statsRowFor(histogramStats.getStatsRows(true, 0L), "stmt");
+            assertEquals(100L, row[stats.getColumnIndex("COUNT")]);
+            assertWithinPercent((partition * 100 + 50) * 1000L, row[stats.getColumnIndex("P50")]);
+            assertWithinPercent((partition * 100 + 100) * 1000L, row[stats.getColumnIndex("MAX")]);
+            // nothing new since the last interval
+            assertEquals(0, histogramStats.getStatsRows(true, 0L).length);
+
+            // interval reads don't take anything away from the totals
+            for (int i = 0; i < 10; i++) {
+                callForStats(collector, 500 * 1000000L);
+            }
+            row = statsRowFor(histogramStats.getStatsRows(true, 0L), "stmt");
+            assertEquals(10L, row[stats.getColumnIndex("COUNT")]);
+            assertWithinPercent(500 * 1000L, row[stats.getColumnIndex("P50")]);
+            totalRows = histogramStats.getStatsRows(false, 0L);
+            assertEquals(2, totalRows.length);
+            assertEquals(110L, statsRowFor(totalRows, "<ALL>")[stats.getColumnIndex("COUNT")]);
+            assertEquals(110L, statsRowFor(totalRows, "stmt")[stats.getColumnIndex("COUNT")]);
+            assertWithinPercent(500 * 1000L, statsRowFor(totalRows, "stmt")[stats.getColumnIndex("MAX")]);
+        }
+
+        VoltTable merged = ProcedureHistogramStats.aggregate(new VoltTable[] { stats })[0];
+        assertEquals(2, merged.getRowCount());
+        merged.advanceRow();
+        assertEquals("StatsProc", merged.getString("PROCEDURE"));
+        assertEquals("<ALL>", merged.getString("STATEMENT"));
+        assertEquals(200L, merged.getLong("COUNT"));
+        merged.advanceRow();
+        assertEquals("stmt", merged.getString("STATEMENT"));
+        assertEquals(200L, merged.getLong("COUNT"));
+        assertWithinPercent(100000L, merged.getLong("P50"));
+        assertWithinPercent(198000L, merged.getLong("P99"));
+        assertWithinPercent(200000L, merged.getLong("MAX"));
+        // the merged histogram can be merged again by clients
+        AbstractHistogram histogram = AbstractHistogram.fromCompressedBytes(merged.getVarbinary("HISTOGRAM"),
+                CompressionStrategySnappy.INSTANCE);
+        assertEquals(200L, histogram.getTotalCount());
+        assertEquals(merged.getLong("P99"), histogram.getValueAtPercentile(99D));
     }
 
     public void testGetClusterId() {
@@ -503,11 +669,16 @@ public class TestVoltProcedure extends TestCase {
 
     private class MockStatsAgent extends StatsAgent {
         public StatsSource m_source = null;
+        public StatsSource m_histogramSource = null;
         public StatsSelector m_selector = null;
         public long m_catalogId = 0;
 
         @Override
         public void registerStatsSource(StatsSelector selector, long catalogId, StatsSource source) {
+            if (selector == StatsSelector.PROCEDUREHISTOGRAM) {
+                m_histogramSource = source;
+                return;
+            }
             m_source = source;
             m_selector = selector;
             m_catalogId = catalogId;
@@ -34,6 +34,7 @@ import junit.framework.TestCase;
 import org.json_voltpatches.JSONException;
 import org.voltdb.TableHelper.RandomTable;
 import org.voltdb.VoltTable.ColumnInfo;
+import org.voltdb.client.ClientResponse;
 import org.voltdb.types.GeographyPointValue;
 import org.voltdb.types.GeographyValue;
 import org.voltdb.types.TimestampType;
@@ -1455,4 +1456,196 @@ public class TestVoltTable extends TestCase {
                 .forEach(s -> System.out.println(s));
         }
     }
+
+    private static ByteBuffer flattenResponse(VoltTable... tables) {
+        ClientResponseImpl response = new ClientResponseImpl(ClientResponse.SUCCESS, tables, null, 42);
+        ByteBuffer buf = ByteBuffer.allocate(response.getSerializedSize());
+        response.flattenToBuffer(buf);
+        buf.flip();
+        return buf;
+    }
+
+    public void testTransientResponseRecyclesTables() throws IOException {
+        VoltTable big = new VoltTable(new ColumnInfo("A", VoltType.BIGINT), new ColumnInfo("B", VoltType.STRING));
+        for (int i = 0; i < 1000; i++) {
+            big.addRow(i, "row " + i);
+        }
+        ClientResponseImpl response = new ClientResponseImpl();
+
+        response.initTransientFromBuffer(flattenResponse(LONG_FIVE, big));
+        VoltTable[] results = response.getResults();
+        assertEquals(42, response.getClientHandle());
+        assertEquals(2, results.length);
+        assertEquals(LONG_FIVE, results[0]);
+        assertEquals(big, results[1]);
+        assertEquals(5L, results[0].asScalarLong());
+        final VoltTable first = results[0];
+
+        try {
+            results[0].addRow(6L);
+            fail("Transient tables should be read-only");
+        } catch (IllegalStateException expected) {}
+
+        // A result of a different shape reuses the same table and buffer
+        VoltTable strings = new VoltTable(new ColumnInfo("S", VoltType.STRING));
+        strings.addRow("hello");
+        ByteBuffer buf = flattenResponse(strings);
+        response.initTransientFromBuffer(buf);
+        assertEquals(1, response.getResults().length);
+        assertSame(first, response.getResults()[0]);
+        assertEquals(strings, response.getResults()[0]);
+        // The tables don't refer to the message buffer
+        buf.clear();
+        buf.put(new byte[buf.capacity()]);
+        assertEquals("hello", response.getResults()[0].fetchRow(0).getString(0));
+
+        // Back to the first shape, including the arrays of results
+        response.initTransientFromBuffer(flattenResponse(LONG_FIVE, big));
+        assertSame(results, response.getResults());
+        assertSame(first, results[0]);
+        assertEquals(LONG_FIVE, results[0]);
+        assertEquals(big, results[1]);
+        assertEquals(VoltType.BIGINT, results[0].getColumnType(0));
+        assertEquals(VoltType.STRING, results[1].getColumnType(1));
+        assertTrue(results[1].advanceRow());
+        assertTrue(results[1].advanceToRow(999));
+        assertEquals("row 999", results[1].getString(1));
+    }
+
+    public void testRowBuilderMatchesAddRow() {
+        ColumnInfo[] columns = {
+                new ColumnInfo("tiny", VoltType.TINYINT),
+                new ColumnInfo("small", VoltType.SMALLINT),
+                new ColumnInfo("int", VoltType.INTEGER),
+                new ColumnInfo("big", VoltType.BIGINT),
+                new ColumnInfo("float", VoltType.FLOAT),
+                new ColumnInfo("ts", VoltType.TIMESTAMP),
+                new ColumnInfo("str", VoltType.STRING),
+                new ColumnInfo("bin", VoltType.VARBINARY),
+                new ColumnInfo("dec", VoltType.DECIMAL),
+                new ColumnInfo("pt", VoltType.GEOGRAPHY_POINT),
+                new ColumnInfo("geog", VoltType.GEOGRAPHY) };
+        VoltTable added = new VoltTable(columns);
+        VoltTable built = new VoltTable(columns);
+        VoltTable.RowBuilder builder = built.rowBuilder();
+
+        // multi-byte characters, a surrogate pair and an unpaired surrogate
+        String[] strings = { "ascii", "caf\u00e9 \u20ac", "\ud83d\ude00 smile", "bad \ud800 pair", "" };
+        BigDecimal decimal = new BigDecimal("-123.456789012345");
+        TimestampType ts = new TimestampType(1234567890123L);
+
+        for (int i = 0; i < 1000; i++) {
+            String str = strings[i % strings.length];
+            added.addRow(i % 100, i, i * 1000, i * 1000000000L, i / 3.0, ts, str,
+                    new byte[] { (byte) i }, decimal, GEOG_PT_VALUE, GEOG_VALUE);
+            builder.putLong(i % 100).putLong(i).putLong(i * 1000).putLong(i * 1000000000L)
+                    .putDouble(i / 3.0).putTimestamp(ts).putString(str).putVarbinary(new byte[] { (byte) i })
+                    .putDecimal(decimal).putGeographyPoint(GEOG_PT_VALUE).putGeography(GEOG_VALUE)
+                    .endRow();
+
+            added.addRow(null, null, null, null, null, null, null, null, null, null, null);
+            for (int col = 0; col < columns.length; col++) {
+                builder.putNull();
+            }
+            builder.endRow();
+        }
+
+        assertEquals(added.getRowCount(), built.getRowCount());
+        assertTrue(added.hasSameContents(built));
+        assertEquals(added, roundTrip(built));
+        assertTrue(built.fetchRow(2).getString(6).equals(strings[1]));
+    }
+
+    public void testRowBuilderNullSentinels() {
+        ColumnInfo[] columns = {
+                new ColumnInfo("tiny", VoltType.TINYINT),
+                new ColumnInfo("small", VoltType.SMALLINT),
+                new ColumnInfo("int", VoltType.INTEGER),
+                new ColumnInfo("big", VoltType.BIGINT),
+                new ColumnInfo("float", VoltType.FLOAT),
+                new ColumnInfo("ts", VoltType.TIMESTAMP),
+                new ColumnInfo("float2", VoltType.FLOAT) };
+        VoltTable added = new VoltTable(columns);
+        VoltTable built = new VoltTable(columns);
+
+        // addRow stores these sentinels as NULL, so the builder must too
+        added.addRow(Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE, Long.MIN_VALUE,
+                VoltType.NULL_FLOAT, Long.MIN_VALUE, Long.MIN_VALUE);
+        built.rowBuilder().putLong(Long.MIN_VALUE).putLong(Long.MIN_VALUE).putLong(Long.MIN_VALUE)
+                .putLong(Long.MIN_VALUE).putDouble(VoltType.NULL_FLOAT).putLong(Long.MIN_VALUE)
+                .putLong(Long.MIN_VALUE).endRow();
+
+        assertTrue(added.hasSameContents(built));
+        VoltTableRow row = roundTrip(built).fetchRow(0);
+        for (int col = 0; col < columns.length; col++) {
+            row.get(col, columns[col].type);
+            assertTrue(columns[col].name, row.wasNull());
+        }
+
+        // the smaller types' own sentinels are still out of range, as for addRow
+        try {
+            built.rowBuilder().putLong(VoltType.NULL_TINYINT);
+            fail();
+        } catch (VoltTypeException e) {
+            assertTrue(e.getMessage().contains("overflow"));
+        }
+        try {
+            added.addRow((long) VoltType.NULL_TINYINT, 0, 0, 0, 0.0, 0, 0.0);
+            fail();
+        } catch (VoltTypeException e) {
+            assertTrue(e.getMessage().contains("overflow"));
+        }
+    }
+
+    public void testRowBuilderDiscardsFailedRow() {
+        VoltTable table = new VoltTable(new ColumnInfo("a", VoltType.TINYINT), new ColumnInfo("b", VoltType.STRING));
+        VoltTable.RowBuilder builder = table.rowBuilder();
+        builder.putLong(1).putString("one").endRow();
+        final int size = table.getSerializedSize();
+
+        try {
+            builder.putLong(1000);
+            fail();
+        } catch (VoltTypeException e) {
+            assertTrue(e.getMessage().contains("overflow"));
+        }
+        try {
+            builder.putLong(2).putDouble(2.0);
+            fail();
+        } catch (VoltTypeException e) {
+            assertTrue(e.getMessage().contains("double"));
+        }
+        try {
+            builder.putLong(3).endRow();
+            fail();
+        } catch (IllegalStateException e) {
+        }
+        try {
+            builder.putLong(4).putString("four").putLong(4);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+
+        // none of the failed rows left anything behind
+        assertEquals(1, table.getRowCount());
+        assertEquals(size, table.getSerializedSize());
+        builder.putLong(5).putNull().endRow();
+        assertEquals(2, table.getRowCount());
+        assertEquals(5, roundTrip(table).fetchRow(1).getLong(0));
+    }
+
+    public void testEnsureRowCapacity() {
+        VoltTable table = new VoltTable(new ColumnInfo("a", VoltType.BIGINT));
+        table.ensureRowCapacity(100000, 8);
+        final int capacity = table.getBuffer().capacity();
+        assertTrue(capacity >= 100000 * 12);
+
+        VoltTable.RowBuilder builder = table.rowBuilder();
+        for (long i = 0; i < 100000; i++) {
+            builder.putLong(i).endRow();
+        }
+        // pre-sized, so the buffer was never replaced
+        assertEquals(capacity, table.getBuffer().capacity());
+        assertEquals(99999, table.fetchRow(99999).getLong(0));
+    }
 }
@@ -357,6 +357,12 @@ public class MockVoltClient implements Client {
         return null;
     }
 
+    @Override
+    public boolean callProcedureBatch(ProcedureCallBatch batch) throws IOException, NoConnectionsException {
+        // TODO Auto-generated method stub
+        return false;
+    }
+
     @Override
     public boolean callAllPartitionProcedure(AllPartitionProcedureCallback callback, String procedureName,
             Object... params)  throws IOException, NoConnectionsException, ProcCallException {
@@ -0,0 +1,138 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TestAdaptiveRateLimiter extends TestCase {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private long m_now = 0;
+
+    /*
+     * Keep the limiter saturated for a number of windows, answering everything sent
+     * in a window at its end with the given round trip.
+     */
+    private void runWindows(AdaptiveRateLimiter limiter, int windows, long rttNanos) throws Exception {
+        for (int w = 0; w < windows; w++) {
+            int sent = 0;
+            while (limiter.getOutstanding() < limiter.getLimits()[1]) {
+                limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(m_now, 0, false);
+                sent++;
+            }
+            m_now += 20 * MS;
+            for (int i = 0; i < sent; i++) {
+                limiter.transactionResponseReceived(m_now, 1, rttNanos, false);
+            }
+        }
+    }
+
+    @Test
+    public void testGrowsToCeilingWhileRoundTripIsSteady() throws Exception {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(m_now);
+        limiter.setLimits(Integer.MAX_VALUE, 500);
+        assertEquals(AdaptiveRateLimiter.INITIAL_LIMIT, limiter.getLimits()[1]);
+        assertEquals(Integer.MAX_VALUE, limiter.getLimits()[0]);
+
+        runWindows(limiter, 20, 2 * MS);
+        final int grown = limiter.getLimits()[1];
+        assertTrue(grown > AdaptiveRateLimiter.INITIAL_LIMIT);
+
+        runWindows(limiter, 1000, 2 * MS);
+        assertEquals(500, limiter.getLimits()[1]);
+        assertEquals(0, limiter.getOutstanding());
+    }
+
+    @Test
+    public void testShrinksAsRoundTripInflates() throws Exception {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(m_now);
+        limiter.setLimits(Integer.MAX_VALUE, 10000);
+        runWindows(limiter, 100, 2 * MS);
+        final int before = limiter.getLimits()[1];
+
+        runWindows(limiter, 10, 8 * MS);
+        assertTrue(limiter.getLimits()[1] < before);
+    }
+
+    @Test
+    public void testTimeoutsBackOff() throws Exception {
+        AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(m_now);
+        limiter.setLimits(Integer.MAX_VALUE, 10000);
+        runWindows(limiter, 100, 2 * MS);
+        int limit = limiter.getLimits()[1];
+
+        for (int i = 0; i < 5; i++) {
+            limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(m_now, 0, false);
+            m_now += 20 * MS;
+            limiter.transactionTimedOut(m_now, false);
+            final int backedOff = limiter.getLimits()[1];
+            assertTrue(backedOff < limit);
+            limit = backedOff;
+        }
+    }
+
+    @Test
+    public void testBlocksForPermit() throws Exception {
+        final AdaptiveRateLimiter limiter = new AdaptiveRateLimiter(m_now);
+        limiter.setLimits(Integer.MAX_VALUE, 2);
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 0, false);
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 0, false);
+        // Never blocks callers that ignore backpressure
+        limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 0, true);
+        assertEquals(2, limiter.getOutstanding());
+
+        try {
+            limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 10 * MS, false);
+            fail();
+        } catch (TimeoutException expected) {}
+
+        final CountDownLatch sent = new CountDownLatch(1);
+        Thread sender = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    limiter.sendTxnWithOptionalBlockAndReturnCurrentTime(System.nanoTime(), 60000 * MS, false);
+                    sent.countDown();
+                } catch (TimeoutException e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        sender.start();
+        assertFalse(sent.await(50, TimeUnit.MILLISECONDS));
+        limiter.transactionResponseReceived(System.nanoTime(), 1, MS, true);
+        assertFalse(sent.await(50, TimeUnit.MILLISECONDS));
+        limiter.transactionResponseReceived(System.nanoTime(), 1, MS, false);
+        assertTrue(sent.await(10, TimeUnit.SECONDS));
+        sender.join();
+        assertEquals(2, limiter.getOutstanding());
+    }
+}
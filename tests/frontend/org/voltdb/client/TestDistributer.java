@@ -68,6 +68,23 @@ public class TestDistributer extends TestCase {
 
         @Override
         public void handleMessage(ByteBuffer message, Connection c) {
+            if (message.get(0) == ProcedureInvocationType.BATCH.getValue()) {
+                message.get();
+                batches.incrementAndGet();
+                for (int count = message.getInt(); count > 0; count--) {
+                    final int end = message.position() + 4 + message.getInt(message.position());
+                    message.getInt();
+                    message.limit(end);
+                    handleInvocation(message.slice(), c);
+                    message.limit(message.capacity());
+                    message.position(end);
+                }
+            } else {
+                handleInvocation(message, c);
+            }
+        }
+
+        private void handleInvocation(ByteBuffer message, Connection c) {
             try {
                 StoredProcedureInvocation spi = new StoredProcedureInvocation();
                 spi.initFromBuffer(message);
@@ -140,6 +157,7 @@ public class TestDistributer extends TestCase {
 
         }
         AtomicInteger roundTrips = new AtomicInteger();
+        AtomicInteger batches = new AtomicInteger();
 
         @Override
         public Runnable offBackPressure() {
@@ -599,6 +617,126 @@ public class TestDistributer extends TestCase {
     }
 
 
+    @Test
+    public void testQueueBatch() throws Exception {
+        // TODO: write a mock server that can grock ssl
+        if (ClientConfig.ENABLE_SSL_FOR_TEST) return;
+
+        MockVolt volt0 = null, volt1 = null;
+        try {
+            volt0 = new MockVolt(20000);
+            volt0.start();
+            volt1 = new MockVolt(20001);
+            volt1.start();
+
+            Distributer dist = new Distributer(false,
+                    ClientConfig.DEFAULT_PROCEDURE_TIMOUT_NANOS,
+                    ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                    false, false, null /* subject */, null);
+            dist.createConnection("localhost", "", "", 20000, ClientAuthScheme.HASH_SHA1);
+            dist.createConnection("localhost", "", "", 20001, ClientAuthScheme.HASH_SHA1);
+
+            final AtomicInteger responses = new AtomicInteger();
+            ProcedureCallback counting = new ProcedureCallback() {
+                @Override
+                public void clientCallback(ClientResponse clientResponse) {
+                    assertEquals(ClientResponse.SUCCESS, clientResponse.getStatus());
+                    responses.incrementAndGet();
+                }
+            };
+
+            int handle = 0;
+            List<ProcedureInvocation> invocations = new ArrayList<>();
+            List<ProcedureCallback> callbacks = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                invocations.add(new ProcedureInvocation(++handle, i % 2 == 0 ? "i1" : "i2", new Integer(i)));
+                callbacks.add(counting);
+            }
+            assertTrue(dist.queueBatch(invocations, callbacks, true, System.nanoTime(), 0));
+            dist.drain();
+
+            // The whole batch goes to one connection in one message
+            assertEquals(10, responses.get());
+            assertEquals(1, volt0.handler.batches.get() + volt1.handler.batches.get());
+            assertEquals(10, volt0.handler.roundTrips.get() + volt1.handler.roundTrips.get());
+            dist.shutdown();
+        }
+        finally {
+            if (volt0 != null) {
+                volt0.shutdown();
+            }
+            if (volt1 != null) {
+                volt1.shutdown();
+            }
+        }
+    }
+
+    /**
+     * Transient callbacks are handed the same recycled response each time, while responses
+     * for ordinary callbacks stay valid after the message buffer they were read into is reused.
+     */
+    @Test
+    public void testTransientResponses() throws Exception {
+        // TODO: write a mock server that can grock ssl
+        if (ClientConfig.ENABLE_SSL_FOR_TEST) return;
+
+        final List<ClientResponse> transientResponses = new ArrayList<>();
+        final List<ClientResponse> keptResponses = new ArrayList<>();
+        final AtomicInteger transientSum = new AtomicInteger();
+        class TransientCallback implements TransientProcedureCallback {
+            @Override
+            public void clientCallback(ClientResponse clientResponse) {
+                transientResponses.add(clientResponse);
+                transientSum.addAndGet((int)clientResponse.getResults()[0].asScalarLong());
+            }
+        }
+        class KeepingCallback implements ProcedureCallback {
+            @Override
+            public void clientCallback(ClientResponse clientResponse) {
+                keptResponses.add(clientResponse);
+            }
+        }
+
+        MockVolt volt = null;
+        try {
+            volt = new MockVolt(20000);
+            volt.start();
+
+            Distributer dist = new Distributer(false,
+                    ClientConfig.DEFAULT_PROCEDURE_TIMOUT_NANOS,
+                    ClientConfig.DEFAULT_CONNECTION_TIMOUT_MS,
+                    false, false, null /* subject */, null);
+            dist.setReuseResponseBuffers(true);
+            dist.createConnection("localhost", "", "", 20000, ClientAuthScheme.HASH_SHA1);
+
+            int handle = 0;
+            for (int i = 0; i < 10; i++) {
+                dist.queue(new ProcedureInvocation(++handle, "i1", new Integer(1)),
+                        i % 2 == 0 ? new TransientCallback() : new KeepingCallback(),
+                        true, System.nanoTime(), 0);
+                dist.drain();
+            }
+
+            assertEquals(5, transientResponses.size());
+            assertEquals(5, transientSum.get());
+            for (ClientResponse r : transientResponses) {
+                assertSame(transientResponses.get(0), r);
+            }
+            assertEquals(5, keptResponses.size());
+            for (ClientResponse r : keptResponses) {
+                assertNotSame(transientResponses.get(0), r);
+                assertEquals(ClientResponse.SUCCESS, r.getStatus());
+                assertEquals(1, r.getResults()[0].asScalarLong());
+            }
+            dist.shutdown();
+        }
+        finally {
+            if (volt != null) {
+                volt.shutdown();
+            }
+        }
+    }
+
     /**
      * Test connection timeouts.
      * Create a fake voltdb that runs all happy for a while, but
@@ -0,0 +1,163 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import junit.framework.TestCase;
+
+public class TestTimeoutWheel extends TestCase {
+
+    private static final long TICK = TimeUnit.MILLISECONDS.toNanos(1);
+
+    static class RecordingTimeout extends TimeoutWheel.Timeout {
+        final long m_deadline;
+        int m_expirations = 0;
+        long m_expiredAt = -1;
+        long m_lag = -1;
+
+        RecordingTimeout(long deadline) {
+            m_deadline = deadline;
+        }
+
+        @Override
+        void expire(long nowNanos, long lagNanos) {
+            m_expirations++;
+            m_expiredAt = nowNanos;
+            m_lag = lagNanos;
+        }
+    }
+
+    @Test
+    public void testExpiresAtDeadlineNotBefore() {
+        TimeoutWheel wheel = new TimeoutWheel(TICK, 0);
+        RecordingTimeout t = new RecordingTimeout(10 * TICK + 1);
+        wheel.schedule(t, t.m_deadline);
+
+        wheel.advance(10 * TICK);
+        assertEquals(0, t.m_expirations);
+
+        wheel.advance(11 * TICK);
+        assertEquals(1, t.m_expirations);
+        assertEquals(TICK - 1, t.m_lag);
+
+        wheel.advance(100 * TICK);
+        assertEquals(1, t.m_expirations);
+    }
+
+    @Test
+    public void testPastDeadlineExpiresOnNextAdvance() {
+        TimeoutWheel wheel = new TimeoutWheel(TICK, 0);
+        wheel.advance(50 * TICK);
+        RecordingTimeout t = new RecordingTimeout(20 * TICK);
+        wheel.schedule(t, t.m_deadline);
+        wheel.advance(50 * TICK);
+        assertEquals(1, t.m_expirations);
+        assertEquals(30 * TICK, t.m_lag);
+    }
+
+    @Test
+    public void testCancel() {
+        TimeoutWheel wheel = new TimeoutWheel(TICK, 0);
+        RecordingTimeout placed = new RecordingTimeout(5 * TICK);
+        RecordingTimeout unplaced = new RecordingTimeout(5 * TICK);
+        RecordingTimeout expired = new RecordingTimeout(2 * TICK);
+
+        wheel.schedule(placed, placed.m_deadline);
+        wheel.schedule(expired, expired.m_deadline);
+        wheel.advance(TICK);
+        wheel.cancel(placed);
+
+        // Cancelled before the wheel has seen the schedule
+        wheel.schedule(unplaced, unplaced.m_deadline);
+        wheel.cancel(unplaced);
+
+        wheel.advance(3 * TICK);
+        assertEquals(1, expired.m_expirations);
+        // Cancelling after expiration is harmless
+        wheel.cancel(expired);
+
+        wheel.advance(1000 * TICK);
+        assertEquals(0, placed.m_expirations);
+        assertEquals(0, unplaced.m_expirations);
+        assertEquals(1, expired.m_expirations);
+    }
+
+    /*
+     * Deadlines spread across every level of the wheel and beyond its range, with the clock
+     * advancing in uneven steps. Everything not cancelled must expire exactly once, never
+     * early, and no later than the advance after its deadline passed.
+     */
+    @Test
+    public void testRandomDeadlinesAcrossLevels() {
+        final long start = 123456789L;
+        TimeoutWheel wheel = new TimeoutWheel(TICK, start);
+        Random r = new Random(0);
+        List<RecordingTimeout> timeouts = new ArrayList<>();
+        List<RecordingTimeout> cancelled = new ArrayList<>();
+
+        long now = start;
+        for (int step = 0; step < 20000; step++) {
+            now += r.nextInt(3 * (int)TICK);
+            for (int i = r.nextInt(4); i > 0; i--) {
+                final long range = TICK << r.nextInt(28);
+                RecordingTimeout t = new RecordingTimeout(now + (long)(r.nextDouble() * range));
+                wheel.schedule(t, t.m_deadline);
+                if (r.nextInt(4) == 0) {
+                    wheel.cancel(t);
+                    cancelled.add(t);
+                } else {
+                    timeouts.add(t);
+                }
+            }
+            wheel.advance(now);
+        }
+        final long steadyEnd = now;
+
+        // Run far enough for everything to come due
+        final long end = now + (TICK << 28);
+        while (now < end) {
+            now += TICK << 20;
+            wheel.advance(now);
+        }
+
+        for (RecordingTimeout t : timeouts) {
+            assertEquals(1, t.m_expirations);
+            assertTrue(t.m_expiredAt >= t.m_deadline);
+            assertEquals(t.m_expiredAt - t.m_deadline, t.m_lag);
+            if (t.m_expiredAt <= steadyEnd) {
+                // At most one step of the clock plus one tick of rounding late
+                assertTrue(t.m_lag < 4 * TICK);
+            }
+        }
+        for (RecordingTimeout t : cancelled) {
+            assertEquals(0, t.m_expirations);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.compiler;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.voltdb.ParameterSet;
+import org.voltdb.VoltType;
+import org.voltdb.common.Constants;
+import org.voltdb.planner.BoundPlan;
+import org.voltdb.planner.CorePlan;
+
+import junit.framework.TestCase;
+
+public class TestAdHocCompilerCache extends TestCase {
+
+    private static final byte[] CATALOG_HASH = new byte[20];
+
+    private static CorePlan corePlan(int id, int fragmentSize) {
+        byte[] fragment = new byte[fragmentSize];
+        byte[] hash = new byte[20];
+        hash[0] = (byte) id;
+        hash[1] = (byte) (id >> 8);
+        return new CorePlan(fragment, null, hash, null, false, true,
+                new VoltType[] { VoltType.BIGINT }, CATALOG_HASH);
+    }
+
+    private static AdHocPlannedStatement plannedStatement(String sql, CorePlan core) {
+        return new AdHocPlannedStatement(sql.getBytes(Constants.UTF8ENCODING), core,
+                ParameterSet.fromArrayNoCopy(1L), new int[] { 0 });
+    }
+
+    public void testLiteralCacheWeightBound() {
+        AdHocCompilerCache cache = new AdHocCompilerCache(1000, 1000);
+        // each of these weighs far more than its share of the entries, but less than
+        // a segment's share of the memory limit
+        final int fragmentSize = (int) (cache.MAX_LITERAL_MEM / 64);
+        final CorePlan core = corePlan(1, fragmentSize);
+        List<AdHocPlannedStatement> plans = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            String sql = "select * from t where a = " + i + ";";
+            AdHocPlannedStatement plan = plannedStatement(sql, core);
+            plans.add(plan);
+            cache.put(sql, "select * from t where a = ?;", plan, new String[] { Integer.toString(i) }, false, false);
+        }
+
+        int size = cache.getLiteralCacheSize();
+        assertTrue(size > 0);
+        assertTrue("literal cache kept " + size + " plans", size * (long) fragmentSize <= cache.MAX_LITERAL_MEM);
+        // nothing was removed other than by eviction
+        assertEquals(400 - size, cache.takeLiteralEvictions());
+        assertEquals(0, cache.takeLiteralEvictions());
+
+        int found = 0;
+        for (int i = 0; i < 400; i++) {
+            AdHocPlannedStatement cached = cache.getWithSQL("select * from t where a = " + i + ";");
+            if (cached != null) {
+                assertSame(plans.get(i), cached);
+                found++;
+            }
+        }
+        assertEquals(size, found);
+        // the most recent one is never the one evicted
+        assertSame(plans.get(399), cache.getWithSQL("select * from t where a = 399;"));
+    }
+
+    public void testLiteralCacheEntryBound() {
+        AdHocCompilerCache cache = new AdHocCompilerCache(100, 1000);
+        final CorePlan core = corePlan(1, 100);
+        for (int i = 0; i < 1000; i++) {
+            String sql = "select * from t where a = " + i + ";";
+            cache.put(sql, "select * from t where a = ?;", plannedStatement(sql, core),
+                    new String[] { Integer.toString(i) }, false, false);
+        }
+
+        int size = cache.getLiteralCacheSize();
+        assertTrue("literal cache kept " + size + " plans", size > 0 && size <= 100);
+        assertEquals(1000 - size, cache.takeLiteralEvictions());
+        // one token, with the same core plan every time
+        assertEquals(1, cache.getCoreCacheSize());
+        assertEquals(0, cache.takeCoreEvictions());
+
+        // the next interval only counts what is evicted during it
+        for (int i = 1000; i < 1010; i++) {
+            String sql = "select * from t where a = " + i + ";";
+            cache.put(sql, "select * from t where a = ?;", plannedStatement(sql, core),
+                    new String[] { Integer.toString(i) }, false, false);
+        }
+        assertEquals(10 + size - cache.getLiteralCacheSize(), cache.takeLiteralEvictions());
+    }
+
+    public void testCoreCacheEntryBound() {
+        AdHocCompilerCache cache = new AdHocCompilerCache(1000, 100);
+        List<CorePlan> cores = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            CorePlan core = corePlan(i, 100);
+            cores.add(core);
+            String token = "select * from t" + i + " where a = ?;";
+            // user parameters only go into the core cache
+            cache.put(token, token, plannedStatement(token, core), null, true, false);
+        }
+
+        int size = cache.getCoreCacheSize();
+        assertTrue("core cache kept " + size + " plans", size > 0 && size <= 100);
+        assertEquals(0, cache.getLiteralCacheSize());
+        assertEquals(1000 - size, cache.takeCoreEvictions());
+        assertEquals(0, cache.takeCoreEvictions());
+        assertEquals(0, cache.takeLiteralEvictions());
+
+        int found = 0;
+        for (int i = 0; i < 1000; i++) {
+            List<BoundPlan> variants = cache.getWithParsedToken("select * from t" + i + " where a = ?;");
+            if (variants != null) {
+                assertEquals(1, variants.size());
+                assertSame(cores.get(i), variants.get(0).m_core);
+                found++;
+            }
+        }
+        assertEquals(size, found);
+    }
+
+    public void testConcurrentCoreCacheVariants() throws Exception {
+        final AdHocCompilerCache cache = new AdHocCompilerCache(1000, 1000);
+        final String token = "select * from t where a = ?;";
+        final int threads = 8;
+        final int variants = 200;
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService es = Executors.newFixedThreadPool(threads * 2);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                // every writer puts every variant, each one must be kept once
+                futures.add(es.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (int i = 0; i < variants; i++) {
+                            String sql = "select * from t where a = " + i + ";";
+                            cache.put(sql, token, plannedStatement(sql, corePlan(i, 100)),
+                                    new String[] { Integer.toString(i) }, false, false);
+                        }
+                        return null;
+                    }
+                }));
+                // readers walk the variants while they are added
+                futures.add(es.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        start.await();
+                        for (int i = 0; i < variants * 10; i++) {
+                            List<BoundPlan> found = cache.getWithParsedToken(token);
+                            if (found != null) {
+                                for (BoundPlan plan : found) {
+                                    assertNotNull(plan.m_core);
+                                }
+                            }
+                        }
+                        return null;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            es.shutdown();
+        }
+
+        List<BoundPlan> found = cache.getWithParsedToken(token);
+        assertEquals(variants, found.size());
+        Set<String> constants = new HashSet<>();
+        for (BoundPlan plan : found) {
+            assertTrue(constants.add(plan.m_constants[0]));
+        }
+        assertEquals(variants, cache.getLiteralCacheSize());
+        assertEquals(0, cache.takeLiteralEvictions());
+        assertEquals(0, cache.takeCoreEvictions());
+    }
+}
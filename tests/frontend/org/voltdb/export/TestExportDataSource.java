@@ -25,6 +25,7 @@ package org.voltdb.export;
 
 import static org.mockito.Matchers.argThat;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.times;
 import static org.voltdb.export.ExportMatchers.ackPayloadIs;
 
@@ -457,7 +458,8 @@ public class TestExportDataSource extends TestCase {
 
         assertTrue("timeout while wating for ack to be sent",refSendCdl.get().await(5,TimeUnit.SECONDS));
 
-        verify(mockedMbox, times(1)).send(
+        // the ack for 63 may have been coalesced into this one, or may have set off the latch
+        verify(mockedMbox, timeout(5000).times(1)).send(
                 eq(42L),
                 argThat(ackPayloadIs(m_part, table.getSignature(), 83))
                 );
@@ -468,6 +470,120 @@ public class TestExportDataSource extends TestCase {
         }
     }
 
+    public void testAckCoalescing() throws Exception {
+        System.out.println("Running testAckCoalescing");
+        VoltDB.replaceVoltDBInstanceForTest(m_mockVoltDB);
+        Table table = m_mockVoltDB.getCatalogContext().database.getTables().get("TableName");
+        ExportDataSource s = new ExportDataSource(Mockito.mock(Runnable.class),
+                "database",
+                table.getTypeName(),
+                m_part,
+                table.getSignature(),
+                0,
+                table.getColumns(),
+                table.getPartitioncolumn(),
+                TEST_DIR.getAbsolutePath());
+        try {
+            Mailbox mockedMbox = Mockito.mock(Mailbox.class);
+            s.updateAckMailboxes(Pair.<Mailbox,ImmutableList<Long>>of(mockedMbox, ImmutableList.<Long>of(42L)));
+            final CountDownLatch cdl = new CountDownLatch(1);
+            s.setOnMastership(new Runnable() {
+                @Override
+                public void run() {
+                    cdl.countDown();
+                }
+            });
+            s.acceptMastership();
+            cdl.await();
+
+            final int blocks = 20;
+            for (int i = 0; i < blocks; i++) {
+                ByteBuffer foo = ByteBuffer.allocateDirect(20 + StreamBlock.HEADER_SIZE);
+                foo.duplicate().put(new byte[20]);
+                s.pushExportBuffer(3 + i * 20, foo, false, false);
+            }
+            assertEquals(blocks * 20, s.sizeInBytes());
+
+            // acks from the other replica are ignored by the master
+            s.ack(10000, false, 0, 0);
+            for (int i = 0; i < blocks; i++) {
+                AckingContainer cont = (AckingContainer) s.poll().get();
+                assertEquals(23 + i * 20, cont.m_uso);
+                assertTrue(s.getAckLagBytes() > 0);
+                cont.discard();
+            }
+            assertEquals(0, s.sizeInBytes());
+            assertEquals(0, s.getAckLagBytes());
+            assertEquals(0, s.getAckLagMillis());
+            assertEquals(blocks + 1, s.getAcksReceived());
+            assertTrue(s.getAckReleases() <= blocks);
+
+            // the last ack is always forwarded, even when it was coalesced
+            verify(mockedMbox, timeout(5000).times(1)).send(
+                    eq(42L),
+                    argThat(ackPayloadIs(m_part, table.getSignature(), 23 + (blocks - 1) * 20))
+                    );
+            assertTrue(s.getAcksForwarded() <= blocks);
+        } finally {
+            s.close();
+        }
+    }
+
+    public void testAckLagTracksOldestUnackedPoll() throws Exception {
+        System.out.println("Running testAckLagTracksOldestUnackedPoll");
+        VoltDB.replaceVoltDBInstanceForTest(m_mockVoltDB);
+        Table table = m_mockVoltDB.getCatalogContext().database.getTables().get("TableName");
+        ExportDataSource s = new ExportDataSource(Mockito.mock(Runnable.class),
+                "database",
+                table.getTypeName(),
+                m_part,
+                table.getSignature(),
+                0,
+                table.getColumns(),
+                table.getPartitioncolumn(),
+                TEST_DIR.getAbsolutePath());
+        try {
+            Mailbox mockedMbox = Mockito.mock(Mailbox.class);
+            s.updateAckMailboxes(Pair.<Mailbox,ImmutableList<Long>>of(mockedMbox, ImmutableList.<Long>of(42L)));
+            final CountDownLatch cdl = new CountDownLatch(1);
+            s.setOnMastership(new Runnable() {
+                @Override
+                public void run() {
+                    cdl.countDown();
+                }
+            });
+            s.acceptMastership();
+            cdl.await();
+
+            for (int i = 0; i < 2; i++) {
+                ByteBuffer foo = ByteBuffer.allocateDirect(20 + StreamBlock.HEADER_SIZE);
+                foo.duplicate().put(new byte[20]);
+                s.pushExportBuffer(3 + i * 20, foo, false, false);
+            }
+
+            AckingContainer first = (AckingContainer) s.poll().get();
+            Thread.sleep(100);
+            final long secondPolled = System.currentTimeMillis();
+            AckingContainer second = (AckingContainer) s.poll().get();
+            assertTrue(s.getAckLagMillis() >= 100);
+
+            // once the first block is released the lag is measured from the second poll
+            first.discard();
+            while (s.getAckLagBytes() > 20) {
+                Thread.sleep(10);
+            }
+            assertTrue(s.getAckLagMillis() <= System.currentTimeMillis() - secondPolled);
+
+            second.discard();
+            while (s.getAckLagBytes() > 0) {
+                Thread.sleep(10);
+            }
+            assertEquals(0, s.getAckLagMillis());
+        } finally {
+            s.close();
+        }
+    }
+
     public void testReleaseExportBytes() throws Exception {
         System.out.println("Running testReleaseExportBytes");
         VoltDB.replaceVoltDBInstanceForTest(m_mockVoltDB);
@@ -88,6 +88,7 @@ public class ExportClientTestBase {
         String partCol = replicated ? null : "smallint";
         //clear the table
         vtable.clearRowData();
+        vtable.resetRowPosition();
         AdvertisedDataSource source = new AdvertisedDataSource(partition, "foo", tableName,
                 partCol, 0, 32, col_names, col_types, Arrays.asList(COLUMN_LENGTHS),
                 AdvertisedDataSource.ExportFormat.FOURDOTFOUR);
@@ -97,5 +98,6 @@ public class ExportClientTestBase {
     protected void setup()
     {
         vtable.clearRowData();
+        vtable.resetRowPosition();
     }
 }
@@ -0,0 +1,237 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.exportclient;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.voltdb.export.AdvertisedDataSource;
+import org.voltdb.types.TimestampType;
+import org.voltdb.utils.VoltFile;
+
+public class TestColumnarFileExportClient extends ExportClientTestBase {
+    static final String m_dir = "/tmp" + File.separator + System.getProperty("user.name") + File.separator + "columnar";
+
+    @Override
+    @Before
+    public void setup()
+    {
+        super.setup();
+        try {
+            VoltFile.recursivelyDelete(new File(m_dir));
+            (new File(m_dir)).mkdirs();
+        } catch (IOException e) {
+            fail(e.getMessage());
+        }
+        ColumnarFileExportClient.TEST_VOLTDB_ROOT = m_dir;
+    }
+
+    private ColumnarFileExportClient configure(String compression, int rowGroup) throws Exception {
+        ColumnarFileExportClient client = new ColumnarFileExportClient();
+        Properties props = new Properties();
+        props.put("nonce", "columnar");
+        props.put("outdir", m_dir);
+        props.put("compression", compression);
+        props.put("rowgroup", Integer.toString(rowGroup));
+        client.configure(props);
+        return client;
+    }
+
+    /*
+     * Rows with repeated integers, a handful of distinct strings and some nulls, so every
+     * encoding gets used.
+     */
+    private static ByteBuffer buildBlock(int firstRow, int rows) throws IOException {
+        ByteBuffer block = ByteBuffer.allocate(4 * 1024 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+        for (int i = firstRow; i < firstRow + rows; i++) {
+            vtable.clearRowData();
+            if (i % 7 == 3) {
+                vtable.addRow(i, i, i, 0, i, i, null, null, null, null, null, null, null, null, GEOG_POINT, GEOG);
+            } else {
+                vtable.addRow(i, i, i, 0, i, i, (byte) (i % 3), (short) 2, i / 50, (long) i, i + .25,
+                        i * 1000L, "string " + (i % 5), new BigDecimal(i % 11), GEOG_POINT, GEOG);
+            }
+            vtable.resetRowPosition();
+            vtable.advanceRow();
+            byte[] rowBytes = ExportEncoder.encodeRow(vtable);
+            block.putInt(rowBytes.length).put(rowBytes);
+        }
+        vtable.clearRowData();
+        vtable.resetRowPosition();
+        block.flip();
+        return block;
+    }
+
+    private static void verifyRow(Object[] row, int i) {
+        assertEquals((long) i, row[0]);
+        if (i % 7 == 3) {
+            for (int c = 6; c < 14; c++) {
+                assertNull(row[c]);
+            }
+        } else {
+            assertEquals((byte) (i % 3), row[6]);
+            assertEquals((short) 2, row[7]);
+            assertEquals(i / 50, row[8]);
+            assertEquals((long) i, row[9]);
+            assertEquals(i + .25, row[10]);
+            assertEquals(new TimestampType(i * 1000L), row[11]);
+            assertEquals("string " + (i % 5), row[12]);
+            assertEquals(0, new BigDecimal(i % 11).compareTo((BigDecimal) row[13]));
+        }
+        assertEquals(GEOG_POINT.toString(), row[14].toString());
+        assertEquals(GEOG.toString(), row[15].toString());
+    }
+
+    private static File onlyFile() {
+        File[] files = new File(m_dir).listFiles();
+        assertEquals(1, files.length);
+        return files[0];
+    }
+
+    @Test
+    public void testConfiguration() throws Exception {
+        ColumnarFileExportClient client = new ColumnarFileExportClient();
+        Properties props = new Properties();
+        try {
+            client.configure(props);
+            fail("Missing nonce");
+        } catch (IllegalArgumentException expected) {}
+        props.put("nonce", "columnar");
+        props.put("outdir", m_dir);
+        props.put("compression", "zip");
+        try {
+            client.configure(props);
+            fail("Invalid compression");
+        } catch (IllegalArgumentException expected) {}
+        props.put("compression", "none");
+        props.put("rowgroup", "0");
+        try {
+            client.configure(props);
+            fail("Invalid row group size");
+        } catch (IllegalArgumentException expected) {}
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        long[] sizes = new long[2];
+        String[] compressions = { "none", "snappy" };
+        for (int c = 0; c < compressions.length; c++) {
+            setup();
+            ColumnarFileExportClient client = configure(compressions[c], 100);
+            AdvertisedDataSource source = constructTestSource(false, 3);
+            ColumnarFileExportClient.ColumnarFileDecoder decoder = client.constructExportDecoder(source);
+
+            // the first block spans row groups, the second ends one early
+            decoder.onBlockStart();
+            decoder.processRows(decoder.getRowCursor().reset(buildBlock(0, 250)));
+            decoder.onBlockCompletion();
+            assertTrue(onlyFile().getName().startsWith("active-columnar-yankeelover-3-"));
+            decoder.onBlockStart();
+            decoder.processRows(decoder.getRowCursor().reset(buildBlock(250, 30)));
+            decoder.onBlockCompletion();
+            client.shutdown();
+
+            File file = onlyFile();
+            assertTrue(file.getName().startsWith("columnar-yankeelover-3-"));
+            assertTrue(file.getName().endsWith(ColumnarFileExportClient.EXTENSION));
+            sizes[c] = file.length();
+
+            try (ColumnarFileReader reader = new ColumnarFileReader(file)) {
+                assertEquals("yankeelover", reader.getTableName());
+                assertEquals(3, reader.getPartitionId());
+                assertEquals(COLUMN_TYPES.length, reader.getColumnTypes().size());
+                assertEquals("string", reader.getColumnNames().get(12));
+                List<Integer> groupSizes = new ArrayList<>();
+                int row = 0;
+                List<Object[]> rows;
+                while ((rows = reader.readRowGroup()) != null) {
+                    groupSizes.add(rows.size());
+                    for (Object[] values : rows) {
+                        verifyRow(values, row++);
+                    }
+                }
+                assertEquals(280, row);
+                assertEquals("[100, 100, 50, 30]", groupSizes.toString());
+            }
+        }
+        // the distinct internal columns dominate, but those still compress
+        assertTrue(sizes[1] < sizes[0]);
+    }
+
+    @Test
+    public void testRestartedBlockIsWrittenOnce() throws Exception {
+        ColumnarFileExportClient client = configure("snappy", 1000);
+        ColumnarFileExportClient.ColumnarFileDecoder decoder = client.constructExportDecoder(constructTestSource(false, 0));
+
+        decoder.onBlockStart();
+        decoder.processRows(decoder.getRowCursor().reset(buildBlock(0, 20)));
+        // restarted before it completed
+        decoder.onBlockStart();
+        decoder.processRows(decoder.getRowCursor().reset(buildBlock(0, 20)));
+        decoder.onBlockCompletion();
+        // and a row handed over on its own
+        ByteBuffer single = buildBlock(20, 1);
+        byte[] rowBytes = new byte[single.getInt()];
+        single.get(rowBytes);
+        decoder.onBlockStart();
+        assertTrue(decoder.processRow(rowBytes.length, rowBytes));
+        decoder.onBlockCompletion();
+        client.shutdown();
+
+        try (ColumnarFileReader reader = new ColumnarFileReader(onlyFile())) {
+            List<Object[]> rows = reader.readRowGroup();
+            assertEquals(20, rows.size());
+            for (int i = 0; i < rows.size(); i++) {
+                verifyRow(rows.get(i), i);
+            }
+            rows = reader.readRowGroup();
+            assertEquals(1, rows.size());
+            verifyRow(rows.get(0), 20);
+            assertNull(reader.readRowGroup());
+        }
+    }
+
+    @Test
+    public void testEmptyFileIsRemoved() throws Exception {
+        ColumnarFileExportClient client = configure("snappy", 1000);
+        ColumnarFileExportClient.ColumnarFileDecoder decoder = client.constructExportDecoder(constructTestSource(false, 0));
+        decoder.onBlockStart();
+        decoder.onBlockCompletion();
+        client.shutdown();
+        assertEquals(0, new File(m_dir).listFiles().length);
+    }
+}
@@ -27,10 +27,12 @@ package org.voltdb.exportclient;
 import java.io.IOException;
 import java.io.StringWriter;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.TimeZone;
 
 import junit.framework.TestCase;
@@ -415,4 +417,117 @@ public class TestExportDecoderBase extends TestCase
         }
     }
 
+    private static ByteBuffer buildBlock(boolean direct, int rows) throws IOException {
+        ByteBuffer block = direct ? ByteBuffer.allocateDirect(1024 * 1024) : ByteBuffer.allocate(1024 * 1024);
+        block.order(ByteOrder.LITTLE_ENDIAN);
+        // leave room in front, processors hand over blocks that don't start at 0
+        block.position(7);
+        final int start = block.position();
+        for (int i = 0; i < rows; i++) {
+            vtable.clearRowData();
+            if (i % 3 == 2) {
+                vtable.addRow(i, i, i, 0, i, i, null, null, null, null, null, null, null, null, GEOG_POINT, GEOG);
+            } else {
+                vtable.addRow(i, i, i, 0, i, i, (byte) i, (short) (i + 1), i + 2, i + 3L, i + .5, i * 1000L,
+                        "row \u00e9 " + i, new BigDecimal(i), GEOG_POINT, GEOG);
+            }
+            // clearRowData() leaves the row position behind
+            vtable.resetRowPosition();
+            vtable.advanceRow();
+            byte[] rowBytes = ExportEncoder.encodeRow(vtable);
+            block.putInt(rowBytes.length);
+            block.put(rowBytes);
+        }
+        vtable.clearRowData();
+        vtable.resetRowPosition();
+        block.limit(block.position());
+        block.position(start);
+        return block;
+    }
+
+    public void testRowCursorMatchesDecodeRow() throws IOException {
+        for (boolean direct : new boolean[] { false, true }) {
+            StubExportDecoder dut = new StubExportDecoder(constructTestSource());
+            ByteBuffer block = buildBlock(direct, 10);
+            final int start = block.position();
+            ExportRowCursor rows = dut.getRowCursor().reset(block);
+            Object[] values = new Object[COLUMN_TYPES.length];
+            int count = 0;
+            while (rows.advanceRow()) {
+                ExportRowData expected = dut.decodeRow(rows.copyRow());
+                rows.getValues(values);
+                for (int i = 0; i < values.length; i++) {
+                    if (values[i] instanceof BigDecimal) {
+                        assertEquals(0, ((BigDecimal) values[i]).compareTo((BigDecimal) expected.values[i]));
+                    } else if (values[i] != null && (COLUMN_TYPES[i] == VoltType.GEOGRAPHY
+                            || COLUMN_TYPES[i] == VoltType.GEOGRAPHY_POINT)) {
+                        assertEquals(expected.values[i].toString(), values[i].toString());
+                    } else {
+                        assertEquals(expected.values[i], values[i]);
+                    }
+                }
+                assertEquals(expected.partitionValue, dut.getPartitionValue(values));
+                if (count % 3 == 2) {
+                    assertTrue(rows.isNull(9));
+                    assertNull(rows.getString(12));
+                    assertNull(rows.getDecimal(13));
+                } else {
+                    assertEquals(count + 3L, rows.getLong(9));
+                    assertEquals(count * 1000L, rows.getLong(11));
+                    assertEquals(count + .5, rows.getDouble(10));
+                }
+                count++;
+            }
+            assertEquals(10, count);
+            // the cursor reads the block in place
+            assertEquals(start, block.position());
+        }
+    }
+
+    public void testDefaultProcessRowsCopiesRows() throws Exception {
+        final List<byte[]> processed = new ArrayList<byte[]>();
+        StubExportDecoder dut = new StubExportDecoder(constructTestSource()) {
+            @Override
+            public boolean processRow(int rowSize, byte[] rowData) {
+                assertEquals(rowSize, rowData.length);
+                processed.add(rowData);
+                return true;
+            }
+        };
+        ByteBuffer block = buildBlock(true, 5);
+        dut.processRows(dut.getRowCursor().reset(block));
+        assertEquals(5, processed.size());
+        assertEquals(0L, dut.decodeRow(processed.get(0)).values[0]);
+        assertEquals(4L, dut.decodeRow(processed.get(4)).values[0]);
+    }
+
+    public void testDefaultProcessRowsSkipsBadRows() throws Exception {
+        final List<byte[]> processed = new ArrayList<byte[]>();
+        StubExportDecoder dut = new StubExportDecoder(constructTestSource()) {
+            @Override
+            public boolean processRow(int rowSize, byte[] rowData) {
+                processed.add(rowData);
+                return true;
+            }
+        };
+        ByteBuffer rows = buildBlock(false, 3);
+        final int firstRowEnd = rows.position() + 4 + rows.getInt(rows.position());
+        ByteBuffer block = ByteBuffer.allocate(rows.remaining() + 10).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer firstRow = rows.duplicate();
+        firstRow.limit(firstRowEnd);
+        block.put(firstRow);
+        // a row too short to hold its null flags, the rows after it can still be found
+        block.putInt(1).put((byte) 0);
+        rows.position(firstRowEnd);
+        block.put(rows);
+        // and a length that runs off the end of the block, nothing after it can be found
+        block.putInt(-1).put((byte) 0);
+        block.flip();
+
+        dut.processRows(dut.getRowCursor().reset(block));
+        assertEquals(3, processed.size());
+        assertEquals(0L, dut.decodeRow(processed.get(0)).values[0]);
+        assertEquals(1L, dut.decodeRow(processed.get(1)).values[0]);
+        assertEquals(2L, dut.decodeRow(processed.get(2)).values[0]);
+    }
 }
@@ -32,9 +32,13 @@ import static org.junit.Assert.fail;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.FilenameFilter;
 import java.io.IOException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.file.Files;
+import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
 
@@ -181,34 +185,38 @@ public class TestExportToFileClient extends ExportClientTestBase {
         props.put("period", "1"); // 1 second rolling period
         client.configure(props);
 
-        final AdvertisedDataSource source = constructTestSource(false, 0);
-        final ExportToFileClient.ExportToFileDecoder decoder = client.constructExportDecoder(source);
-
-        decoder.onBlockStart();
-        long l = System.currentTimeMillis();
-        vtable.addRow(l, l, l, 0, l, l, (byte) 1,
-                /* partitioning column */ (short) 2,
-                3, 4, 5.5, 6, "xx", new BigDecimal(88),
-                GEOG_POINT, GEOG);
-        vtable.advanceRow();
-        byte[] rowBytes = ExportEncoder.encodeRow(vtable);
-        decoder.processRow(rowBytes.length, rowBytes);
-        decoder.onBlockCompletion();
-
-        // The file should rollover after 1s
-        boolean rolledOver = false;
-        while (System.currentTimeMillis() - startTs < 60 * 1000) { // timeout after 1 minute
-            final File dir = new File(m_dir);
-            final File[] files = dir.listFiles();
-            if (files != null && files.length > 0 && !files[0].getName().startsWith("active")) {
-                assertTrue(System.currentTimeMillis() - startTs > 1000);
-                verifyContent(files[0], l);
-                rolledOver = true;
-                break;
+        try {
+            final AdvertisedDataSource source = constructTestSource(false, 0);
+            final ExportToFileClient.ExportToFileDecoder decoder = client.constructExportDecoder(source);
+
+            decoder.onBlockStart();
+            long l = System.currentTimeMillis();
+            vtable.addRow(l, l, l, 0, l, l, (byte) 1,
+                    /* partitioning column */ (short) 2,
+                    3, 4, 5.5, 6, "xx", new BigDecimal(88),
+                    GEOG_POINT, GEOG);
+            vtable.advanceRow();
+            byte[] rowBytes = ExportEncoder.encodeRow(vtable);
+            decoder.processRow(rowBytes.length, rowBytes);
+            decoder.onBlockCompletion();
+
+            // The file should rollover after 1s
+            boolean rolledOver = false;
+            while (System.currentTimeMillis() - startTs < 60 * 1000) { // timeout after 1 minute
+                final File dir = new File(m_dir);
+                final File[] files = dir.listFiles();
+                if (files != null && files.length > 0 && !files[0].getName().startsWith("active")) {
+                    assertTrue(System.currentTimeMillis() - startTs > 1000);
+                    verifyContent(files[0], l);
+                    rolledOver = true;
+                    break;
+                }
+                Thread.sleep(100);
             }
-            Thread.sleep(100);
+            assertTrue("Timed out waiting for file to roll over", rolledOver);
+        } finally {
+            client.shutdown();
         }
-        assertTrue("Timed out waiting for file to roll over", rolledOver);
     }
 
     @Test
@@ -224,47 +232,52 @@ public class TestExportToFileClient extends ExportClientTestBase {
         props.put("batched", "true");
         client.configure(props);
 
-        final AdvertisedDataSource source = constructTestSource(false, 0);
-        final ExportToFileClient.ExportToFileDecoder decoder = client.constructExportDecoder(source);
-
-        decoder.onBlockStart();
-        long l = System.currentTimeMillis();
-        vtable.addRow(l, l, l, 0, l, l, (byte) 1,
-                /* partitioning column */ (short) 2,
-                3, 4, 5.5, 6, "xx", new BigDecimal(88),
-                GEOG_POINT, GEOG);
-        vtable.advanceRow();
-        byte[] rowBytes = ExportEncoder.encodeRow(vtable);
-        decoder.processRow(rowBytes.length, rowBytes);
-        decoder.onBlockCompletion();
-
-        // The file should rollover after 1s
-        File rolledOver = null;
-        while (System.currentTimeMillis() - startTs < 60 * 1000) { // timeout after 1 minute
-            final File dir = new File(m_dir);
-            final File[] subdirs = dir.listFiles();
-            if (subdirs != null) {
-                // Locate the rolled over dir
-                for (File file : subdirs) {
-                    if (!file.getName().startsWith("active")) {
-                        rolledOver = file;
+        try {
+            final AdvertisedDataSource source = constructTestSource(false, 0);
+            final ExportToFileClient.ExportToFileDecoder decoder = client.constructExportDecoder(source);
+
+            decoder.onBlockStart();
+            long l = System.currentTimeMillis();
+            vtable.addRow(l, l, l, 0, l, l, (byte) 1,
+                    /* partitioning column */ (short) 2,
+                    3, 4, 5.5, 6, "xx", new BigDecimal(88),
+                    GEOG_POINT, GEOG);
+            vtable.advanceRow();
+            byte[] rowBytes = ExportEncoder.encodeRow(vtable);
+            decoder.processRow(rowBytes.length, rowBytes);
+            decoder.onBlockCompletion();
+
+            // The file should rollover after 1s
+            File rolledOver = null;
+            while (System.currentTimeMillis() - startTs < 60 * 1000) { // timeout after 1 minute
+                final File dir = new File(m_dir);
+                final File[] subdirs = dir.listFiles();
+                if (subdirs != null) {
+                    // Locate the rolled over dir
+                    for (File file : subdirs) {
+                        if (!file.getName().startsWith("active")) {
+                            rolledOver = file;
+                            break;
+                        }
+                    }
+                    if (rolledOver != null) {
+                        // batched mode uses directory
+                        assertTrue(rolledOver.isDirectory());
+                        assertTrue(System.currentTimeMillis() - startTs > 1000);
+
+                        final File[] files = rolledOver.listFiles();
+                        assertEquals(1, files.length);
+                        verifyContent(files[0], l);
                         break;
                     }
                 }
-                if (rolledOver != null) {
-                    // batched mode uses directory
-                    assertTrue(rolledOver.isDirectory());
-                    assertTrue(System.currentTimeMillis() - startTs > 1000);
-
-                    final File[] files = rolledOver.listFiles();
-                    assertEquals(1, files.length);
-                    verifyContent(files[0], l);
-                    break;
-                }
+                Thread.sleep(100);
             }
-            Thread.sleep(100);
+            assertNotNull("Timed out waiting for file to roll over", rolledOver);
+        } finally {
+            // stop the roll timer, it would keep creating files in the shared directory
+            client.shutdown();
         }
-        assertNotNull("Timed out waiting for file to roll over", rolledOver);
     }
 
     @Test
@@ -412,6 +425,74 @@ public class TestExportToFileClient extends ExportClientTestBase {
         assertEquals(2, retry);
     }
 
+    @Test
+    public void testPartitionsShareTableFile() throws Exception
+    {
+        ExportToFileClient client = new ExportToFileClient();
+        Properties props = new Properties();
+        final String nonce = "shared" + System.currentTimeMillis();
+        props.put("nonce", nonce);
+        props.put("type", "csv");
+        props.put("outdir", m_dir);
+        props.put("period", "100");
+        props.put("writerthreads", "2");
+        props.put("fsyncinterval", "0");
+        client.configure(props);
+
+        // enough rows that every block is handed to the writer in several chunks
+        final int rowsPerBlock = 8000;
+        final ExportToFileClient.ExportToFileDecoder[] decoders = new ExportToFileClient.ExportToFileDecoder[3];
+        for (int p = 0; p < decoders.length; p++) {
+            decoders[p] = client.constructExportDecoder(constructTestSource(false, p));
+        }
+        for (int p = 0; p < decoders.length; p++) {
+            ByteBuffer block = ByteBuffer.allocate(16 * 1024 * 1024).order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < rowsPerBlock; i++) {
+                vtable.clearRowData();
+                vtable.addRow(p, i, 0, p, 0, 0, (byte) 1,
+                        /* partitioning column */ (short) 2,
+                        3, 4, 5.5, 6, "xx", new BigDecimal(88),
+                        GEOG_POINT, GEOG);
+                vtable.resetRowPosition();
+                vtable.advanceRow();
+                byte[] rowBytes = ExportEncoder.encodeRow(vtable);
+                block.putInt(rowBytes.length).put(rowBytes);
+            }
+            vtable.clearRowData();
+            vtable.resetRowPosition();
+            block.flip();
+
+            decoders[p].onBlockStart();
+            decoders[p].processRows(decoders[p].getRowCursor().reset(block));
+            decoders[p].onBlockCompletion();
+        }
+
+        ExportToFileClient.PipelineStats stats = client.getPipelineStats();
+        assertEquals(decoders.length * rowsPerBlock, stats.getRowsDecoded());
+        assertEquals(stats.getBytesDecoded(), stats.getBytesWritten());
+        assertTrue(stats.getWriteBatches() > decoders.length);
+        assertTrue(stats.getFsyncs() > 0);
+        assertEquals(0, stats.getQueuedBytes());
+        assertTrue(stats.getMaxQueuedBytes() > 0);
+        client.shutdown();
+
+        // one file for the table, with every partition's rows in block order
+        final File[] files = new File(m_dir).listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.contains(nonce);
+            }
+        });
+        assertEquals(1, files.length);
+        List<String> lines = Files.readAllLines(files[0].toPath(), Charsets.UTF_8);
+        assertEquals(decoders.length * rowsPerBlock, lines.size());
+        for (int p = 0; p < decoders.length; p++) {
+            for (int i = 0; i < rowsPerBlock; i++) {
+                assertTrue(lines.get(p * rowsPerBlock + i).startsWith(String.format("\"%d\",\"%d\",", p, i)));
+            }
+        }
+    }
+
     void verifyContent(File f, long ts) throws IOException
     {
         assertEquals(String.format("\"%d\",\"%d\",\"%d\",\"0\",\"%d\",\"%d\",\"1\",\"2\",\"3\",\"4\",\"5.5\",\"1970-01-01 00:00:00.000\",\"xx\",\"88.000000000000\","
@@ -0,0 +1,176 @@
+/* This file is part of VoltDB.
+ * Copyright (C) 2008-2017 VoltDB Inc.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining
+ * a copy of this software and associated documentation files (the
+ * "Software"), to deal in the Software without restriction, including
+ * without limitation the rights to use, copy, modify, merge, publish,
+ * distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to
+ * the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be
+ * included in all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND,
+ * EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT.
+ * IN NO EVENT SHALL THE AUTHORS BE LIABLE FOR ANY CLAIM, DAMAGES OR
+ * OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE,
+ * ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR
+ * OTHER DEALINGS IN THE SOFTWARE.
+ */
+
+package org.voltdb.iv2;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+import org.voltdb.StarvationTracker;
+
+import junit.framework.TestCase;
+
+public class TestSiteTaskerQueue extends TestCase
+{
+    static class OrderedTask extends SiteTasker.SiteTaskerRunnable {
+        final int m_producer;
+        final int m_sequence;
+
+        OrderedTask(int producer, int sequence) {
+            m_producer = producer;
+            m_sequence = sequence;
+        }
+
+        @Override
+        void run() {
+        }
+    }
+
+    private static SiteTaskerQueue getSiteTaskerQueue() {
+        SiteTaskerQueue queue = new SiteTaskerQueue(0);
+        queue.setStarvationTracker(new StarvationTracker(0));
+        queue.setupQueueDepthTracker(0);
+        return queue;
+    }
+
+    @Test
+    public void testPollPeekAndBatch() throws Exception
+    {
+        SiteTaskerQueue queue = getSiteTaskerQueue();
+        assertTrue(queue.isEmpty());
+        assertNull(queue.peek());
+        assertNull(queue.poll());
+
+        for (int i = 0; i < 10; i++) {
+            queue.offer(new OrderedTask(0, i));
+        }
+        assertFalse(queue.isEmpty());
+        assertEquals(0, ((OrderedTask)queue.peek()).m_sequence);
+        assertEquals(0, ((OrderedTask)queue.poll()).m_sequence);
+        assertEquals(1, ((OrderedTask)queue.take()).m_sequence);
+
+        SiteTasker[] batch = new SiteTasker[5];
+        assertEquals(5, queue.takeBatch(batch));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i + 2, ((OrderedTask)batch[i]).m_sequence);
+        }
+        assertEquals(3, queue.takeBatch(batch));
+        assertEquals(9, ((OrderedTask)batch[2]).m_sequence);
+        assertTrue(queue.isEmpty());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testTakeBatchWaitsForOffer() throws Exception
+    {
+        final SiteTaskerQueue queue = getSiteTaskerQueue();
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicReference<SiteTasker> taken = new AtomicReference<SiteTasker>();
+        Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                SiteTasker[] batch = new SiteTasker[4];
+                started.countDown();
+                try {
+                    queue.takeBatch(batch);
+                    taken.set(batch[0]);
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+        consumer.start();
+        started.await();
+        Thread.sleep(50);
+        OrderedTask task = new OrderedTask(0, 0);
+        queue.offer(task);
+        consumer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(consumer.isAlive());
+        assertSame(task, taken.get());
+    }
+
+    @Test
+    public void testInterruptedTake() throws Exception
+    {
+        final SiteTaskerQueue queue = getSiteTaskerQueue();
+        final AtomicReference<Throwable> thrown = new AtomicReference<Throwable>();
+        Thread consumer = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    queue.take();
+                } catch (Throwable t) {
+                    thrown.set(t);
+                }
+            }
+        };
+        consumer.start();
+        Thread.sleep(50);
+        consumer.interrupt();
+        consumer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(consumer.isAlive());
+        assertTrue(thrown.get() instanceof InterruptedException);
+    }
+
+    /*
+     * Several producers racing one consumer that drains in batches. Every task must come out
+     * exactly once and each producer's tasks must come out in the order it offered them.
+     */
+    @Test
+    public void testConcurrentProducers() throws Exception
+    {
+        final SiteTaskerQueue queue = getSiteTaskerQueue();
+        final int producers = 4;
+        final int perProducer = 100000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; p++) {
+            final int producer = p;
+            threads[p] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perProducer; i++) {
+                        queue.offer(new OrderedTask(producer, i));
+                    }
+                }
+            };
+            threads[p].start();
+        }
+
+        int[] next = new int[producers];
+        SiteTasker[] batch = new SiteTasker[SiteTaskerQueue.MAX_BATCH_SIZE];
+        int received = 0;
+        while (received < producers * perProducer) {
+            int count = queue.takeBatch(batch);
+            for (int i = 0; i < count; i++) {
+                OrderedTask task = (OrderedTask)batch[i];
+                assertEquals(next[task.m_producer]++, task.m_sequence);
+            }
+            received += count;
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertTrue(queue.isEmpty());
+    }
+}
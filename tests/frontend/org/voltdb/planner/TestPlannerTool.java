@@ -27,18 +27,29 @@ import static org.mockito.Mockito.mock;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.voltcore.messaging.HostMessenger;
 import org.voltdb.CatalogContext;
 import org.voltdb.benchmark.tpcc.TPCCProjectBuilder;
 import org.voltdb.catalog.Catalog;
+import org.voltdb.catalog.Procedure;
+import org.voltdb.compiler.AdHocCompilerCache;
 import org.voltdb.compiler.AdHocPlannedStatement;
 import org.voltdb.compiler.PlannerTool;
+import org.voltdb.compiler.VoltCompiler;
 import org.voltdb.compiler.VoltProjectBuilder;
 import org.voltdb.settings.ClusterSettings;
 import org.voltdb.settings.DbSettings;
 import org.voltdb.settings.NodeSettings;
 import org.voltdb.utils.CatalogUtil;
+import org.voltdb.utils.InMemoryJarfile;
 import org.voltdb.utils.MiscUtils;
 
 import junit.framework.TestCase;
@@ -47,27 +58,25 @@ public class TestPlannerTool extends TestCase {
 
     PlannerTool m_pt = null;
 
-    public void testSimple() throws IOException {
+    /**
+     * Compile the TPCC schema into the named jar and load it the way the catalog update path does.
+     */
+    private static CatalogContext loadTPCCCatalog(String jarName) throws IOException {
         TPCCProjectBuilder builder = new TPCCProjectBuilder();
         builder.addAllDefaults();
-        final File jar = new File("tpcc-oop.jar");
+        final File jar = new File(jarName);
         jar.deleteOnExit();
-
-        //long start = System.nanoTime();
-        //for (int i = 0; i < 10000; i++) {
-        builder.compile("tpcc-oop.jar");
-        /*    long end = System.nanoTime();
-            System.err.printf("Took %.3f seconds to compile.\n",
-                    (end - start) / 1000000000.0);
-            start = end;
-        }*/
-
-        byte[] bytes = MiscUtils.fileToBytes(new File("tpcc-oop.jar"));
+        builder.compile(jarName);
+        byte[] bytes = MiscUtils.fileToBytes(jar);
         String serializedCatalog = CatalogUtil.getSerializedCatalogStringFromJar(CatalogUtil.loadAndUpgradeCatalogFromJar(bytes, false).getFirst());
         Catalog catalog = new Catalog();
         catalog.execute(serializedCatalog);
         DbSettings settings = new DbSettings(ClusterSettings.create().asSupplier(),NodeSettings.create());
-        CatalogContext context = new CatalogContext(catalog, settings, 0, 0, bytes, null, new byte[] {}, mock(HostMessenger.class));
+        return new CatalogContext(catalog, settings, 0, 0, bytes, null, new byte[] {}, mock(HostMessenger.class));
+    }
+
+    public void testSimple() throws IOException {
+        CatalogContext context = loadTPCCCatalog("tpcc-oop.jar");
 
         m_pt = new PlannerTool(context.database, context.getCatalogHash());
 
@@ -139,6 +148,124 @@ public class TestPlannerTool extends TestCase {
         System.out.println(result);
     }
 
+    public void testConcurrentPlanning() throws Exception {
+        CatalogContext context = loadTPCCCatalog("tpcc-concurrent-oop.jar");
+
+        final String[] queries = {
+                "select * from warehouse where w_id = 1;",
+                "select d_name, count(*) from district where d_w_id = 2 group by d_name;",
+                "select c_last from customer, orders where c_id = o_c_id and c_w_id = o_w_id order by c_last limit 5;",
+                "select i_id from item where i_price < 10 union select i_id from item where i_price > 90;",
+                "select i_name from item where i_id in (select i_id from item where i_data = 'x');",
+                "select max(h_amount) from history where h_w_id = 4;",
+                "update item set i_price = i_price + 1 where i_id = 9;",
+                "select i_name from item where i_id between 3 and 30 order by i_name;"
+        };
+
+        // planned one at a time
+        m_pt = new PlannerTool(context.database, context.getCatalogHash());
+        final List<AdHocPlannedStatement> expected = new ArrayList<>();
+        for (String query : queries) {
+            expected.add(m_pt.planSqlForTest(query));
+        }
+
+        // and all at once, by a planner that starts with an empty cache
+        AdHocCompilerCache.clearHashCache();
+        final PlannerTool pt = new PlannerTool(context.database, context.getCatalogHash());
+        ExecutorService es = Executors.newFixedThreadPool(queries.length);
+        try {
+            List<Future<AdHocPlannedStatement>> results = new ArrayList<>();
+            for (int round = 0; round < 4; round++) {
+                for (final String query : queries) {
+                    results.add(es.submit(new Callable<AdHocPlannedStatement>() {
+                        @Override
+                        public AdHocPlannedStatement call() {
+                            return pt.planSqlForTest(query);
+                        }
+                    }));
+                }
+            }
+            for (int i = 0; i < results.size(); i++) {
+                AdHocPlannedStatement plan = results.get(i).get();
+                AdHocPlannedStatement serial = expected.get(i % queries.length);
+                assertTrue(queries[i % queries.length],
+                        Arrays.equals(serial.core.aggregatorFragment, plan.core.aggregatorFragment));
+                assertTrue(queries[i % queries.length],
+                        Arrays.equals(serial.core.collectorFragment, plan.core.collectorFragment));
+            }
+        } finally {
+            es.shutdown();
+        }
+    }
+
+    public void testUpdateClassesCompileDuringAdHocPlanning() throws Exception {
+        CatalogContext context = loadTPCCCatalog("tpcc-updateclasses-oop.jar");
+        final byte[] bytes = context.getCatalogJarBytes();
+
+        final String[] queries = {
+                "select * from warehouse where w_id = 1;",
+                "select c_last from customer, orders where c_id = o_c_id and c_w_id = o_w_id order by c_last limit 5;",
+                "select i_name from item where i_id in (select i_id from item where i_data = 'x');",
+                "update item set i_price = i_price + 1 where i_id = 9;"
+        };
+
+        m_pt = new PlannerTool(context.database, context.getCatalogHash());
+        final List<AdHocPlannedStatement> expected = new ArrayList<>();
+        for (String query : queries) {
+            expected.add(m_pt.planSqlForTest(query));
+        }
+
+        // @UpdateClasses recompiles the procedures on the planner's HSQL interface
+        // while ad hoc statements are being planned. Without their statements in the
+        // current catalog it can't reuse the old plans, so every one is planned again.
+        final Catalog updateCatalog = context.catalog.deepCopy();
+        for (Procedure proc : updateCatalog.getClusters().get("cluster").getDatabases().get("database").getProcedures()) {
+            if (proc.getHasjava()) {
+                proc.getStatements().clear();
+            }
+        }
+        AdHocCompilerCache.clearHashCache();
+        final PlannerTool pt = new PlannerTool(context.database, context.getCatalogHash());
+        ExecutorService es = Executors.newFixedThreadPool(queries.length + 1);
+        try {
+            Future<?> updateClasses = es.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    for (int round = 0; round < 4; round++) {
+                        VoltCompiler compiler = new VoltCompiler(false);
+                        compiler.compileInMemoryJarfileForUpdateClasses(new InMemoryJarfile(bytes),
+                                updateCatalog, pt.getHSQLInterface());
+                    }
+                    return null;
+                }
+            });
+            List<Future<AdHocPlannedStatement>> results = new ArrayList<>();
+            for (int round = 1; round <= 6; round++) {
+                for (final String query : queries) {
+                    // a different text misses the literal cache, so each one is parsed by HSQL
+                    final String sql = query.substring(0, round).toUpperCase() + query.substring(round);
+                    results.add(es.submit(new Callable<AdHocPlannedStatement>() {
+                        @Override
+                        public AdHocPlannedStatement call() {
+                            return pt.planSqlForTest(sql);
+                        }
+                    }));
+                }
+            }
+            updateClasses.get();
+            for (int i = 0; i < results.size(); i++) {
+                AdHocPlannedStatement plan = results.get(i).get();
+                AdHocPlannedStatement serial = expected.get(i % queries.length);
+                assertTrue(queries[i % queries.length],
+                        Arrays.equals(serial.core.aggregatorFragment, plan.core.aggregatorFragment));
+                assertTrue(queries[i % queries.length],
+                        Arrays.equals(serial.core.collectorFragment, plan.core.collectorFragment));
+            }
+        } finally {
+            es.shutdown();
+        }
+    }
+
     public void testBadDDL() throws IOException
     {
         // semicolons in in-lined comments are bad
@@ -27,6 +27,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
 
 import org.junit.After;
 import org.voltcore.TransactionIdManager;
@@ -302,4 +303,60 @@ public class TestTableSaveFile extends TestCase {
             savefile.close();
         }
     }
+
+    public void testWritesQueuedBehindABlockedWriteAreBatched() throws Exception {
+        System.out.println("Running testWritesQueuedBehindABlockedWriteAreBatched");
+        VoltTable.ColumnInfo columnInfo[] = new VoltTable.ColumnInfo[] {
+                new ColumnInfo("RT_ID", VoltType.INTEGER) };
+        final File f = File.createTempFile("foo", "bar");
+        f.deleteOnExit();
+        ArrayList<Integer> partIds = new ArrayList<Integer>();
+        partIds.add(0);
+        DefaultSnapshotDataTarget dsdt = new DefaultSnapshotDataTarget(f,
+                HOST_ID, CLUSTER_NAME, DATABASE_NAME, TABLE_NAME,
+                TOTAL_PARTITIONS, false, partIds, new VoltTable(columnInfo, columnInfo.length),
+                TXN_ID, TIMESTAMP, VERSION2);
+        assertEquals(1, dsdt.getWriteCount());
+
+        final int chunks = 10;
+        DefaultSnapshotDataTarget.m_simulateBlockedWrite = new CountDownLatch(1);
+        try {
+            for (int i = 0; i < chunks; i++) {
+                VoltTable chunk = new VoltTable(columnInfo, columnInfo.length);
+                chunk.addRow(i);
+                serializeChunk(chunk, dsdt, i);
+            }
+            assertTrue(dsdt.getQueuedBytes() > 0);
+        } finally {
+            DefaultSnapshotDataTarget.m_simulateBlockedWrite.countDown();
+            DefaultSnapshotDataTarget.m_simulateBlockedWrite = null;
+        }
+        dsdt.close();
+
+        // At most the first chunk was written on its own, the rest went out together
+        assertTrue(dsdt.getWriteCount() <= 3);
+        assertEquals(0, dsdt.getQueuedBytes());
+        assertEquals(f.length(), dsdt.getBytesWritten());
+
+        FileInputStream fis = new FileInputStream(f);
+        TableSaveFile savefile = new TableSaveFile(fis, 3, null);
+        try {
+            int expectedPartitionId = 0;
+            while (savefile.hasMoreChunks()) {
+                final BBContainer c = savefile.getNextChunk();
+                try {
+                    assertEquals(expectedPartitionId, ((TableSaveFile.Container)c).partitionId);
+                    VoltTable test_table = PrivateVoltTableFactory.createVoltTableFromBuffer(c.b(), false);
+                    assertTrue(test_table.advanceRow());
+                    assertEquals(expectedPartitionId, test_table.getLong(0));
+                    expectedPartitionId++;
+                } finally {
+                    c.discard();
+                }
+            }
+            assertEquals(chunks, expectedPartitionId);
+        } finally {
+            savefile.close();
+        }
+    }
 }
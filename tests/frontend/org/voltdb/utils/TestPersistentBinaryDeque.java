@@ -32,9 +32,15 @@ import static org.junit.Assert.assertTrue;
 import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import junit.framework.Assert;
 
@@ -49,6 +55,7 @@ import org.voltdb.utils.BinaryDeque.BinaryDequeTruncator;
 import org.voltdb.utils.BinaryDeque.TruncatorResponse;
 
 import com.google_voltpatches.common.collect.Sets;
+import com.google_voltpatches.common.util.concurrent.ListenableFuture;
 
 public class TestPersistentBinaryDeque {
 
@@ -1054,6 +1061,110 @@ public class TestPersistentBinaryDeque {
         assert(files[0].getName().equals("pbd_nonce.1.pbd"));
     }
 
+    @Test
+    public void testGroupCommitConcurrentOffers() throws Exception {
+        System.out.println("Running testGroupCommitConcurrentOffers");
+        m_pbd.close();
+        m_pbd = new PersistentBinaryDeque(TEST_NONCE, TEST_DIR, logger, true, true);
+
+        // enough to fill several segments from every thread at once
+        final int threads = 4;
+        final int perThread = 48;
+        final List<Future<?>> results = new ArrayList<>();
+        ExecutorService es = Executors.newFixedThreadPool(threads);
+        try {
+            for (int t = 0; t < threads; t++) {
+                final int thread = t;
+                results.add(es.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        List<ListenableFuture<?>> offers = new ArrayList<>();
+                        for (int ii = 0; ii < perThread; ii++) {
+                            offers.add(m_pbd.offerAsync(DBBPool.wrapBB(getFilledBuffer(thread * 1000 + ii)), ii % 2 == 0));
+                        }
+                        m_pbd.syncAsync().get();
+                        for (ListenableFuture<?> offer : offers) {
+                            assertTrue(offer.isDone());
+                            offer.get();
+                        }
+                        return null;
+                    }
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            es.shutdown();
+        }
+
+        BinaryDequeReader reader = m_pbd.openForRead(CURSOR_ID);
+        assertEquals(threads * perThread, reader.getNumObjects());
+        m_pbd.close();
+        try {
+            m_pbd.offer(defaultContainer());
+            fail("Offer to a closed PBD");
+        } catch (IOException expected) {}
+
+        // every thread's objects come back in the order it offered them
+        m_pbd = new PersistentBinaryDeque(TEST_NONCE, TEST_DIR, logger);
+        reader = m_pbd.openForRead(CURSOR_ID);
+        assertEquals(threads * perThread, reader.getNumObjects());
+        int[] next = new int[threads];
+        for (int ii = 0; ii < threads * perThread; ii++) {
+            BBContainer retval = reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+            try {
+                final long fillValue = retval.b().getLong(0);
+                final int thread = (int) (fillValue / 1000);
+                assertEquals(next[thread]++, fillValue % 1000);
+                assertTrue(getFilledBuffer(fillValue).equals(retval.b()));
+            } finally {
+                retval.discard();
+            }
+        }
+        assertNull(reader.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+    }
+
+    @Test
+    public void testMappedReads() throws Exception {
+        System.out.println("Running testMappedReads");
+        final boolean mmapReads = PBDRegularSegment.MMAP_READS;
+        PBDRegularSegment.MMAP_READS = true;
+        try {
+            // several finished segments, every other object compressed
+            for (int ii = 0; ii < 96; ii++) {
+                m_pbd.offer(DBBPool.wrapBB(getFilledBuffer(ii)), ii % 2 == 0);
+            }
+            m_pbd.close();
+            m_pbd = new PersistentBinaryDeque(TEST_NONCE, TEST_DIR, logger);
+
+            BinaryDequeReader copying = m_pbd.openForRead(CURSOR_ID);
+            BinaryDequeReader slicing = m_pbd.openForRead("slicing");
+            List<BBContainer> held = new ArrayList<>();
+            for (int ii = 0; ii < 96; ii++) {
+                BBContainer copy = copying.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY);
+                try {
+                    assertFalse(copy.b().isReadOnly());
+                    assertTrue(getFilledBuffer(ii).equals(copy.b()));
+                } finally {
+                    copy.discard();
+                }
+                // slices outlive the segment being passed by every reader
+                BBContainer slice = slicing.poll(PersistentBinaryDeque.UNSAFE_READ_ONLY_CONTAINER_FACTORY);
+                assertTrue(getFilledBuffer(ii).equals(slice.b()));
+                held.add(slice);
+            }
+            assertNull(copying.poll(PersistentBinaryDeque.UNSAFE_CONTAINER_FACTORY));
+            assertNull(slicing.poll(PersistentBinaryDeque.UNSAFE_READ_ONLY_CONTAINER_FACTORY));
+            for (int ii = 0; ii < held.size(); ii++) {
+                assertTrue(getFilledBuffer(ii).equals(held.get(ii).b()));
+                held.get(ii).discard();
+            }
+        } finally {
+            PBDRegularSegment.MMAP_READS = mmapReads;
+        }
+    }
+
     @Before
     public void setUp() throws Exception {
         setupTestDir();
@@ -2417,6 +2417,8 @@ public abstract class AbstractHistogram extends AbstractHistogramBase implements
             for (int ii = 0; ii < h.countsArrayLength; ii++) {
                 h.addToCountAtIndex(ii, buf.getLong());
             }
+            // the counts alone don't set the min and max values
+            h.establishInternalTackingValues();
             return h;
         } catch (IOException e) {
             throw new RuntimeException(e);